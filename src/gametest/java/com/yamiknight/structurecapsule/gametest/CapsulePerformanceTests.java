@@ -0,0 +1,261 @@
+package com.yamiknight.structurecapsule.gametest;
+
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import com.yamiknight.structurecapsule.placement.PlacementPlan;
+import com.yamiknight.structurecapsule.repository.HttpStructureRepository;
+import com.yamiknight.structurecapsule.repository.StructureRepository;
+import com.yamiknight.structurecapsule.structure.CompressedContainer;
+import com.yamiknight.structurecapsule.structure.SectionStore;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.structure.StructureManifest;
+import net.fabricmc.fabric.api.gametest.v1.FabricGameTest;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.StairsBlock;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.test.GameTest;
+import net.minecraft.test.TestContext;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Headless performance suite for structure capture and placement
+ *
+ * Run with: ./gradlew runGametest
+ *
+ * Each test builds a synthetic structure of a given size far away from the
+ * GameTest grid, captures it through StructureManager and then lets
+ * AsyncStructurePlacer place it over real server ticks, sampling the whole
+ * duration of every tick until it is done (ServerTickSampler). Each placement
+ * case runs in its own batch, so no other test shares its ticks.
+ * The repository case times fetches from a loopback structure repository.
+ * The timings are collected by PerformanceReport and written as JSON so
+ * results can be compared between builds. The engines alone are measured
+ * without a server by the JUnit tests (./gradlew test).
+ */
+public class CapsulePerformanceTests implements FabricGameTest {
+    // Benchmark regions live far from the test grid so they never overlap other tests
+    private static final int REGION_BASE_X = 20000;
+    private static final int REGION_BASE_Z = 20000;
+    private static final int REGION_SPACING = 512;
+    private static final int REGION_Y = 100;
+    
+    private static final BlockState[] PATTERN = {
+        Blocks.STONE.getDefaultState(),
+        Blocks.OAK_PLANKS.getDefaultState(),
+        Blocks.GLASS.getDefaultState(),
+        Blocks.OAK_STAIRS.getDefaultState().with(StairsBlock.FACING, Direction.EAST),
+        Blocks.AIR.getDefaultState()
+    };
+    
+    @GameTest(templateName = EMPTY_STRUCTURE, tickLimit = 200, batchId = "perf_small")
+    public void small(TestContext context) {
+        runCase(context, "small", 0, 8, 8, 8);
+    }
+    
+    @GameTest(templateName = EMPTY_STRUCTURE, tickLimit = 200, batchId = "perf_medium")
+    public void medium(TestContext context) {
+        runCase(context, "medium", 1, 16, 16, 16);
+    }
+    
+    @GameTest(templateName = EMPTY_STRUCTURE, tickLimit = 400, batchId = "perf_large")
+    public void large(TestContext context) {
+        runCase(context, "large", 2, 32, 32, 32);
+    }
+    
+    @GameTest(templateName = EMPTY_STRUCTURE, tickLimit = 800, batchId = "perf_huge")
+    public void huge(TestContext context) {
+        runCase(context, "huge", 3, 64, 32, 64);
+    }
+    
+    /**
+     * Structure repository over loopback HTTP (32^3 structure): a cold fetch of the
+     * manifest and every section, then conditional revalidations timed one by one
+     */
+    @GameTest(templateName = EMPTY_STRUCTURE, tickLimit = 200)
+    public void repository(TestContext context) throws IOException {
+        int size = 32;
+        StructureData.Builder builder = new StructureData.Builder("perf_repository", size, size, size);
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    BlockState state = patternState(x, y, z);
+                    if (!state.isAir()) {
+                        builder.addBlock(new BlockPos(x, y, z), state);
+                    }
+                }
+            }
+        }
+        StructureData data = builder.build();
+        
+        Path root = Files.createTempDirectory("structurecapsule-repository");
+        long writeStart = System.nanoTime();
+        StructureManifest manifest = StructureManifest.write(data, new SectionStore(root.resolve("sections")));
+        CompressedContainer.write(manifest.toNbt(), root.resolve("perf_repository.nbt"), 6, 256 * 1024);
+        long writeNanos = System.nanoTime() - writeStart;
+        
+        try (RepositoryServer server = RepositoryServer.start(root, 0)) {
+            HttpStructureRepository repository = new HttpStructureRepository(server.getUrl(), 5000);
+            
+            long fetchStart = System.nanoTime();
+            StructureRepository.ManifestResponse response = repository.fetchManifest("perf_repository", null);
+            context.assertTrue(response.status() == StructureRepository.Status.OK && response.etag() != null,
+                "Repository did not return the manifest with an ETag");
+            for (StructureManifest.SectionRef ref : manifest.getSections()) {
+                context.assertTrue(repository.fetchSection(ref.hash()) != null,
+                    "Repository is missing section " + ref.hash());
+            }
+            long fetchNanos = System.nanoTime() - fetchStart;
+            
+            PerformanceReport.Samples samples = new PerformanceReport.Samples();
+            for (int i = 0; i < 50; i++) {
+                long start = System.nanoTime();
+                StructureRepository.ManifestResponse revalidated =
+                    repository.fetchManifest("perf_repository", response.etag());
+                samples.add(System.nanoTime() - start);
+                context.assertTrue(revalidated.status() == StructureRepository.Status.NOT_MODIFIED,
+                    "Conditional request was not answered with Not Modified");
+            }
+            
+            PerformanceReport.record(new PerformanceReport.CaseResult(
+                "repository",
+                size, size, size,
+                data.getBlockCount(),
+                0,
+                writeNanos,
+                fetchNanos,
+                null,
+                samples
+            ));
+        }
+        
+        context.complete();
+    }
+    
+    /**
+     * Build, capture and place one structure, then record the measurements
+     */
+    private void runCase(TestContext context, String caseName, int slot, int sizeX, int sizeY, int sizeZ) {
+        ServerWorld world = context.getWorld();
+        MinecraftServer server = world.getServer();
+        
+        // Source region and placement target sit side by side
+        BlockPos source = new BlockPos(REGION_BASE_X + slot * REGION_SPACING, REGION_Y, REGION_BASE_Z);
+        BlockPos target = source.add(sizeX + 32, 0, 0);
+        
+        // Load chunks up front so generation time is not counted, and keep them loaded while placing
+        forceChunks(world, source, sizeX, sizeZ, true);
+        forceChunks(world, target, sizeX, sizeZ, true);
+        
+        fillRegion(world, source, sizeX, sizeY, sizeZ);
+        
+        // Make sure nothing else is occupying the placer
+        if (AsyncStructurePlacer.hasPendingPlacements()) {
+            context.throwGameTestException("Placement queue not empty before benchmark '" + caseName + "'");
+            return;
+        }
+        
+        // Capture
+        String structureName = "perf_" + caseName;
+        long captureStart = System.nanoTime();
+        StructureManifest captured = StructureManager.saveStructure(
+            world, source, source.add(sizeX - 1, sizeY - 1, sizeZ - 1), structureName);
+        long captureNanos = System.nanoTime() - captureStart;
+        context.assertTrue(captured != null, "Capture failed for " + caseName);
+        
+        // Load back from disk (same path the capsule item uses)
+        long loadStart = System.nanoTime();
+        StructureData loaded = StructureManager.loadStructure(structureName);
+        long loadNanos = System.nanoTime() - loadStart;
+        context.assertTrue(loaded != null, "Load failed for " + caseName);
+        context.assertTrue(loaded.getBlockCount() == captured.getBlockCount(),
+            "Block count mismatch after reload for " + caseName);
+        
+        // Build the shared placement plan up front, so no sampled tick is spent waiting for it
+        PlacementPlan.forPlacement(loaded, Direction.NORTH).join();
+        
+        // Placement runs from the placer's own END_SERVER_TICK hook across real ticks, starting
+        // next tick so the capture above is not sampled; every server tick until it is done is timed whole
+        context.waitAndRun(1, () -> {
+            PerformanceReport.Samples ticks = ServerTickSampler.start();
+            AsyncStructurePlacer.queuePlacement(server, world, target, loaded, Direction.NORTH);
+            
+            context.addFinalTask(() -> {
+                if (AsyncStructurePlacer.hasPendingPlacements()) {
+                    context.throwGameTestException("Placement of '" + caseName + "' has not finished");
+                }
+                ServerTickSampler.stop();
+                forceChunks(world, source, sizeX, sizeZ, false);
+                forceChunks(world, target, sizeX, sizeZ, false);
+                
+                // Spot check that the structure actually arrived
+                BlockState expected = world.getBlockState(source);
+                context.assertTrue(world.getBlockState(target).equals(expected),
+                    "Placed structure does not match source for " + caseName);
+                
+                PerformanceReport.record(new PerformanceReport.CaseResult(
+                    caseName,
+                    sizeX, sizeY, sizeZ,
+                    loaded.getBlockCount(),
+                    ModConfig.getInstance().blocksPerTick,
+                    captureNanos,
+                    loadNanos,
+                    ticks,
+                    null
+                ));
+            });
+        });
+    }
+    
+    /**
+     * Force-load every chunk the region touches, or release them again
+     */
+    private static void forceChunks(ServerWorld world, BlockPos origin, int sizeX, int sizeZ, boolean forced) {
+        int minChunkX = origin.getX() >> 4;
+        int minChunkZ = origin.getZ() >> 4;
+        int maxChunkX = (origin.getX() + sizeX - 1) >> 4;
+        int maxChunkZ = (origin.getZ() + sizeZ - 1) >> 4;
+        
+        for (int cx = minChunkX; cx <= maxChunkX; cx++) {
+            for (int cz = minChunkZ; cz <= maxChunkZ; cz++) {
+                world.setChunkForced(cx, cz, forced);
+                if (forced) {
+                    world.getChunk(cx, cz);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fill the region with a deterministic mix of full blocks, directional
+     * blocks and air pockets so both the air skip and state rotation are exercised
+     */
+    private static void fillRegion(ServerWorld world, BlockPos origin, int sizeX, int sizeY, int sizeZ) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    pos.set(origin.getX() + x, origin.getY() + y, origin.getZ() + z);
+                    // Flag 2: notify clients only, no neighbor updates while building the fixture
+                    world.setBlockState(pos, patternState(x, y, z), 2);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Fixture block at a region-relative position
+     */
+    private static BlockState patternState(int x, int y, int z) {
+        // Corner block is always stone so the spot check has something to compare
+        int index = (x == 0 && y == 0 && z == 0) ? 0 : Math.floorMod(x * 7 + y * 13 + z * 3, PATTERN.length);
+        return PATTERN[index];
+    }
+}
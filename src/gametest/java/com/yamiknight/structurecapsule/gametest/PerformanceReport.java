@@ -0,0 +1,158 @@
+package com.yamiknight.structurecapsule.gametest;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.minecraft.SharedConstants;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects benchmark results from the GameTest suite and writes them
+ * to a machine-readable JSON report.
+ *
+ * The report path comes from -Dstructurecapsule.perf.report and defaults
+ * to structurecapsule-perf.json in the run directory. The file is rewritten
+ * after every case so a crash still leaves the finished results behind.
+ */
+public class PerformanceReport {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final String REPORT_PROPERTY = "structurecapsule.perf.report";
+    private static final List<CaseResult> RESULTS = new ArrayList<>();
+    
+    /**
+     * Add a result and flush the whole report to disk
+     */
+    public static synchronized void record(CaseResult result) {
+        RESULTS.add(result);
+        write();
+    }
+    
+    private static void write() {
+        JsonObject root = new JsonObject();
+        root.addProperty("generatedAt", Instant.now().toString());
+        root.addProperty("minecraftVersion", SharedConstants.getGameVersion().getName());
+        root.addProperty("javaVersion", System.getProperty("java.version"));
+        root.addProperty("availableProcessors", Runtime.getRuntime().availableProcessors());
+        
+        JsonArray cases = new JsonArray();
+        for (CaseResult result : RESULTS) {
+            cases.add(result.toJson());
+        }
+        root.add("cases", cases);
+        
+        Path path = Paths.get(System.getProperty(REPORT_PROPERTY, "structurecapsule-perf.json"));
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, GSON.toJson(root));
+        } catch (IOException e) {
+            System.err.println("Failed to write StructureCapsule performance report: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Duration samples in nanoseconds
+     */
+    public static class Samples {
+        private long[] samples = new long[256];
+        private int count = 0;
+        
+        public void add(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = nanos;
+        }
+        
+        public int count() {
+            return count;
+        }
+        
+        /**
+         * Nearest-rank percentile in milliseconds
+         */
+        public double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0.0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))] / 1_000_000.0;
+        }
+    }
+    
+    /**
+     * Measurements for a single benchmark case
+     */
+    public static class CaseResult {
+        private final String name;
+        private final int sizeX;
+        private final int sizeY;
+        private final int sizeZ;
+        private final int blockCount;
+        private final int blocksPerTick;
+        private final long captureNanos;
+        private final long loadNanos;
+        private final Samples serverTicks;
+        private final Samples revalidations;
+        
+        /**
+         * @param serverTicks Whole server ticks while the placement ran, or null
+         * @param revalidations Conditional repository requests, or null
+         */
+        public CaseResult(String name, int sizeX, int sizeY, int sizeZ, int blockCount, int blocksPerTick,
+                          long captureNanos, long loadNanos, Samples serverTicks, Samples revalidations) {
+            this.name = name;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.blockCount = blockCount;
+            this.blocksPerTick = blocksPerTick;
+            this.captureNanos = captureNanos;
+            this.loadNanos = loadNanos;
+            this.serverTicks = serverTicks;
+            this.revalidations = revalidations;
+        }
+        
+        private JsonObject toJson() {
+            JsonObject json = new JsonObject();
+            json.addProperty("name", name);
+            json.addProperty("sizeX", sizeX);
+            json.addProperty("sizeY", sizeY);
+            json.addProperty("sizeZ", sizeZ);
+            json.addProperty("volume", (long) sizeX * sizeY * sizeZ);
+            json.addProperty("blockCount", blockCount);
+            json.addProperty("blocksPerTick", blocksPerTick);
+            json.addProperty("captureMs", captureNanos / 1_000_000.0);
+            json.addProperty("loadMs", loadNanos / 1_000_000.0);
+            if (serverTicks != null) {
+                // Game time at 20 TPS is what players actually wait for
+                double gameSeconds = serverTicks.count() / 20.0;
+                json.addProperty("placementTicks", serverTicks.count());
+                json.addProperty("serverTickMsP50", serverTicks.percentileMillis(50));
+                json.addProperty("serverTickMsP90", serverTicks.percentileMillis(90));
+                json.addProperty("serverTickMsP99", serverTicks.percentileMillis(99));
+                json.addProperty("serverTickMsMax", serverTicks.percentileMillis(100));
+                json.addProperty("blocksPerGameSecond", gameSeconds > 0 ? blockCount / gameSeconds : 0.0);
+            }
+            if (revalidations != null) {
+                json.addProperty("revalidations", revalidations.count());
+                json.addProperty("revalidationMsP50", revalidations.percentileMillis(50));
+                json.addProperty("revalidationMsP99", revalidations.percentileMillis(99));
+                json.addProperty("revalidationMsMax", revalidations.percentileMillis(100));
+            }
+            return json;
+        }
+    }
+}
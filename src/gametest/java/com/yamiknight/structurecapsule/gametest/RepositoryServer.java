@@ -0,0 +1,141 @@
+package com.yamiknight.structurecapsule.gametest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Minimal HTTP server publishing a saved_structures/ directory in the
+ * layout HttpStructureRepository expects
+ *
+ * Test stand-in for the repository benchmark: ETags are the SHA-256 of the
+ * manifest file, computed per request.
+ */
+public class RepositoryServer implements AutoCloseable {
+    private static final String NAME_PATTERN = "[a-z0-9_-]+";
+    private static final String HASH_PATTERN = "[0-9a-f]{8,128}";
+    
+    private final Path root;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    
+    private RepositoryServer(Path root, int port) throws IOException {
+        this.root = root;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newFixedThreadPool(4);
+        server.setExecutor(executor);
+        server.createContext("/structures", this::handleStructures);
+        server.createContext("/sections/", this::handleSection);
+    }
+    
+    /**
+     * Serve a structure directory
+     *
+     * @param port Port to listen on, 0 for any free port
+     */
+    public static RepositoryServer start(Path root, int port) throws IOException {
+        RepositoryServer repository = new RepositoryServer(root, port);
+        repository.server.start();
+        return repository;
+    }
+    
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+    
+    /**
+     * Base URL for HttpStructureRepository
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + getPort() + "/";
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+    
+    private void handleStructures(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/structures") || path.equals("/structures/")) {
+                String names;
+                try (Stream<Path> files = Files.list(root)) {
+                    names = files.map(file -> file.getFileName().toString())
+                        .filter(file -> file.endsWith(".nbt"))
+                        .map(file -> file.substring(0, file.length() - 4))
+                        .sorted()
+                        .collect(Collectors.joining("\n"));
+                }
+                send(exchange, 200, names.getBytes(StandardCharsets.UTF_8), null);
+                return;
+            }
+            
+            String name = path.substring("/structures/".length());
+            Path file = root.resolve(name + ".nbt");
+            if (!name.matches(NAME_PATTERN) || !Files.isRegularFile(file)) {
+                send(exchange, 404, new byte[0], null);
+                return;
+            }
+            byte[] body = Files.readAllBytes(file);
+            String etag = "\"" + sha256(body) + "\"";
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                exchange.getResponseHeaders().set("ETag", etag);
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            send(exchange, 200, body, etag);
+        }
+    }
+    
+    private void handleSection(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String hash = exchange.getRequestURI().getPath().substring("/sections/".length());
+            if (!hash.matches(HASH_PATTERN)) {
+                send(exchange, 404, new byte[0], null);
+                return;
+            }
+            Path file = root.resolve("sections").resolve(hash.substring(0, 2)).resolve(hash + ".sec");
+            if (!Files.isRegularFile(file)) {
+                send(exchange, 404, new byte[0], null);
+                return;
+            }
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=31536000, immutable");
+            send(exchange, 200, Files.readAllBytes(file), null);
+        }
+    }
+    
+    private static void send(HttpExchange exchange, int status, byte[] body, String etag) throws IOException {
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+    
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
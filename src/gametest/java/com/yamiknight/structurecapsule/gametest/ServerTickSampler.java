@@ -0,0 +1,49 @@
+package com.yamiknight.structurecapsule.gametest;
+
+import net.fabricmc.fabric.api.event.Event;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
+import net.minecraft.util.Identifier;
+
+/**
+ * Times whole server ticks for the performance suite
+ *
+ * A tick is measured from START_SERVER_TICK to a late END_SERVER_TICK phase,
+ * so the mod's own end-of-tick work (the placer, capture jobs) is included
+ * together with entity, chunk and block-update processing.
+ */
+public class ServerTickSampler {
+    private static final Identifier LATE_PHASE = Identifier.of("structurecapsule", "perf_sampler");
+    
+    private static boolean registered = false;
+    private static long tickStart = 0;
+    private static PerformanceReport.Samples active = null;
+    
+    /**
+     * Start sampling every following server tick
+     *
+     * @return The samples, filled until stop() is called
+     */
+    public static PerformanceReport.Samples start() {
+        if (!registered) {
+            registered = true;
+            ServerTickEvents.START_SERVER_TICK.register(server -> tickStart = System.nanoTime());
+            ServerTickEvents.END_SERVER_TICK.addPhaseOrdering(Event.DEFAULT_PHASE, LATE_PHASE);
+            ServerTickEvents.END_SERVER_TICK.register(LATE_PHASE, server -> {
+                if (active != null && tickStart != 0) {
+                    active.add(System.nanoTime() - tickStart);
+                }
+            });
+        }
+        // Started mid-tick, so the current tick is not sampled
+        tickStart = 0;
+        active = new PerformanceReport.Samples();
+        return active;
+    }
+    
+    /**
+     * Stop sampling
+     */
+    public static void stop() {
+        active = null;
+    }
+}
@@ -1,7 +1,9 @@
 package com.yamiknight.structurecapsule;
 
+import com.yamiknight.structurecapsule.renderer.GhostConflicts;
 import com.yamiknight.structurecapsule.renderer.StructureGhostRenderer;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientChunkEvents;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderEvents;
 
 /**
@@ -19,6 +21,10 @@ public class StructureCapsuleClient implements ClientModInitializer {
             StructureGhostRenderer.render(context);
         });
         
+        // Chunk data replaces sections without per-block updates; re-read them for the preview
+        ClientChunkEvents.CHUNK_LOAD.register((world, chunk) -> GhostConflicts.onChunkChanged(world, chunk.getPos()));
+        ClientChunkEvents.CHUNK_UNLOAD.register((world, chunk) -> GhostConflicts.onChunkChanged(world, chunk.getPos()));
+        
         StructureCapsuleMod.LOGGER.info("Structure Capsule Client initialized");
     }
 }
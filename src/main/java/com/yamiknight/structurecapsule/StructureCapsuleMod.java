@@ -3,13 +3,21 @@ package com.yamiknight.structurecapsule;
 import com.yamiknight.structurecapsule.command.CapsuleCommand;
 import com.yamiknight.structurecapsule.config.ModConfig;
 import com.yamiknight.structurecapsule.items.ModItems;
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
 import com.yamiknight.structurecapsule.network.StructureSavePacket;
 import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import com.yamiknight.structurecapsule.structure.AsyncStructureCapture;
+import com.yamiknight.structurecapsule.structure.BlockStateResolver;
+import com.yamiknight.structurecapsule.structure.StructureClipboard;
 import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.trace.TraceRecorder;
+import com.yamiknight.structurecapsule.trace.TraceReplay;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.itemgroup.v1.FabricItemGroup;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import net.minecraft.item.ItemGroup;
 import net.minecraft.item.ItemStack;
 import net.minecraft.registry.Registries;
@@ -21,6 +29,8 @@ import net.minecraft.util.Identifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 /**
  * Main mod initializer for StructureCapsule.
  * Handles server-side registration and initialization.
@@ -57,9 +67,37 @@ public class StructureCapsuleMod implements ModInitializer {
         // Register commands
         CommandRegistrationCallback.EVENT.register(CapsuleCommand::register);
         
-        // Register server tick event for async structure placement
+        // Register server tick event for async structure capture and placement
         ServerTickEvents.END_SERVER_TICK.register(server -> {
+            TraceReplay.tick(server);
+            AsyncStructureCapture.tick(server);
             AsyncStructurePlacer.tick(server);
+            ModMetrics.tick(server);
+            TraceRecorder.tick(server);
+        });
+        ServerLifecycleEvents.SERVER_STARTED.register(server -> {
+            if (ModConfig.getInstance().traceWorkload) {
+                try {
+                    TraceRecorder.start();
+                } catch (IOException e) {
+                    LOGGER.error("Failed to start workload trace", e);
+                }
+            }
+        });
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+            if (success) {
+                BlockStateResolver.clearCache();
+            }
+        });
+        ServerPlayConnectionEvents.DISCONNECT.register((handler, server) ->
+            StructureClipboard.clear(handler.getPlayer().getUuid()));
+        ServerLifecycleEvents.SERVER_STOPPING.register(server -> {
+            TraceReplay.cancel();
+            AsyncStructureCapture.cancelAll();
+            TraceRecorder.stop();
+            StructureManager.getBlockIndex().flush();
+            StructureClipboard.clearAll();
+            BlockStateResolver.clearCache();
         });
         
         LOGGER.info("Structure Capsule Mod initialized successfully");
@@ -0,0 +1,124 @@
+package com.yamiknight.structurecapsule.command;
+
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Batch placement manifest
+ * Manifests are plain text files in ./config/structurecapsule/batches/<name>.txt
+ *
+ * One placement per line: <structure> <x> <y> <z> [north|east|south|west]
+ * Blank lines and lines starting with # are ignored; rotation defaults to north.
+ */
+public class BatchManifest {
+    private static final String EXTENSION = ".txt";
+    
+    /**
+     * One line of a manifest
+     */
+    public record Entry(String structure, BlockPos origin, Direction facing) {
+    }
+    
+    /**
+     * Thrown for a malformed manifest line
+     */
+    public static class ParseException extends Exception {
+        private final int line;
+        
+        public ParseException(int line, String message) {
+            super(message);
+            this.line = line;
+        }
+        
+        public int getLine() {
+            return line;
+        }
+    }
+    
+    public static Path getDirectory() {
+        return FabricLoader.getInstance().getConfigDir().resolve("structurecapsule").resolve("batches");
+    }
+    
+    public static boolean exists(String name) {
+        return Files.isRegularFile(pathFor(name));
+    }
+    
+    /**
+     * Read and parse a manifest by name
+     */
+    public static List<Entry> read(String name) throws IOException, ParseException {
+        List<String> lines = Files.readAllLines(pathFor(name));
+        List<Entry> entries = new ArrayList<>();
+        
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            
+            String[] parts = line.split("\\s+");
+            if (parts.length < 4 || parts.length > 5) {
+                throw new ParseException(i + 1, "expected <structure> <x> <y> <z> [rotation]");
+            }
+            
+            BlockPos origin;
+            try {
+                origin = new BlockPos(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            } catch (NumberFormatException e) {
+                throw new ParseException(i + 1, "invalid coordinates");
+            }
+            
+            Direction facing = Direction.NORTH;
+            if (parts.length == 5) {
+                facing = parseRotation(parts[4]);
+                if (facing == null) {
+                    throw new ParseException(i + 1, "invalid rotation '" + parts[4] + "'");
+                }
+            }
+            
+            entries.add(new Entry(parts[0], origin, facing));
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * List all manifests in the batches directory
+     */
+    public static List<String> list() {
+        List<String> names = new ArrayList<>();
+        Path directory = getDirectory();
+        if (!Files.isDirectory(directory)) {
+            return names;
+        }
+        
+        try (Stream<Path> paths = Files.list(directory)) {
+            paths.map(path -> path.getFileName().toString())
+                .filter(fileName -> fileName.endsWith(EXTENSION))
+                .forEach(fileName -> names.add(fileName.substring(0, fileName.length() - EXTENSION.length())));
+        } catch (IOException e) {
+            // Treated as no manifests; the command reports missing files itself
+        }
+        return names;
+    }
+    
+    /**
+     * Parse a horizontal facing used as placement rotation, or null if invalid
+     */
+    public static Direction parseRotation(String value) {
+        Direction direction = Direction.byName(value.toLowerCase());
+        return direction != null && direction.getAxis().isHorizontal() ? direction : null;
+    }
+    
+    private static Path pathFor(String name) {
+        return getDirectory().resolve(name.replaceAll("[^a-zA-Z0-9_-]", "_") + EXTENSION);
+    }
+}
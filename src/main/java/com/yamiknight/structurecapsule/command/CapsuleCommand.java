@@ -3,19 +3,45 @@ package com.yamiknight.structurecapsule.command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.suggestion.SuggestionProvider;
+import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.convert.SchematicConverter;
 import com.yamiknight.structurecapsule.items.FilledCapsuleItem;
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
+import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import com.yamiknight.structurecapsule.structure.BlockIndex;
+import com.yamiknight.structurecapsule.structure.StructureClipboard;
 import com.yamiknight.structurecapsule.structure.StructureData;
 import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.trace.TraceReader;
+import com.yamiknight.structurecapsule.trace.TraceRecorder;
+import com.yamiknight.structurecapsule.trace.TraceReplay;
+import com.yamiknight.structurecapsule.util.Workers;
 import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.command.argument.BlockPosArgumentType;
 import net.minecraft.command.argument.EntityArgumentType;
 import net.minecraft.item.ItemStack;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Commands for StructureCapsule mod
@@ -23,8 +49,25 @@ import java.util.List;
  * Commands:
  * - /scapsule give <structure_name> [player] - Give a filled capsule
  * - /scapsule list - List all saved structures
+ * - /scapsule find <terms> - List structures by the blocks they contain, from the block index
+ *   (terms: block, -block, block>=count; namespace:* matches every block of a mod)
+ * - /scapsule place <structure> <pos> <rotation> [clear] - Place a structure without a capsule,
+ *   optionally emptying its bounding box first
+ * - /scapsule batch <manifest> - Place every structure listed in a batch manifest as one job
+ * - /scapsule copy <from> <to> - Copy a region into your clipboard (kept in memory only)
+ * - /scapsule paste [<pos> <rotation> [clear]] - Place your clipboard, by default where you stand, facing your way
+ * - /scapsule clipboard save <name>|clear - Save your clipboard as a structure, or empty it
+ * - /scapsule import <file> [name] - Convert a structure template (.nbt) or Sponge schematic (.schem)
+ *   from the schematics directory into a saved structure
+ * - /scapsule export <structure> <nbt|schem> - Write a saved structure to the schematics directory
+ * - /scapsule stats [reset] - Show (or reset) runtime performance metrics
+ * - /scapsule trace start|stop - Record placements and saves to a workload trace
+ * - /scapsule trace replay <file> <pos> - Re-issue a recorded workload on this server, anchored at pos
+ * - /scapsule trace simulate <file> - Replay a recorded workload in memory and report latencies
+ * - /scapsule gc - Delete stored sections no structure references any more
  */
 public class CapsuleCommand {
+    private static final int MAX_FIND_RESULTS = 50;
     
     /**
      * Register all commands
@@ -47,6 +90,121 @@ public class CapsuleCommand {
                 .then(CommandManager.literal("list")
                     .executes(context -> listStructures(context))
                 )
+                .then(CommandManager.literal("find")
+                    .then(CommandManager.argument("terms", StringArgumentType.greedyString())
+                        .suggests(blockTermSuggestions())
+                        .executes(context -> findStructures(context))
+                    )
+                )
+                .then(CommandManager.literal("place")
+                    .then(CommandManager.argument("structure", StringArgumentType.string())
+                        .suggests(structureSuggestions())
+                        .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos())
+                            .then(CommandManager.argument("rotation", StringArgumentType.word())
+                                .suggests(rotationSuggestions())
+                                .executes(context -> placeStructure(context, false))
+                                .then(CommandManager.literal("clear")
+                                    .executes(context -> placeStructure(context, true))
+                                )
+                            )
+                        )
+                    )
+                )
+                .then(CommandManager.literal("copy")
+                    .then(CommandManager.argument("from", BlockPosArgumentType.blockPos())
+                        .then(CommandManager.argument("to", BlockPosArgumentType.blockPos())
+                            .executes(context -> copyToClipboard(context))
+                        )
+                    )
+                )
+                .then(CommandManager.literal("paste")
+                    .executes(context -> pasteClipboard(context, false, false))
+                    .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos())
+                        .then(CommandManager.argument("rotation", StringArgumentType.word())
+                            .suggests(rotationSuggestions())
+                            .executes(context -> pasteClipboard(context, true, false))
+                            .then(CommandManager.literal("clear")
+                                .executes(context -> pasteClipboard(context, true, true))
+                            )
+                        )
+                    )
+                )
+                .then(CommandManager.literal("clipboard")
+                    .then(CommandManager.literal("save")
+                        .then(CommandManager.argument("name", StringArgumentType.string())
+                            .executes(context -> saveClipboard(context))
+                        )
+                    )
+                    .then(CommandManager.literal("clear")
+                        .executes(context -> clearClipboard(context))
+                    )
+                )
+                .then(CommandManager.literal("batch")
+                    .then(CommandManager.argument("manifest", StringArgumentType.string())
+                        .suggests((context, builder) -> {
+                            BatchManifest.list().forEach(builder::suggest);
+                            return builder.buildFuture();
+                        })
+                        .executes(context -> placeBatch(context))
+                    )
+                )
+                .then(CommandManager.literal("import")
+                    .then(CommandManager.argument("file", StringArgumentType.string())
+                        .suggests((context, builder) -> {
+                            SchematicConverter.listSchematics().forEach(builder::suggest);
+                            return builder.buildFuture();
+                        })
+                        .executes(context -> importSchematic(context, null))
+                        .then(CommandManager.argument("name", StringArgumentType.string())
+                            .executes(context -> importSchematic(context, StringArgumentType.getString(context, "name")))
+                        )
+                    )
+                )
+                .then(CommandManager.literal("export")
+                    .then(CommandManager.argument("structure", StringArgumentType.string())
+                        .suggests(structureSuggestions())
+                        .then(CommandManager.argument("format", StringArgumentType.word())
+                            .suggests((context, builder) -> {
+                                for (SchematicConverter.Format format : SchematicConverter.Format.values()) {
+                                    builder.suggest(format.getExtension());
+                                }
+                                return builder.buildFuture();
+                            })
+                            .executes(context -> exportStructure(context))
+                        )
+                    )
+                )
+                .then(CommandManager.literal("gc")
+                    .executes(context -> collectGarbage(context))
+                )
+                .then(CommandManager.literal("trace")
+                    .then(CommandManager.literal("start")
+                        .executes(context -> startTrace(context))
+                    )
+                    .then(CommandManager.literal("stop")
+                        .executes(context -> stopTrace(context))
+                    )
+                    .then(CommandManager.literal("replay")
+                        .then(CommandManager.argument("file", StringArgumentType.string())
+                            .suggests(traceSuggestions())
+                            .then(CommandManager.argument("pos", BlockPosArgumentType.blockPos())
+                                .executes(context -> replayTrace(context))
+                            )
+                        )
+                    )
+                    .then(CommandManager.literal("simulate")
+                        .then(CommandManager.argument("file", StringArgumentType.string())
+                            .suggests(traceSuggestions())
+                            .executes(context -> simulateTrace(context))
+                        )
+                    )
+                )
+                .then(CommandManager.literal("stats")
+                    .executes(context -> showStats(context))
+                    .then(CommandManager.literal("reset")
+                        .executes(context -> resetStats(context))
+                    )
+                )
         );
     }
     
@@ -89,6 +247,10 @@ public class CapsuleCommand {
         
         // Load structure to get dimensions
         StructureData data = StructureManager.loadStructure(structureName);
+        if (data == null && StructureManager.isFetching(structureName)) {
+            source.sendError(Text.translatable("structurecapsule.message.structure_fetching", structureName));
+            return 0;
+        }
         if (data == null) {
             source.sendError(Text.literal("Failed to load structure data!"));
             return 0;
@@ -145,6 +307,591 @@ public class CapsuleCommand {
         return structures.size();
     }
     
+    /**
+     * List structures matching block filters
+     * Answered from the block index alone; no structure file is read.
+     */
+    private static int findStructures(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        String terms = StringArgumentType.getString(context, "terms");
+        
+        List<BlockIndex.Filter> filters = new ArrayList<>();
+        for (String term : terms.trim().split("\\s+")) {
+            try {
+                filters.add(BlockIndex.Filter.parse(term));
+            } catch (IllegalArgumentException e) {
+                source.sendError(Text.translatable("structurecapsule.command.find.invalid", e.getMessage()));
+                return 0;
+            }
+        }
+        
+        BlockIndex index = StructureManager.getBlockIndex();
+        List<BlockIndex.Match> matches = index.find(filters);
+        int pending = index.getPendingCount();
+        if (pending > 0) {
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.find.indexing", pending), false);
+        }
+        if (matches.isEmpty()) {
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.find.none", terms), false);
+            return 0;
+        }
+        
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.find.header",
+            matches.size(), terms), false);
+        for (BlockIndex.Match match : matches.subList(0, Math.min(matches.size(), MAX_FIND_RESULTS))) {
+            StringBuilder counts = new StringBuilder();
+            match.counts().forEach((block, count) ->
+                counts.append(counts.isEmpty() ? "" : ", ").append(block).append(" x").append(count));
+            source.sendFeedback(() -> counts.isEmpty()
+                ? Text.translatable("structurecapsule.command.list.entry", match.structure())
+                : Text.translatable("structurecapsule.command.find.entry", match.structure(), counts.toString()),
+                false);
+        }
+        if (matches.size() > MAX_FIND_RESULTS) {
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.find.more",
+                matches.size() - MAX_FIND_RESULTS), false);
+        }
+        return matches.size();
+    }
+    
+    /**
+     * Place a structure at a position, as if from a capsule facing the given way
+     * 
+     * @param clearVolume Remove existing blocks in the structure's bounding box first
+     */
+    private static int placeStructure(CommandContext<ServerCommandSource> context, boolean clearVolume)
+        throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        String structureName = StringArgumentType.getString(context, "structure");
+        BlockPos pos = BlockPosArgumentType.getLoadedBlockPos(context, "pos");
+        String rotation = StringArgumentType.getString(context, "rotation");
+        
+        Direction facing = BatchManifest.parseRotation(rotation);
+        if (facing == null) {
+            source.sendError(Text.translatable("structurecapsule.command.invalid_rotation", rotation));
+            return 0;
+        }
+        if (!StructureManager.structureExists(structureName)) {
+            source.sendError(Text.translatable("structurecapsule.message.structure_not_found", structureName));
+            return 0;
+        }
+        
+        StructureData data = StructureManager.loadStructure(structureName);
+        if (data == null && StructureManager.isFetching(structureName)) {
+            source.sendError(Text.translatable("structurecapsule.message.structure_fetching", structureName));
+            return 0;
+        }
+        if (data == null) {
+            source.sendError(Text.literal("Failed to load structure data!"));
+            return 0;
+        }
+        
+        ServerPlayerEntity player = source.getPlayer();
+        AsyncStructurePlacer.queuePlacement(source.getServer(), source.getWorld(), pos, data, facing,
+            player != null ? player.getName().getString() : null, clearVolume);
+        
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.place.queued",
+            structureName, pos.toShortString(), facing.asString()), true);
+        return 1;
+    }
+    
+    /**
+     * Copy a region into the player's clipboard, scanned over several ticks
+     */
+    private static int copyToClipboard(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        ServerPlayerEntity player = source.getPlayerOrThrow();
+        BlockPos from = BlockPosArgumentType.getLoadedBlockPos(context, "from");
+        BlockPos to = BlockPosArgumentType.getLoadedBlockPos(context, "to");
+        
+        long volume = (long) (Math.abs(to.getX() - from.getX()) + 1) * (Math.abs(to.getY() - from.getY()) + 1)
+            * (Math.abs(to.getZ() - from.getZ()) + 1);
+        ModConfig config = ModConfig.getInstance();
+        int maxVolume = Math.min(config.maxStructureSize, config.maxClipboardSize);
+        if (volume > maxVolume) {
+            source.sendError(Text.translatable("structurecapsule.message.too_large", maxVolume));
+            return 0;
+        }
+        
+        StructureClipboard.copy(player, source.getWorld(), from, to).whenComplete((contents, error) -> {
+            if (error != null) {
+                source.sendError(Text.translatable("structurecapsule.command.copy.failed", rootMessage(error)));
+                return;
+            }
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.copy.done",
+                contents.getBlockCount(), contents.getSizeX(), contents.getSizeY(), contents.getSizeZ()), false);
+        });
+        return 1;
+    }
+    
+    /**
+     * Place the player's clipboard through the async placer
+     *
+     * @param explicit Position and rotation were given; otherwise the player's block and facing are used
+     * @param clearVolume Remove existing blocks in the bounding box first
+     */
+    private static int pasteClipboard(CommandContext<ServerCommandSource> context, boolean explicit,
+                                      boolean clearVolume) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        ServerPlayerEntity player = source.getPlayerOrThrow();
+        StructureClipboard.Contents contents = StructureClipboard.get(player.getUuid());
+        if (contents == null) {
+            source.sendError(Text.translatable("structurecapsule.command.clipboard.empty"));
+            return 0;
+        }
+        
+        BlockPos pos = explicit ? BlockPosArgumentType.getLoadedBlockPos(context, "pos") : player.getBlockPos();
+        Direction facing = player.getHorizontalFacing();
+        if (explicit) {
+            String rotation = StringArgumentType.getString(context, "rotation");
+            facing = BatchManifest.parseRotation(rotation);
+            if (facing == null) {
+                source.sendError(Text.translatable("structurecapsule.command.invalid_rotation", rotation));
+                return 0;
+            }
+        }
+        
+        // Expanding up to maxClipboardSize blocks is too slow for the server thread
+        MinecraftServer server = source.getServer();
+        ServerWorld world = source.getWorld();
+        Direction placedFacing = facing;
+        CompletableFuture.supplyAsync(contents::toStructureData, Workers.pool()).whenCompleteAsync((data, error) -> {
+            if (error != null) {
+                StructureCapsuleMod.LOGGER.error("Failed to expand clipboard for pasting", error);
+                source.sendError(Text.translatable("structurecapsule.command.paste.failed", rootMessage(error)));
+                return;
+            }
+            AsyncStructurePlacer.queuePlacement(server, world, pos, data, placedFacing,
+                player.getName().getString(), clearVolume);
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.paste.queued",
+                data.getBlockCount(), pos.toShortString(), placedFacing.asString()), true);
+        }, server);
+        return 1;
+    }
+    
+    /**
+     * Write the player's clipboard as a saved structure on the worker pool
+     */
+    private static int saveClipboard(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        ServerPlayerEntity player = source.getPlayerOrThrow();
+        String name = StringArgumentType.getString(context, "name");
+        StructureClipboard.Contents contents = StructureClipboard.get(player.getUuid());
+        if (contents == null) {
+            source.sendError(Text.translatable("structurecapsule.command.clipboard.empty"));
+            return 0;
+        }
+        
+        MinecraftServer server = source.getServer();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return StructureClipboard.save(contents, name);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Workers.pool()).whenCompleteAsync((file, error) -> {
+            if (error != null) {
+                StructureCapsuleMod.LOGGER.error("Failed to save clipboard as structure: {}", name, error);
+                source.sendError(Text.translatable("structurecapsule.command.clipboard.save_failed",
+                    name, rootMessage(error)));
+                return;
+            }
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.clipboard.saved",
+                name, contents.getBlockCount()), true);
+        }, server);
+        return 1;
+    }
+    
+    private static int clearClipboard(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        if (!StructureClipboard.clear(source.getPlayerOrThrow().getUuid())) {
+            source.sendError(Text.translatable("structurecapsule.command.clipboard.empty"));
+            return 0;
+        }
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.clipboard.cleared"), false);
+        return 1;
+    }
+    
+    /**
+     * Place every entry of a batch manifest as a single placement job
+     * Each distinct structure is loaded once, on the worker pool, and shared by all its placements.
+     */
+    private static int placeBatch(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        String manifestName = StringArgumentType.getString(context, "manifest");
+        
+        if (!BatchManifest.exists(manifestName)) {
+            source.sendError(Text.translatable("structurecapsule.command.batch.not_found", manifestName));
+            return 0;
+        }
+        
+        List<BatchManifest.Entry> entries;
+        try {
+            entries = BatchManifest.read(manifestName);
+        } catch (BatchManifest.ParseException e) {
+            source.sendError(Text.translatable("structurecapsule.command.batch.invalid",
+                manifestName, e.getLine(), e.getMessage()));
+            return 0;
+        } catch (IOException e) {
+            source.sendError(Text.translatable("structurecapsule.command.batch.invalid",
+                manifestName, 0, e.getMessage()));
+            return 0;
+        }
+        
+        // Validate names up front so a typo does not fail after loading everything else
+        Map<String, CompletableFuture<StructureData>> loads = new LinkedHashMap<>();
+        for (BatchManifest.Entry entry : entries) {
+            if (!StructureManager.structureExists(entry.structure())) {
+                source.sendError(Text.translatable("structurecapsule.message.structure_not_found", entry.structure()));
+                return 0;
+            }
+            loads.computeIfAbsent(entry.structure(), StructureManager::loadStructureAsync);
+        }
+        
+        MinecraftServer server = source.getServer();
+        ServerWorld world = source.getWorld();
+        ServerPlayerEntity player = source.getPlayer();
+        boolean clearVolume = ModConfig.getInstance().clearVolumeOnPlace;
+        
+        CompletableFuture.allOf(loads.values().toArray(new CompletableFuture[0])).whenCompleteAsync((ignored, error) -> {
+            List<AsyncStructurePlacer.Placement> placements = new ArrayList<>(entries.size());
+            for (BatchManifest.Entry entry : entries) {
+                StructureData data = error == null ? loads.get(entry.structure()).join() : null;
+                if (data == null) {
+                    source.sendError(Text.translatable("structurecapsule.command.batch.load_failed",
+                        manifestName, entry.structure()));
+                    return;
+                }
+                placements.add(new AsyncStructurePlacer.Placement(entry.origin(), data, entry.facing(), clearVolume));
+            }
+            
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.batch.queued",
+                manifestName, placements.size(), loads.size()), true);
+            AsyncStructurePlacer.queueBatch(server, world, manifestName, placements, player)
+                .thenRun(() -> source.sendFeedback(() -> Text.translatable("structurecapsule.command.batch.done",
+                    manifestName, placements.size()), true));
+        }, server);
+        
+        return entries.size();
+    }
+    
+    /**
+     * Remove unreferenced section files from the structure store on the worker pool
+     */
+    private static int collectGarbage(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        MinecraftServer server = source.getServer();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return StructureManager.collectUnusedSections();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Workers.pool()).whenCompleteAsync((removed, error) -> {
+            if (error != null) {
+                source.sendError(Text.translatable("structurecapsule.command.gc.failed", rootMessage(error)));
+                return;
+            }
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.gc.done", removed), true);
+        }, server);
+        return 1;
+    }
+    
+    /**
+     * Show runtime metrics for placement, capture, disk I/O and caching
+     */
+    private static int showStats(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.header"), false);
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.queue",
+            AsyncStructurePlacer.getQueuedTaskCount(),
+            ModMetrics.PLACEMENTS_QUEUED.sum(),
+            ModMetrics.PLACEMENTS_COMPLETED.sum()), false);
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.blocks",
+            ModMetrics.BLOCKS_PLACED.sum(),
+            ModMetrics.BLOCKS_SKIPPED.sum(),
+            ModMetrics.getLastTickPlaced(),
+            ModMetrics.getLastTickSkipped()), false);
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.tick",
+            formatMillis(ModMetrics.PLACER_TICK.getPercentileMillis(50)),
+            formatMillis(ModMetrics.PLACER_TICK.getPercentileMillis(99)),
+            formatMillis(ModMetrics.PLACER_TICK.getMaxNanos() / 1_000_000.0)), false);
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.sync",
+            ModMetrics.SYNC_SECTION_DELTAS.sum(),
+            ModMetrics.SYNC_CHUNK_RESENDS.sum()), false);
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.capture",
+            ModMetrics.CAPTURES.sum(),
+            ModMetrics.BLOCKS_CAPTURED.sum(),
+            formatMillis(ModMetrics.CAPTURE_SCAN.getMeanMillis()),
+            formatMillis(ModMetrics.CAPTURE_SCAN.getPercentileMillis(99))), false);
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.io",
+            formatMillis(ModMetrics.STRUCTURE_SAVE.getPercentileMillis(99)),
+            formatMillis(ModMetrics.STRUCTURE_LOAD.getPercentileMillis(99)),
+            ModMetrics.BYTES_WRITTEN.sum() / 1024,
+            ModMetrics.BYTES_READ.sum() / 1024,
+            ModMetrics.IO_ERRORS.sum()), false);
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.cache",
+            String.format(Locale.ROOT, "%.1f", ModMetrics.getCacheHitRatio()),
+            ModMetrics.CACHE_HITS.sum(),
+            ModMetrics.CACHE_MISSES.sum()), false);
+        if (!ModConfig.getInstance().structureRepositoryUrl.isBlank()) {
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.stats.repository",
+                ModMetrics.REMOTE_FETCHES.sum(),
+                ModMetrics.REMOTE_BYTES.sum() / 1024,
+                ModMetrics.REMOTE_NOT_MODIFIED.sum(),
+                ModMetrics.REMOTE_ERRORS.sum()), false);
+        }
+        
+        return 1;
+    }
+    
+    /**
+     * Reset all runtime metrics
+     */
+    private static int resetStats(CommandContext<ServerCommandSource> context) {
+        ModMetrics.reset();
+        context.getSource().sendFeedback(() -> Text.translatable("structurecapsule.command.stats.reset"), true);
+        return 1;
+    }
+    
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.2f", millis);
+    }
+    
+    /**
+     * Convert a schematic file into a saved structure on the worker pool
+     * 
+     * @param name Structure name, or null to use the file name without its extension
+     */
+    private static int importSchematic(CommandContext<ServerCommandSource> context, String name) {
+        ServerCommandSource source = context.getSource();
+        String fileName = StringArgumentType.getString(context, "file");
+        String structureName = name != null ? name
+            : fileName.contains(".") ? fileName.substring(0, fileName.lastIndexOf('.')) : fileName;
+        
+        if (StructureManager.structureExists(structureName)) {
+            source.sendError(Text.translatable("structurecapsule.command.import.exists", structureName));
+            return 0;
+        }
+        
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.import.started",
+            fileName, structureName), true);
+        MinecraftServer server = source.getServer();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return SchematicConverter.importSchematic(fileName, structureName);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Workers.pool()).whenCompleteAsync((manifest, error) -> {
+            if (error != null) {
+                ModMetrics.IO_ERRORS.increment();
+                StructureCapsuleMod.LOGGER.error("Failed to import schematic: {}", fileName, error);
+                source.sendError(Text.translatable("structurecapsule.command.import.failed",
+                    fileName, rootMessage(error)));
+                return;
+            }
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.import.done",
+                fileName, structureName, manifest.getBlockCount()), true);
+        }, server);
+        return 1;
+    }
+    
+    /**
+     * Write a saved structure as a schematic file on the worker pool
+     */
+    private static int exportStructure(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        String structureName = StringArgumentType.getString(context, "structure");
+        String formatName = StringArgumentType.getString(context, "format");
+        
+        SchematicConverter.Format format = SchematicConverter.Format.byExtension(formatName);
+        if (format == null) {
+            source.sendError(Text.translatable("structurecapsule.command.export.invalid_format", formatName));
+            return 0;
+        }
+        if (!StructureManager.structureExists(structureName)) {
+            source.sendError(Text.translatable("structurecapsule.message.structure_not_found", structureName));
+            return 0;
+        }
+        
+        MinecraftServer server = source.getServer();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return SchematicConverter.exportStructure(structureName, format);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Workers.pool()).whenCompleteAsync((path, error) -> {
+            if (error != null) {
+                ModMetrics.IO_ERRORS.increment();
+                StructureCapsuleMod.LOGGER.error("Failed to export structure: {}", structureName, error);
+                source.sendError(Text.translatable("structurecapsule.command.export.failed",
+                    structureName, rootMessage(error)));
+                return;
+            }
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.export.done",
+                structureName, path.getFileName().toString()), true);
+        }, server);
+        return 1;
+    }
+    
+    /**
+     * Innermost message of a failed conversion, for chat
+     */
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+    
+    /**
+     * Start recording a workload trace
+     */
+    private static int startTrace(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        try {
+            Path path = TraceRecorder.start();
+            if (path == null) {
+                source.sendError(Text.translatable("structurecapsule.command.trace.already_recording"));
+                return 0;
+            }
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.trace.started",
+                path.getFileName().toString()), true);
+            return 1;
+        } catch (IOException e) {
+            StructureCapsuleMod.LOGGER.error("Failed to start workload trace", e);
+            source.sendError(Text.translatable("structurecapsule.command.trace.failed", e.getMessage()));
+            return 0;
+        }
+    }
+    
+    /**
+     * Stop recording; reports once the trace file is complete
+     */
+    private static int stopTrace(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        CompletableFuture<Path> stopped = TraceRecorder.stop();
+        if (stopped == null) {
+            source.sendError(Text.translatable("structurecapsule.command.trace.not_recording"));
+            return 0;
+        }
+        stopped.thenAcceptAsync(path -> source.sendFeedback(() -> Text.translatable(
+            "structurecapsule.command.trace.stopped", path.getFileName().toString()), true), source.getServer());
+        return 1;
+    }
+    
+    /**
+     * Read a trace on the worker pool, then replay it on this server
+     */
+    private static int replayTrace(CommandContext<ServerCommandSource> context) throws CommandSyntaxException {
+        ServerCommandSource source = context.getSource();
+        String fileName = StringArgumentType.getString(context, "file");
+        BlockPos anchor = BlockPosArgumentType.getBlockPos(context, "pos");
+        ServerWorld world = source.getWorld();
+        if (TraceReplay.isRunning()) {
+            source.sendError(Text.translatable("structurecapsule.command.trace.replay_running"));
+            return 0;
+        }
+        
+        MinecraftServer server = source.getServer();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return TraceReader.read(fileName);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Workers.pool()).whenCompleteAsync((trace, error) -> {
+            if (error != null) {
+                StructureCapsuleMod.LOGGER.error("Failed to read workload trace: {}", fileName, error);
+                source.sendError(Text.translatable("structurecapsule.command.trace.failed", rootMessage(error)));
+                return;
+            }
+            if (!TraceReplay.start(server, world, trace, anchor, source)) {
+                source.sendError(Text.translatable("structurecapsule.command.trace.replay_running"));
+                return;
+            }
+            source.sendFeedback(() -> Text.translatable("structurecapsule.command.trace.replay_started",
+                fileName, trace.events().size(), trace.durationNanos() / 1_000_000_000L), true);
+        }, server);
+        return 1;
+    }
+    
+    /**
+     * Replay a trace in memory on the worker pool and report the result
+     */
+    private static int simulateTrace(CommandContext<ServerCommandSource> context) {
+        ServerCommandSource source = context.getSource();
+        String fileName = StringArgumentType.getString(context, "file");
+        TraceReplay.Settings settings = TraceReplay.Settings.fromConfig();
+        
+        source.sendFeedback(() -> Text.translatable("structurecapsule.command.trace.simulating", fileName), false);
+        MinecraftServer server = source.getServer();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return TraceReplay.simulate(TraceReader.read(fileName), settings);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, Workers.pool()).whenCompleteAsync((report, error) -> {
+            if (error != null) {
+                StructureCapsuleMod.LOGGER.error("Failed to simulate workload trace: {}", fileName, error);
+                source.sendError(Text.translatable("structurecapsule.command.trace.failed", rootMessage(error)));
+                return;
+            }
+            for (String line : report.lines()) {
+                source.sendFeedback(() -> Text.literal(line), false);
+            }
+        }, server);
+        return 1;
+    }
+    
+    private static SuggestionProvider<ServerCommandSource> traceSuggestions() {
+        return (context, builder) -> {
+            try {
+                TraceReader.listTraces().forEach(builder::suggest);
+            } catch (IOException e) {
+                StructureCapsuleMod.LOGGER.error("Failed to list workload traces", e);
+            }
+            return builder.buildFuture();
+        };
+    }
+    
+    /**
+     * Suggest indexed block ids for the term being typed
+     */
+    private static SuggestionProvider<ServerCommandSource> blockTermSuggestions() {
+        return (context, builder) -> {
+            String input = builder.getRemaining();
+            int start = input.lastIndexOf(' ') + 1;
+            String term = input.substring(start);
+            String prefix = term.startsWith("-") || term.startsWith("!") ? term.substring(0, 1) : "";
+            String block = term.substring(prefix.length());
+            SuggestionsBuilder termBuilder = builder.createOffset(builder.getStart() + start);
+            for (String blockId : StructureManager.getBlockIndex().blockIds()) {
+                if (blockId.startsWith(block) || blockId.startsWith("minecraft:" + block)) {
+                    termBuilder.suggest(prefix + blockId);
+                }
+            }
+            return termBuilder.buildFuture();
+        };
+    }
+    
+    /**
+     * Provide suggestions for placement rotations
+     */
+    private static SuggestionProvider<ServerCommandSource> rotationSuggestions() {
+        return (context, builder) -> {
+            for (Direction direction : Direction.Type.HORIZONTAL) {
+                builder.suggest(direction.asString());
+            }
+            return builder.buildFuture();
+        };
+    }
+    
     /**
      * Provide suggestions for structure names
      */
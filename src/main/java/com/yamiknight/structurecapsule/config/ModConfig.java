@@ -8,7 +8,9 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Configuration manager for StructureCapsule mod.
@@ -21,9 +23,33 @@ public class ModConfig {
     private static ModConfig INSTANCE;
     
     // Configuration fields
-    public int maxStructureSize = 5000;
+    public int maxStructureSize = 4194304; // Captures run over several ticks, so this can be large
     public int blocksPerTick = 500;
     public List<String> allowedDimensions = new ArrayList<>();
+    public boolean coalescePlacementUpdates = true; // One client update per chunk section per tick while placing
+    public int sectionResendThreshold = 2048; // Changed blocks in one section per tick that resend the whole chunk
+    public boolean replaceWholeSections = true; // Sections a placement fills completely are written in one step
+    public boolean clearVolumeOnPlace = false; // Capsules and batches empty the structure's bounding box before placing
+    public String placementCollisionMode = "warn"; // Capsules landing on existing blocks: "off", "warn" or "reject"
+    public String ghostPreviewMode = "outline"; // Capsule preview: "outline" boxes or translucent block "model"s
+    public int statsLogIntervalSeconds = 0; // 0 = periodic stats log disabled
+    public int workerThreads = 0; // 0 = available processors - 1
+    public int compressionLevel = 6; // Deflate level 0-9 for structure files
+    public Map<String, Integer> structureCompressionLevels = new HashMap<>(); // Per-structure overrides
+    public int compressionBlockSizeKiB = 256; // Uncompressed size of each parallel-compressed block
+    public int sectionCacheSize = 4096; // Decoded 16^3 sections kept in memory, shared across structures
+    public int maxCaptureDistance = 256; // Farthest a saved region may reach from the player, horizontally
+    public int captureTickBudgetMs = 10; // Time per tick spent scanning regions being captured
+    public int maxConcurrentCaptures = 2; // Captures scanned at the same time (sharing the tick budget)
+    public int captureQueueSize = 8; // Captures waiting beyond those; further requests are rejected as busy
+    public long saveTokenCapacity = 8388608; // Per-player burst allowance, in blocks of captured volume
+    public long saveTokensPerSecond = 262144; // Per-player sustained capture rate, in blocks per second
+    public int maxClipboardSize = 1048576; // Largest region volume one player's clipboard may hold
+    public boolean incrementalRecapture = true; // Re-saving a structure only re-encodes sections that changed
+    public String structureRepositoryUrl = ""; // Shared HTTP structure library, cached locally; empty = local only
+    public int structureRepositoryRefreshSeconds = 300; // Age after which a cached structure is revalidated
+    public int structureRepositoryTimeoutMs = 5000; // Connect and request timeout for the repository
+    public boolean traceWorkload = false; // Record placements and saves to a trace file from server start
     
     public ModConfig() {
         // Default allowed dimensions
@@ -70,6 +96,15 @@ public class ModConfig {
         }
     }
     
+    /**
+     * Deflate level to use for a structure, honoring per-structure overrides
+     */
+    public int getCompressionLevel(String structureName) {
+        Integer override = structureCompressionLevels == null ? null : structureCompressionLevels.get(structureName);
+        int level = override != null ? override : compressionLevel;
+        return Math.max(0, Math.min(9, level));
+    }
+    
     public static ModConfig getInstance() {
         if (INSTANCE == null) {
             load();
@@ -0,0 +1,128 @@
+package com.yamiknight.structurecapsule.convert;
+
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtSizeTracker;
+import net.minecraft.nbt.NbtTypes;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Forward-only reader for binary NBT
+ *
+ * Unlike NbtIo, nothing is materialized unless asked for: the caller walks
+ * compounds entry by entry, reads small subtrees (palettes, single block
+ * entries) as regular NbtElements and consumes large lists and arrays
+ * element by element, so memory does not grow with the file.
+ */
+public class NbtStreamReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private final DataInputStream in;
+    private String name;
+    
+    private NbtStreamReader(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+    
+    /**
+     * Open a file, gzip-compressed or not
+     */
+    public static NbtStreamReader open(Path path) throws IOException {
+        BufferedInputStream raw = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        raw.mark(2);
+        int magic = raw.read() | (raw.read() << 8);
+        raw.reset();
+        if (magic == GZIPInputStream.GZIP_MAGIC) {
+            return new NbtStreamReader(new BufferedInputStream(new GZIPInputStream(raw, BUFFER_SIZE), BUFFER_SIZE));
+        }
+        return new NbtStreamReader(raw);
+    }
+    
+    /**
+     * Read the header of the root compound
+     *
+     * @return The root tag's name
+     */
+    public String beginRoot() throws IOException {
+        byte type = in.readByte();
+        if (type != NbtElement.COMPOUND_TYPE) {
+            throw new IOException("Root tag is not a compound (type " + type + ")");
+        }
+        return in.readUTF();
+    }
+    
+    /**
+     * Advance to the next entry of the compound being read
+     *
+     * @return The entry's tag type, or END_TYPE at the end of the compound
+     */
+    public byte nextEntry() throws IOException {
+        byte type = in.readByte();
+        name = type == NbtElement.END_TYPE ? null : in.readUTF();
+        return type;
+    }
+    
+    /**
+     * Name of the entry returned by the last nextEntry
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Read a whole payload of the given type (for small subtrees)
+     */
+    public NbtElement read(byte type) throws IOException {
+        return NbtTypes.byId(type).read(in, NbtSizeTracker.ofUnlimitedBytes());
+    }
+    
+    /**
+     * Skip a payload of the given type without materializing it
+     */
+    public void skip(byte type) throws IOException {
+        NbtTypes.byId(type).skip(in, NbtSizeTracker.ofUnlimitedBytes());
+    }
+    
+    /**
+     * Read a list header; the elements follow as bare payloads
+     */
+    public ListHeader beginList() throws IOException {
+        byte elementType = in.readByte();
+        int length = in.readInt();
+        return new ListHeader(elementType, Math.max(0, length));
+    }
+    
+    /**
+     * Read the length of a byte, int or long array; the elements follow
+     */
+    public int beginArray() throws IOException {
+        return in.readInt();
+    }
+    
+    public byte readByte() throws IOException {
+        return in.readByte();
+    }
+    
+    public short readShort() throws IOException {
+        return in.readShort();
+    }
+    
+    public int readInt() throws IOException {
+        return in.readInt();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+    
+    public record ListHeader(byte elementType, int length) {
+    }
+}
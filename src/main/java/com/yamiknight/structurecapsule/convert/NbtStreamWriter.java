@@ -0,0 +1,131 @@
+package com.yamiknight.structurecapsule.convert;
+
+import net.minecraft.nbt.NbtElement;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Forward-only writer for gzip-compressed binary NBT
+ *
+ * Counterpart of NbtStreamReader: compounds, lists and arrays are written as
+ * they are produced. Lists and arrays need their length up front, which is
+ * why exporters compute counts before streaming the elements.
+ */
+public class NbtStreamWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    
+    private final DataOutputStream out;
+    
+    private NbtStreamWriter(DataOutputStream out) {
+        this.out = out;
+    }
+    
+    public static NbtStreamWriter create(Path path) throws IOException {
+        return new NbtStreamWriter(new DataOutputStream(new BufferedOutputStream(
+            new GZIPOutputStream(Files.newOutputStream(path), BUFFER_SIZE), BUFFER_SIZE)));
+    }
+    
+    /**
+     * Start the root compound; finish it with endCompound
+     */
+    public void beginRoot(String name) throws IOException {
+        beginCompound(name);
+    }
+    
+    public void beginCompound(String name) throws IOException {
+        header(NbtElement.COMPOUND_TYPE, name);
+    }
+    
+    /**
+     * End a compound - a named one or a list element
+     */
+    public void endCompound() throws IOException {
+        out.writeByte(NbtElement.END_TYPE);
+    }
+    
+    public void putInt(String name, int value) throws IOException {
+        header(NbtElement.INT_TYPE, name);
+        out.writeInt(value);
+    }
+    
+    public void putShort(String name, short value) throws IOException {
+        header(NbtElement.SHORT_TYPE, name);
+        out.writeShort(value);
+    }
+    
+    public void putString(String name, String value) throws IOException {
+        header(NbtElement.STRING_TYPE, name);
+        out.writeUTF(value);
+    }
+    
+    public void putIntArray(String name, int... values) throws IOException {
+        header(NbtElement.INT_ARRAY_TYPE, name);
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+    
+    /**
+     * A list of ints, as used for positions and sizes in structure templates
+     */
+    public void putIntList(String name, int... values) throws IOException {
+        beginList(name, NbtElement.INT_TYPE, values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+    
+    /**
+     * Write a complete element under a name
+     */
+    public void put(String name, NbtElement element) throws IOException {
+        header(element.getType(), name);
+        element.write(out);
+    }
+    
+    /**
+     * Start a list; then write exactly length elements of elementType
+     * (compound elements: their entries followed by endCompound)
+     */
+    public void beginList(String name, byte elementType, int length) throws IOException {
+        header(NbtElement.LIST_TYPE, name);
+        out.writeByte(length == 0 ? NbtElement.END_TYPE : elementType);
+        out.writeInt(length);
+    }
+    
+    /**
+     * Write a complete element as the next list element
+     */
+    public void writeListElement(NbtElement element) throws IOException {
+        element.write(out);
+    }
+    
+    /**
+     * Start a byte array; then write exactly length bytes with writeByte
+     */
+    public void beginByteArray(String name, int length) throws IOException {
+        header(NbtElement.BYTE_ARRAY_TYPE, name);
+        out.writeInt(length);
+    }
+    
+    public void writeByte(int value) throws IOException {
+        out.writeByte(value);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+    
+    private void header(byte type, String name) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+    }
+}
@@ -0,0 +1,209 @@
+package com.yamiknight.structurecapsule.convert;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.structure.BlockStateResolver;
+import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.structure.StructureManifest;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.state.property.Property;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Import and export of saved structures as schematic files
+ * Schematics live in ./config/structurecapsule/schematics/
+ *
+ * Conversions stream section by section (see StructureTemplateFormat and
+ * SpongeSchematicFormat) and block on file IO, so they belong on the worker
+ * pool, never on the server thread.
+ */
+public class SchematicConverter {
+    public enum Format {
+        TEMPLATE("nbt"),
+        SPONGE("schem");
+        
+        private final String extension;
+        
+        Format(String extension) {
+            this.extension = extension;
+        }
+        
+        public String getExtension() {
+            return extension;
+        }
+        
+        /**
+         * Format by file extension ("nbt" or "schem"), or null
+         */
+        public static Format byExtension(String extension) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(extension)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+    
+    public static Path getSchematicsDir() {
+        return FabricLoader.getInstance().getConfigDir().resolve("structurecapsule").resolve("schematics");
+    }
+    
+    /**
+     * Import a schematic file from the schematics directory as a saved structure
+     *
+     * @param fileName File name with its .nbt or .schem extension
+     * @param name Name of the structure to create
+     */
+    public static StructureManifest importSchematic(String fileName, String name) throws IOException {
+        Path path = schematicPath(fileName);
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("Schematic not found: " + fileName);
+        }
+        Format format = Format.byExtension(extensionOf(fileName));
+        if (format == null) {
+            throw new IOException("Unknown schematic format: " + fileName);
+        }
+        
+        long start = System.nanoTime();
+        int maxVolume = ModConfig.getInstance().maxStructureSize;
+        StructureManifest manifest = format == Format.SPONGE
+            ? SpongeSchematicFormat.importFile(path, name, maxVolume)
+            : StructureTemplateFormat.importFile(path, name, maxVolume);
+        StructureCapsuleMod.LOGGER.info("Imported '{}' as structure '{}' with {} blocks in {} sections ({} ms)",
+            fileName, name, manifest.getBlockCount(), manifest.getSections().size(),
+            (System.nanoTime() - start) / 1_000_000);
+        return manifest;
+    }
+    
+    /**
+     * Export a saved structure to the schematics directory
+     *
+     * @return The written file
+     */
+    public static Path exportStructure(String name, Format format) throws IOException {
+        StructureManifest manifest = StructureManager.openManifest(name);
+        if (manifest == null) {
+            throw new IOException("Structure not found: " + name);
+        }
+        
+        Files.createDirectories(getSchematicsDir());
+        Path path = schematicPath(name + "." + format.getExtension());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            if (format == Format.SPONGE) {
+                SpongeSchematicFormat.exportFile(manifest, temp);
+            } else {
+                StructureTemplateFormat.exportFile(manifest, temp);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        StructureCapsuleMod.LOGGER.info("Exported structure '{}' to {}", name, path);
+        return path;
+    }
+    
+    /**
+     * Schematic files available for import
+     */
+    public static List<String> listSchematics() {
+        List<String> files = new ArrayList<>();
+        Path dir = getSchematicsDir();
+        if (!Files.isDirectory(dir)) {
+            return files;
+        }
+        try (Stream<Path> paths = Files.list(dir)) {
+            paths.map(path -> path.getFileName().toString())
+                .filter(file -> Format.byExtension(extensionOf(file)) != null)
+                .forEach(files::add);
+        } catch (IOException e) {
+            StructureCapsuleMod.LOGGER.error("Failed to list schematics", e);
+        }
+        return files;
+    }
+    
+    /**
+     * Resolve a palette entry; air, structure void and unknown blocks become null (empty)
+     *
+     * @param dataVersion Data version of the file, older entries are upgraded through the DataFixer
+     */
+    static BlockState resolve(String blockId, NbtCompound properties, int dataVersion) {
+        BlockState state = BlockStateResolver.resolve(blockId, properties, dataVersion);
+        if (state == null || state.isAir() || state.isOf(Blocks.STRUCTURE_VOID)) {
+            return null;
+        }
+        return state;
+    }
+    
+    /**
+     * Parse a state string such as "minecraft:oak_stairs[facing=east,half=top]"
+     */
+    static BlockState parseState(String text, int dataVersion) {
+        int open = text.indexOf('[');
+        if (open < 0) {
+            return resolve(text, null, dataVersion);
+        }
+        NbtCompound properties = new NbtCompound();
+        int close = text.lastIndexOf(']');
+        String body = text.substring(open + 1, close > open ? close : text.length());
+        for (String pair : body.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                properties.putString(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+            }
+        }
+        return resolve(text.substring(0, open), properties, dataVersion);
+    }
+    
+    /**
+     * Format a state as a state string, the inverse of parseState
+     */
+    static String formatState(BlockState state) {
+        StringBuilder text = new StringBuilder(state.getRegistryEntry().getIdAsString());
+        if (!state.getEntries().isEmpty()) {
+            text.append('[');
+            boolean first = true;
+            for (Map.Entry<Property<?>, Comparable<?>> entry : state.getEntries().entrySet()) {
+                if (!first) {
+                    text.append(',');
+                }
+                text.append(entry.getKey().getName()).append('=').append(valueName(entry.getKey(), entry.getValue()));
+                first = false;
+            }
+            text.append(']');
+        }
+        return text.toString();
+    }
+    
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static String valueName(Property property, Comparable value) {
+        return property.name(value);
+    }
+    
+    private static Path schematicPath(String fileName) throws IOException {
+        Path dir = getSchematicsDir().normalize();
+        Path path = dir.resolve(fileName).normalize();
+        if (!path.startsWith(dir) || !path.getParent().equals(dir)) {
+            throw new IOException("Invalid schematic file name: " + fileName);
+        }
+        return path;
+    }
+    
+    private static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
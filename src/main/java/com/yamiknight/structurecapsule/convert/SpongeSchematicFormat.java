@@ -0,0 +1,319 @@
+package com.yamiknight.structurecapsule.convert;
+
+import com.yamiknight.structurecapsule.structure.DataVersions;
+import com.yamiknight.structurecapsule.structure.ManifestBuilder;
+import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.structure.StructureManifest;
+import com.yamiknight.structurecapsule.structure.StructureSection;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sponge schematic (.schem, versions 2 and 3)
+ *
+ * Block data is a varint palette index per position in Y, Z, X order, so a
+ * band of 16 block rows completes a whole layer of sections. Imports read the
+ * palette in a first pass, then decode the block data band by band, handing
+ * each completed section to a ManifestBuilder: memory is one band of sections
+ * (at most 16 x width x length cells) regardless of the schematic's height.
+ * Exports write version 2 the same way, loading one band of stored sections
+ * at a time.
+ *
+ * Block entity data, entities and biomes are not carried over.
+ */
+public class SpongeSchematicFormat {
+    private static final int MAX_PALETTE = Character.MAX_VALUE - 1;
+    private static final int EXPORT_VERSION = 2;
+    
+    /**
+     * Import a schematic file as a saved structure
+     */
+    public static StructureManifest importFile(Path path, String name, int maxVolume) throws IOException {
+        Header header = readHeader(path, maxVolume);
+        try (ManifestBuilder builder = new ManifestBuilder(name, header.width, header.height, header.length)) {
+            readBlocks(path, header, builder::addSection);
+            return builder.finish();
+        }
+    }
+    
+    /**
+     * Receives the decoded sections of an import (ManifestBuilder.addSection)
+     */
+    interface SectionSink {
+        void addSection(int x, int y, int z, BlockState[] states) throws IOException;
+    }
+    
+    /**
+     * Loads a stored section of the structure being exported
+     */
+    interface SectionSource {
+        StructureSection read(StructureManifest.SectionRef ref) throws IOException;
+    }
+    
+    /**
+     * First pass: size, data version and palette
+     */
+    static Header readHeader(Path path, int maxVolume) throws IOException {
+        Header header = new Header();
+        try (NbtStreamReader reader = NbtStreamReader.open(path)) {
+            reader.beginRoot();
+            scan(reader, header, null);
+        }
+        if (header.width <= 0 || header.height <= 0 || header.length <= 0) {
+            throw new IOException("Schematic has no size");
+        }
+        if ((long) header.width * header.height * header.length > maxVolume) {
+            throw new IOException("Schematic exceeds the maximum structure size");
+        }
+        if (header.rawPalette == null) {
+            throw new IOException("Schematic has no block palette");
+        }
+        // DataVersion may follow the palette, so states are resolved once the whole header is known
+        header.palette = readPalette(header.rawPalette, header.dataVersion);
+        return header;
+    }
+    
+    /**
+     * Second pass: decode the block data into sections
+     */
+    static void readBlocks(Path path, Header header, SectionSink sink) throws IOException {
+        try (NbtStreamReader reader = NbtStreamReader.open(path)) {
+            reader.beginRoot();
+            scan(reader, header, sink);
+        }
+        if (!header.blocksRead) {
+            throw new IOException("Schematic has no block data");
+        }
+    }
+    
+    /**
+     * Walk a schematic compound; version 3 nests the same fields under
+     * "Schematic" and "Blocks". Block data is only decoded when a sink is given.
+     */
+    private static void scan(NbtStreamReader reader, Header header, SectionSink sink) throws IOException {
+        byte type;
+        while ((type = reader.nextEntry()) != NbtElement.END_TYPE) {
+            String name = reader.getName();
+            if (type == NbtElement.COMPOUND_TYPE && (name.equals("Schematic") || name.equals("Blocks"))) {
+                scan(reader, header, sink);
+            } else if (type == NbtElement.SHORT_TYPE && sink == null
+                    && (name.equals("Width") || name.equals("Height") || name.equals("Length"))) {
+                int value = reader.readShort() & 0xFFFF;
+                switch (name) {
+                    case "Width" -> header.width = value;
+                    case "Height" -> header.height = value;
+                    default -> header.length = value;
+                }
+            } else if (type == NbtElement.INT_TYPE && name.equals("DataVersion") && sink == null) {
+                header.dataVersion = reader.readInt();
+            } else if (type == NbtElement.COMPOUND_TYPE && name.equals("Palette") && sink == null) {
+                header.rawPalette = (NbtCompound) reader.read(type);
+            } else if (type == NbtElement.BYTE_ARRAY_TYPE && sink != null
+                    && (name.equals("BlockData") || name.equals("Data"))) {
+                readBlockData(reader, header, sink);
+                header.blocksRead = true;
+            } else {
+                reader.skip(type);
+            }
+        }
+    }
+    
+    private static BlockState[] readPalette(NbtCompound nbt, int dataVersion) throws IOException {
+        int max = -1;
+        for (String key : nbt.getKeys()) {
+            max = Math.max(max, nbt.getInt(key));
+        }
+        if (max >= MAX_PALETTE) {
+            throw new IOException("Schematic palette is too large");
+        }
+        BlockState[] palette = new BlockState[max + 1];
+        for (String key : nbt.getKeys()) {
+            int id = nbt.getInt(key);
+            if (id >= 0) {
+                palette[id] = SchematicConverter.parseState(key, dataVersion);
+            }
+        }
+        return palette;
+    }
+    
+    private static void readBlockData(NbtStreamReader reader, Header header, SectionSink sink) throws IOException {
+        int remaining = reader.beginArray();
+        int sectionsX = (header.width + 15) >> 4;
+        int sectionsZ = (header.length + 15) >> 4;
+        BlockState[] palette = header.palette;
+        // One band of sections, holding palette index + 1 per cell (0 = empty)
+        char[][] band = new char[sectionsX * sectionsZ][];
+        
+        for (int y = 0; y < header.height; y++) {
+            for (int z = 0; z < header.length; z++) {
+                for (int x = 0; x < header.width; x++) {
+                    // Varint palette index
+                    int id = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        if (remaining-- <= 0) {
+                            throw new IOException("Schematic block data ends early");
+                        }
+                        b = reader.readByte();
+                        id |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while ((b & 0x80) != 0 && shift < 35);
+                    
+                    if (id < 0 || id >= palette.length || palette[id] == null) {
+                        continue;
+                    }
+                    int slot = (z >> 4) * sectionsX + (x >> 4);
+                    if (band[slot] == null) {
+                        band[slot] = new char[StructureSection.VOLUME];
+                    }
+                    band[slot][StructureSection.cellIndex(x & 15, y & 15, z & 15)] = (char) (id + 1);
+                }
+            }
+            if ((y & 15) == 15 || y == header.height - 1) {
+                flushBand(band, sectionsX, y >> 4, palette, sink);
+            }
+        }
+        while (remaining-- > 0) {
+            reader.readByte();
+        }
+    }
+    
+    private static void flushBand(char[][] band, int sectionsX, int sectionY, BlockState[] palette,
+                                  SectionSink sink) throws IOException {
+        for (int slot = 0; slot < band.length; slot++) {
+            char[] cells = band[slot];
+            if (cells == null) {
+                continue;
+            }
+            BlockState[] states = new BlockState[StructureSection.VOLUME];
+            for (int i = 0; i < cells.length; i++) {
+                if (cells[i] != 0) {
+                    states[i] = palette[cells[i] - 1];
+                }
+            }
+            sink.addSection(slot % sectionsX, sectionY, slot / sectionsX, states);
+            band[slot] = null;
+        }
+    }
+    
+    /**
+     * Export a saved structure as a version 2 schematic
+     */
+    public static void exportFile(StructureManifest manifest, Path path) throws IOException {
+        exportFile(manifest, StructureManager::readSection, path);
+    }
+    
+    static void exportFile(StructureManifest manifest, SectionSource sections, Path path) throws IOException {
+        int width = manifest.getSizeX();
+        int height = manifest.getSizeY();
+        int length = manifest.getSizeZ();
+        if (width > 0xFFFF || height > 0xFFFF || length > 0xFFFF) {
+            throw new IOException("Structure is too large for a schematic");
+        }
+        
+        // Sections by band, plus the palette (air = 0) and the block data length
+        Map<Integer, List<StructureManifest.SectionRef>> bands = new HashMap<>();
+        Reference2IntMap<BlockState> ids = new Reference2IntOpenHashMap<>();
+        List<BlockState> palette = new ArrayList<>();
+        palette.add(null);
+        long nonAirBytes = 0;
+        for (StructureManifest.SectionRef ref : manifest.getSections()) {
+            bands.computeIfAbsent(ref.y(), y -> new ArrayList<>()).add(ref);
+            StructureSection section = sections.read(ref);
+            for (int cell = 0; cell < StructureSection.VOLUME; cell++) {
+                BlockState state = section.getState(cell);
+                if (state == null) {
+                    continue;
+                }
+                int id = ids.getOrDefault(state, -1);
+                if (id < 0) {
+                    id = palette.size();
+                    ids.put(state, id);
+                    palette.add(state);
+                }
+                nonAirBytes += varIntSize(id) - 1;
+            }
+        }
+        long dataLength = (long) width * height * length + nonAirBytes;
+        if (dataLength > Integer.MAX_VALUE) {
+            throw new IOException("Structure is too large for a schematic");
+        }
+        
+        try (NbtStreamWriter writer = NbtStreamWriter.create(path)) {
+            writer.beginRoot("Schematic");
+            writer.putInt("Version", EXPORT_VERSION);
+            writer.putInt("DataVersion", SharedConstants.getGameVersion().getSaveVersion().getId());
+            writer.putShort("Width", (short) width);
+            writer.putShort("Height", (short) height);
+            writer.putShort("Length", (short) length);
+            writer.putIntArray("Offset", 0, 0, 0);
+            writer.putInt("PaletteMax", palette.size());
+            writer.beginCompound("Palette");
+            writer.putInt("minecraft:air", 0);
+            for (int id = 1; id < palette.size(); id++) {
+                writer.putInt(SchematicConverter.formatState(palette.get(id)), id);
+            }
+            writer.endCompound();
+            
+            writer.beginByteArray("BlockData", (int) dataLength);
+            int sectionsX = (width + 15) >> 4;
+            int sectionsZ = (length + 15) >> 4;
+            for (int sectionY = 0; sectionY << 4 < height; sectionY++) {
+                StructureSection[] band = new StructureSection[sectionsX * sectionsZ];
+                for (StructureManifest.SectionRef ref : bands.getOrDefault(sectionY, List.of())) {
+                    band[ref.z() * sectionsX + ref.x()] = sections.read(ref);
+                }
+                int maxY = Math.min(height, (sectionY + 1) << 4);
+                for (int y = sectionY << 4; y < maxY; y++) {
+                    for (int z = 0; z < length; z++) {
+                        for (int x = 0; x < width; x++) {
+                            StructureSection section = band[(z >> 4) * sectionsX + (x >> 4)];
+                            BlockState state = section == null ? null
+                                : section.getState(StructureSection.cellIndex(x & 15, y & 15, z & 15));
+                            int id = state == null ? 0 : ids.getInt(state);
+                            while ((id & ~0x7F) != 0) {
+                                writer.writeByte((id & 0x7F) | 0x80);
+                                id >>>= 7;
+                            }
+                            writer.writeByte(id);
+                        }
+                    }
+                }
+            }
+            
+            writer.beginList("BlockEntities", NbtElement.COMPOUND_TYPE, 0);
+            writer.endCompound();
+        }
+    }
+    
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+    
+    static class Header {
+        int width;
+        int height;
+        int length;
+        int dataVersion = DataVersions.current(); // Required by the format; assume current if missing
+        NbtCompound rawPalette;
+        BlockState[] palette;
+        boolean blocksRead;
+    }
+}
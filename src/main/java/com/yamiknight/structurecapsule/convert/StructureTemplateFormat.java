@@ -0,0 +1,212 @@
+package com.yamiknight.structurecapsule.convert;
+
+import com.yamiknight.structurecapsule.structure.DataVersions;
+import com.yamiknight.structurecapsule.structure.ManifestBuilder;
+import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.structure.StructureManifest;
+import com.yamiknight.structurecapsule.structure.StructureSection;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Vanilla structure template (.nbt, as written by structure blocks)
+ *
+ * A template stores its blocks as one list of {pos, state} compounds in no
+ * guaranteed order, so imports cannot complete a section before the list
+ * ends. Pass one reads the size and palette, pass two streams the block list
+ * into per-section buckets of packed ints (cell << 20 | palette index, 4 bytes
+ * per block), then the buckets are expanded and stored one section at a time.
+ * Exports stream the block list straight from the stored sections.
+ *
+ * Block entity data, entities and structure void are not carried over.
+ */
+public class StructureTemplateFormat {
+    private static final int MAX_PALETTE = 1 << 20;
+    
+    /**
+     * Import a template file as a saved structure
+     */
+    public static StructureManifest importFile(Path path, String name, int maxVolume) throws IOException {
+        Header header = readHeader(path);
+        if (header.size == null) {
+            throw new IOException("Template has no size");
+        }
+        if ((long) header.size[0] * header.size[1] * header.size[2] > maxVolume) {
+            throw new IOException("Template exceeds the maximum structure size");
+        }
+        
+        Long2ObjectMap<IntArrayList> buckets = new Long2ObjectOpenHashMap<>();
+        try (NbtStreamReader reader = NbtStreamReader.open(path)) {
+            reader.beginRoot();
+            byte type;
+            while ((type = reader.nextEntry()) != NbtElement.END_TYPE) {
+                if (type == NbtElement.LIST_TYPE && reader.getName().equals("blocks")) {
+                    readBlocks(reader, header, buckets);
+                } else {
+                    reader.skip(type);
+                }
+            }
+        }
+        
+        try (ManifestBuilder builder = new ManifestBuilder(name, header.size[0], header.size[1], header.size[2])) {
+            for (Long2ObjectMap.Entry<IntArrayList> entry : buckets.long2ObjectEntrySet()) {
+                BlockState[] states = new BlockState[StructureSection.VOLUME];
+                IntArrayList packed = entry.getValue();
+                for (int i = 0; i < packed.size(); i++) {
+                    int value = packed.getInt(i);
+                    states[value >>> 20] = header.palette.get(value & (MAX_PALETTE - 1));
+                }
+                // Release the bucket before encoding so memory drains as sections are stored
+                entry.setValue(null);
+                long key = entry.getLongKey();
+                builder.addSection(BlockPos.unpackLongX(key), BlockPos.unpackLongY(key), BlockPos.unpackLongZ(key),
+                    states);
+            }
+            return builder.finish();
+        }
+    }
+    
+    private static Header readHeader(Path path) throws IOException {
+        Header header = new Header();
+        NbtList rawPalette = null;
+        int dataVersion = DataVersions.current(); // Written by every game version that saves templates
+        try (NbtStreamReader reader = NbtStreamReader.open(path)) {
+            reader.beginRoot();
+            byte type;
+            while ((type = reader.nextEntry()) != NbtElement.END_TYPE) {
+                String name = reader.getName();
+                if (type == NbtElement.LIST_TYPE && name.equals("size")) {
+                    NbtList size = (NbtList) reader.read(type);
+                    header.size = new int[] {size.getInt(0), size.getInt(1), size.getInt(2)};
+                } else if (type == NbtElement.INT_TYPE && name.equals("DataVersion")) {
+                    dataVersion = reader.readInt();
+                } else if (type == NbtElement.LIST_TYPE && name.equals("palette")) {
+                    rawPalette = (NbtList) reader.read(type);
+                } else if (type == NbtElement.LIST_TYPE && name.equals("palettes") && rawPalette == null) {
+                    // Random-variant templates: use the first variant
+                    NbtList palettes = (NbtList) reader.read(type);
+                    rawPalette = palettes.getList(0);
+                } else {
+                    reader.skip(type);
+                }
+            }
+        }
+        if (rawPalette == null) {
+            throw new IOException("Template has no palette");
+        }
+        if (rawPalette.size() > MAX_PALETTE) {
+            throw new IOException("Template palette is too large");
+        }
+        // DataVersion is usually written last, so the palette is only resolved after the header
+        header.palette = readPalette(rawPalette, dataVersion);
+        return header;
+    }
+    
+    private static List<BlockState> readPalette(NbtList list, int dataVersion) {
+        List<BlockState> palette = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            NbtCompound entry = list.getCompound(i);
+            BlockState state = SchematicConverter.resolve(entry.getString("Name"),
+                entry.contains("Properties", NbtElement.COMPOUND_TYPE) ? entry.getCompound("Properties") : null,
+                dataVersion);
+            palette.add(state);
+        }
+        return palette;
+    }
+    
+    private static void readBlocks(NbtStreamReader reader, Header header,
+                                   Long2ObjectMap<IntArrayList> buckets) throws IOException {
+        NbtStreamReader.ListHeader list = reader.beginList();
+        if (list.length() > 0 && list.elementType() != NbtElement.COMPOUND_TYPE) {
+            throw new IOException("Template block list does not hold compounds");
+        }
+        for (int i = 0; i < list.length(); i++) {
+            NbtCompound block = (NbtCompound) reader.read(NbtElement.COMPOUND_TYPE);
+            int stateIndex = block.getInt("state");
+            NbtList pos = block.getList("pos", NbtElement.INT_TYPE);
+            if (stateIndex < 0 || stateIndex >= header.palette.size() || header.palette.get(stateIndex) == null
+                    || pos.size() != 3) {
+                continue;
+            }
+            int x = pos.getInt(0);
+            int y = pos.getInt(1);
+            int z = pos.getInt(2);
+            if (x < 0 || y < 0 || z < 0 || x >= header.size[0] || y >= header.size[1] || z >= header.size[2]) {
+                continue;
+            }
+            int cell = StructureSection.cellIndex(x & 15, y & 15, z & 15);
+            buckets.computeIfAbsent(BlockPos.asLong(x >> 4, y >> 4, z >> 4), key -> new IntArrayList())
+                .add((cell << 20) | stateIndex);
+        }
+    }
+    
+    /**
+     * Export a saved structure as a template file
+     */
+    public static void exportFile(StructureManifest manifest, Path path) throws IOException {
+        // Palette first: the block list refers to it by index but is written before it
+        Reference2IntMap<BlockState> indices = new Reference2IntOpenHashMap<>();
+        List<BlockState> palette = new ArrayList<>();
+        for (StructureManifest.SectionRef ref : manifest.getSections()) {
+            for (BlockState state : StructureManager.readSection(ref).getPalette()) {
+                if (state != null && !indices.containsKey(state)) {
+                    indices.put(state, palette.size());
+                    palette.add(state);
+                }
+            }
+        }
+        
+        try (NbtStreamWriter writer = NbtStreamWriter.create(path)) {
+            writer.beginRoot("");
+            writer.putInt("DataVersion", SharedConstants.getGameVersion().getSaveVersion().getId());
+            writer.putIntList("size", manifest.getSizeX(), manifest.getSizeY(), manifest.getSizeZ());
+            
+            writer.beginList("blocks", NbtElement.COMPOUND_TYPE, manifest.getBlockCount());
+            int written = 0;
+            for (StructureManifest.SectionRef ref : manifest.getSections()) {
+                StructureSection section = StructureManager.readSection(ref);
+                for (int cell = 0; cell < StructureSection.VOLUME; cell++) {
+                    BlockState state = section.getState(cell);
+                    if (state == null) {
+                        continue;
+                    }
+                    writer.putIntList("pos", (ref.x() << 4) | (cell & 15), (ref.y() << 4) | (cell >> 8),
+                        (ref.z() << 4) | ((cell >> 4) & 15));
+                    writer.putInt("state", indices.getInt(state));
+                    writer.endCompound();
+                    written++;
+                }
+            }
+            if (written != manifest.getBlockCount()) {
+                throw new IOException("Stored sections do not match the manifest's block count");
+            }
+            
+            writer.beginList("palette", NbtElement.COMPOUND_TYPE, palette.size());
+            for (BlockState state : palette) {
+                writer.writeListElement(NbtHelper.fromBlockState(state));
+            }
+            writer.beginList("entities", NbtElement.COMPOUND_TYPE, 0);
+            writer.endCompound();
+        }
+    }
+    
+    private static class Header {
+        int[] size;
+        List<BlockState> palette;
+    }
+}
@@ -1,6 +1,8 @@
 package com.yamiknight.structurecapsule.items;
 
+import com.yamiknight.structurecapsule.config.ModConfig;
 import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import com.yamiknight.structurecapsule.placement.CollisionCheck;
 import com.yamiknight.structurecapsule.renderer.StructureGhostRenderer;
 import com.yamiknight.structurecapsule.structure.StructureData;
 import com.yamiknight.structurecapsule.structure.StructureManager;
@@ -12,6 +14,7 @@ import net.minecraft.item.ItemStack;
 import net.minecraft.item.ItemUsageContext;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.Hand;
@@ -84,6 +87,13 @@ public class FilledCapsuleItem extends Item {
             
             // Load structure data
             StructureData data = StructureManager.loadStructure(structureName);
+            if (data == null && StructureManager.isFetching(structureName)) {
+                player.sendMessage(
+                    Text.translatable("structurecapsule.message.structure_fetching", structureName),
+                    false
+                );
+                return ActionResult.FAIL;
+            }
             if (data == null) {
                 player.sendMessage(
                     Text.translatable("structurecapsule.message.structure_not_found", structureName),
@@ -92,8 +102,29 @@ public class FilledCapsuleItem extends Item {
                 return ActionResult.FAIL;
             }
             
+            // Check for existing blocks in the way, unless the volume is cleared anyway
+            ModConfig config = ModConfig.getInstance();
+            String collisionMode = config.placementCollisionMode == null ? "warn" : config.placementCollisionMode;
+            if (!config.clearVolumeOnPlace && !collisionMode.equalsIgnoreCase("off")) {
+                CollisionCheck.Result collision = CollisionCheck.check((ServerWorld) world, pos, data, facing);
+                if (!collision.isClear()) {
+                    if (collisionMode.equalsIgnoreCase("reject")) {
+                        player.sendMessage(
+                            Text.translatable("structurecapsule.message.placement_blocked", collision.overlapping()),
+                            false
+                        );
+                        return ActionResult.FAIL;
+                    }
+                    player.sendMessage(
+                        Text.translatable("structurecapsule.message.placement_overlap", collision.overlapping()),
+                        false
+                    );
+                }
+            }
+            
             // Queue async placement
-            AsyncStructurePlacer.queuePlacement(world.getServer(), world, pos, data, facing);
+            AsyncStructurePlacer.queuePlacement(world.getServer(), world, pos, data, facing,
+                serverPlayer.getName().getString(), config.clearVolumeOnPlace);
             
             player.sendMessage(
                 Text.translatable("structurecapsule.message.structure_placed", structureName),
@@ -0,0 +1,24 @@
+package com.yamiknight.structurecapsule.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for building the ghost preview geometry on the client
+ */
+@Name("structurecapsule.GhostMeshBuild")
+@Label("Ghost Mesh Build")
+@Category({"Structure Capsule", "Rendering"})
+@Description("Construction of the ghost preview vertex data for a structure")
+@StackTrace(false)
+public class GhostMeshBuildEvent extends Event {
+    @Label("Structure")
+    public String structureName;
+    
+    @Label("Block Count")
+    public int blockCount;
+}
@@ -0,0 +1,92 @@
+package com.yamiknight.structurecapsule.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with power-of-two nanosecond buckets
+ *
+ * Recording is a handful of atomic increments, so it is cheap enough to call
+ * from the server thread every tick. Percentiles are estimated from the bucket
+ * upper bounds, which is accurate to within a factor of two - plenty for
+ * telling 0.2 ms apart from 20 ms.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 64;
+    
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    
+    /**
+     * Record a single duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        // Bucket i holds values in [2^(i-1), 2^i), bucket 0 holds zero
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+    
+    public long getCount() {
+        return count.sum();
+    }
+    
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+    
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+    
+    public double getMeanMillis() {
+        long n = getCount();
+        return n == 0 ? 0.0 : getTotalNanos() / (double) n / 1_000_000.0;
+    }
+    
+    /**
+     * Estimate a percentile (0-100) in milliseconds
+     */
+    public double getPercentileMillis(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0.0;
+        }
+        
+        long rank = (long) Math.ceil(percentile / 100.0 * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                // Upper bound of the bucket, capped by the real maximum
+                long upper = i == 0 ? 0 : (1L << i) - 1;
+                return Math.min(upper, getMaxNanos()) / 1_000_000.0;
+            }
+        }
+        return getMaxNanos() / 1_000_000.0;
+    }
+    
+    /**
+     * Clear all recorded values
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.set(0);
+    }
+}
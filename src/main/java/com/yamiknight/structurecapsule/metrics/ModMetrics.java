@@ -0,0 +1,146 @@
+package com.yamiknight.structurecapsule.metrics;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import net.minecraft.server.MinecraftServer;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Central registry of runtime metrics for StructureCapsule
+ *
+ * Everything here is lock-free (LongAdder / atomics) so instrumented code
+ * paths only pay a few uncontended increments. Values are cumulative since
+ * server start or the last reset and are exposed via /scapsule stats and an
+ * optional periodic log line (statsLogIntervalSeconds in the config).
+ */
+public class ModMetrics {
+    // Placement
+    public static final LongAdder PLACEMENTS_QUEUED = new LongAdder();
+    public static final LongAdder PLACEMENTS_COMPLETED = new LongAdder();
+    public static final LongAdder BLOCKS_PLACED = new LongAdder();
+    public static final LongAdder BLOCKS_SKIPPED = new LongAdder();
+    public static final LatencyHistogram PLACER_TICK = new LatencyHistogram();
+    public static final LongAdder SYNC_SECTION_DELTAS = new LongAdder();
+    public static final LongAdder SYNC_CHUNK_RESENDS = new LongAdder();
+    
+    // Capture
+    public static final LongAdder CAPTURES = new LongAdder();
+    public static final LongAdder BLOCKS_CAPTURED = new LongAdder();
+    public static final LatencyHistogram CAPTURE_SCAN = new LatencyHistogram();
+    
+    // Disk I/O
+    public static final LatencyHistogram STRUCTURE_SAVE = new LatencyHistogram();
+    public static final LatencyHistogram STRUCTURE_LOAD = new LatencyHistogram();
+    public static final LongAdder BYTES_WRITTEN = new LongAdder();
+    public static final LongAdder BYTES_READ = new LongAdder();
+    public static final LongAdder IO_ERRORS = new LongAdder();
+    
+    // Server-side structure and section caches (the client preview cache is not counted)
+    public static final LongAdder CACHE_HITS = new LongAdder();
+    public static final LongAdder CACHE_MISSES = new LongAdder();
+    
+    // Remote structure repository
+    public static final LongAdder REMOTE_FETCHES = new LongAdder();
+    public static final LongAdder REMOTE_NOT_MODIFIED = new LongAdder();
+    public static final LongAdder REMOTE_BYTES = new LongAdder();
+    public static final LongAdder REMOTE_ERRORS = new LongAdder();
+    
+    // Last placer tick, for "what is it doing right now"
+    private static volatile int lastTickPlaced = 0;
+    private static volatile int lastTickSkipped = 0;
+    
+    /**
+     * Record one AsyncStructurePlacer tick
+     */
+    public static void recordPlacerTick(long nanos, int placed, int skipped) {
+        PLACER_TICK.record(nanos);
+        BLOCKS_PLACED.add(placed);
+        BLOCKS_SKIPPED.add(skipped);
+        lastTickPlaced = placed;
+        lastTickSkipped = skipped;
+    }
+    
+    public static int getLastTickPlaced() {
+        return lastTickPlaced;
+    }
+    
+    public static int getLastTickSkipped() {
+        return lastTickSkipped;
+    }
+    
+    /**
+     * Cache hit ratio in percent, or 0 if the cache was never used
+     */
+    public static double getCacheHitRatio() {
+        long hits = CACHE_HITS.sum();
+        long total = hits + CACHE_MISSES.sum();
+        return total == 0 ? 0.0 : hits * 100.0 / total;
+    }
+    
+    /**
+     * Called every server tick; writes the periodic summary line when enabled
+     */
+    public static void tick(MinecraftServer server) {
+        int interval = ModConfig.getInstance().statsLogIntervalSeconds;
+        if (interval <= 0) {
+            return;
+        }
+        if (server.getTicks() % (interval * 20) != 0) {
+            return;
+        }
+        StructureCapsuleMod.LOGGER.info(summaryLine());
+    }
+    
+    /**
+     * One-line summary for the log
+     */
+    public static String summaryLine() {
+        return String.format(Locale.ROOT,
+            "[stats] queue=%d placed=%d skipped=%d tick(p50=%.2fms p99=%.2fms max=%.2fms) " +
+            "captures=%d capture(p99=%.2fms) save(p99=%.2fms) load(p99=%.2fms) cacheHit=%.1f%%",
+            AsyncStructurePlacer.getQueuedTaskCount(),
+            BLOCKS_PLACED.sum(),
+            BLOCKS_SKIPPED.sum(),
+            PLACER_TICK.getPercentileMillis(50),
+            PLACER_TICK.getPercentileMillis(99),
+            PLACER_TICK.getMaxNanos() / 1_000_000.0,
+            CAPTURES.sum(),
+            CAPTURE_SCAN.getPercentileMillis(99),
+            STRUCTURE_SAVE.getPercentileMillis(99),
+            STRUCTURE_LOAD.getPercentileMillis(99),
+            getCacheHitRatio()
+        );
+    }
+    
+    /**
+     * Reset all counters and histograms
+     */
+    public static void reset() {
+        PLACEMENTS_QUEUED.reset();
+        PLACEMENTS_COMPLETED.reset();
+        BLOCKS_PLACED.reset();
+        BLOCKS_SKIPPED.reset();
+        PLACER_TICK.reset();
+        SYNC_SECTION_DELTAS.reset();
+        SYNC_CHUNK_RESENDS.reset();
+        CAPTURES.reset();
+        BLOCKS_CAPTURED.reset();
+        CAPTURE_SCAN.reset();
+        STRUCTURE_SAVE.reset();
+        STRUCTURE_LOAD.reset();
+        BYTES_WRITTEN.reset();
+        BYTES_READ.reset();
+        IO_ERRORS.reset();
+        CACHE_HITS.reset();
+        CACHE_MISSES.reset();
+        REMOTE_FETCHES.reset();
+        REMOTE_NOT_MODIFIED.reset();
+        REMOTE_BYTES.reset();
+        REMOTE_ERRORS.reset();
+        lastTickPlaced = 0;
+        lastTickSkipped = 0;
+    }
+}
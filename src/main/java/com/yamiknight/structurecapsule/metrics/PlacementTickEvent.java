@@ -0,0 +1,35 @@
+package com.yamiknight.structurecapsule.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one AsyncStructurePlacer tick slice
+ */
+@Name("structurecapsule.PlacementTick")
+@Label("Placement Tick Slice")
+@Category({"Structure Capsule", "Placement"})
+@Description("Blocks placed for one structure during a single server tick")
+@StackTrace(false)
+public class PlacementTickEvent extends Event {
+    @Label("Structure")
+    public String structureName;
+    
+    @Label("Player")
+    @Description("Player that placed the capsule, if any")
+    public String player;
+    
+    @Label("Blocks Placed")
+    public int blocksPlaced;
+    
+    @Label("Blocks Skipped")
+    @Description("Blocks skipped because their chunk was not loaded")
+    public int blocksSkipped;
+    
+    @Label("Blocks Remaining")
+    public int blocksRemaining;
+}
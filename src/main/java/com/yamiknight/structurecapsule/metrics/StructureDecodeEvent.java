@@ -0,0 +1,24 @@
+package com.yamiknight.structurecapsule.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering the NBT to StructureData decode step
+ */
+@Name("structurecapsule.StructureDecode")
+@Label("Structure Decode")
+@Category({"Structure Capsule", "IO"})
+@Description("Conversion of structure NBT into block states")
+@StackTrace(false)
+public class StructureDecodeEvent extends Event {
+    @Label("Structure")
+    public String structureName;
+    
+    @Label("Block Count")
+    public int blockCount;
+}
@@ -0,0 +1,26 @@
+package com.yamiknight.structurecapsule.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering the raw read and decompression of a structure file
+ */
+@Name("structurecapsule.StructureFileRead")
+@Label("Structure File Read")
+@Category({"Structure Capsule", "IO"})
+@Description("Read and decompression of a structure file from disk")
+@StackTrace(false)
+public class StructureFileReadEvent extends Event {
+    @Label("Structure")
+    public String structureName;
+    
+    @Label("Bytes Read")
+    @DataAmount
+    public long bytes;
+}
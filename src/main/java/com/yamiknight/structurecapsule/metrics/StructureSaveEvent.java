@@ -0,0 +1,38 @@
+package com.yamiknight.structurecapsule.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event covering a full structure capture: region scan, encoding and disk write
+ */
+@Name("structurecapsule.StructureSave")
+@Label("Structure Save")
+@Category({"Structure Capsule", "Capture"})
+@Description("Scan of a world region and write of the resulting structure file")
+@StackTrace(false)
+public class StructureSaveEvent extends Event {
+    @Label("Structure")
+    public String structureName;
+    
+    @Label("Player")
+    @Description("Player that requested the save, if any")
+    public String player;
+    
+    @Label("Volume")
+    @Description("Number of positions in the scanned region")
+    public long volume;
+    
+    @Label("Block Count")
+    @Description("Number of non-air blocks stored")
+    public int blockCount;
+    
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytes;
+}
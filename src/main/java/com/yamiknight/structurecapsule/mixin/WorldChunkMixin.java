@@ -0,0 +1,40 @@
+package com.yamiknight.structurecapsule.mixin;
+
+import com.yamiknight.structurecapsule.renderer.GhostConflicts;
+import com.yamiknight.structurecapsule.structure.AsyncStructureCapture;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.WorldChunk;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+/**
+ * Reports block changes to running capture jobs so sections that change
+ * after being scanned are captured again, and on the client to the ghost
+ * preview's conflict tracking
+ */
+@Mixin(WorldChunk.class)
+public abstract class WorldChunkMixin {
+    @Shadow
+    @Final
+    World world;
+    
+    @Inject(method = "setBlockState", at = @At("RETURN"))
+    private void structurecapsule$onSetBlockState(BlockPos pos, BlockState state, boolean moved,
+                                                  CallbackInfoReturnable<BlockState> cir) {
+        // null means nothing changed
+        if (cir.getReturnValue() == null) {
+            return;
+        }
+        if (world.isClient) {
+            GhostConflicts.onBlockChanged(world, pos);
+        } else {
+            AsyncStructureCapture.onBlockChanged(world, pos);
+        }
+    }
+}
@@ -4,8 +4,8 @@ import com.yamiknight.structurecapsule.StructureCapsuleMod;
 import com.yamiknight.structurecapsule.config.ModConfig;
 import com.yamiknight.structurecapsule.items.FilledCapsuleItem;
 import com.yamiknight.structurecapsule.items.ModItems;
-import com.yamiknight.structurecapsule.structure.StructureData;
-import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.structure.CaptureAdmission;
+import com.yamiknight.structurecapsule.trace.TraceRecorder;
 import net.fabricmc.fabric.api.client.networking.v1.ClientPlayNetworking;
 import net.fabricmc.fabric.api.networking.v1.PacketByteBufs;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayNetworking;
@@ -43,6 +43,17 @@ public class StructureSavePacket {
         });
     }
     
+    /**
+     * Horizontal distance from the player's block to the farthest corner of the region, per axis
+     */
+    private static long horizontalReach(ServerPlayerEntity player, BlockPos pos1, BlockPos pos2) {
+        long x = player.getBlockX();
+        long z = player.getBlockZ();
+        long reachX = Math.max(Math.abs(pos1.getX() - x), Math.abs(pos2.getX() - x));
+        long reachZ = Math.max(Math.abs(pos1.getZ() - z), Math.abs(pos2.getZ() - z));
+        return Math.max(reachX, reachZ);
+    }
+    
     /**
      * Handle structure save on server
      */
@@ -59,7 +70,7 @@ public class StructureSavePacket {
         int sizeX = Math.abs(pos2.getX() - pos1.getX()) + 1;
         int sizeY = Math.abs(pos2.getY() - pos1.getY()) + 1;
         int sizeZ = Math.abs(pos2.getZ() - pos1.getZ()) + 1;
-        int totalBlocks = sizeX * sizeY * sizeZ;
+        long totalBlocks = (long) sizeX * sizeY * sizeZ;
         
         // Check size limit
         ModConfig config = ModConfig.getInstance();
@@ -71,11 +82,61 @@ public class StructureSavePacket {
             return;
         }
         
-        // Save structure (this blocks the server thread, but should be quick for reasonable sizes)
-        StructureData data = StructureManager.saveStructure(world, pos1, pos2, name);
+        // Captures only read loaded chunks, but nothing should be scanned far from the player
+        if (horizontalReach(player, pos1, pos2) > config.maxCaptureDistance) {
+            player.sendMessage(
+                Text.translatable("structurecapsule.message.too_far", config.maxCaptureDistance),
+                false
+            );
+            return;
+        }
+        
+        // Capture over as many ticks as the region needs; progress shows in a boss bar
+        CaptureAdmission.Decision decision = CaptureAdmission.tryAdmit(player, world, pos1, pos2, name);
+        int traceId = TraceRecorder.nextId();
+        BlockPos origin = new BlockPos(Math.min(pos1.getX(), pos2.getX()), Math.min(pos1.getY(), pos2.getY()),
+            Math.min(pos1.getZ(), pos2.getZ()));
+        TraceRecorder.saveRequested(traceId, name, origin, sizeX, sizeY, sizeZ, decision.status().name());
+        switch (decision.status()) {
+            case ADMITTED -> player.sendMessage(
+                Text.translatable("structurecapsule.message.capture_started", name, totalBlocks), true);
+            case DUPLICATE -> player.sendMessage(
+                Text.translatable("structurecapsule.message.capture_in_progress", name), true);
+            case NAME_IN_USE -> {
+                player.sendMessage(Text.translatable("structurecapsule.message.capture_name_busy",
+                    name, decision.retryAfterSeconds()), false);
+                return;
+            }
+            case RATE_LIMITED -> {
+                player.sendMessage(Text.translatable("structurecapsule.message.capture_rate_limited",
+                    decision.retryAfterSeconds()), false);
+                return;
+            }
+            case BUSY -> {
+                player.sendMessage(Text.translatable("structurecapsule.message.capture_busy",
+                    decision.retryAfterSeconds()), false);
+                return;
+            }
+        }
         
-        if (data == null) {
-            player.sendMessage(Text.literal("Failed to save structure!"), false);
+        decision.job().getResult().whenComplete((manifest, error) -> {
+            if (decision.status() == CaptureAdmission.Status.ADMITTED) {
+                TraceRecorder.saveFinished(traceId, error != null ? -1 : manifest.getBlockCount());
+            }
+            if (error != null) {
+                player.sendMessage(Text.translatable("structurecapsule.message.save_failed", name), false);
+                return;
+            }
+            giveFilledCapsule(player, name, color, sizeX, sizeY, sizeZ, manifest.getBlockCount());
+        });
+    }
+    
+    /**
+     * Replace the player's empty capsule with a filled one once the capture is saved
+     */
+    private static void giveFilledCapsule(ServerPlayerEntity player, String name, int color,
+                                          int sizeX, int sizeY, int sizeZ, int blockCount) {
+        if (player.isDisconnected()) {
             return;
         }
         
@@ -84,7 +145,7 @@ public class StructureSavePacket {
         ItemStack offHand = player.getStackInHand(Hand.OFF_HAND);
         
         ItemStack filledCapsule = FilledCapsuleItem.create(
-            name, color, sizeX, sizeY, sizeZ, data.getBlockCount()
+            name, color, sizeX, sizeY, sizeZ, blockCount
         );
         
         if (mainHand.getItem() == ModItems.EMPTY_CAPSULE) {
@@ -94,7 +155,7 @@ public class StructureSavePacket {
         }
         
         player.sendMessage(
-            Text.translatable("structurecapsule.message.structure_saved", name, data.getBlockCount()),
+            Text.translatable("structurecapsule.message.structure_saved", name, blockCount),
             false
         );
     }
@@ -1,10 +1,19 @@
 package com.yamiknight.structurecapsule.placement;
 
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
 import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
+import com.yamiknight.structurecapsule.metrics.PlacementTickEvent;
 import com.yamiknight.structurecapsule.structure.StructureData;
-import net.minecraft.block.BlockState;
+import com.yamiknight.structurecapsule.trace.TraceRecorder;
+import com.yamiknight.structurecapsule.trace.TraceReplay;
+import com.yamiknight.structurecapsule.world.ServerSectionAccess;
+import net.minecraft.entity.boss.BossBar;
+import net.minecraft.entity.boss.ServerBossBar;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Direction;
 import net.minecraft.world.World;
@@ -12,6 +21,9 @@ import net.minecraft.world.World;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
@@ -22,7 +34,15 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * - Structures are queued for placement
  * - Each tick, we place a configurable number of blocks (blocksPerTick)
  * - This spreads the placement over multiple ticks, maintaining 20 TPS
- * - Chunk loading is checked before placing each block
+ * - Queuing builds a PlacementPlan on the worker pool (rotation, section order)
+ * - Blocks are written by a PlacementWriter in per-section runs through a
+ *   SectionAccess; chunk loading is checked once per chunk section
+ * - With coalescePlacementUpdates, client updates are sent once per chunk
+ *   section per tick (see SectionUpdateBatch) instead of once per block
+ * - Placements in clear-volume mode first empty their bounding box (see
+ *   VolumeClearer), sharing the same per-tick budget
+ * - World sections a placement fills completely (the interior of a large
+ *   structure, at any alignment) are replaced in one step through SectionBlit
  */
 public class AsyncStructurePlacer {
     private static final Queue<PlacementTask> PLACEMENT_QUEUE = new ConcurrentLinkedQueue<>();
@@ -39,16 +59,80 @@ public class AsyncStructurePlacer {
      */
     public static void queuePlacement(MinecraftServer server, World world, BlockPos origin, 
                                       StructureData data, Direction facing) {
+        queuePlacement(server, world, origin, data, facing, null);
+    }
+    
+    /**
+     * Queue a structure for async placement on behalf of a player
+     * 
+     * @param playerName Name of the player placing the capsule (recorded in profiling events), may be null
+     * @see #queuePlacement(MinecraftServer, World, BlockPos, StructureData, Direction)
+     */
+    public static void queuePlacement(MinecraftServer server, World world, BlockPos origin,
+                                      StructureData data, Direction facing, String playerName) {
+        queuePlacement(server, world, origin, data, facing, playerName, false);
+    }
+    
+    /**
+     * Queue a structure for async placement, optionally clearing its bounding box first
+     * 
+     * @param clearVolume Remove existing blocks inside the structure's bounding box before placing
+     * @see #queuePlacement(MinecraftServer, World, BlockPos, StructureData, Direction, String)
+     */
+    public static void queuePlacement(MinecraftServer server, World world, BlockPos origin,
+                                      StructureData data, Direction facing, String playerName,
+                                      boolean clearVolume) {
         // Create a new placement task
         PlacementTask task = new PlacementTask(
             server,
             (ServerWorld) world,
-            origin,
-            data,
-            facing
+            data.getName(),
+            List.of(new Placement(origin, data, facing, clearVolume)),
+            playerName,
+            null
+        );
+        
+        PLACEMENT_QUEUE.offer(task);
+        ModMetrics.PLACEMENTS_QUEUED.increment();
+        TraceRecorder.placementQueued(task.traceId, task.label, task.placements);
+    }
+    
+    /**
+     * Queue many placements as a single job
+     * 
+     * All placements are written chunk by chunk across the whole batch (placements
+     * sharing a chunk keep their relative order, so later ones still overwrite
+     * earlier ones). Structures repeated in the batch should be passed as the same
+     * StructureData instance. Bounding boxes of clear-volume placements are all
+     * cleared before any block of the batch is written.
+     * 
+     * @param label Name shown in progress and profiling events
+     * @param player Player to show progress to, may be null
+     * @return Completes on the server thread when the whole batch has been placed
+     */
+    public static CompletableFuture<Void> queueBatch(MinecraftServer server, ServerWorld world, String label,
+                                                     List<Placement> placements, ServerPlayerEntity player) {
+        ServerBossBar bossBar = null;
+        if (player != null) {
+            bossBar = new ServerBossBar(Text.translatable("structurecapsule.batch.progress", label, 0),
+                BossBar.Color.GREEN, BossBar.Style.PROGRESS);
+            bossBar.setPercent(0);
+            bossBar.addPlayer(player);
+        }
+        
+        PlacementTask task = new PlacementTask(
+            server,
+            world,
+            label,
+            List.copyOf(placements),
+            player != null ? player.getName().getString() : null,
+            bossBar
         );
         
         PLACEMENT_QUEUE.offer(task);
+        ModMetrics.PLACEMENTS_QUEUED.add(placements.size());
+        TraceRecorder.placementQueued(task.traceId, task.label, task.placements);
+        return task.completion;
     }
     
     /**
@@ -62,123 +146,231 @@ public class AsyncStructurePlacer {
             return;
         }
         
+        // Process the current task, once its plan has been built off-thread
+        PlacementTask task = PLACEMENT_QUEUE.peek();
+        if (task == null || !task.isReady()) {
+            return;
+        }
+        if (task.failure != null) {
+            PLACEMENT_QUEUE.poll();
+            TraceRecorder.placementFinished(task.traceId);
+            task.fail();
+            return;
+        }
+        
+        long tickStart = System.nanoTime();
+        PlacementTickEvent event = new PlacementTickEvent();
+        event.begin();
+        
         ModConfig config = ModConfig.getInstance();
         int blocksPerTick = config.blocksPerTick;
         
-        // Process the current task
-        PlacementTask task = PLACEMENT_QUEUE.peek();
-        if (task == null) {
-            return;
+        SectionUpdateBatch batch = new SectionUpdateBatch(task.world);
+        SectionUpdateBatch updates = config.coalescePlacementUpdates ? batch : null;
+        
+        // Clearing comes out of the same budget; blocks are placed once it is done
+        int cleared = 0;
+        int placed = 0;
+        int skipped = 0;
+        if (task.clearer != null && !task.clearer.isDone()) {
+            cleared = task.clearer.step(blocksPerTick, updates, batch);
         }
         
         // Place up to blocksPerTick blocks
-        int placed = 0;
-        while (placed < blocksPerTick && task.hasMoreBlocks()) {
-            if (task.placeNextBlock()) {
-                placed++;
-            }
+        if (cleared < blocksPerTick && task.writer.hasMoreBlocks()) {
+            int skippedBefore = task.writer.getSkippedBlocks();
+            task.access.setUpdates(updates, config.replaceWholeSections ? batch : null);
+            placed = task.writer.write(task.access, blocksPerTick - cleared);
+            skipped = task.writer.getSkippedBlocks() - skippedBefore;
         }
         
+        batch.flush(Math.max(1, config.sectionResendThreshold));
+        
         // If task is complete, remove it from queue
-        if (!task.hasMoreBlocks()) {
+        boolean finished = task.isFinished();
+        if (finished) {
             PLACEMENT_QUEUE.poll();
+            ModMetrics.PLACEMENTS_COMPLETED.add(task.placements.size());
+        } else {
+            task.updateProgress();
+        }
+        
+        long tickNanos = System.nanoTime() - tickStart;
+        ModMetrics.recordPlacerTick(tickNanos, placed, skipped);
+        TraceRecorder.placerTick(task.traceId, placed, skipped, tickNanos);
+        TraceReplay.onPlacerTick(tickNanos);
+        if (finished) {
+            TraceRecorder.placementFinished(task.traceId);
+            task.complete();
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.structureName = task.label;
+            event.player = task.playerName;
+            event.blocksPlaced = placed;
+            event.blocksSkipped = skipped;
+            event.blocksRemaining = task.getRemainingBlocks();
+            event.commit();
+        }
+    }
+    
+    /**
+     * Check if any placement is still queued or in progress
+     */
+    public static boolean hasPendingPlacements() {
+        return !PLACEMENT_QUEUE.isEmpty();
+    }
+    
+    /**
+     * Number of placement tasks currently queued (including the active one)
+     */
+    public static int getQueuedTaskCount() {
+        return PLACEMENT_QUEUE.size();
+    }
+    
+    /**
+     * One structure to place: where, what and which way
+     * 
+     * @param clearVolume Whether existing blocks in the bounding box are removed first
+     */
+    public record Placement(BlockPos origin, StructureData data, Direction facing, boolean clearVolume) {
+        public Placement(BlockPos origin, StructureData data, Direction facing) {
+            this(origin, data, facing, false);
         }
     }
     
     /**
      * Inner class representing a single placement task
-     * Holds the state for placing one structure
+     * Holds the state for placing one structure, or a batch of them
+     * 
+     * The placement plans (rotation, ordering by chunk section) are built on the
+     * worker pool when the task is queued; the task starts once they are ready.
+     * Structure data and plans are shared and immutable - per placement the task
+     * only keeps references, its origin and a cursor.
      */
     private static class PlacementTask {
         private final MinecraftServer server;
         private final ServerWorld world;
-        private final BlockPos origin;
-        private final StructureData data;
-        private final Direction facing;
-        private final List<StructureData.BlockEntry> blocks;
-        private int currentIndex = 0;
-        
-        public PlacementTask(MinecraftServer server, ServerWorld world, BlockPos origin, 
-                           StructureData data, Direction facing) {
+        private final String label;
+        private final List<Placement> placements;
+        private final String playerName;
+        private final ServerBossBar bossBar;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final CompletableFuture<PlacementPlan[]> plansFuture;
+        private final ServerSectionAccess access;
+        private final int traceId = TraceRecorder.nextId();
+        private PlacementPlan[] plans;
+        private Throwable failure; // set when a plan failed to build
+        private PlacementWriter writer;
+        private VolumeClearer clearer; // null unless a placement clears its volume
+        
+        public PlacementTask(MinecraftServer server, ServerWorld world, String label, List<Placement> placements,
+                             String playerName, ServerBossBar bossBar) {
             this.server = server;
             this.world = world;
-            this.origin = origin;
-            this.data = data;
-            this.facing = facing;
-            this.blocks = new ArrayList<>(data.getBlocks());
-        }
-        
-        /**
-         * Check if there are more blocks to place
-         */
-        public boolean hasMoreBlocks() {
-            return currentIndex < blocks.size();
+            this.access = new ServerSectionAccess(world);
+            this.label = label;
+            this.placements = placements;
+            this.playerName = playerName;
+            this.bossBar = bossBar;
+            
+            // Plans are shared with other placements of the same structure and facing
+            List<CompletableFuture<PlacementPlan>> builds = new ArrayList<>(placements.size());
+            for (Placement placement : placements) {
+                builds.add(PlacementPlan.forPlacement(placement.data(), placement.facing()));
+            }
+            this.plansFuture = CompletableFuture.allOf(builds.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> builds.stream().map(CompletableFuture::join).toArray(PlacementPlan[]::new));
         }
         
         /**
-         * Place the next block in the sequence
-         * Returns true if a block was placed, false if skipped (e.g., unloaded chunk)
+         * Check whether the placement plans have been built
+         * If any plan failed to build, the failure is kept and the task must not run.
          */
-        public boolean placeNextBlock() {
-            if (!hasMoreBlocks()) {
-                return false;
+        public boolean isReady() {
+            if (plans != null || failure != null) {
+                return true;
             }
-            
-            StructureData.BlockEntry entry = blocks.get(currentIndex);
-            currentIndex++;
-            
-            // Rotate position based on player facing
-            BlockPos rotated = rotatePosition(entry.pos, facing, data.getSizeX(), data.getSizeZ());
-            BlockPos targetPos = origin.add(rotated);
-            
-            // Safety check: ensure chunk is loaded
-            if (!world.isChunkLoaded(targetPos)) {
-                // Skip this block, but don't fail the entire placement
+            if (!plansFuture.isDone()) {
                 return false;
             }
+            try {
+                plans = plansFuture.join();
+            } catch (CompletionException | CancellationException e) {
+                StructureCapsuleMod.LOGGER.error("Failed to plan placement of '{}'", label, e);
+                failure = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                return true;
+            }
+            List<BlockPos> origins = new ArrayList<>(placements.size());
+            for (Placement placement : placements) {
+                origins.add(placement.origin());
+            }
+            boolean[] clearVolume = new boolean[placements.size()];
+            for (int p = 0; p < clearVolume.length; p++) {
+                clearVolume[p] = placements.get(p).clearVolume();
+            }
+            writer = new PlacementWriter(origins, plans, clearVolume);
             
-            // Rotate block state
-            BlockState rotatedState = rotateBlockState(entry.state, facing);
-            
-            // Place the block
-            // Use flag 3: notify neighbors and clients
-            world.setBlockState(targetPos, rotatedState, 3);
-            
+            List<BlockPos> clearOrigins = new ArrayList<>();
+            List<PlacementPlan> clearPlans = new ArrayList<>();
+            for (int p = 0; p < plans.length; p++) {
+                if (placements.get(p).clearVolume()) {
+                    clearOrigins.add(placements.get(p).origin());
+                    clearPlans.add(plans[p]);
+                }
+            }
+            if (!clearOrigins.isEmpty()) {
+                clearer = new VolumeClearer(world, clearOrigins, clearPlans);
+            }
             return true;
         }
         
         /**
-         * Rotate a position based on player facing direction
-         * Applies 90-degree rotations around the Y axis
+         * Check if both clearing and placement are done
          */
-        private BlockPos rotatePosition(BlockPos pos, Direction facing, int sizeX, int sizeZ) {
-            int x = pos.getX();
-            int y = pos.getY();
-            int z = pos.getZ();
-            
-            return switch (facing) {
-                case NORTH -> new BlockPos(x, y, z);  // No rotation
-                case SOUTH -> new BlockPos(-x + sizeX - 1, y, -z + sizeZ - 1);  // 180°
-                case WEST -> new BlockPos(z, y, -x + sizeX - 1);  // 90° CCW
-                case EAST -> new BlockPos(-z + sizeZ - 1, y, x);  // 90° CW
-                default -> pos;  // UP/DOWN not applicable
-            };
+        public boolean isFinished() {
+            return (clearer == null || clearer.isDone()) && !writer.hasMoreBlocks();
         }
         
         /**
-         * Rotate block state properties based on facing direction
-         * This handles directional blocks like stairs, doors, etc.
+         * Number of blocks not yet processed
          */
-        private BlockState rotateBlockState(BlockState state, Direction playerFacing) {
-            // Apply rotation based on player facing
-            // Each 90-degree turn clockwise
-            return switch (playerFacing) {
-                case NORTH -> state;  // No rotation
-                case EAST -> state.rotate(net.minecraft.util.BlockRotation.CLOCKWISE_90);
-                case SOUTH -> state.rotate(net.minecraft.util.BlockRotation.CLOCKWISE_180);
-                case WEST -> state.rotate(net.minecraft.util.BlockRotation.COUNTERCLOCKWISE_90);
-                default -> state;
-            };
+        public int getRemainingBlocks() {
+            if (plans == null) {
+                int blocks = 0;
+                for (Placement placement : placements) {
+                    blocks += placement.data().getBlockCount();
+                }
+                return blocks;
+            }
+            return writer.getTotalBlocks() - writer.getProcessedBlocks();
+        }
+        
+        void updateProgress() {
+            if (bossBar != null && writer.getTotalBlocks() > 0) {
+                float progress = (float) writer.getProcessedBlocks() / writer.getTotalBlocks();
+                bossBar.setPercent(progress);
+                bossBar.setName(Text.translatable("structurecapsule.batch.progress", label, Math.round(progress * 100)));
+            }
+        }
+        
+        void complete() {
+            if (bossBar != null) {
+                bossBar.clearPlayers();
+            }
+            completion.complete(null);
+        }
+        
+        void fail() {
+            if (bossBar != null) {
+                bossBar.clearPlayers();
+            }
+            ServerPlayerEntity player = playerName != null ? server.getPlayerManager().getPlayer(playerName) : null;
+            if (player != null) {
+                player.sendMessage(Text.translatable("structurecapsule.message.placement_failed", label), false);
+            }
+            completion.completeExceptionally(failure);
         }
     }
 }
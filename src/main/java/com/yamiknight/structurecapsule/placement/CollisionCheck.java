@@ -0,0 +1,83 @@
+package com.yamiknight.structurecapsule.placement;
+
+import com.yamiknight.structurecapsule.structure.OccupancyMap;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * Checks whether a placement would overwrite existing blocks
+ *
+ * For each chunk section under the footprint, the structure's rotated occupancy
+ * (precomputed while it was decoded, see OccupancyMap) is shifted into a 64-long
+ * mask once and intersected with the section's non-air cells: words of the mask
+ * that are zero are skipped, and only cells the structure places a block in are
+ * read. Sections that are empty (or not loaded, which placement skips as well)
+ * are never read, so placing into open space costs one lookup per section.
+ */
+public class CollisionCheck {
+    
+    /**
+     * @param overlapping Structure blocks that would replace a non-air block
+     * @param sectionsChecked Non-empty sections the structure has blocks in, which had to be inspected
+     */
+    public record Result(int overlapping, int sectionsChecked) {
+        public boolean isClear() {
+            return overlapping == 0;
+        }
+    }
+    
+    /**
+     * Count the structure blocks that would land on existing blocks
+     */
+    public static Result check(ServerWorld world, BlockPos origin, StructureData data, Direction facing) {
+        boolean swapped = facing == Direction.EAST || facing == Direction.WEST;
+        int footprintX = swapped ? data.getSizeZ() : data.getSizeX();
+        int footprintZ = swapped ? data.getSizeX() : data.getSizeZ();
+        
+        int minX = origin.getX();
+        int minY = Math.max(origin.getY(), world.getBottomY());
+        int minZ = origin.getZ();
+        int maxX = origin.getX() + footprintX - 1;
+        int maxY = Math.min(origin.getY() + data.getSizeY() - 1, world.getTopY() - 1);
+        int maxZ = origin.getZ() + footprintZ - 1;
+        
+        OccupancyMap occupancy = data.getOccupancy();
+        long[] mask = new long[64];
+        int overlapping = 0;
+        int sectionsChecked = 0;
+        
+        for (int sx = minX >> 4; sx <= maxX >> 4; sx++) {
+            for (int sz = minZ >> 4; sz <= maxZ >> 4; sz++) {
+                WorldChunk chunk = world.getChunkManager().getWorldChunk(sx, sz);
+                if (chunk == null) {
+                    continue;
+                }
+                for (int sy = minY >> 4; sy <= maxY >> 4; sy++) {
+                    ChunkSection section = chunk.getSection(world.sectionCoordToIndex(sy));
+                    if (section.isEmpty() || !occupancy.fillMask(facing, (sx << 4) - origin.getX(),
+                        (sy << 4) - origin.getY(), (sz << 4) - origin.getZ(), mask)) {
+                        continue;
+                    }
+                    sectionsChecked++;
+                    
+                    for (int word = 0; word < 64; word++) {
+                        long cells = mask[word];
+                        while (cells != 0) {
+                            int cell = (word << 6) | Long.numberOfTrailingZeros(cells);
+                            cells &= cells - 1;
+                            if (!section.getBlockState(cell & 15, cell >> 8, (cell >> 4) & 15).isAir()) {
+                                overlapping++;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        return new Result(overlapping, sectionsChecked);
+    }
+}
@@ -0,0 +1,350 @@
+package com.yamiknight.structurecapsule.placement;
+
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.util.Workers;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.BlockRotation;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Precomputed write order for one placement, built on a worker thread
+ *
+ * Rotation is resolved up front: the plan holds a palette of already rotated
+ * states and, per block, a palette index plus its position packed local to a
+ * chunk section (y << 8 | z << 4 | x, the order chunk sections store blocks in).
+ * Blocks are grouped by section, sections ordered chunk column by chunk column,
+ * so the tick thread walks plain arrays and touches each chunk once.
+ *
+ * Sections are cut from the rotated structure itself: section (sx, sy, sz)
+ * holds the blocks at origin + 16 * (sx, sy, sz) + local, so the plan does not
+ * depend on where in the world, or at which alignment, it is placed. When the
+ * origin is not section-aligned, PlacementWriter derives each block's world
+ * section and cell from the origin while writing. Plans are immutable and
+ * shared: every placement of the same structure with the same facing uses one
+ * plan (see {@link #forPlacement}), as long as any of them is still running,
+ * so an extra placement only costs its writer's cursor.
+ */
+public class PlacementPlan {
+    public static final PlacementPlan EMPTY = new PlacementPlan(new BlockState[0], new int[0], new int[0], new int[0],
+        new int[1], new short[0], new int[0], 0, 0, 0);
+    private static final int ROWS = 256; // (y, z) rows of 16 cells per section
+    
+    // Keyed weakly by the structure, so plans go away with the last placement holding it
+    private static final Map<StructureData, Map<Integer, CompletableFuture<PlacementPlan>>> SHARED = new WeakHashMap<>();
+    
+    private final BlockState[] palette;
+    private final int[] sectionX;
+    private final int[] sectionY;
+    private final int[] sectionZ;
+    private final int[] sectionStart; // first block of each section, plus the total at the end
+    private final short[] local;
+    private final int[] stateIndex;
+    private final Long2IntOpenHashMap sectionIndex = new Long2IntOpenHashMap();
+    private final long[] occupancy; // 64 words per section, bit = local position
+    private final int[] rowStart; // first block of each (y << 4 | z) row, ROWS per section
+    private final int footprintX;
+    private final int footprintY;
+    private final int footprintZ;
+    
+    private PlacementPlan(BlockState[] palette, int[] sectionX, int[] sectionY, int[] sectionZ,
+                          int[] sectionStart, short[] local, int[] stateIndex,
+                          int footprintX, int footprintY, int footprintZ) {
+        this.palette = palette;
+        this.sectionX = sectionX;
+        this.sectionY = sectionY;
+        this.sectionZ = sectionZ;
+        this.sectionStart = sectionStart;
+        this.local = local;
+        this.stateIndex = stateIndex;
+        this.footprintX = footprintX;
+        this.footprintY = footprintY;
+        this.footprintZ = footprintZ;
+        
+        sectionIndex.defaultReturnValue(-1);
+        occupancy = new long[sectionX.length * 64];
+        rowStart = new int[sectionX.length * ROWS];
+        for (int s = 0; s < sectionX.length; s++) {
+            sectionIndex.put(BlockPos.asLong(sectionX[s], sectionY[s], sectionZ[s]), s);
+            int i = sectionStart[s];
+            for (int row = 0; row < ROWS; row++) {
+                rowStart[s * ROWS + row] = i;
+                // Blocks are sorted by local position, so a row's blocks are contiguous
+                for (; i < sectionStart[s + 1] && (local[i] & 0xFFFF) >> 4 == row; i++) {
+                    int bit = local[i] & 0xFFFF;
+                    occupancy[s * 64 + (bit >> 6)] |= 1L << bit;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Get the shared plan for placing data with the given facing,
+     * building it on the worker pool if no placement has needed it yet
+     */
+    public static CompletableFuture<PlacementPlan> forPlacement(StructureData data, Direction facing) {
+        int variant = facing.getHorizontal();
+        
+        synchronized (SHARED) {
+            Map<Integer, CompletableFuture<PlacementPlan>> plans = SHARED.computeIfAbsent(data, key -> new HashMap<>());
+            CompletableFuture<PlacementPlan> plan = plans.get(variant);
+            if (plan == null) {
+                CompletableFuture<PlacementPlan> built =
+                    CompletableFuture.supplyAsync(() -> build(data, facing), Workers.pool());
+                plans.put(variant, built);
+                // A failed build is not kept, so the next placement tries again
+                built.whenComplete((result, error) -> {
+                    if (error != null) {
+                        synchronized (SHARED) {
+                            plans.remove(variant, built);
+                        }
+                    }
+                });
+                plan = built;
+            }
+            return plan;
+        }
+    }
+    
+    /**
+     * Build the plan for placing data with the given facing
+     */
+    public static PlacementPlan build(StructureData data, Direction facing) {
+        List<StructureData.BlockEntry> blocks = data.getBlocks();
+        int count = blocks.size();
+        
+        // Rotate each distinct state once
+        Map<BlockState, BlockState> rotated = new IdentityHashMap<>();
+        Reference2IntOpenHashMap<BlockState> paletteIndex = new Reference2IntOpenHashMap<>();
+        List<BlockState> palette = new ArrayList<>();
+        
+        long[] sectionKeys = new long[count];
+        short[] locals = new short[count];
+        int[] states = new int[count];
+        Long2IntOpenHashMap sectionIds = new Long2IntOpenHashMap();
+        sectionIds.defaultReturnValue(-1);
+        List<long[]> sections = new ArrayList<>(); // {key, blockCount}
+        
+        for (int i = 0; i < count; i++) {
+            StructureData.BlockEntry entry = blocks.get(i);
+            BlockPos pos = rotatePosition(entry.pos, facing, data.getSizeX(), data.getSizeZ());
+            int x = pos.getX();
+            int y = pos.getY();
+            int z = pos.getZ();
+            
+            long key = BlockPos.asLong(x >> 4, y >> 4, z >> 4);
+            int id = sectionIds.get(key);
+            if (id < 0) {
+                id = sections.size();
+                sectionIds.put(key, id);
+                sections.add(new long[]{key, 0});
+            }
+            sections.get(id)[1]++;
+            
+            BlockState state = rotated.computeIfAbsent(entry.state, s -> rotateBlockState(s, facing));
+            int index = paletteIndex.getOrDefault(state, -1);
+            if (index < 0) {
+                index = palette.size();
+                paletteIndex.put(state, index);
+                palette.add(state);
+            }
+            
+            sectionKeys[i] = key;
+            locals[i] = (short) (((y & 15) << 8) | ((z & 15) << 4) | (x & 15));
+            states[i] = index;
+        }
+        
+        // Chunk column by chunk column, bottom to top within a column
+        List<long[]> ordered = new ArrayList<>(sections);
+        ordered.sort(Comparator
+            .comparingInt((long[] s) -> BlockPos.unpackLongX(s[0]))
+            .thenComparingInt(s -> BlockPos.unpackLongZ(s[0]))
+            .thenComparingInt(s -> BlockPos.unpackLongY(s[0])));
+        
+        int sectionCount = ordered.size();
+        int[] sectionX = new int[sectionCount];
+        int[] sectionY = new int[sectionCount];
+        int[] sectionZ = new int[sectionCount];
+        int[] sectionStart = new int[sectionCount + 1];
+        Long2IntOpenHashMap rank = new Long2IntOpenHashMap();
+        for (int s = 0; s < sectionCount; s++) {
+            long key = ordered.get(s)[0];
+            sectionX[s] = BlockPos.unpackLongX(key);
+            sectionY[s] = BlockPos.unpackLongY(key);
+            sectionZ[s] = BlockPos.unpackLongZ(key);
+            sectionStart[s + 1] = sectionStart[s] + (int) ordered.get(s)[1];
+            rank.put(key, s);
+        }
+        
+        // Scatter into section order; each slot packs (local << 32 | palette index)
+        long[] packed = new long[count];
+        int[] fill = Arrays.copyOf(sectionStart, sectionCount);
+        for (int i = 0; i < count; i++) {
+            int s = rank.get(sectionKeys[i]);
+            packed[fill[s]++] = ((long) (locals[i] & 0xFFFF) << 32) | states[i];
+        }
+        
+        // Within a section, write in storage order so consecutive writes hit neighbouring entries
+        short[] local = new short[count];
+        int[] stateIndex = new int[count];
+        for (int s = 0; s < sectionCount; s++) {
+            Arrays.sort(packed, sectionStart[s], sectionStart[s + 1]);
+        }
+        for (int i = 0; i < count; i++) {
+            local[i] = (short) (packed[i] >>> 32);
+            stateIndex[i] = (int) packed[i];
+        }
+        
+        boolean swapped = facing == Direction.EAST || facing == Direction.WEST;
+        return new PlacementPlan(palette.toArray(new BlockState[0]), sectionX, sectionY, sectionZ,
+            sectionStart, local, stateIndex,
+            swapped ? data.getSizeZ() : data.getSizeX(), data.getSizeY(), swapped ? data.getSizeX() : data.getSizeZ());
+    }
+    
+    public int getBlockCount() {
+        return local.length;
+    }
+    
+    public int getSectionCount() {
+        return sectionX.length;
+    }
+    
+    /**
+     * Section position within the rotated structure, in sections from the origin
+     */
+    public int getSectionX(int section) {
+        return sectionX[section];
+    }
+    
+    public int getSectionY(int section) {
+        return sectionY[section];
+    }
+    
+    public int getSectionZ(int section) {
+        return sectionZ[section];
+    }
+    
+    /**
+     * Index of the first block of a section; getSectionStart(getSectionCount()) is the block count
+     */
+    public int getSectionStart(int section) {
+        return sectionStart[section];
+    }
+    
+    /**
+     * First block of a section's row of cells (row = y << 4 | z); a row's blocks are
+     * contiguous and sorted by x, and getRowStart(section, 256) is the section's end
+     */
+    public int getRowStart(int section, int row) {
+        return row < ROWS ? rowStart[section * ROWS + row] : sectionStart[section + 1];
+    }
+    
+    /**
+     * Section-local position of a block, packed as y << 8 | z << 4 | x
+     */
+    public short getLocal(int block) {
+        return local[block];
+    }
+    
+    public BlockState getState(int block) {
+        return palette[stateIndex[block]];
+    }
+    
+    /**
+     * Index of a block's (rotated) state in the plan's palette
+     */
+    public int getStateIndex(int block) {
+        return stateIndex[block];
+    }
+    
+    public BlockState getPaletteState(int index) {
+        return palette[index];
+    }
+    
+    public int getPaletteSize() {
+        return palette.length;
+    }
+    
+    /**
+     * Index of the section at the given position within the structure, or -1 if it holds no blocks
+     */
+    public int findSection(int sectionX, int sectionY, int sectionZ) {
+        return sectionIndex.get(BlockPos.asLong(sectionX, sectionY, sectionZ));
+    }
+    
+    /**
+     * Whether the structure places a block at a section-local position (packed y << 8 | z << 4 | x)
+     */
+    public boolean isOccupied(int section, int local) {
+        return (occupancy[section * 64 + (local >> 6)] & (1L << local)) != 0;
+    }
+    
+    /**
+     * Whether the structure places a block at a position relative to the placement origin
+     */
+    public boolean isOccupiedAt(int x, int y, int z) {
+        int section = findSection(x >> 4, y >> 4, z >> 4);
+        return section >= 0 && isOccupied(section, ((y & 15) << 8) | ((z & 15) << 4) | (x & 15));
+    }
+    
+    /**
+     * Size of the rotated bounding box, which starts at the placement origin
+     */
+    public int getFootprintX() {
+        return footprintX;
+    }
+    
+    public int getFootprintY() {
+        return footprintY;
+    }
+    
+    public int getFootprintZ() {
+        return footprintZ;
+    }
+    
+    /**
+     * Rotate a position based on player facing direction
+     * Applies 90-degree rotations around the Y axis
+     */
+    static BlockPos rotatePosition(BlockPos pos, Direction facing, int sizeX, int sizeZ) {
+        int x = pos.getX();
+        int y = pos.getY();
+        int z = pos.getZ();
+        
+        return switch (facing) {
+            case NORTH -> new BlockPos(x, y, z);  // No rotation
+            case SOUTH -> new BlockPos(-x + sizeX - 1, y, -z + sizeZ - 1);  // 180°
+            case WEST -> new BlockPos(z, y, -x + sizeX - 1);  // 90° CCW
+            case EAST -> new BlockPos(-z + sizeZ - 1, y, x);  // 90° CW
+            default -> pos;  // UP/DOWN not applicable
+        };
+    }
+    
+    /**
+     * Rotate block state properties based on facing direction
+     * This handles directional blocks like stairs, doors, etc.
+     */
+    static BlockState rotateBlockState(BlockState state, Direction playerFacing) {
+        // Apply rotation based on player facing
+        // Each 90-degree turn clockwise
+        return switch (playerFacing) {
+            case NORTH -> state;  // No rotation
+            case EAST -> state.rotate(BlockRotation.CLOCKWISE_90);
+            case SOUTH -> state.rotate(BlockRotation.CLOCKWISE_180);
+            case WEST -> state.rotate(BlockRotation.COUNTERCLOCKWISE_90);
+            default -> state;
+        };
+    }
+}
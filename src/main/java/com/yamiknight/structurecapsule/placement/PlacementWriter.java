@@ -0,0 +1,278 @@
+package com.yamiknight.structurecapsule.placement;
+
+import com.yamiknight.structurecapsule.structure.StructureSection;
+import com.yamiknight.structurecapsule.world.SectionAccess;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes one or more planned placements into a SectionAccess, a budget at a time
+ *
+ * This is the placement engine without the server around it: AsyncStructurePlacer
+ * drives it once per tick against the live world, benchmarks and fuzzers drive it
+ * against a MemorySectionAccess. Blocks are written as runs within one world
+ * section; sections of unloaded chunks are skipped (and not charged to the budget).
+ *
+ * Plans are shared between placements and cut into sections of the rotated
+ * structure, not of the world. For each world section the writer gathers the
+ * blocks of the (up to eight) structure sections overlapping it, moving each
+ * into the world section's cells with one add, then writes them as a run.
+ *
+ * A world section the placement fills completely - every cell holds a structure
+ * block, or the section lies inside a cleared volume - is first offered to the
+ * SectionAccess as a whole-section replacement. That is what the interior of a
+ * structure hits; partial edge sections, and sections the access refuses to
+ * replace, are written block by block.
+ */
+public class PlacementWriter {
+    private final List<BlockPos> origins;
+    private final PlacementPlan[] plans;
+    private final boolean[] clearVolume;
+    private final LongSet overlapping; // world sections written by more than one placement
+    private final long[] orderSections; // world sections in write order
+    private final int[] orderPlacements; // placement index of each entry of orderSections
+    private final int totalBlocks;
+    private final short[] sectionCells = new short[StructureSection.VOLUME];
+    private final BlockState[] gatheredStates = new BlockState[StructureSection.VOLUME];
+    private final short[] runCells = new short[StructureSection.VOLUME];
+    private final BlockState[] runStates = new BlockState[StructureSection.VOLUME];
+    private final BlockState[] sectionStates = new BlockState[StructureSection.VOLUME];
+    private int processedBlocks = 0;
+    private int skippedBlocks = 0;
+    private int orderCursor = 0;
+    private int placementIndex;
+    private int currentIndex = 0;
+    private int sectionEnd = 0; // blocks gathered for the current world section
+    private int sectionX;
+    private int sectionY;
+    private int sectionZ;
+    
+    /**
+     * @param origins Origin of each placement
+     * @param plans Plan of each placement
+     */
+    public PlacementWriter(List<BlockPos> origins, PlacementPlan[] plans) {
+        this(origins, plans, new boolean[plans.length]);
+    }
+    
+    /**
+     * @param clearVolume Whether each placement's bounding box has been emptied before writing
+     */
+    public PlacementWriter(List<BlockPos> origins, PlacementPlan[] plans, boolean[] clearVolume) {
+        this.origins = List.copyOf(origins);
+        this.plans = plans.clone();
+        this.clearVolume = clearVolume.clone();
+        this.overlapping = new LongOpenHashSet();
+        
+        // Write order over all placements: chunk column by chunk column, then
+        // placement order within a chunk, then bottom to top
+        List<int[]> keys = new ArrayList<>();
+        LongSet seen = new LongOpenHashSet();
+        for (int p = 0; p < plans.length; p++) {
+            BlockPos origin = origins.get(p);
+            LongSet touched = new LongOpenHashSet();
+            for (int s = 0; s < plans[p].getSectionCount(); s++) {
+                int minX = origin.getX() + (plans[p].getSectionX(s) << 4);
+                int minY = origin.getY() + (plans[p].getSectionY(s) << 4);
+                int minZ = origin.getZ() + (plans[p].getSectionZ(s) << 4);
+                for (int x = minX >> 4; x <= (minX + 15) >> 4; x++) {
+                    for (int y = minY >> 4; y <= (minY + 15) >> 4; y++) {
+                        for (int z = minZ >> 4; z <= (minZ + 15) >> 4; z++) {
+                            touched.add(BlockPos.asLong(x, y, z));
+                        }
+                    }
+                }
+            }
+            for (long world : touched) {
+                if (!seen.add(world)) {
+                    overlapping.add(world);
+                }
+                keys.add(new int[]{BlockPos.unpackLongX(world), BlockPos.unpackLongZ(world), p,
+                    BlockPos.unpackLongY(world)});
+            }
+        }
+        keys.sort(Comparator
+            .comparingInt((int[] k) -> k[0])
+            .thenComparingInt(k -> k[1])
+            .thenComparingInt(k -> k[2])
+            .thenComparingInt(k -> k[3]));
+        this.orderSections = new long[keys.size()];
+        this.orderPlacements = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            int[] key = keys.get(i);
+            orderSections[i] = BlockPos.asLong(key[0], key[3], key[1]);
+            orderPlacements[i] = key[2];
+        }
+        
+        int blocks = 0;
+        for (PlacementPlan built : plans) {
+            blocks += built.getBlockCount();
+        }
+        this.totalBlocks = blocks;
+    }
+    
+    /**
+     * Write blocks until budget is used up
+     *
+     * Blocks count one each against the budget; a section replaced in bulk costs
+     * a fixed amount well below its block count, so the result can exceed budget.
+     *
+     * @return Number of blocks written (blocks of unloaded sections are skipped, not counted)
+     */
+    public int write(SectionAccess world, int budget) {
+        int written = 0;
+        int used = 0;
+        while (used < budget && hasMoreBlocks() && (currentIndex < sectionEnd || orderCursor < orderSections.length)) {
+            // Entering a new world section: gather its blocks and resolve its chunk state once
+            if (currentIndex >= sectionEnd) {
+                long key = orderSections[orderCursor];
+                placementIndex = orderPlacements[orderCursor++];
+                sectionX = BlockPos.unpackLongX(key);
+                sectionY = BlockPos.unpackLongY(key);
+                sectionZ = BlockPos.unpackLongZ(key);
+                currentIndex = 0;
+                sectionEnd = gather();
+                if (sectionEnd == 0) {
+                    continue;
+                }
+                
+                // Safety check: ensure chunk is loaded, skipping the section but not failing the entire placement
+                if (!world.isChunkLoaded(sectionX, sectionZ)) {
+                    processedBlocks += sectionEnd;
+                    skippedBlocks += sectionEnd;
+                    currentIndex = sectionEnd;
+                    continue;
+                }
+                
+                if (fillsSection() && replaceSection(world)) {
+                    processedBlocks += sectionEnd;
+                    written += sectionEnd;
+                    used += SectionBlit.BULK_SECTION_COST;
+                    currentIndex = sectionEnd;
+                    continue;
+                }
+            }
+            
+            int run = Math.min(budget - used, sectionEnd - currentIndex);
+            System.arraycopy(sectionCells, currentIndex, runCells, 0, run);
+            System.arraycopy(gatheredStates, currentIndex, runStates, 0, run);
+            world.writeSection(sectionX, sectionY, sectionZ, runCells, runStates, run);
+            currentIndex += run;
+            processedBlocks += run;
+            written += run;
+            used += run;
+        }
+        return written;
+    }
+    
+    /**
+     * Collect the current placement's blocks in the current world section
+     *
+     * @return Number of blocks gathered into sectionCells and gatheredStates
+     */
+    private int gather() {
+        PlacementPlan plan = plans[placementIndex];
+        BlockPos origin = origins.get(placementIndex);
+        // The world section's corner relative to the origin, in rotated structure coordinates
+        int minX = (sectionX << 4) - origin.getX();
+        int minY = (sectionY << 4) - origin.getY();
+        int minZ = (sectionZ << 4) - origin.getZ();
+        int count = 0;
+        for (int sy = minY >> 4; sy <= (minY + 15) >> 4; sy++) {
+            for (int sz = minZ >> 4; sz <= (minZ + 15) >> 4; sz++) {
+                for (int sx = minX >> 4; sx <= (minX + 15) >> 4; sx++) {
+                    int s = plan.findSection(sx, sy, sz);
+                    if (s < 0) {
+                        continue;
+                    }
+                    // Structure section cells shifted by (dx, dy, dz) are world section cells
+                    int dx = (sx << 4) - minX;
+                    int dy = (sy << 4) - minY;
+                    int dz = (sz << 4) - minZ;
+                    int x0 = Math.max(0, -dx);
+                    int x1 = Math.min(15, 15 - dx);
+                    int z0 = Math.max(0, -dz);
+                    int z1 = Math.min(15, 15 - dz);
+                    int offset = (dy << 8) + (dz << 4) + dx;
+                    for (int y = Math.max(0, -dy); y <= Math.min(15, 15 - dy); y++) {
+                        for (int z = z0; z <= z1; z++) {
+                            int row = (y << 4) | z;
+                            int end = plan.getRowStart(s, row + 1);
+                            for (int i = plan.getRowStart(s, row); i < end; i++) {
+                                int local = plan.getLocal(i) & 0xFFFF;
+                                int x = local & 15;
+                                if (x >= x0 && x <= x1) {
+                                    sectionCells[count] = (short) (local + offset);
+                                    gatheredStates[count++] = plan.getState(i);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Whether the current section's final contents are exactly what was gathered
+     * for it, so replacing the whole world section gives the same result as writing
+     * its blocks one by one
+     */
+    private boolean fillsSection() {
+        if (sectionEnd == StructureSection.VOLUME) {
+            return true;
+        }
+        // Inside a cleared volume the cells the structure leaves out end up as air; unless
+        // another placement of the batch also writes to this section
+        if (!clearVolume[placementIndex]
+            || overlapping.contains(BlockPos.asLong(sectionX, sectionY, sectionZ))) {
+            return false;
+        }
+        PlacementPlan plan = plans[placementIndex];
+        BlockPos origin = origins.get(placementIndex);
+        int minX = sectionX << 4;
+        int minY = sectionY << 4;
+        int minZ = sectionZ << 4;
+        return minX >= origin.getX() && minX + 15 < origin.getX() + plan.getFootprintX()
+            && minY >= origin.getY() && minY + 15 < origin.getY() + plan.getFootprintY()
+            && minZ >= origin.getZ() && minZ + 15 < origin.getZ() + plan.getFootprintZ();
+    }
+    
+    private boolean replaceSection(SectionAccess world) {
+        Arrays.fill(sectionStates, null);
+        for (int i = 0; i < sectionEnd; i++) {
+            sectionStates[sectionCells[i]] = gatheredStates[i];
+        }
+        return world.replaceSection(sectionX, sectionY, sectionZ, sectionStates);
+    }
+    
+    /**
+     * Check if there are more blocks to place
+     */
+    public boolean hasMoreBlocks() {
+        return processedBlocks < totalBlocks;
+    }
+    
+    public int getTotalBlocks() {
+        return totalBlocks;
+    }
+    
+    public int getProcessedBlocks() {
+        return processedBlocks;
+    }
+    
+    /**
+     * Blocks skipped so far because their chunk was not loaded
+     */
+    public int getSkippedBlocks() {
+        return skippedBlocks;
+    }
+}
@@ -0,0 +1,215 @@
+package com.yamiknight.structurecapsule.placement;
+
+import com.yamiknight.structurecapsule.structure.AsyncStructureCapture;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.Heightmap;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+import net.minecraft.world.chunk.light.LightingProvider;
+import net.minecraft.world.poi.PointOfInterestTypes;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Whole-section writes that bypass per-block setBlockState
+ *
+ * A section is replaced by swapping in a new block container, followed by light
+ * checks only where light can change (see relight). Heightmaps and the chunk
+ * resend are left to the SectionUpdateBatch, which does both once per chunk per
+ * tick however many of its sections were replaced. No neighbor updates are
+ * issued.
+ *
+ * Sections holding block entities or points of interest are never replaced,
+ * since their bookkeeping lives outside the section; callers fall back to
+ * per-block writes for those.
+ */
+public final class SectionBlit {
+    // Rough cost of a bulk section write (heightmaps, light checks, chunk resend) in blocks
+    static final int BULK_SECTION_COST = 256;
+    
+    private static final Set<Heightmap.Type> HEIGHTMAPS = EnumSet.of(
+        Heightmap.Type.WORLD_SURFACE,
+        Heightmap.Type.MOTION_BLOCKING,
+        Heightmap.Type.MOTION_BLOCKING_NO_LEAVES,
+        Heightmap.Type.OCEAN_FLOOR
+    );
+    
+    private SectionBlit() {
+    }
+    
+    /**
+     * A block container holding only air
+     */
+    public static PalettedContainer<BlockState> emptyContainer() {
+        return new PalettedContainer<>(Block.STATE_IDS, Blocks.AIR.getDefaultState(),
+            PalettedContainer.PaletteProvider.BLOCK_STATE);
+    }
+    
+    /**
+     * Whether a section's contents can be replaced (or written) in bulk
+     */
+    public static boolean canReplace(ChunkSection section) {
+        return !section.hasAny(SectionBlit::needsBlockUpdate);
+    }
+    
+    /**
+     * Whether a state needs bookkeeping beyond the section itself when placed or removed
+     */
+    public static boolean needsBlockUpdate(BlockState state) {
+        return state.hasBlockEntity() || PointOfInterestTypes.getTypeForState(state).isPresent();
+    }
+    
+    /**
+     * Replace the blocks of one section
+     *
+     * @param blocks New contents; ownership passes to the chunk
+     * @param updates Batch that updates the chunk's heightmaps and resends it to clients
+     * @return false if the section could not be replaced and nothing was changed
+     */
+    public static boolean replace(ServerWorld world, WorldChunk chunk, int sectionY,
+                                  PalettedContainer<BlockState> blocks, SectionUpdateBatch updates) {
+        int index = world.sectionCoordToIndex(sectionY);
+        if (index < 0 || index >= chunk.getSectionArray().length) {
+            return false;
+        }
+        
+        ChunkSection previous = chunk.getSection(index);
+        if (!canReplace(previous) || blocks.hasAny(SectionBlit::needsBlockUpdate)) {
+            return false;
+        }
+        
+        ChunkSection replacement = new ChunkSection(blocks, previous.getBiomeContainer());
+        chunk.getSectionArray()[index] = replacement;
+        chunk.setNeedsSaving(true);
+        
+        ChunkSectionPos sectionPos = ChunkSectionPos.from(chunk.getPos(), sectionY);
+        relight(world, sectionPos, previous, replacement);
+        updates.addSection(sectionPos);
+        
+        // Running captures cannot see this through setBlockState; any capture section
+        // overlapping this one contains one of its corners
+        BlockPos min = sectionPos.getMinPos();
+        for (int corner = 0; corner < 8; corner++) {
+            AsyncStructureCapture.onBlockChanged(world,
+                min.add((corner & 1) * 15, ((corner >> 1) & 1) * 15, ((corner >> 2) & 1) * 15));
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Bring a chunk's heightmaps up to date after sections up to maxY were replaced
+     *
+     * Columns whose highest block lies above maxY are unaffected and skipped; for
+     * the others only the replaced range is searched for a new highest block.
+     */
+    static void updateHeightmaps(WorldChunk chunk, int maxY) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (Heightmap.Type type : HEIGHTMAPS) {
+            Heightmap heightmap = chunk.getHeightmap(type);
+            Predicate<BlockState> counted = type.getBlockPredicate();
+            for (int z = 0; z < 16; z++) {
+                for (int x = 0; x < 16; x++) {
+                    int top = heightmap.get(x, z);
+                    if (top > maxY + 1) {
+                        continue;
+                    }
+                    // The highest block was replaced by one the heightmap ignores: it searches downwards itself
+                    if (top > chunk.getBottomY()) {
+                        BlockState state = chunk.getBlockState(pos.set(x, top - 1, z));
+                        if (!counted.test(state)) {
+                            heightmap.trackUpdate(x, top - 1, z, state);
+                        }
+                    }
+                    // A replaced section may now hold the highest block
+                    for (int y = maxY; y >= heightmap.get(x, z); y--) {
+                        BlockState state = chunk.getBlockState(pos.set(x, y, z));
+                        if (counted.test(state)) {
+                            heightmap.trackUpdate(x, y, z, state);
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Queue light checks for a replaced section
+     *
+     * Only cells whose light behaviour changed are checked: changed emitters and
+     * cells that became more opaque wherever they are, cells that became more
+     * transparent only on the border of the region they form. Light entering that
+     * region through its border floods the rest of it from there, so a section
+     * filled with solid blocks queues no checks beyond its own blocks and the
+     * section's faces are no longer checked cell by cell.
+     */
+    private static void relight(ServerWorld world, ChunkSectionPos sectionPos, ChunkSection previous,
+                                ChunkSection replacement) {
+        LightingProvider lighting = world.getChunkManager().getLightingProvider();
+        if (previous.isEmpty() != replacement.isEmpty()) {
+            lighting.setSectionStatus(sectionPos, replacement.isEmpty());
+        }
+        if (previous.isEmpty() && replacement.isEmpty()) {
+            return;
+        }
+        
+        long[] clearer = new long[64]; // cells that let more light through than before
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        for (int cell = 0; cell < 4096; cell++) {
+            int x = cell & 15;
+            int y = cell >> 8;
+            int z = (cell >> 4) & 15;
+            BlockState before = previous.getBlockState(x, y, z);
+            BlockState after = replacement.getBlockState(x, y, z);
+            if (before == after) {
+                continue;
+            }
+            pos.set(sectionPos.getMinX() + x, sectionPos.getMinY() + y, sectionPos.getMinZ() + z);
+            int opacityBefore = before.getOpacity(world, pos);
+            int opacityAfter = after.getOpacity(world, pos);
+            if (before.getLuminance() != after.getLuminance() || opacityAfter > opacityBefore) {
+                lighting.checkBlock(pos);
+            } else if (opacityAfter < opacityBefore) {
+                clearer[cell >> 6] |= 1L << cell;
+            }
+        }
+        
+        for (int word = 0; word < 64; word++) {
+            long cells = clearer[word];
+            while (cells != 0) {
+                int cell = (word << 6) | Long.numberOfTrailingZeros(cells);
+                cells &= cells - 1;
+                if (onBorder(clearer, cell)) {
+                    lighting.checkBlock(pos.set(sectionPos.getMinX() + (cell & 15), sectionPos.getMinY() + (cell >> 8),
+                        sectionPos.getMinZ() + ((cell >> 4) & 15)));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Whether a cell of a region lies on the section's faces or next to a cell outside the region
+     */
+    private static boolean onBorder(long[] region, int cell) {
+        int x = cell & 15;
+        int y = cell >> 8;
+        int z = (cell >> 4) & 15;
+        return x == 0 || x == 15 || y == 0 || y == 15 || z == 0 || z == 15
+            || !contains(region, cell - 1) || !contains(region, cell + 1)
+            || !contains(region, cell - 16) || !contains(region, cell + 16)
+            || !contains(region, cell - 256) || !contains(region, cell + 256);
+    }
+    
+    private static boolean contains(long[] region, int cell) {
+        return (region[cell >> 6] & (1L << cell)) != 0;
+    }
+}
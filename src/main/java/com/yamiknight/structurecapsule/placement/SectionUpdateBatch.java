@@ -0,0 +1,160 @@
+package com.yamiknight.structurecapsule.placement;
+
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.shorts.ShortIterator;
+import it.unimi.dsi.fastutil.shorts.ShortOpenHashSet;
+import it.unimi.dsi.fastutil.shorts.ShortSet;
+import net.fabricmc.fabric.api.networking.v1.PlayerLookup;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.BlockUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.ChunkDataS2CPacket;
+import net.minecraft.network.packet.s2c.play.ChunkDeltaUpdateS2CPacket;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.Collection;
+
+/**
+ * Collects the block changes made by the placer in one tick and sends them
+ * to clients per chunk section instead of per block
+ *
+ * Blocks are placed without the "notify listeners" flag, so the world does
+ * not queue its own client update for them. At the end of the tick each
+ * touched section becomes one multi-block delta packet; a section with at
+ * least sectionResendThreshold changes makes its whole chunk be resent
+ * instead, which is smaller than a delta listing most of the section.
+ * Sections replaced in bulk (see SectionBlit) always resend their chunk, after
+ * its heightmaps are brought up to date once for all of them.
+ */
+public class SectionUpdateBatch {
+    private final ServerWorld world;
+    private final Long2ObjectMap<ShortSet> changes = new Long2ObjectOpenHashMap<>();
+    private final LongSet resendChunks = new LongOpenHashSet();
+    private final Long2IntMap replacedTops = new Long2IntOpenHashMap(); // chunk -> highest replaced block Y
+    
+    public SectionUpdateBatch(ServerWorld world) {
+        this.world = world;
+    }
+    
+    /**
+     * Record a changed block
+     */
+    public void add(BlockPos pos) {
+        changes.computeIfAbsent(ChunkSectionPos.toLong(pos), key -> new ShortOpenHashSet())
+            .add(ChunkSectionPos.packLocal(pos));
+    }
+    
+    /**
+     * Record a section whose contents were replaced as a whole
+     */
+    public void addSection(ChunkSectionPos sectionPos) {
+        long chunk = ChunkPos.toLong(sectionPos.getSectionX(), sectionPos.getSectionZ());
+        resendChunks.add(chunk);
+        replacedTops.mergeInt(chunk, sectionPos.getMaxY(), Math::max);
+    }
+    
+    public boolean isEmpty() {
+        return changes.isEmpty() && resendChunks.isEmpty();
+    }
+    
+    /**
+     * Send the collected changes to every player tracking the affected chunks
+     *
+     * @param resendThreshold Changed blocks in one section that trigger a full chunk resend
+     */
+    public void flush(int resendThreshold) {
+        if (isEmpty()) {
+            return;
+        }
+        
+        // Heavily changed sections: resend their chunk once, skip its deltas
+        LongSet fullChunks = new LongOpenHashSet(resendChunks);
+        for (Long2ObjectMap.Entry<ShortSet> entry : changes.long2ObjectEntrySet()) {
+            if (entry.getValue().size() >= resendThreshold) {
+                long section = entry.getLongKey();
+                fullChunks.add(ChunkPos.toLong(ChunkSectionPos.unpackX(section), ChunkSectionPos.unpackZ(section)));
+            }
+        }
+        
+        for (long chunkKey : fullChunks) {
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(ChunkPos.getPackedX(chunkKey), ChunkPos.getPackedZ(chunkKey));
+            if (chunk == null) {
+                continue;
+            }
+            // Heightmaps are part of the chunk data, so they are updated before it is sent
+            if (replacedTops.containsKey(chunkKey)) {
+                SectionBlit.updateHeightmaps(chunk, replacedTops.get(chunkKey));
+            }
+            send(chunk.getPos(), new ChunkDataS2CPacket(chunk, world.getLightingProvider(), null, null));
+            ModMetrics.SYNC_CHUNK_RESENDS.increment();
+        }
+        
+        for (Long2ObjectMap.Entry<ShortSet> entry : changes.long2ObjectEntrySet()) {
+            ChunkSectionPos sectionPos = ChunkSectionPos.from(entry.getLongKey());
+            if (fullChunks.contains(ChunkPos.toLong(sectionPos.getSectionX(), sectionPos.getSectionZ()))) {
+                continue;
+            }
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(sectionPos.getSectionX(), sectionPos.getSectionZ());
+            if (chunk == null) {
+                continue;
+            }
+            sendSection(chunk, sectionPos, entry.getValue());
+        }
+        
+        changes.clear();
+        resendChunks.clear();
+        replacedTops.clear();
+    }
+    
+    private void sendSection(WorldChunk chunk, ChunkSectionPos sectionPos, ShortSet positions) {
+        Collection<ServerPlayerEntity> players = PlayerLookup.tracking(world, chunk.getPos());
+        if (players.isEmpty()) {
+            return;
+        }
+        
+        if (positions.size() == 1) {
+            BlockPos pos = sectionPos.unpackBlockPos(positions.iterator().nextShort());
+            send(players, new BlockUpdateS2CPacket(world, pos));
+        } else {
+            ChunkSection section = chunk.getSection(world.sectionCoordToIndex(sectionPos.getSectionY()));
+            send(players, new ChunkDeltaUpdateS2CPacket(sectionPos, positions, section));
+        }
+        ModMetrics.SYNC_SECTION_DELTAS.increment();
+        
+        // Block entity data is not part of the delta, same as vanilla's own section updates
+        ShortIterator iterator = positions.iterator();
+        while (iterator.hasNext()) {
+            BlockPos pos = sectionPos.unpackBlockPos(iterator.nextShort());
+            if (!chunk.getBlockState(pos).hasBlockEntity()) {
+                continue;
+            }
+            BlockEntity blockEntity = chunk.getBlockEntity(pos);
+            Packet<?> packet = blockEntity != null ? blockEntity.toUpdatePacket() : null;
+            if (packet != null) {
+                send(players, packet);
+            }
+        }
+    }
+    
+    private void send(ChunkPos chunkPos, Packet<?> packet) {
+        send(PlayerLookup.tracking(world, chunkPos), packet);
+    }
+    
+    private static void send(Collection<ServerPlayerEntity> players, Packet<?> packet) {
+        for (ServerPlayerEntity player : players) {
+            player.networkHandler.sendPacket(packet);
+        }
+    }
+}
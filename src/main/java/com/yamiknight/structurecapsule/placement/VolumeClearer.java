@@ -0,0 +1,172 @@
+package com.yamiknight.structurecapsule.placement;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.Clearable;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Empties the bounding boxes of placements before their blocks are written
+ *
+ * The boxes are split into chunk sections. A section the box covers completely
+ * is reset in one step through SectionBlit; a partially covered section, or one
+ * holding block entities or points of interest, is cleared block by block, and
+ * only at positions that are not air and that the structure itself will not
+ * overwrite anyway. Work is metered in the same units as blocksPerTick.
+ */
+class VolumeClearer {
+    private final ServerWorld world;
+    private final List<Op> ops = new ArrayList<>();
+    private final BlockPos.Mutable target = new BlockPos.Mutable();
+    private int opCursor = 0;
+    private int cellCursor = -1; // next local position of a per-block clear, -1 = section not started
+    
+    /**
+     * One section of one placement's bounding box, bounds local to the section (inclusive)
+     */
+    private record Op(PlacementPlan plan, BlockPos origin, int sectionX, int sectionY, int sectionZ,
+                      int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        boolean coversSection() {
+            return minX == 0 && minY == 0 && minZ == 0 && maxX == 15 && maxY == 15 && maxZ == 15;
+        }
+    }
+    
+    VolumeClearer(ServerWorld world, List<BlockPos> origins, List<PlacementPlan> plans) {
+        this.world = world;
+        for (int p = 0; p < origins.size(); p++) {
+            addBox(origins.get(p), plans.get(p));
+        }
+        // Chunk column by chunk column, bottom to top, like the placement order
+        ops.sort(Comparator.comparingInt(Op::sectionX).thenComparingInt(Op::sectionZ).thenComparingInt(Op::sectionY));
+    }
+    
+    private void addBox(BlockPos origin, PlacementPlan plan) {
+        if (plan.getFootprintX() <= 0 || plan.getFootprintY() <= 0 || plan.getFootprintZ() <= 0) {
+            return;
+        }
+        int minX = origin.getX();
+        int minY = Math.max(origin.getY(), world.getBottomY());
+        int minZ = origin.getZ();
+        int maxX = origin.getX() + plan.getFootprintX() - 1;
+        int maxY = Math.min(origin.getY() + plan.getFootprintY() - 1, world.getTopY() - 1);
+        int maxZ = origin.getZ() + plan.getFootprintZ() - 1;
+        if (minY > maxY) {
+            return;
+        }
+        
+        for (int sx = minX >> 4; sx <= maxX >> 4; sx++) {
+            for (int sz = minZ >> 4; sz <= maxZ >> 4; sz++) {
+                for (int sy = minY >> 4; sy <= maxY >> 4; sy++) {
+                    ops.add(new Op(plan, origin, sx, sy, sz,
+                        Math.max(minX - (sx << 4), 0), Math.max(minY - (sy << 4), 0), Math.max(minZ - (sz << 4), 0),
+                        Math.min(maxX - (sx << 4), 15), Math.min(maxY - (sy << 4), 15), Math.min(maxZ - (sz << 4), 15)));
+                }
+            }
+        }
+    }
+    
+    boolean isDone() {
+        return opCursor >= ops.size();
+    }
+    
+    int getRemainingSections() {
+        return ops.size() - opCursor;
+    }
+    
+    /**
+     * Clear until the budget is used up or everything is cleared
+     *
+     * @param budget Work allowed this tick, in blocks
+     * @param updates Batch collecting client updates, or null to let the world send one per block
+     * @param bulkUpdates Batch that resends chunks whose sections were reset in bulk
+     * @return Work done, in blocks
+     */
+    int step(int budget, SectionUpdateBatch updates, SectionUpdateBatch bulkUpdates) {
+        int used = 0;
+        while (used < budget && !isDone()) {
+            Op op = ops.get(opCursor);
+            WorldChunk chunk = world.getChunkManager().getWorldChunk(op.sectionX(), op.sectionZ());
+            if (chunk == null) {
+                // Same as placement: unloaded chunks are skipped, not waited for
+                nextOp();
+                continue;
+            }
+            ChunkSection section = chunk.getSection(world.sectionCoordToIndex(op.sectionY()));
+            
+            if (cellCursor < 0) {
+                if (section.isEmpty()) {
+                    nextOp();
+                    continue;
+                }
+                if (op.coversSection() && SectionBlit.replace(world, chunk, op.sectionY(),
+                    SectionBlit.emptyContainer(), bulkUpdates)) {
+                    used += SectionBlit.BULK_SECTION_COST;
+                    nextOp();
+                    continue;
+                }
+                cellCursor = 0;
+            }
+            
+            used += clearCells(op, section, budget - used, updates);
+            if (cellCursor >= 4096) {
+                nextOp();
+            }
+        }
+        return used;
+    }
+    
+    /**
+     * Clear positions of a section in storage order, resuming at cellCursor
+     */
+    private int clearCells(Op op, ChunkSection section, int budget, SectionUpdateBatch updates) {
+        int cleared = 0;
+        int baseX = op.sectionX() << 4;
+        int baseY = op.sectionY() << 4;
+        int baseZ = op.sectionZ() << 4;
+        
+        for (; cellCursor < 4096 && cleared < budget; cellCursor++) {
+            int x = cellCursor & 15;
+            int y = cellCursor >> 8;
+            int z = (cellCursor >> 4) & 15;
+            if (x < op.minX() || x > op.maxX() || y < op.minY() || y > op.maxY() || z < op.minZ() || z > op.maxZ()) {
+                continue;
+            }
+            BlockState state = section.getBlockState(x, y, z);
+            if (state.isAir()) {
+                continue;
+            }
+            // The structure writes this position anyway
+            BlockPos origin = op.origin();
+            if (op.plan().isOccupiedAt(baseX + x - origin.getX(), baseY + y - origin.getY(), baseZ + z - origin.getZ())) {
+                continue;
+            }
+            
+            target.set(baseX + x, baseY + y, baseZ + z);
+            // Like /fill: empty containers first so clearing them drops nothing
+            if (state.hasBlockEntity()) {
+                Clearable.clear(world.getBlockEntity(target));
+            }
+            BlockState air = Blocks.AIR.getDefaultState();
+            if (updates == null) {
+                world.setBlockState(target, air, Block.NOTIFY_ALL);
+            } else if (world.setBlockState(target, air, Block.NOTIFY_NEIGHBORS)) {
+                updates.add(target);
+            }
+            cleared++;
+        }
+        return cleared;
+    }
+    
+    private void nextOp() {
+        opCursor++;
+        cellCursor = -1;
+    }
+}
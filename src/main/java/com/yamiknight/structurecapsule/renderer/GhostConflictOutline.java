@@ -0,0 +1,192 @@
+package com.yamiknight.structurecapsule.renderer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.structure.OccupancyMap;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.util.Workers;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.BufferAllocator;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Outline of the blocks the "model" ghost preview would overwrite
+ *
+ * Conflicts are found on the worker pool: for every section under the footprint
+ * that GhostConflicts knows to hold blocks, the structure's rotated occupancy
+ * (see OccupancyMap) is shifted into the world section a row at a time and
+ * ANDed with the section's non-air bitmap. The outline of the set bits
+ * is built into a vertex buffer there too, and kept until the footprint moves or
+ * a bitmap changes, so a frame only draws it. All methods except the worker task
+ * run on the render thread.
+ */
+public class GhostConflictOutline {
+    private static final int INITIAL_BUFFER_SIZE = 1 << 16;
+    
+    private static final Queue<Built> BUILT = new ConcurrentLinkedQueue<>();
+    
+    private static Key shownKey; // what the uploaded outline was built for, null if none
+    private static VertexBuffer shown; // null when the outline is empty
+    private static boolean building = false;
+    
+    private record Key(StructureData data, Direction facing, BlockPos origin, int generation) {
+    }
+    
+    /**
+     * Outline data waiting to be uploaded; buffer is null when nothing conflicts,
+     * allocator too if the build failed
+     */
+    private record Built(Key key, BufferAllocator allocator, BuiltBuffer buffer) {
+        void free() {
+            if (buffer != null) {
+                buffer.close();
+            }
+            if (allocator != null) {
+                allocator.close();
+            }
+        }
+    }
+    
+    /**
+     * Draw the outline of the structure's conflicts at the given camera-relative offset,
+     * starting a rebuild if the footprint or the occupancy under it changed
+     */
+    public static void draw(MatrixStack matrices, StructureData data, Direction facing, BlockPos origin,
+                            double offsetX, double offsetY, double offsetZ, int color, float alpha) {
+        Built built;
+        while ((built = BUILT.poll()) != null) {
+            building = false;
+            close();
+            shownKey = built.key();
+            if (built.buffer() != null) {
+                shown = new VertexBuffer(VertexBuffer.Usage.STATIC);
+                shown.bind();
+                shown.upload(built.buffer());
+                VertexBuffer.unbind();
+            }
+            built.free();
+        }
+        
+        Key key = new Key(data, facing, origin, GhostConflicts.getGeneration());
+        if (!building && !key.equals(shownKey)) {
+            building = true;
+            Long2ObjectMap<long[]> terrain = GhostConflicts.snapshot();
+            CompletableFuture.supplyAsync(() -> build(key, terrain, color, alpha), Workers.pool())
+                .exceptionally(error -> {
+                    StructureCapsuleMod.LOGGER.error("Failed to outline ghost conflicts", error);
+                    return new Built(key, null, null);
+                })
+                .thenAccept(BUILT::offer);
+        }
+        
+        // A rebuild for new terrain keeps showing the previous outline; one for another spot does not
+        if (shown == null || shownKey.data() != data || shownKey.facing() != facing
+            || !shownKey.origin().equals(origin)) {
+            return;
+        }
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+        RenderSystem.depthMask(false);
+        RenderSystem.disableCull();
+        matrices.push();
+        matrices.translate(offsetX, offsetY, offsetZ);
+        shown.bind();
+        shown.draw(matrices.peek().getPositionMatrix(), RenderSystem.getProjectionMatrix(),
+            GameRenderer.getPositionColorProgram());
+        VertexBuffer.unbind();
+        matrices.pop();
+        RenderSystem.enableCull();
+        RenderSystem.depthMask(true);
+        RenderSystem.disableBlend();
+    }
+    
+    /**
+     * Outline every structure block that lands on a non-air cell (worker thread)
+     */
+    private static Built build(Key key, Long2ObjectMap<long[]> terrain, int color, float alpha) {
+        OccupancyMap occupancy = key.data().getOccupancy();
+        BlockPos origin = key.origin();
+        float r = ((color >> 16) & 0xFF) / 255.0f;
+        float g = ((color >> 8) & 0xFF) / 255.0f;
+        float b = (color & 0xFF) / 255.0f;
+        
+        BufferAllocator allocator = new BufferAllocator(INITIAL_BUFFER_SIZE);
+        BufferBuilder buffer = new BufferBuilder(allocator, VertexFormat.DrawMode.DEBUG_LINES,
+            VertexFormats.POSITION_COLOR);
+        long[] mask = new long[64];
+        for (Long2ObjectMap.Entry<long[]> entry : terrain.long2ObjectEntrySet()) {
+            long section = entry.getLongKey();
+            // The world section's corner relative to the origin, in rotated structure coordinates
+            int minX = (ChunkSectionPos.unpackX(section) << 4) - origin.getX();
+            int minY = (ChunkSectionPos.unpackY(section) << 4) - origin.getY();
+            int minZ = (ChunkSectionPos.unpackZ(section) << 4) - origin.getZ();
+            if (!occupancy.fillMask(key.facing(), minX, minY, minZ, mask)) {
+                continue;
+            }
+            
+            long[] occupied = entry.getValue();
+            for (int word = 0; word < 64; word++) {
+                long conflicts = mask[word] & occupied[word];
+                while (conflicts != 0) {
+                    int cell = (word << 6) | Long.numberOfTrailingZeros(conflicts);
+                    conflicts &= conflicts - 1;
+                    drawBlockOutline(buffer, minX + (cell & 15), minY + (cell >> 8), minZ + ((cell >> 4) & 15),
+                        r, g, b, alpha);
+                }
+            }
+        }
+        return new Built(key, allocator, buffer.endNullable());
+    }
+    
+    /**
+     * Twelve edges of the block at (x, y, z), relative to the origin
+     */
+    private static void drawBlockOutline(BufferBuilder buffer, float x1, float y1, float z1,
+                                         float r, float g, float b, float a) {
+        float x2 = x1 + 1;
+        float y2 = y1 + 1;
+        float z2 = z1 + 1;
+        float[][] edges = {
+            {x1, y1, z1, x2, y1, z1}, {x2, y1, z1, x2, y1, z2}, {x2, y1, z2, x1, y1, z2}, {x1, y1, z2, x1, y1, z1},
+            {x1, y2, z1, x2, y2, z1}, {x2, y2, z1, x2, y2, z2}, {x2, y2, z2, x1, y2, z2}, {x1, y2, z2, x1, y2, z1},
+            {x1, y1, z1, x1, y2, z1}, {x2, y1, z1, x2, y2, z1}, {x2, y1, z2, x2, y2, z2}, {x1, y1, z2, x1, y2, z2}
+        };
+        for (float[] edge : edges) {
+            buffer.vertex(edge[0], edge[1], edge[2]).color(r, g, b, a);
+            buffer.vertex(edge[3], edge[4], edge[5]).color(r, g, b, a);
+        }
+    }
+    
+    /**
+     * Free the outline, e.g. when the preview is hidden
+     */
+    public static void clear() {
+        close();
+        shownKey = null;
+        Built built;
+        while ((built = BUILT.poll()) != null) {
+            building = false;
+            built.free();
+        }
+    }
+    
+    private static void close() {
+        if (shown != null) {
+            shown.close();
+            shown = null;
+        }
+    }
+}
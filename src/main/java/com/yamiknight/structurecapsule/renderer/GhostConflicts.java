@@ -0,0 +1,246 @@
+package com.yamiknight.structurecapsule.renderer;
+
+import com.yamiknight.structurecapsule.util.Workers;
+import it.unimi.dsi.fastutil.longs.Long2IntMap;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Tracks which positions under the ghost preview are already occupied
+ *
+ * For every loaded client section under the preview's footprint a non-air
+ * bitmap (64 longs, bit y << 8 | z << 4 | x) is kept. Bitmaps are computed on
+ * the worker pool from a copy of the section's block container. When the
+ * footprint moves, only sections that entered it are read and sections that
+ * left it are dropped; block changes and chunk (re)loads invalidate the
+ * affected sections. All methods except the worker tasks run on the render
+ * thread.
+ */
+public class GhostConflicts {
+    // Shared marker for sections without any blocks
+    private static final long[] EMPTY = new long[64];
+    
+    private static final Long2ObjectMap<long[]> SECTIONS = new Long2ObjectOpenHashMap<>();
+    // Bumped on invalidation so results computed from an older snapshot are discarded
+    private static final Long2IntMap VERSIONS = new Long2IntOpenHashMap();
+    private static final Long2IntMap PENDING = new Long2IntOpenHashMap(); // key -> version being computed
+    private static final Queue<Result> RESULTS = new ConcurrentLinkedQueue<>();
+    
+    private static World world;
+    // Footprint in section coordinates, inclusive; empty until the first update
+    private static int minSectionX = 0;
+    private static int minSectionY = 0;
+    private static int minSectionZ = 0;
+    private static int maxSectionX = -1;
+    private static int maxSectionY = -1;
+    private static int maxSectionZ = -1;
+    private static boolean dirty = false;
+    // Bumped whenever a bitmap is added, dropped or invalidated; never reset
+    private static int generation = 0;
+    
+    static {
+        PENDING.defaultReturnValue(-1);
+    }
+    
+    private record Result(long key, int version, long[] bits) {
+    }
+    
+    /**
+     * Track the footprint of the preview; call once per frame
+     *
+     * @param min Lowest corner of the footprint
+     * @param max Highest corner of the footprint (inclusive)
+     */
+    public static void update(World currentWorld, BlockPos min, BlockPos max) {
+        if (currentWorld != world) {
+            clear();
+            world = currentWorld;
+        }
+        
+        Result result;
+        while ((result = RESULTS.poll()) != null) {
+            if (PENDING.get(result.key()) == result.version() && VERSIONS.get(result.key()) == result.version()) {
+                PENDING.remove(result.key());
+                if (contains(result.key())) {
+                    SECTIONS.put(result.key(), result.bits());
+                    generation++;
+                }
+            }
+        }
+        
+        int sx0 = min.getX() >> 4;
+        int sy0 = min.getY() >> 4;
+        int sz0 = min.getZ() >> 4;
+        int sx1 = max.getX() >> 4;
+        int sy1 = max.getY() >> 4;
+        int sz1 = max.getZ() >> 4;
+        boolean moved = sx0 != minSectionX || sy0 != minSectionY || sz0 != minSectionZ
+            || sx1 != maxSectionX || sy1 != maxSectionY || sz1 != maxSectionZ;
+        if (!moved && !dirty) {
+            return;
+        }
+        
+        minSectionX = sx0;
+        minSectionY = sy0;
+        minSectionZ = sz0;
+        maxSectionX = sx1;
+        maxSectionY = sy1;
+        maxSectionZ = sz1;
+        dirty = false;
+        
+        // Sections that left the footprint
+        if (SECTIONS.keySet().removeIf(key -> !contains(key))) {
+            generation++;
+        }
+        PENDING.keySet().removeIf(key -> !contains(key));
+        VERSIONS.keySet().removeIf(key -> !contains(key));
+        
+        // Sections that entered it (or were invalidated)
+        for (int sx = sx0; sx <= sx1; sx++) {
+            for (int sz = sz0; sz <= sz1; sz++) {
+                WorldChunk chunk = world.getChunkManager().getWorldChunk(sx, sz);
+                if (chunk == null) {
+                    continue; // picked up when the chunk loads
+                }
+                for (int sy = sy0; sy <= sy1; sy++) {
+                    long key = ChunkSectionPos.asLong(sx, sy, sz);
+                    if (!SECTIONS.containsKey(key) && !PENDING.containsKey(key)) {
+                        request(chunk, sy, key);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static void request(WorldChunk chunk, int sectionY, long key) {
+        int index = world.sectionCoordToIndex(sectionY);
+        if (index < 0 || index >= chunk.getSectionArray().length) {
+            SECTIONS.put(key, EMPTY);
+            return;
+        }
+        ChunkSection section = chunk.getSection(index);
+        if (section.isEmpty()) {
+            SECTIONS.put(key, EMPTY);
+            return;
+        }
+        
+        // Copied here, read on the worker: the client keeps writing to the original
+        PalettedContainer<BlockState> snapshot = section.getBlockStateContainer().copy();
+        int version = VERSIONS.get(key);
+        PENDING.put(key, version);
+        CompletableFuture.runAsync(() -> RESULTS.offer(new Result(key, version, occupancy(snapshot))), Workers.pool());
+    }
+    
+    private static long[] occupancy(PalettedContainer<BlockState> blocks) {
+        long[] bits = new long[64];
+        for (int i = 0; i < 4096; i++) {
+            if (!blocks.get(i & 15, i >> 8, (i >> 4) & 15).isAir()) {
+                bits[i >> 6] |= 1L << i;
+            }
+        }
+        return bits;
+    }
+    
+    /**
+     * Whether a world position under the footprint is occupied; unknown
+     * (not yet computed or not loaded) positions count as free
+     */
+    public static boolean isOccupied(int x, int y, int z) {
+        long[] bits = SECTIONS.get(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4));
+        if (bits == null || bits == EMPTY) {
+            return false;
+        }
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        return (bits[bit >> 6] & (1L << bit)) != 0;
+    }
+    
+    /**
+     * Changes whenever the known occupancy under the footprint changes
+     */
+    public static int getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * Non-air bitmaps of the sections under the footprint that contain blocks, by section key
+     * The bitmaps are never modified once computed, so the copy can be read on another thread.
+     */
+    public static Long2ObjectMap<long[]> snapshot() {
+        Long2ObjectMap<long[]> copy = new Long2ObjectOpenHashMap<>();
+        for (Long2ObjectMap.Entry<long[]> entry : SECTIONS.long2ObjectEntrySet()) {
+            if (entry.getValue() != EMPTY) {
+                copy.put(entry.getLongKey(), entry.getValue());
+            }
+        }
+        return copy;
+    }
+    
+    /**
+     * A block changed in the client world
+     */
+    public static void onBlockChanged(World changed, BlockPos pos) {
+        if (changed == world) {
+            invalidate(ChunkSectionPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+        }
+    }
+    
+    /**
+     * A chunk was (re)loaded or unloaded in the client world
+     */
+    public static void onChunkChanged(World changed, ChunkPos chunkPos) {
+        if (changed != world || chunkPos.x < minSectionX || chunkPos.x > maxSectionX
+            || chunkPos.z < minSectionZ || chunkPos.z > maxSectionZ) {
+            return;
+        }
+        for (int sy = minSectionY; sy <= maxSectionY; sy++) {
+            invalidate(ChunkSectionPos.asLong(chunkPos.x, sy, chunkPos.z));
+        }
+    }
+    
+    private static void invalidate(long key) {
+        if (!contains(key)) {
+            return;
+        }
+        SECTIONS.remove(key);
+        PENDING.remove(key);
+        VERSIONS.put(key, VERSIONS.get(key) + 1);
+        generation++;
+        dirty = true;
+    }
+    
+    /**
+     * Forget everything, e.g. when the preview is hidden
+     */
+    public static void clear() {
+        SECTIONS.clear();
+        generation++;
+        PENDING.clear();
+        VERSIONS.clear();
+        RESULTS.clear();
+        world = null;
+        maxSectionX = maxSectionY = maxSectionZ = -1;
+        minSectionX = minSectionY = minSectionZ = 0;
+        dirty = false;
+    }
+    
+    private static boolean contains(long key) {
+        int sx = ChunkSectionPos.unpackX(key);
+        int sy = ChunkSectionPos.unpackY(key);
+        int sz = ChunkSectionPos.unpackZ(key);
+        return sx >= minSectionX && sx <= maxSectionX && sy >= minSectionY && sy <= maxSectionY
+            && sz >= minSectionZ && sz <= maxSectionZ;
+    }
+}
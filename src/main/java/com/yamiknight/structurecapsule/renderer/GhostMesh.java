@@ -0,0 +1,341 @@
+package com.yamiknight.structurecapsule.renderer;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.metrics.GhostMeshBuildEvent;
+import com.yamiknight.structurecapsule.placement.PlacementPlan;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.util.Workers;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockRenderType;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.color.world.BiomeColors;
+import net.minecraft.client.gl.VertexBuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BuiltBuffer;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.render.block.BlockRenderManager;
+import net.minecraft.client.util.BufferAllocator;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.random.Random;
+import net.minecraft.world.BlockRenderView;
+import net.minecraft.world.LightType;
+import net.minecraft.world.biome.ColorResolver;
+import net.minecraft.world.biome.FoliageColors;
+import net.minecraft.world.biome.GrassColors;
+import net.minecraft.world.chunk.light.LightingProvider;
+import org.joml.Matrix4f;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Translucent block-model mesh of a structure, for the "model" ghost preview
+ *
+ * Like vanilla's chunk builder: the structure (rotated to one facing) is split
+ * into 16^3 sections, each section is meshed on the worker pool with the real
+ * block models, faces hidden by neighboring blocks culled, and the result is
+ * uploaded to its own vertex buffer on the render thread. After that, drawing
+ * the preview only binds and draws the cached buffers.
+ *
+ * Meshes are cached per (structure, facing); the least recently used are freed
+ * once more than MAX_CACHED are held. All methods run on the render thread.
+ */
+public class GhostMesh {
+    private static final int MAX_CACHED = 4;
+    private static final int UPLOADS_PER_FRAME = 16;
+    private static final int INITIAL_BUFFER_SIZE = 1 << 18;
+    
+    private static final Map<Key, GhostMesh> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    
+    private final String name;
+    private final Queue<BuiltSection> built = new ConcurrentLinkedQueue<>();
+    private final List<UploadedSection> uploaded = new ArrayList<>();
+    private boolean closed = false;
+    
+    private record Key(StructureData data, Direction facing) {
+    }
+    
+    /**
+     * Mesh data of one section waiting to be uploaded
+     */
+    private record BuiltSection(int x, int y, int z, BufferAllocator allocator, BuiltBuffer buffer) {
+        void free() {
+            buffer.close();
+            allocator.close();
+        }
+    }
+    
+    private record UploadedSection(int x, int y, int z, VertexBuffer vertices) {
+    }
+    
+    private GhostMesh(StructureData data, Direction facing) {
+        this.name = data.getName();
+        BlockRenderManager blockRenderer = MinecraftClient.getInstance().getBlockRenderManager();
+        
+        // The shared placement plan already holds the rotated states per structure section
+        PlacementPlan.forPlacement(data, facing).thenAcceptAsync(plan -> {
+            StructureView view = new StructureView(plan);
+            for (int s = 0; s < plan.getSectionCount(); s++) {
+                int section = s;
+                CompletableFuture.runAsync(() -> buildSection(blockRenderer, view, plan, section), Workers.pool());
+            }
+        }, Workers.pool()).exceptionally(error -> {
+            StructureCapsuleMod.LOGGER.error("Failed to build ghost mesh for '{}'", name, error);
+            return null;
+        });
+    }
+    
+    /**
+     * Get the mesh for a structure and facing, starting its build if needed
+     */
+    public static GhostMesh get(StructureData data, Direction facing) {
+        GhostMesh mesh = CACHE.computeIfAbsent(new Key(data, facing), key -> new GhostMesh(data, facing));
+        if (CACHE.size() > MAX_CACHED) {
+            Iterator<GhostMesh> eldest = CACHE.values().iterator();
+            eldest.next().close();
+            eldest.remove();
+        }
+        return mesh;
+    }
+    
+    /**
+     * Free all cached meshes
+     */
+    public static void clearCache() {
+        CACHE.values().forEach(GhostMesh::close);
+        CACHE.clear();
+    }
+    
+    /**
+     * Mesh one section of the structure (worker thread)
+     */
+    private void buildSection(BlockRenderManager blockRenderer, StructureView view, PlacementPlan plan, int section) {
+        GhostMeshBuildEvent event = new GhostMeshBuildEvent();
+        event.begin();
+        
+        int baseX = plan.getSectionX(section) << 4;
+        int baseY = plan.getSectionY(section) << 4;
+        int baseZ = plan.getSectionZ(section) << 4;
+        
+        BufferAllocator allocator = new BufferAllocator(INITIAL_BUFFER_SIZE);
+        BufferBuilder buffer = new BufferBuilder(allocator, VertexFormat.DrawMode.QUADS,
+            VertexFormats.POSITION_COLOR_TEXTURE_LIGHT_NORMAL);
+        MatrixStack matrices = new MatrixStack();
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        Random random = Random.create();
+        
+        int start = plan.getSectionStart(section);
+        int end = plan.getSectionStart(section + 1);
+        for (int i = start; i < end; i++) {
+            BlockState state = plan.getState(i);
+            if (state.getRenderType() != BlockRenderType.MODEL) {
+                continue;
+            }
+            short local = plan.getLocal(i);
+            int x = local & 15;
+            int y = (local >> 8) & 15;
+            int z = (local >> 4) & 15;
+            pos.set(baseX + x, baseY + y, baseZ + z);
+            
+            matrices.push();
+            matrices.translate(x, y, z);
+            random.setSeed(state.getRenderingSeed(pos));
+            blockRenderer.renderBlock(state, pos, view, matrices, buffer, true, random);
+            matrices.pop();
+        }
+        
+        BuiltBuffer result = buffer.endNullable();
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.structureName = name;
+            event.blockCount = end - start;
+            event.commit();
+        }
+        
+        if (result == null) {
+            // Every face culled or nothing model-rendered
+            allocator.close();
+            return;
+        }
+        
+        BuiltSection ready = new BuiltSection(plan.getSectionX(section), plan.getSectionY(section),
+            plan.getSectionZ(section), allocator, result);
+        synchronized (this) {
+            if (!closed) {
+                built.offer(ready);
+                return;
+            }
+        }
+        ready.free();
+    }
+    
+    /**
+     * Draw the mesh with its origin at the given camera-relative offset
+     * Sections finished since the last frame are uploaded first (a few per frame).
+     */
+    public void draw(MatrixStack matrices, double offsetX, double offsetY, double offsetZ, float alpha) {
+        BuiltSection pending;
+        for (int i = 0; i < UPLOADS_PER_FRAME && (pending = built.poll()) != null; i++) {
+            VertexBuffer vertices = new VertexBuffer(VertexBuffer.Usage.STATIC);
+            vertices.bind();
+            vertices.upload(pending.buffer());
+            VertexBuffer.unbind();
+            pending.allocator().close();
+            uploaded.add(new UploadedSection(pending.x(), pending.y(), pending.z(), vertices));
+        }
+        
+        if (uploaded.isEmpty()) {
+            return;
+        }
+        
+        RenderLayer layer = RenderLayer.getTranslucent();
+        layer.startDrawing();
+        RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, alpha);
+        RenderSystem.depthMask(false);
+        
+        Matrix4f projection = RenderSystem.getProjectionMatrix();
+        for (UploadedSection section : uploaded) {
+            matrices.push();
+            matrices.translate(offsetX + (section.x() << 4), offsetY + (section.y() << 4), offsetZ + (section.z() << 4));
+            section.vertices().bind();
+            section.vertices().draw(matrices.peek().getPositionMatrix(), projection,
+                GameRenderer.getRenderTypeTranslucentProgram());
+            matrices.pop();
+        }
+        VertexBuffer.unbind();
+        
+        RenderSystem.depthMask(true);
+        RenderSystem.setShaderColor(1.0f, 1.0f, 1.0f, 1.0f);
+        layer.endDrawing();
+    }
+    
+    /**
+     * Free the GPU buffers and any mesh data not uploaded yet
+     */
+    private void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        BuiltSection pending;
+        while ((pending = built.poll()) != null) {
+            pending.free();
+        }
+        uploaded.forEach(section -> section.vertices().close());
+        uploaded.clear();
+    }
+    
+    /**
+     * Read-only view of the rotated structure for block model rendering
+     * Positions outside the structure are air; light is full everywhere.
+     */
+    private static class StructureView implements BlockRenderView {
+        private final Long2ObjectMap<char[]> sections = new Long2ObjectOpenHashMap<>();
+        private final BlockState[] palette;
+        private final int height;
+        
+        StructureView(PlacementPlan plan) {
+            palette = new BlockState[plan.getPaletteSize()];
+            for (int i = 0; i < palette.length; i++) {
+                palette[i] = plan.getPaletteState(i);
+            }
+            // Dense per-section palette indices (+1, 0 = air) so neighbor lookups are array reads
+            for (int s = 0; s < plan.getSectionCount(); s++) {
+                char[] cells = new char[4096];
+                for (int i = plan.getSectionStart(s); i < plan.getSectionStart(s + 1); i++) {
+                    cells[plan.getLocal(i) & 0xFFFF] = (char) (plan.getStateIndex(i) + 1);
+                }
+                sections.put(BlockPos.asLong(plan.getSectionX(s), plan.getSectionY(s), plan.getSectionZ(s)), cells);
+            }
+            height = plan.getFootprintY() + 32;
+        }
+        
+        @Override
+        public BlockState getBlockState(BlockPos pos) {
+            char[] cells = sections.get(BlockPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4));
+            if (cells == null) {
+                return Blocks.AIR.getDefaultState();
+            }
+            int index = cells[((pos.getY() & 15) << 8) | ((pos.getZ() & 15) << 4) | (pos.getX() & 15)];
+            return index == 0 ? Blocks.AIR.getDefaultState() : palette[index - 1];
+        }
+        
+        @Override
+        public FluidState getFluidState(BlockPos pos) {
+            return getBlockState(pos).getFluidState();
+        }
+        
+        @Override
+        public BlockEntity getBlockEntity(BlockPos pos) {
+            return null;
+        }
+        
+        @Override
+        public float getBrightness(Direction direction, boolean shaded) {
+            if (!shaded) {
+                return 1.0f;
+            }
+            return switch (direction) {
+                case DOWN -> 0.5f;
+                case NORTH, SOUTH -> 0.8f;
+                case WEST, EAST -> 0.6f;
+                default -> 1.0f;
+            };
+        }
+        
+        @Override
+        public LightingProvider getLightingProvider() {
+            // Not used: light levels are overridden below
+            return null;
+        }
+        
+        @Override
+        public int getLightLevel(LightType type, BlockPos pos) {
+            return 15;
+        }
+        
+        @Override
+        public int getBaseLightLevel(BlockPos pos, int ambientDarkness) {
+            return 15;
+        }
+        
+        @Override
+        public int getColor(BlockPos pos, ColorResolver colorResolver) {
+            // No biome to sample; use the default tints
+            if (colorResolver == BiomeColors.GRASS_COLOR) {
+                return GrassColors.getDefaultColor();
+            }
+            if (colorResolver == BiomeColors.FOLIAGE_COLOR) {
+                return FoliageColors.getDefaultColor();
+            }
+            return 0x3F76E4; // water
+        }
+        
+        @Override
+        public int getHeight() {
+            return height;
+        }
+        
+        @Override
+        public int getBottomY() {
+            return -16;
+        }
+    }
+}
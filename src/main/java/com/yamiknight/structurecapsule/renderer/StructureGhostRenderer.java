@@ -1,8 +1,10 @@
 package com.yamiknight.structurecapsule.renderer;
 
 import com.mojang.blaze3d.systems.RenderSystem;
+import com.yamiknight.structurecapsule.config.ModConfig;
 import com.yamiknight.structurecapsule.items.FilledCapsuleItem;
 import com.yamiknight.structurecapsule.items.ModItems;
+import com.yamiknight.structurecapsule.metrics.GhostMeshBuildEvent;
 import com.yamiknight.structurecapsule.structure.StructureData;
 import com.yamiknight.structurecapsule.structure.StructureManager;
 import net.fabricmc.fabric.api.client.rendering.v1.WorldRenderContext;
@@ -31,14 +33,20 @@ import java.util.Map;
  * Rendering Strategy:
  * - Hooks into WorldRenderEvents.LAST to render after the world
  * - Checks if player is holding a filled capsule
- * - Renders translucent boxes at the target location
+ * - Renders translucent boxes at the target location, or with ghostPreviewMode
+ *   "model" the structure's translucent block models (see GhostMesh)
  * - Uses the color stored in the item's NBT
+ * - Blocks that would overwrite existing blocks are drawn in CONFLICT_COLOR
+ *   (occupancy of the client world tracked by GhostConflicts); in "model" mode
+ *   only they are outlined, from a cached buffer (see GhostConflictOutline)
  * - Caches loaded structures to avoid re-loading from disk every frame
  * - Does NOT spawn entities - purely visual rendering
  */
 public class StructureGhostRenderer {
     private static final Map<String, StructureData> STRUCTURE_CACHE = new HashMap<>();
     private static final float GHOST_ALPHA = 0.3f;
+    private static final int CONFLICT_COLOR = 0xFF3030;
+    private static final float MODEL_ALPHA = 0.5f;
     
     /**
      * Main render method called from WorldRenderEvents.LAST
@@ -63,6 +71,8 @@ public class StructureGhostRenderer {
         }
         
         if (capsule == null) {
+            GhostConflicts.clear();
+            GhostConflictOutline.clear();
             return;
         }
         
@@ -90,8 +100,38 @@ public class StructureGhostRenderer {
         BlockHitResult blockHit = (BlockHitResult) hitResult;
         BlockPos targetPos = blockHit.getBlockPos().offset(blockHit.getSide());
         
+        // Keep occupancy of the sections under the footprint up to date (off-thread)
+        Direction facing = player.getHorizontalFacing();
+        boolean swapped = facing == Direction.EAST || facing == Direction.WEST;
+        GhostConflicts.update(client.world, targetPos, targetPos.add(
+            (swapped ? data.getSizeZ() : data.getSizeX()) - 1,
+            data.getSizeY() - 1,
+            (swapped ? data.getSizeX() : data.getSizeZ()) - 1));
+        
         // Render ghost structure
-        renderGhostStructure(context, data, targetPos, player.getHorizontalFacing(), color);
+        if ("model".equalsIgnoreCase(ModConfig.getInstance().ghostPreviewMode)) {
+            renderModelPreview(context, data, targetPos, facing);
+        } else {
+            renderGhostStructure(context, data, targetPos, facing, color);
+        }
+    }
+    
+    /**
+     * Draw the cached block-model mesh of the structure at the target position
+     */
+    private static void renderModelPreview(WorldRenderContext context, StructureData data, BlockPos origin,
+                                           Direction facing) {
+        MatrixStack matrices = context.matrixStack();
+        if (matrices == null) return;
+        
+        Vec3d camera = context.camera().getPos();
+        double offsetX = origin.getX() - camera.x;
+        double offsetY = origin.getY() - camera.y;
+        double offsetZ = origin.getZ() - camera.z;
+        GhostMesh.get(data, facing).draw(matrices, offsetX, offsetY, offsetZ, MODEL_ALPHA);
+        // Conflicts are still outlined, from a buffer rebuilt off-thread only when something changed
+        GhostConflictOutline.draw(matrices, data, facing, origin, offsetX, offsetY, offsetZ,
+            CONFLICT_COLOR, GHOST_ALPHA);
     }
     
     /**
@@ -124,11 +164,17 @@ public class StructureGhostRenderer {
         float r = ((colorInt >> 16) & 0xFF) / 255.0f;
         float g = ((colorInt >> 8) & 0xFF) / 255.0f;
         float b = (colorInt & 0xFF) / 255.0f;
+        float cr = ((CONFLICT_COLOR >> 16) & 0xFF) / 255.0f;
+        float cg = ((CONFLICT_COLOR >> 8) & 0xFF) / 255.0f;
+        float cb = (CONFLICT_COLOR & 0xFF) / 255.0f;
         
         // Render each block as a colored box
         Tessellator tessellator = Tessellator.getInstance();
         BufferBuilder buffer = tessellator.getBuffer();
         
+        GhostMeshBuildEvent event = new GhostMeshBuildEvent();
+        event.begin();
+        
         buffer.begin(VertexFormat.DrawMode.DEBUG_LINES, VertexFormats.POSITION_COLOR);
         
         Matrix4f matrix = matrices.peek().getPositionMatrix();
@@ -137,8 +183,20 @@ public class StructureGhostRenderer {
             // Rotate position based on facing
             BlockPos rotated = rotatePosition(entry.pos, facing, data.getSizeX(), data.getSizeZ());
             
-            // Draw wireframe box for this block
-            drawBlockOutline(buffer, matrix, rotated, r, g, b, GHOST_ALPHA);
+            // Draw wireframe box for this block, tinted if something is already there
+            if (GhostConflicts.isOccupied(origin.getX() + rotated.getX(), origin.getY() + rotated.getY(),
+                origin.getZ() + rotated.getZ())) {
+                drawBlockOutline(buffer, matrix, rotated, cr, cg, cb, GHOST_ALPHA);
+            } else {
+                drawBlockOutline(buffer, matrix, rotated, r, g, b, GHOST_ALPHA);
+            }
+        }
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.structureName = data.getName();
+            event.blockCount = data.getBlockCount();
+            event.commit();
         }
         
         tessellator.draw();
@@ -226,7 +284,8 @@ public class StructureGhostRenderer {
      */
     private static StructureData getOrLoadStructure(String name) {
         if (!STRUCTURE_CACHE.containsKey(name)) {
-            StructureData data = StructureManager.loadStructure(name);
+            // Never contacts the repository; a structure not on disk yet counts as not loaded
+            StructureData data = StructureManager.loadLocalStructure(name);
             if (data != null) {
                 STRUCTURE_CACHE.put(name, data);
             }
@@ -240,5 +299,7 @@ public class StructureGhostRenderer {
      */
     public static void clearCache() {
         STRUCTURE_CACHE.clear();
+        GhostMesh.clearCache();
+        GhostConflictOutline.clear();
     }
 }
@@ -0,0 +1,101 @@
+package com.yamiknight.structurecapsule.repository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StructureRepository served over HTTP
+ *
+ * Layout below the base URL:
+ * - GET structures          - structure names, one per line
+ * - GET structures/<name>   - manifest file; honours If-None-Match and answers with an ETag
+ * - GET sections/<hash>     - section file, immutable
+ *
+ * Any web server that maps those paths onto a saved_structures/ directory
+ * (<name>.nbt and sections/<aa>/<hash>.sec) and sends ETags will do.
+ */
+public class HttpStructureRepository implements StructureRepository {
+    private final URI base;
+    private final Duration timeout;
+    private final HttpClient client;
+    
+    /**
+     * @param baseUrl Repository root, e.g. "https://capsules.example.net/library/"
+     * @param timeoutMs Connect and request timeout
+     */
+    public HttpStructureRepository(String baseUrl, int timeoutMs) {
+        this.base = URI.create(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        this.timeout = Duration.ofMillis(Math.max(100, timeoutMs));
+        this.client = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+    
+    @Override
+    public ManifestResponse fetchManifest(String name, String etag) throws IOException {
+        HttpRequest.Builder request = request("structures/" + URLEncoder.encode(name, StandardCharsets.UTF_8));
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        HttpResponse<byte[]> response = send(request.build());
+        String returnedEtag = response.headers().firstValue("ETag").orElse(null);
+        return switch (response.statusCode()) {
+            case 200 -> new ManifestResponse(Status.OK, response.body(), returnedEtag);
+            case 304 -> new ManifestResponse(Status.NOT_MODIFIED, null, returnedEtag != null ? returnedEtag : etag);
+            case 404, 410 -> new ManifestResponse(Status.NOT_FOUND, null, null);
+            default -> throw new IOException("Repository answered " + response.statusCode() + " for structure " + name);
+        };
+    }
+    
+    @Override
+    public byte[] fetchSection(String hash) throws IOException {
+        if (!hash.matches("[0-9a-f]{8,128}")) {
+            throw new IOException("Invalid section hash: " + hash);
+        }
+        HttpResponse<byte[]> response = send(request("sections/" + hash).build());
+        return switch (response.statusCode()) {
+            case 200 -> response.body();
+            case 404, 410 -> null;
+            default -> throw new IOException("Repository answered " + response.statusCode() + " for section " + hash);
+        };
+    }
+    
+    @Override
+    public List<String> listStructures() throws IOException {
+        HttpResponse<byte[]> response = send(request("structures").build());
+        if (response.statusCode() != 200) {
+            throw new IOException("Repository answered " + response.statusCode() + " for the structure list");
+        }
+        List<String> names = new ArrayList<>();
+        for (String line : new String(response.body(), StandardCharsets.UTF_8).split("\n")) {
+            String name = line.trim();
+            if (!name.isEmpty()) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+    
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).timeout(timeout).GET();
+    }
+    
+    private HttpResponse<byte[]> send(HttpRequest request) throws IOException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching " + request.uri());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.yamiknight.structurecapsule.repository;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Remote library of saved structures
+ *
+ * Structures are addressed the same way as on disk: a manifest by structure
+ * name and its sections by content hash. Bodies are the stored files exactly
+ * as written to saved_structures/, so a fetched file can go straight into the
+ * local cache. Manifests change and are fetched with conditional requests;
+ * sections never change once published.
+ */
+public interface StructureRepository {
+    enum Status {
+        OK,
+        NOT_MODIFIED,
+        NOT_FOUND
+    }
+    
+    /**
+     * Result of a manifest request
+     *
+     * @param body The manifest file, only for OK
+     * @param etag Validator of the returned (or still current) manifest, may be null
+     */
+    record ManifestResponse(Status status, byte[] body, String etag) {
+    }
+    
+    /**
+     * Fetch a structure manifest
+     *
+     * @param name Sanitized structure name
+     * @param etag Validator of the cached copy, or null to fetch unconditionally
+     */
+    ManifestResponse fetchManifest(String name, String etag) throws IOException;
+    
+    /**
+     * Fetch a stored section file by content hash
+     *
+     * @return The section file, or null if the repository does not have it
+     */
+    byte[] fetchSection(String hash) throws IOException;
+    
+    /**
+     * Names of all structures in the repository
+     */
+    List<String> listStructures() throws IOException;
+}
@@ -161,7 +161,7 @@ public class StructureSaveScreen extends Screen {
         int sizeX = Math.abs(pos2.getX() - pos1.getX()) + 1;
         int sizeY = Math.abs(pos2.getY() - pos1.getY()) + 1;
         int sizeZ = Math.abs(pos2.getZ() - pos1.getZ()) + 1;
-        int totalBlocks = sizeX * sizeY * sizeZ;
+        long totalBlocks = (long) sizeX * sizeY * sizeZ;
         
         // Check size limit
         ModConfig config = ModConfig.getInstance();
@@ -0,0 +1,165 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.config.ModConfig;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Async structure capture that scans large regions over multiple ticks
+ *
+ * Strategy:
+ * - Capture jobs are queued; up to maxConcurrentCaptures run at once
+ * - Each tick, the running jobs share captureTickBudgetMs scanning 16^3 sections
+ * - Admission (rate limits, queue bound, deduplication) is handled by CaptureAdmission
+ * - Block changes in the region (reported by WorldChunkMixin) make already
+ *   scanned sections stale, so they are scanned again before the job finishes
+ * - Progress is shown to the requesting player in a boss bar
+ */
+public class AsyncStructureCapture {
+    private static final Queue<CaptureJob> CAPTURE_QUEUE = new ConcurrentLinkedQueue<>();
+    
+    // Smoothed scan throughput, used to tell rejected players when to retry
+    private static double sectionsPerTick = 64;
+    
+    /**
+     * Queue a region for capture
+     *
+     * @param world The world to scan
+     * @param pos1 First corner
+     * @param pos2 Second corner
+     * @param name Structure name
+     * @param player Player to show progress to, may be null
+     * @return The queued job; its result completes on the server thread
+     */
+    public static CaptureJob queueCapture(ServerWorld world, BlockPos pos1, BlockPos pos2, String name,
+                                          ServerPlayerEntity player) {
+        BlockPos origin = new BlockPos(
+            Math.min(pos1.getX(), pos2.getX()),
+            Math.min(pos1.getY(), pos2.getY()),
+            Math.min(pos1.getZ(), pos2.getZ())
+        );
+        int sizeX = Math.abs(pos2.getX() - pos1.getX()) + 1;
+        int sizeY = Math.abs(pos2.getY() - pos1.getY()) + 1;
+        int sizeZ = Math.abs(pos2.getZ() - pos1.getZ()) + 1;
+        
+        // Re-saving under an existing name only re-encodes sections that changed
+        StructureManifest previous = ModConfig.getInstance().incrementalRecapture
+            ? StructureManager.readManifest(name) : null;
+        
+        CaptureJob job = new CaptureJob(world, origin, sizeX, sizeY, sizeZ, name, player, previous,
+            StructureManager.getSectionStore());
+        CAPTURE_QUEUE.offer(job);
+        return job;
+    }
+    
+    /**
+     * Queue a region to be copied into memory instead of saved
+     * The copy is scanned like a capture but nothing is stored; see CaptureJob.getCopy.
+     *
+     * @param name Name given to the copied structure data
+     * @param player Player to show progress to, may be null
+     */
+    public static CaptureJob queueCopy(ServerWorld world, BlockPos pos1, BlockPos pos2, String name,
+                                       ServerPlayerEntity player) {
+        BlockPos origin = new BlockPos(
+            Math.min(pos1.getX(), pos2.getX()),
+            Math.min(pos1.getY(), pos2.getY()),
+            Math.min(pos1.getZ(), pos2.getZ())
+        );
+        CaptureJob job = new CaptureJob(world, origin, Math.abs(pos2.getX() - pos1.getX()) + 1,
+            Math.abs(pos2.getY() - pos1.getY()) + 1, Math.abs(pos2.getZ() - pos1.getZ()) + 1,
+            name, player, null, null);
+        CAPTURE_QUEUE.offer(job);
+        return job;
+    }
+    
+    /**
+     * Tick function called from ServerTickEvents.END_SERVER_TICK
+     * Advances the active capture job within the configured time budget
+     */
+    public static void tick(MinecraftServer server) {
+        if (CAPTURE_QUEUE.isEmpty()) {
+            return;
+        }
+        
+        ModConfig config = ModConfig.getInstance();
+        int running = Math.min(Math.max(1, config.maxConcurrentCaptures), CAPTURE_QUEUE.size());
+        long budget = Math.max(1, config.captureTickBudgetMs) * 1_000_000L / running;
+        
+        int remainingBefore = getRemainingSections();
+        Iterator<CaptureJob> iterator = CAPTURE_QUEUE.iterator();
+        for (int i = 0; i < running && iterator.hasNext(); i++) {
+            CaptureJob job = iterator.next();
+            int jobRemaining = job.getRemainingSections();
+            if (job.step(System.nanoTime() + budget)) {
+                iterator.remove();
+                remainingBefore -= jobRemaining;
+            }
+        }
+        
+        int scanned = remainingBefore - getRemainingSections();
+        if (scanned > 0) {
+            sectionsPerTick = sectionsPerTick * 0.9 + scanned * 0.1;
+        }
+    }
+    
+    /**
+     * Estimated seconds until the work queued now has been scanned
+     */
+    public static int estimateSecondsToDrain() {
+        return (int) Math.ceil(getRemainingSections() / Math.max(1.0, sectionsPerTick) / 20.0);
+    }
+    
+    private static int getRemainingSections() {
+        int remaining = 0;
+        for (CaptureJob job : CAPTURE_QUEUE) {
+            remaining += job.getRemainingSections();
+        }
+        return remaining;
+    }
+    
+    /**
+     * Called whenever a block in a loaded chunk changes
+     */
+    public static void onBlockChanged(World world, BlockPos pos) {
+        if (CAPTURE_QUEUE.isEmpty()) {
+            return;
+        }
+        for (CaptureJob job : CAPTURE_QUEUE) {
+            if (job.getWorld() == world) {
+                job.markChanged(pos);
+            }
+        }
+    }
+    
+    /**
+     * Cancel all queued captures (e.g. when the server stops)
+     */
+    public static void cancelAll() {
+        CaptureJob job;
+        while ((job = CAPTURE_QUEUE.poll()) != null) {
+            job.cancel();
+        }
+    }
+    
+    /**
+     * Check if any capture is still queued or in progress
+     */
+    public static boolean hasPendingCaptures() {
+        return !CAPTURE_QUEUE.isEmpty();
+    }
+    
+    /**
+     * Number of capture jobs currently queued (including the active one)
+     */
+    public static int getQueuedJobCount() {
+        return CAPTURE_QUEUE.size();
+    }
+}
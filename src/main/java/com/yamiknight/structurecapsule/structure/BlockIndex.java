@@ -0,0 +1,415 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.util.Workers;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.Registries;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Persistent inverted index from block id to the saved structures containing it
+ *
+ * For every structure on disk the index keeps how many blocks of each block id
+ * it holds, so content queries (/scapsule find) are answered from memory without
+ * opening a structure file. A structure is re-indexed on the worker pool whenever
+ * its file is written, fetched or upgraded, from its manifest and the (usually
+ * cached) sections it references.
+ *
+ * The index is kept in saved_structures/.index/blocks.nbt, written shortly after
+ * it changes. On startup, structures whose file changed since they were indexed
+ * (by modification time) or that are not indexed yet are indexed again in the
+ * background, so files copied in by hand and an interrupted write heal themselves.
+ * Structures a repository lists but that are not cached locally are not indexed.
+ */
+public class BlockIndex {
+    private static final int FORMAT = 1;
+    private static final long FLUSH_DELAY_SECONDS = 2;
+    
+    private final Path structuresDir;
+    private final Path file;
+    private final SectionStore sections;
+    // block id -> structure -> count, the persisted direction
+    private final Map<String, Map<String, Integer>> byBlock = new HashMap<>();
+    // structure -> block id -> count, for replacing a structure's entries
+    private final Map<String, Map<String, Integer>> byStructure = new HashMap<>();
+    private final Map<String, Long> modified = new HashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean dirty;
+    
+    BlockIndex(Path structuresDir, SectionStore sections) {
+        this.structuresDir = structuresDir;
+        this.file = structuresDir.resolve(".index").resolve("blocks.nbt");
+        this.sections = sections;
+    }
+    
+    /**
+     * One query term
+     *
+     * @param block Full block id, or "<namespace>:*" for every block of a mod
+     * @param exclude Structures containing the block are left out
+     * @param minCount Blocks a structure needs to contain at least (ignored when excluding)
+     */
+    public record Filter(String block, boolean exclude, int minCount) {
+        /**
+         * Parse a term: "<block>" (contains), "-<block>" (does not contain) or
+         * "<block>>=<n>" (contains at least n). Ids without a namespace are minecraft ids.
+         */
+        public static Filter parse(String term) {
+            boolean exclude = term.startsWith("-") || term.startsWith("!");
+            String block = exclude ? term.substring(1) : term;
+            int minCount = 1;
+            int bound = block.indexOf(">=");
+            if (bound >= 0) {
+                if (exclude) {
+                    throw new IllegalArgumentException("Excluded blocks take no count");
+                }
+                try {
+                    minCount = Integer.parseInt(block.substring(bound + 2));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid count in '" + term + "'");
+                }
+                if (minCount < 1) {
+                    throw new IllegalArgumentException("Count must be at least 1 in '" + term + "'");
+                }
+                block = block.substring(0, bound);
+            }
+            if (!block.contains(":")) {
+                block = "minecraft:" + block;
+            }
+            if (!block.matches("[a-z0-9_.-]+:([a-z0-9_./-]+|\\*)")) {
+                throw new IllegalArgumentException("Invalid block id '" + block + "'");
+            }
+            return new Filter(block, exclude, minCount);
+        }
+        
+        boolean matches(String blockId) {
+            return block.endsWith(":*") ? blockId.startsWith(block.substring(0, block.length() - 1))
+                : blockId.equals(block);
+        }
+    }
+    
+    /**
+     * A structure passing every filter, with its counts for the included blocks (in filter order)
+     */
+    public record Match(String structure, Map<String, Integer> counts) {
+    }
+    
+    /**
+     * Structures passing all filters, sorted by name
+     * Without any including filter, every indexed structure is a candidate.
+     */
+    public synchronized List<Match> find(List<Filter> filters) {
+        Set<String> candidates = null;
+        Map<Filter, Map<String, Integer>> included = new LinkedHashMap<>();
+        for (Filter filter : filters) {
+            if (filter.exclude()) {
+                continue;
+            }
+            Map<String, Integer> totals = totals(filter);
+            totals.values().removeIf(count -> count < filter.minCount());
+            included.put(filter, totals);
+            if (candidates == null) {
+                candidates = new TreeSet<>(totals.keySet());
+            } else {
+                candidates.retainAll(totals.keySet());
+            }
+        }
+        if (candidates == null) {
+            candidates = new TreeSet<>(byStructure.keySet());
+        }
+        for (Filter filter : filters) {
+            if (filter.exclude()) {
+                candidates.removeAll(totals(filter).keySet());
+            }
+        }
+        
+        List<Match> matches = new ArrayList<>(candidates.size());
+        for (String structure : candidates) {
+            Map<String, Integer> counts = new LinkedHashMap<>();
+            included.forEach((filter, totals) -> counts.put(filter.block(), totals.get(structure)));
+            matches.add(new Match(structure, counts));
+        }
+        return matches;
+    }
+    
+    /**
+     * Block ids present in at least one indexed structure
+     */
+    public synchronized Set<String> blockIds() {
+        return new TreeSet<>(byBlock.keySet());
+    }
+    
+    /**
+     * Structures waiting to be (re-)indexed
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Blocks per structure for all block ids a filter matches
+     */
+    private Map<String, Integer> totals(Filter filter) {
+        Map<String, Integer> totals = new HashMap<>();
+        if (!filter.block().endsWith(":*")) {
+            totals.putAll(byBlock.getOrDefault(filter.block(), Map.of()));
+            return totals;
+        }
+        byBlock.forEach((blockId, structures) -> {
+            if (filter.matches(blockId)) {
+                structures.forEach((structure, count) -> totals.merge(structure, count, Integer::sum));
+            }
+        });
+        return totals;
+    }
+    
+    /**
+     * Read the persisted index, then re-index everything that changed while it was not running
+     *
+     * @param structures Structures on disk
+     */
+    void load(List<String> structures) {
+        if (Files.exists(file)) {
+            try {
+                read(CompressedContainer.read(file));
+            } catch (IOException | RuntimeException e) {
+                StructureCapsuleMod.LOGGER.warn("Could not read the block index, rebuilding it", e);
+                clear();
+            }
+        }
+        
+        Set<String> present = new HashSet<>(structures);
+        synchronized (this) {
+            for (String structure : new ArrayList<>(byStructure.keySet())) {
+                if (!present.contains(structure)) {
+                    removeEntries(structure);
+                    dirty = true;
+                }
+            }
+        }
+        int stale = 0;
+        for (String structure : structures) {
+            Long indexed;
+            synchronized (this) {
+                indexed = modified.get(structure);
+            }
+            if (indexed == null || indexed != structuresDir.resolve(structure + ".nbt").toFile().lastModified()) {
+                refresh(structure);
+                stale++;
+            }
+        }
+        if (stale > 0) {
+            StructureCapsuleMod.LOGGER.info("Indexing blocks of {} structures in the background", stale);
+        }
+        if (dirty) {
+            scheduleFlush();
+        }
+    }
+    
+    /**
+     * Re-index a structure whose file changed (or was removed) in the background
+     */
+    void refresh(String key) {
+        if (pending.add(key)) {
+            Workers.pool().execute(() -> {
+                // Cleared first: a write landing while this runs schedules another pass
+                pending.remove(key);
+                index(key);
+            });
+        }
+    }
+    
+    private void index(String key) {
+        Path path = structuresDir.resolve(key + ".nbt");
+        try {
+            long fileModified = path.toFile().lastModified();
+            put(key, fileModified, Files.exists(path) ? count(path) : null);
+            scheduleFlush();
+        } catch (IOException | RuntimeException e) {
+            StructureCapsuleMod.LOGGER.warn("Could not index blocks of structure '{}'", key, e);
+        }
+    }
+    
+    /**
+     * Replace a structure's entries
+     *
+     * @param counts Blocks per block id, or null if the structure is gone
+     */
+    synchronized void put(String key, long fileModified, Map<String, Integer> counts) {
+        removeEntries(key);
+        if (counts != null) {
+            byStructure.put(key, counts);
+            modified.put(key, fileModified);
+            counts.forEach((blockId, count) ->
+                byBlock.computeIfAbsent(blockId, id -> new HashMap<>()).put(key, count));
+        }
+        dirty = true;
+    }
+    
+    /**
+     * Blocks per block id of one structure file
+     * Each distinct section of a manifest is counted once and weighted by its references.
+     */
+    private Map<String, Integer> count(Path path) throws IOException {
+        NbtCompound nbt = CompressedContainer.read(path);
+        Map<String, Integer> counts = new TreeMap<>();
+        if (!StructureManifest.isManifest(nbt)) {
+            for (StructureData.BlockEntry entry : StructureData.fromNbt(nbt).getBlocks()) {
+                counts.merge(blockId(entry.state), 1, Integer::sum);
+            }
+            return counts;
+        }
+        
+        Map<String, Integer> references = new HashMap<>();
+        for (StructureManifest.SectionRef ref : StructureManifest.fromNbt(nbt).getSections()) {
+            references.merge(ref.hash(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> reference : references.entrySet()) {
+            StructureSection section = sections.get(reference.getKey());
+            if (section == null) {
+                continue;
+            }
+            Map<BlockState, Integer> states = new HashMap<>();
+            for (int i = 0; i < StructureSection.VOLUME; i++) {
+                BlockState state = section.getState(i);
+                if (state != null) {
+                    states.merge(state, 1, Integer::sum);
+                }
+            }
+            states.forEach((state, count) -> counts.merge(blockId(state), count * reference.getValue(), Integer::sum));
+        }
+        return counts;
+    }
+    
+    private static String blockId(BlockState state) {
+        return Registries.BLOCK.getId(state.getBlock()).toString();
+    }
+    
+    private void removeEntries(String key) {
+        Map<String, Integer> previous = byStructure.remove(key);
+        modified.remove(key);
+        if (previous == null) {
+            return;
+        }
+        for (String blockId : previous.keySet()) {
+            Map<String, Integer> structures = byBlock.get(blockId);
+            if (structures != null) {
+                structures.remove(key);
+                if (structures.isEmpty()) {
+                    byBlock.remove(blockId);
+                }
+            }
+        }
+    }
+    
+    private synchronized void clear() {
+        byBlock.clear();
+        byStructure.clear();
+        modified.clear();
+    }
+    
+    /**
+     * Write the index a moment after it changed, so a burst of saves writes it once
+     */
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            CompletableFuture.delayedExecutor(FLUSH_DELAY_SECONDS, TimeUnit.SECONDS, Workers.pool()).execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+    
+    /**
+     * Write the index to disk if it changed
+     */
+    public void flush() {
+        NbtCompound nbt;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            nbt = toNbt();
+            dirty = false;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            Path temp = Files.createTempFile(file.getParent(), "blocks", ".tmp");
+            try {
+                ModConfig config = ModConfig.getInstance();
+                CompressedContainer.write(nbt, temp, config.compressionLevel,
+                    Math.max(16, config.compressionBlockSizeKiB) * 1024);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            dirty = true;
+            StructureCapsuleMod.LOGGER.warn("Could not write the block index", e);
+        }
+    }
+    
+    /**
+     * Persisted layout: {format, structures: {name: modified}, blocks: {id: {name: count}}}
+     */
+    synchronized NbtCompound toNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putInt("format", FORMAT);
+        NbtCompound structures = new NbtCompound();
+        modified.forEach(structures::putLong);
+        nbt.put("structures", structures);
+        NbtCompound blocks = new NbtCompound();
+        byBlock.forEach((blockId, counts) -> {
+            NbtCompound entry = new NbtCompound();
+            counts.forEach(entry::putInt);
+            blocks.put(blockId, entry);
+        });
+        nbt.put("blocks", blocks);
+        return nbt;
+    }
+    
+    synchronized void read(NbtCompound nbt) {
+        clear();
+        if (nbt.getInt("format") != FORMAT) {
+            return;
+        }
+        NbtCompound structures = nbt.getCompound("structures");
+        for (String structure : structures.getKeys()) {
+            modified.put(structure, structures.getLong(structure));
+            byStructure.put(structure, new TreeMap<>());
+        }
+        NbtCompound blocks = nbt.getCompound("blocks");
+        for (String blockId : blocks.getKeys()) {
+            NbtCompound entry = blocks.getCompound(blockId);
+            for (String structure : entry.getKeys()) {
+                Map<String, Integer> counts = byStructure.get(structure);
+                if (counts == null) {
+                    continue;
+                }
+                int count = entry.getInt(structure);
+                counts.put(blockId, count);
+                byBlock.computeIfAbsent(blockId, id -> new HashMap<>()).put(structure, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Memoizing resolver from stored (block id, properties) pairs to BlockStates
+ *
+ * Structure files repeat the same handful of states thousands of times, so
+ * parsing the identifier, looking up the registry and applying every property
+ * once per entry is almost entirely wasted work. This cache resolves each
+ * distinct pair once and is safe to use from several decode threads at once.
+ *
+ * Unknown blocks are cached as well (as empty) so they are skipped cheaply.
+ * Pairs stored by an older game version are upgraded through the DataFixer
+ * first (see DataVersions); the upgrade is memoized with the result.
+ */
+public class BlockStateResolver {
+    private static final int MAX_CACHED_STATES = 16384;
+    private static final NbtCompound NO_PROPERTIES = new NbtCompound();
+    private static final ConcurrentHashMap<StateKey, Optional<BlockState>> CACHE = new ConcurrentHashMap<>();
+    
+    /**
+     * Resolve a block id and property compound to a BlockState
+     *
+     * @param blockId Namespaced block id, e.g. "minecraft:oak_stairs"
+     * @param properties Property name -> value compound, may be null
+     * @return The resolved state, or null if the block id is unknown
+     */
+    public static BlockState resolve(String blockId, NbtCompound properties) {
+        return resolve(blockId, properties, DataVersions.current());
+    }
+    
+    /**
+     * Resolve a block id and property compound stored by the given data version
+     *
+     * @param dataVersion Data version the pair was written with; older pairs are upgraded first
+     * @return The resolved state, or null if the block id is unknown
+     */
+    public static BlockState resolve(String blockId, NbtCompound properties, int dataVersion) {
+        int version = Math.min(dataVersion, DataVersions.current());
+        StateKey key = new StateKey(blockId, properties == null ? NO_PROPERTIES : properties, version);
+        
+        Optional<BlockState> cached = CACHE.get(key);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        
+        Optional<BlockState> resolved;
+        if (version < DataVersions.current()) {
+            NbtCompound upgraded = DataVersions.upgradeState(blockId, key.properties(), version);
+            resolved = Optional.ofNullable(parse(upgraded.getString("Name"),
+                upgraded.contains("Properties") ? upgraded.getCompound("Properties") : NO_PROPERTIES));
+        } else {
+            resolved = Optional.ofNullable(parse(blockId, key.properties()));
+        }
+        
+        // Guard against pathological files filling the cache with one-off states
+        if (CACHE.size() >= MAX_CACHED_STATES) {
+            CACHE.clear();
+        }
+        CACHE.putIfAbsent(key, resolved);
+        return resolved.orElse(null);
+    }
+    
+    /**
+     * Uncached parse, identical to the original per-entry logic
+     */
+    private static BlockState parse(String blockId, NbtCompound properties) {
+        Identifier id = Identifier.tryParse(blockId);
+        if (id == null || !Registries.BLOCK.containsId(id)) {
+            return null;
+        }
+        
+        BlockState state = Registries.BLOCK.get(id).getDefaultState();
+        for (String key : properties.getKeys()) {
+            String value = properties.getString(key);
+            try {
+                state = parseBlockProperty(state, key, value);
+            } catch (Exception e) {
+                // Skip invalid properties
+            }
+        }
+        return state;
+    }
+    
+    /**
+     * Helper to parse block state properties
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static BlockState parseBlockProperty(BlockState state, String propertyName, String value) {
+        var property = state.getBlock().getStateManager().getProperty(propertyName);
+        if (property != null) {
+            var parsedValue = property.parse(value);
+            if (parsedValue.isPresent()) {
+                return state.with(property, (Comparable) parsedValue.get());
+            }
+        }
+        return state;
+    }
+    
+    /**
+     * Drop all memoized states; called after a data pack reload and when the server stops
+     */
+    public static void clearCache() {
+        CACHE.clear();
+    }
+    
+    /**
+     * Cache key; NbtCompound implements value equality over its entries
+     */
+    private record StateKey(String blockId, NbtCompound properties, int dataVersion) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.config.ModConfig;
+import net.minecraft.registry.RegistryKey;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Admission control for structure captures requested by players
+ *
+ * - Per-player token buckets: a capture costs one token per block of volume;
+ *   buckets hold saveTokenCapacity tokens and refill at saveTokensPerSecond
+ * - Global bound: at most maxConcurrentCaptures running plus captureQueueSize waiting
+ * - Deduplication: an identical request already in flight is joined, not queued again
+ *
+ * Rejections carry the number of seconds after which a retry should succeed.
+ * All methods are called from the server thread.
+ */
+public class CaptureAdmission {
+    private static final Map<UUID, TokenBucket> BUCKETS = new HashMap<>();
+    private static final Map<RequestKey, CaptureJob> IN_FLIGHT = new HashMap<>();
+    private static final int BUCKET_PRUNE_THRESHOLD = 256;
+    
+    /**
+     * Outcome of an admission check
+     *
+     * @param job The admitted (or joined) job, null when rejected
+     * @param retryAfterSeconds Suggested wait for rejected requests
+     */
+    public record Decision(Status status, CaptureJob job, int retryAfterSeconds) {
+    }
+    
+    public enum Status {
+        ADMITTED,
+        DUPLICATE,
+        NAME_IN_USE,
+        RATE_LIMITED,
+        BUSY
+    }
+    
+    /**
+     * Check a capture request and queue it if admitted
+     */
+    public static Decision tryAdmit(ServerPlayerEntity player, ServerWorld world, BlockPos pos1, BlockPos pos2,
+                                    String name) {
+        RequestKey key = RequestKey.of(world, pos1, pos2, name);
+        
+        // Same region, same name: share the job already running
+        CaptureJob existing = IN_FLIGHT.get(key);
+        if (existing != null) {
+            return new Decision(Status.DUPLICATE, existing, 0);
+        }
+        for (RequestKey inFlight : IN_FLIGHT.keySet()) {
+            if (inFlight.name().equals(key.name())) {
+                return new Decision(Status.NAME_IN_USE, null, Math.max(1, AsyncStructureCapture.estimateSecondsToDrain()));
+            }
+        }
+        
+        ModConfig config = ModConfig.getInstance();
+        int limit = Math.max(1, config.maxConcurrentCaptures) + Math.max(0, config.captureQueueSize);
+        if (AsyncStructureCapture.getQueuedJobCount() >= limit) {
+            return new Decision(Status.BUSY, null, Math.max(1, AsyncStructureCapture.estimateSecondsToDrain()));
+        }
+        
+        long volume = (long) (Math.abs(pos2.getX() - pos1.getX()) + 1)
+            * (Math.abs(pos2.getY() - pos1.getY()) + 1)
+            * (Math.abs(pos2.getZ() - pos1.getZ()) + 1);
+        TokenBucket bucket = bucketFor(player.getUuid(), config);
+        int wait = bucket.tryTake(volume);
+        if (wait > 0) {
+            return new Decision(Status.RATE_LIMITED, null, wait);
+        }
+        
+        CaptureJob job = AsyncStructureCapture.queueCapture(world, pos1, pos2, name, player);
+        IN_FLIGHT.put(key, job);
+        job.getResult().whenComplete((manifest, error) -> IN_FLIGHT.remove(key, job));
+        return new Decision(Status.ADMITTED, job, 0);
+    }
+    
+    private static TokenBucket bucketFor(UUID player, ModConfig config) {
+        long now = System.nanoTime();
+        if (BUCKETS.size() > BUCKET_PRUNE_THRESHOLD) {
+            // Full buckets carry no state worth keeping
+            BUCKETS.values().removeIf(bucket -> bucket.isFull(now));
+        }
+        TokenBucket bucket = BUCKETS.computeIfAbsent(player, uuid -> new TokenBucket());
+        bucket.configure(config.saveTokenCapacity, config.saveTokensPerSecond);
+        return bucket;
+    }
+    
+    /**
+     * Token bucket measured in blocks of captured volume
+     */
+    private static class TokenBucket {
+        private long capacity;
+        private long refillPerSecond;
+        private double tokens = -1;
+        private long lastRefill = System.nanoTime();
+        
+        void configure(long capacity, long refillPerSecond) {
+            this.capacity = Math.max(1, capacity);
+            this.refillPerSecond = Math.max(1, refillPerSecond);
+            if (tokens < 0) {
+                tokens = this.capacity;
+            }
+        }
+        
+        /**
+         * Take tokens for a request
+         *
+         * @return 0 if taken, otherwise seconds until enough tokens are available
+         */
+        int tryTake(long cost) {
+            refill(System.nanoTime());
+            // A request larger than the bucket only needs a full bucket
+            double needed = Math.min(cost, capacity);
+            if (tokens >= needed) {
+                tokens -= needed;
+                return 0;
+            }
+            return (int) Math.max(1, Math.ceil((needed - tokens) / refillPerSecond));
+        }
+        
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+        
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) / 1e9 * refillPerSecond);
+            lastRefill = now;
+        }
+    }
+    
+    /**
+     * Identity of a capture request, for deduplication
+     */
+    private record RequestKey(RegistryKey<World> world, BlockPos min, BlockPos max, String name) {
+        static RequestKey of(ServerWorld world, BlockPos pos1, BlockPos pos2, String name) {
+            BlockPos min = new BlockPos(
+                Math.min(pos1.getX(), pos2.getX()),
+                Math.min(pos1.getY(), pos2.getY()),
+                Math.min(pos1.getZ(), pos2.getZ())
+            );
+            BlockPos max = new BlockPos(
+                Math.max(pos1.getX(), pos2.getX()),
+                Math.max(pos1.getY(), pos2.getY()),
+                Math.max(pos1.getZ(), pos2.getZ())
+            );
+            return new RequestKey(world.getRegistryKey(), min, max, StructureManager.sanitizeName(name));
+        }
+    }
+}
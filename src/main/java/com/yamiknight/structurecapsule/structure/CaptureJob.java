@@ -0,0 +1,358 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
+import com.yamiknight.structurecapsule.metrics.StructureSaveEvent;
+import com.yamiknight.structurecapsule.util.Workers;
+import com.yamiknight.structurecapsule.world.ServerSectionAccess;
+import net.minecraft.block.BlockState;
+import net.minecraft.entity.boss.BossBar;
+import net.minecraft.entity.boss.ServerBossBar;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A capture of one region, spread over as many ticks as it needs
+ *
+ * Each tick the job scans structure-local sections until its time budget is
+ * spent; changed sections are handed to the worker pool for encoding and
+ * storing while scanning continues.
+ *
+ * Consistency: block changes inside the region are reported through
+ * {@link #markChanged(BlockPos)}. A section changed after it was scanned is
+ * scanned again, and the job only finishes in a tick where no scanned section
+ * is stale - so the result matches the world as it was at that tick. If the
+ * region keeps changing, the remaining stale sections are rescanned in a single
+ * tick after a few rounds.
+ *
+ * Without a section store the job is an in-memory copy (see
+ * AsyncStructureCapture.queueCopy): scanned sections are kept as compact
+ * palette sections instead of being hashed and stored, nothing is written to
+ * disk, and the sections are handed over as clipboard contents.
+ */
+public class CaptureJob {
+    private static final int MAX_RESCAN_ROUNDS = 8;
+    
+    private final ServerWorld world;
+    private final ServerSectionAccess access;
+    private final BlockPos origin;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final String name;
+    private final String playerName;
+    private final SectionStore store; // null for an in-memory copy
+    private final SectionStore.Pins pins; // keeps stored sections from garbage collection until the manifest is written
+    
+    private final int sectionsX;
+    private final int sectionsZ;
+    private final int totalSections;
+    private final Map<Long, StructureManifest.SectionRef> previousRefs;
+    private final Map<Long, StructureManifest.SectionRef> reusedRefs = new HashMap<>();
+    private final Map<Long, CompletableFuture<StructureManifest.SectionRef>> encoding = new HashMap<>();
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+    private final ArrayDeque<Long> rescanQueue = new ArrayDeque<>();
+    private final BlockState[] scratch = new BlockState[StructureSection.VOLUME];
+    private final CompletableFuture<StructureManifest> result = new CompletableFuture<>();
+    private final Map<Long, StructureSection> copied = new HashMap<>();
+    private final CompletableFuture<StructureClipboard.Contents> copy = new CompletableFuture<>();
+    private final ServerBossBar bossBar;
+    private final StructureSaveEvent event = new StructureSaveEvent();
+    
+    private int cursor = 0;
+    private int rounds = 0;
+    private int rescanned = 0;
+    private long scanNanos = 0;
+    
+    CaptureJob(ServerWorld world, BlockPos origin, int sizeX, int sizeY, int sizeZ, String name,
+               ServerPlayerEntity player, StructureManifest previous, SectionStore store) {
+        this.world = world;
+        this.access = new ServerSectionAccess(world);
+        this.origin = origin;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.name = name;
+        this.playerName = player != null ? player.getName().getString() : null;
+        this.store = store;
+        this.pins = store != null ? store.pins() : null;
+        
+        this.sectionsX = (sizeX + 15) >> 4;
+        this.sectionsZ = (sizeZ + 15) >> 4;
+        this.totalSections = sectionsX * ((sizeY + 15) >> 4) * sectionsZ;
+        this.previousRefs = store != null
+            ? SectionCapture.indexReusable(previous, sizeX, sizeY, sizeZ, store, pins) : Map.of();
+        
+        this.bossBar = new ServerBossBar(progressText(0), BossBar.Color.BLUE, BossBar.Style.PROGRESS);
+        this.bossBar.setPercent(0);
+        if (player != null) {
+            bossBar.addPlayer(player);
+        }
+        event.begin();
+    }
+    
+    /**
+     * Completes on the server thread with the saved manifest (null for an in-memory copy),
+     * or exceptionally on failure
+     */
+    public CompletableFuture<StructureManifest> getResult() {
+        return result;
+    }
+    
+    /**
+     * Completes on the server thread with the copied sections of an in-memory copy
+     * Never completes normally for a capture that is saved to disk.
+     */
+    public CompletableFuture<StructureClipboard.Contents> getCopy() {
+        return copy;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public ServerWorld getWorld() {
+        return world;
+    }
+    
+    /**
+     * Fraction of the region scanned at least once (0-1)
+     */
+    public float getProgress() {
+        return totalSections == 0 ? 1 : (float) cursor / totalSections;
+    }
+    
+    /**
+     * Sections still to be scanned, including stale ones waiting for a rescan
+     */
+    public int getRemainingSections() {
+        return totalSections - cursor + rescanQueue.size() + stale.size();
+    }
+    
+    /**
+     * Record a block change; sections not scanned yet are unaffected
+     */
+    void markChanged(BlockPos pos) {
+        int localX = pos.getX() - origin.getX();
+        int localY = pos.getY() - origin.getY();
+        int localZ = pos.getZ() - origin.getZ();
+        if (localX < 0 || localY < 0 || localZ < 0 || localX >= sizeX || localY >= sizeY || localZ >= sizeZ) {
+            return;
+        }
+        int sx = localX >> 4;
+        int sy = localY >> 4;
+        int sz = localZ >> 4;
+        if (sectionIndex(sx, sy, sz) < cursor) {
+            stale.add(BlockPos.asLong(sx, sy, sz));
+        }
+    }
+    
+    /**
+     * Do as much work as fits before the deadline
+     *
+     * @return true once the job has finished (successfully or not)
+     */
+    boolean step(long deadline) {
+        try {
+            long start = System.nanoTime();
+            boolean finished = scan(deadline);
+            scanNanos += System.nanoTime() - start;
+            
+            if (finished) {
+                finish();
+                return true;
+            }
+            bossBar.setPercent(getProgress());
+            bossBar.setName(progressText(getProgress()));
+            return false;
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+            return true;
+        }
+    }
+    
+    /**
+     * Cancel the job without writing anything
+     */
+    void cancel() {
+        encoding.values().forEach(future -> future.cancel(false));
+        releasePins();
+        bossBar.clearPlayers();
+        result.cancel(false);
+        copy.cancel(false);
+    }
+    
+    private boolean scan(long deadline) throws IOException {
+        // First pass over the whole region
+        while (cursor < totalSections) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            int index = cursor;
+            scanSection(index % sectionsX, index / (sectionsX * sectionsZ), (index / sectionsX) % sectionsZ);
+            cursor++;
+        }
+        
+        // Rescan sections that changed after they were scanned
+        while (true) {
+            if (rescanQueue.isEmpty()) {
+                if (stale.isEmpty()) {
+                    break;
+                }
+                rescanQueue.addAll(stale);
+                stale.clear();
+                rounds++;
+            }
+            // After enough rounds, stop letting ticks pass so the region can settle
+            if (rounds <= MAX_RESCAN_ROUNDS && System.nanoTime() >= deadline) {
+                return false;
+            }
+            long key = rescanQueue.poll();
+            scanSection(BlockPos.unpackLongX(key), BlockPos.unpackLongY(key), BlockPos.unpackLongZ(key));
+            rescanned++;
+        }
+        
+        // Wait for encoders without blocking the tick, unless the region never settled
+        if (rounds <= MAX_RESCAN_ROUNDS) {
+            for (CompletableFuture<StructureManifest.SectionRef> future : encoding.values()) {
+                if (!future.isDone()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    private void scanSection(int sx, int sy, int sz) throws IOException {
+        long fingerprint = SectionCapture.scanSection(access, origin, sizeX, sizeY, sizeZ, sx, sy, sz, scratch);
+        long key = BlockPos.asLong(sx, sy, sz);
+        if (store == null) {
+            if (SectionCapture.isEmpty(scratch)) {
+                copied.remove(key);
+            } else {
+                copied.put(key, StructureSection.fromStates(scratch));
+            }
+            return;
+        }
+        
+        CompletableFuture<StructureManifest.SectionRef> superseded = encoding.remove(key);
+        if (superseded != null) {
+            superseded.cancel(false);
+        }
+        reusedRefs.remove(key);
+        
+        StructureManifest.SectionRef previous = previousRefs.get(key);
+        if (previous != null && previous.fingerprint() == fingerprint) {
+            reusedRefs.put(key, previous);
+            return;
+        }
+        if (SectionCapture.isEmpty(scratch)) {
+            return;
+        }
+        SectionCapture.PendingSection pending = new SectionCapture.PendingSection(sx, sy, sz, fingerprint, scratch.clone());
+        encoding.put(key, CompletableFuture.supplyAsync(() -> SectionCapture.encodeAndStore(pending, store, pins),
+            Workers.pool()));
+    }
+    
+    private void finish() throws IOException {
+        if (store == null) {
+            finishCopy();
+            return;
+        }
+        List<StructureManifest.SectionRef> refs = new ArrayList<>(reusedRefs.values());
+        try {
+            for (CompletableFuture<StructureManifest.SectionRef> future : encoding.values()) {
+                refs.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw e;
+        }
+        
+        refs.sort(StructureManifest.SectionRef.ORDER);
+        int blockCount = 0;
+        for (StructureManifest.SectionRef ref : refs) {
+            blockCount += ref.blockCount();
+        }
+        StructureManifest manifest = new StructureManifest(name, sizeX, sizeY, sizeZ, blockCount, refs);
+        File file = StructureManager.writeManifest(manifest);
+        releasePins();
+        
+        ModMetrics.CAPTURE_SCAN.record(scanNanos);
+        ModMetrics.CAPTURES.increment();
+        ModMetrics.BLOCKS_CAPTURED.add(blockCount);
+        
+        event.end();
+        if (event.shouldCommit()) {
+            event.structureName = name;
+            event.player = playerName;
+            event.volume = (long) sizeX * sizeY * sizeZ;
+            event.blockCount = blockCount;
+            event.bytes = file.length();
+            event.commit();
+        }
+        
+        StructureCapsuleMod.LOGGER.info("Saved structure '{}' with {} blocks ({} sections, {} rewritten, {} unchanged, {} rescanned after edits)",
+            name, blockCount, totalSections, encoding.size(), reusedRefs.size(), rescanned);
+        bossBar.clearPlayers();
+        result.complete(manifest);
+    }
+    
+    /**
+     * Hand the copied sections over in their compact form
+     */
+    private void finishCopy() {
+        StructureClipboard.Contents contents = new StructureClipboard.Contents(sizeX, sizeY, sizeZ, Map.copyOf(copied));
+        copied.clear();
+        
+        ModMetrics.CAPTURE_SCAN.record(scanNanos);
+        ModMetrics.CAPTURES.increment();
+        ModMetrics.BLOCKS_CAPTURED.add(contents.getBlockCount());
+        
+        StructureCapsuleMod.LOGGER.info("Copied '{}' with {} blocks to memory ({} sections, {} rescanned after edits)",
+            name, contents.getBlockCount(), totalSections, rescanned);
+        bossBar.clearPlayers();
+        copy.complete(contents);
+        result.complete(null);
+    }
+    
+    private void fail(Exception e) {
+        StructureCapsuleMod.LOGGER.error("Failed to save structure: {}", name, e);
+        encoding.values().forEach(future -> future.cancel(false));
+        releasePins();
+        bossBar.clearPlayers();
+        result.completeExceptionally(e);
+        copy.completeExceptionally(e);
+    }
+    
+    private void releasePins() {
+        if (pins != null) {
+            pins.close();
+        }
+    }
+    
+    private int sectionIndex(int sx, int sy, int sz) {
+        return (sy * sectionsZ + sz) * sectionsX + sx;
+    }
+    
+    private Text progressText(float progress) {
+        return Text.translatable("structurecapsule.capture.progress", name, Math.round(progress * 100));
+    }
+}
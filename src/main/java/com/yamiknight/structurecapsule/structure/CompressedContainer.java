@@ -0,0 +1,248 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.util.Workers;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Block-compressed container for structure files (pigz-style)
+ *
+ * A single gzip stream can only be produced and consumed on one core. This
+ * container splits the uncompressed NBT payload into fixed-size blocks that
+ * are raw-deflated independently, so both directions run in parallel on the
+ * shared worker pool.
+ *
+ * Layout (big-endian):
+ *   int    magic        "SCPZ"
+ *   byte   version      1
+ *   int    blockSize    uncompressed bytes per block (last block may be shorter)
+ *   int    blockCount
+ *   per block: int rawLength, int compressedLength, int crc32 (of raw bytes)
+ *   block payloads, concatenated in order
+ *
+ * Files that do not start with the magic are treated as legacy gzip NBT, so
+ * existing libraries keep loading unchanged.
+ *
+ * Files may come from a remote repository, so every count and length in the
+ * header is checked against the file size before anything is allocated.
+ */
+public class CompressedContainer {
+    public static final int MAGIC = 0x5343505A; // "SCPZ"
+    private static final byte VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 1 + 4 + 4;
+    private static final int BLOCK_TABLE_ENTRY_BYTES = 4 + 4 + 4;
+    // Far above any manifest or section; legacy block lists are plain gzip and never containers
+    private static final long MAX_PAYLOAD_BYTES = 256L * 1024 * 1024;
+    // Deflate cannot expand more than about 1032:1
+    private static final long MAX_DEFLATE_RATIO = 1032;
+    
+    /**
+     * Serialize an NBT compound and write it as a block-compressed container
+     *
+     * @param level Deflate level 0-9 (or -1 for the zlib default)
+     * @param blockSize Uncompressed bytes per independently compressed block
+     */
+    public static void write(NbtCompound nbt, Path path, int level, int blockSize) throws IOException {
+        // Serialize once into memory; compression then works on slices of this array
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(raw)) {
+            NbtIo.write(nbt, out);
+        }
+        byte[] payload = raw.toByteArray();
+        
+        int blockCount = Math.max(1, (payload.length + blockSize - 1) / blockSize);
+        List<ForkJoinTask<CompressedBlock>> tasks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            int offset = i * blockSize;
+            int length = Math.min(blockSize, payload.length - offset);
+            tasks.add(Workers.pool().submit(() -> compressBlock(payload, offset, length, level)));
+        }
+        
+        // Unique temp name so concurrent writers of the same path never share a file
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                List<CompressedBlock> blocks = new ArrayList<>(blockCount);
+                for (ForkJoinTask<CompressedBlock> task : tasks) {
+                    blocks.add(task.join());
+                }
+                
+                out.writeInt(MAGIC);
+                out.writeByte(VERSION);
+                out.writeInt(blockSize);
+                out.writeInt(blockCount);
+                for (CompressedBlock block : blocks) {
+                    out.writeInt(block.rawLength);
+                    out.writeInt(block.data.length);
+                    out.writeInt(block.crc);
+                }
+                for (CompressedBlock block : blocks) {
+                    out.write(block.data);
+                }
+            }
+            // Replace atomically so a crash mid-write never leaves a truncated structure
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // Only left behind if writing or the move failed
+            Files.deleteIfExists(tmp);
+        }
+    }
+    
+    /**
+     * Read a structure file, auto-detecting container vs. legacy gzip NBT
+     */
+    public static NbtCompound read(Path path) throws IOException {
+        if (!isContainer(path)) {
+            return NbtIo.readCompressed(path.toFile());
+        }
+        
+        byte[] file = Files.readAllBytes(path);
+        if (file.length < HEADER_BYTES) {
+            throw new IOException("Truncated structure container: " + path.getFileName());
+        }
+        ByteBuffer header = ByteBuffer.wrap(file);
+        header.getInt(); // magic
+        byte version = header.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported structure container version " + version);
+        }
+        header.getInt(); // blockSize, informational
+        int blockCount = header.getInt();
+        if (blockCount < 0 || HEADER_BYTES + (long) blockCount * BLOCK_TABLE_ENTRY_BYTES > file.length) {
+            throw new IOException("Invalid block count " + blockCount + " in structure container: " + path.getFileName());
+        }
+        
+        int[] rawLengths = new int[blockCount];
+        int[] compressedLengths = new int[blockCount];
+        int[] crcs = new int[blockCount];
+        int[] rawOffsets = new int[blockCount];
+        int[] fileOffsets = new int[blockCount];
+        
+        long rawTotal = 0;
+        long fileOffset = HEADER_BYTES + (long) blockCount * BLOCK_TABLE_ENTRY_BYTES;
+        for (int i = 0; i < blockCount; i++) {
+            rawLengths[i] = header.getInt();
+            compressedLengths[i] = header.getInt();
+            crcs[i] = header.getInt();
+            if (rawLengths[i] < 0 || compressedLengths[i] < 0
+                    || rawLengths[i] > compressedLengths[i] * MAX_DEFLATE_RATIO + 64) {
+                throw new IOException("Invalid block length in structure container: " + path.getFileName());
+            }
+            // Both totals were checked against their limits, so they still fit an int here
+            rawOffsets[i] = (int) rawTotal;
+            fileOffsets[i] = (int) fileOffset;
+            rawTotal += rawLengths[i];
+            fileOffset += compressedLengths[i];
+            if (fileOffset > file.length) {
+                throw new IOException("Truncated structure container: " + path.getFileName());
+            }
+            if (rawTotal > MAX_PAYLOAD_BYTES) {
+                throw new IOException("Structure container too large: " + path.getFileName());
+            }
+        }
+        
+        // Every block inflates straight into its own slice of the output
+        byte[] payload = new byte[(int) rawTotal];
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(blockCount);
+        for (int i = 0; i < blockCount; i++) {
+            int index = i;
+            tasks.add(Workers.pool().submit(() -> {
+                decompressBlock(file, fileOffsets[index], compressedLengths[index],
+                    payload, rawOffsets[index], rawLengths[index], crcs[index]);
+                return null;
+            }));
+        }
+        for (ForkJoinTask<?> task : tasks) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt structure container: " + path.getFileName(), e);
+            }
+        }
+        
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            return NbtIo.readCompound(in);
+        }
+    }
+    
+    /**
+     * Check the file magic without reading the whole file
+     */
+    public static boolean isContainer(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+    
+    private static CompressedBlock compressBlock(byte[] payload, int offset, int length, int level) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, offset, length);
+        
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(payload, offset, length);
+            deflater.finish();
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return new CompressedBlock(length, out.toByteArray(), (int) crc.getValue());
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static void decompressBlock(byte[] file, int fileOffset, int compressedLength,
+                                        byte[] payload, int rawOffset, int rawLength, int expectedCrc) {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(file, fileOffset, compressedLength);
+            int written = 0;
+            while (written < rawLength) {
+                int n = inflater.inflate(payload, rawOffset + written, rawLength - written);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                written += n;
+            }
+            if (written != rawLength) {
+                throw new IllegalStateException("Block inflated to " + written + " bytes, expected " + rawLength);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid deflate data in structure block", e);
+        } finally {
+            inflater.end();
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(payload, rawOffset, rawLength);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IllegalStateException("Checksum mismatch in structure block");
+        }
+    }
+    
+    private record CompressedBlock(int rawLength, byte[] data, int crc) {
+    }
+}
@@ -0,0 +1,59 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.datafixer.DataFixTypes;
+import net.minecraft.datafixer.Schemas;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtHelper;
+
+/**
+ * Data version stamps on stored structures and DataFixer upgrades of their block states
+ *
+ * Every structure, manifest and section file is stamped with the game's data
+ * version when written. Files without a stamp predate it and were written by
+ * Minecraft 1.21.1. Block states read from an older file are run through the
+ * game's DataFixer (BLOCK_STATE) before they are resolved, so renamed blocks
+ * and properties survive game updates instead of turning into empty cells.
+ */
+public class DataVersions {
+    /**
+     * Version assumed for files written before stamping (1.21.1)
+     */
+    public static final int UNSTAMPED = 3955;
+    
+    /**
+     * Data version of the running game
+     */
+    public static int current() {
+        return SharedConstants.getGameVersion().getSaveVersion().getId();
+    }
+    
+    public static void stamp(NbtCompound nbt) {
+        NbtHelper.putDataVersion(nbt);
+    }
+    
+    /**
+     * Data version a compound was written with
+     */
+    public static int of(NbtCompound nbt) {
+        return NbtHelper.getDataVersion(nbt, UNSTAMPED);
+    }
+    
+    public static boolean isOutdated(int dataVersion) {
+        return dataVersion < current();
+    }
+    
+    /**
+     * Upgrade a stored block id and properties to the running version
+     *
+     * @return A {Name, Properties} compound
+     */
+    static NbtCompound upgradeState(String blockId, NbtCompound properties, int dataVersion) {
+        NbtCompound state = new NbtCompound();
+        state.putString("Name", blockId);
+        if (properties != null && !properties.isEmpty()) {
+            state.put("Properties", properties.copy());
+        }
+        return DataFixTypes.BLOCK_STATE.update(Schemas.getFixer(), state, dataVersion, current());
+    }
+}
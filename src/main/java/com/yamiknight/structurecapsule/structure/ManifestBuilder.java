@@ -0,0 +1,103 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.util.Workers;
+import net.minecraft.block.BlockState;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds a section manifest one section at a time
+ *
+ * For producers that cannot hold the whole structure in memory (schematic
+ * imports): each completed 16^3 section is handed over, encoded and stored on
+ * the worker pool, and only its reference is kept. At most MAX_IN_FLIGHT
+ * sections wait for encoding, so memory stays bounded however large the
+ * structure is. Stored sections stay pinned until the builder is closed.
+ */
+public class ManifestBuilder implements AutoCloseable {
+    private static final int MAX_IN_FLIGHT = 64;
+    
+    private final String name;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final SectionStore store = StructureManager.getSectionStore();
+    private final SectionStore.Pins pins = store.pins();
+    private final Deque<ForkJoinTask<StructureManifest.SectionRef>> inFlight = new ArrayDeque<>();
+    private final List<StructureManifest.SectionRef> refs = new ArrayList<>();
+    
+    public ManifestBuilder(String name, int sizeX, int sizeY, int sizeZ) {
+        this.name = name;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+    }
+    
+    /**
+     * Add one section; the array is owned by the builder afterwards
+     *
+     * @param x Section X in structure-local section coordinates
+     * @param y Section Y in structure-local section coordinates
+     * @param z Section Z in structure-local section coordinates
+     * @param states 4096 states indexed by StructureSection.cellIndex, null for empty cells
+     */
+    public void addSection(int x, int y, int z, BlockState[] states) throws IOException {
+        if (SectionCapture.isEmpty(states)) {
+            return;
+        }
+        while (inFlight.size() >= MAX_IN_FLIGHT) {
+            refs.add(join(inFlight.poll()));
+        }
+        SectionCapture.PendingSection pending = new SectionCapture.PendingSection(x, y, z,
+            SectionCapture.fingerprint(states), states);
+        inFlight.add(Workers.pool().submit(() -> SectionCapture.encodeAndStore(pending, store, pins)));
+    }
+    
+    /**
+     * Wait for the remaining sections and write the manifest as a saved structure
+     */
+    public StructureManifest finish() throws IOException {
+        while (!inFlight.isEmpty()) {
+            refs.add(join(inFlight.poll()));
+        }
+        refs.sort(StructureManifest.SectionRef.ORDER);
+        int blockCount = 0;
+        for (StructureManifest.SectionRef ref : refs) {
+            blockCount += ref.blockCount();
+        }
+        StructureManifest manifest = new StructureManifest(name, sizeX, sizeY, sizeZ, blockCount, refs);
+        StructureManager.writeManifest(manifest);
+        return manifest;
+    }
+    
+    /**
+     * Release the stored sections to garbage collection
+     * Sections still being encoded are waited for, so none is stored after this.
+     */
+    @Override
+    public void close() {
+        while (!inFlight.isEmpty()) {
+            try {
+                inFlight.poll().join();
+            } catch (RuntimeException ignored) {
+                // The import already failed; its sections are garbage either way
+            }
+        }
+        pins.close();
+    }
+    
+    private static StructureManifest.SectionRef join(ForkJoinTask<StructureManifest.SectionRef> task)
+            throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.yamiknight.structurecapsule.structure;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which positions of a structure hold a block, one bit per position
+ *
+ * Kept for each of the four placement facings, in rotated coordinates (as
+ * PlacementPlan.rotatePosition places them): per 16^3 section of the rotated
+ * structure 64 longs, bit index y << 8 | z << 4 | x; sections without blocks
+ * are absent. Built once while the structure is decoded, immutable afterwards.
+ */
+public class OccupancyMap {
+    @SuppressWarnings("unchecked")
+    private final Long2ObjectMap<long[]>[] rotations = new Long2ObjectMap[4]; // by Direction.getHorizontal()
+    
+    private OccupancyMap() {
+    }
+    
+    static OccupancyMap of(int sizeX, int sizeZ, List<StructureData.BlockEntry> blocks) {
+        OccupancyMap map = new OccupancyMap();
+        for (int facing = 0; facing < 4; facing++) {
+            map.rotations[facing] = new Long2ObjectOpenHashMap<>();
+        }
+        long[] lastKey = new long[4];
+        long[][] lastBits = new long[4][];
+        for (StructureData.BlockEntry entry : blocks) {
+            BlockPos pos = entry.pos;
+            int x = pos.getX();
+            int y = pos.getY();
+            int z = pos.getZ();
+            // Blocks mostly come in section order, so the previous section is usually the one to set
+            map.set(Direction.SOUTH, sizeX - 1 - x, y, sizeZ - 1 - z, lastKey, lastBits);
+            map.set(Direction.WEST, z, y, sizeX - 1 - x, lastKey, lastBits);
+            map.set(Direction.NORTH, x, y, z, lastKey, lastBits);
+            map.set(Direction.EAST, sizeZ - 1 - z, y, x, lastKey, lastBits);
+        }
+        return map;
+    }
+    
+    private void set(Direction facing, int x, int y, int z, long[] lastKey, long[][] lastBits) {
+        int f = facing.getHorizontal();
+        long key = BlockPos.asLong(x >> 4, y >> 4, z >> 4);
+        long[] bits = lastBits[f];
+        if (bits == null || lastKey[f] != key) {
+            bits = rotations[f].computeIfAbsent(key, k -> new long[64]);
+            lastKey[f] = key;
+            lastBits[f] = bits;
+        }
+        int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+        bits[bit >> 6] |= 1L << bit;
+    }
+    
+    /**
+     * Fill mask with the cells of a 16^3 box that the structure placed with the
+     * given facing occupies, shifting the (up to eight) rotated sections overlapping
+     * the box into it a row of 16 cells at a time
+     *
+     * @param minX Lowest corner of the box relative to the placement origin
+     * @param mask 64 longs, bit index y << 8 | z << 4 | x within the box
+     * @return Whether any cell is set
+     */
+    public boolean fillMask(Direction facing, int minX, int minY, int minZ, long[] mask) {
+        Long2ObjectMap<long[]> sections = rotations[facing.getHorizontal()];
+        Arrays.fill(mask, 0);
+        boolean any = false;
+        for (int sy = minY >> 4; sy <= (minY + 15) >> 4; sy++) {
+            for (int sz = minZ >> 4; sz <= (minZ + 15) >> 4; sz++) {
+                for (int sx = minX >> 4; sx <= (minX + 15) >> 4; sx++) {
+                    long[] bits = sections.get(BlockPos.asLong(sx, sy, sz));
+                    if (bits == null) {
+                        continue;
+                    }
+                    // Section cells shifted by (dx, dy, dz) are cells of the box
+                    int dx = (sx << 4) - minX;
+                    int dy = (sy << 4) - minY;
+                    int dz = (sz << 4) - minZ;
+                    for (int y = Math.max(0, -dy); y <= Math.min(15, 15 - dy); y++) {
+                        for (int z = Math.max(0, -dz); z <= Math.min(15, 15 - dz); z++) {
+                            int row = (y << 4) | z;
+                            int cells = (int) (bits[row >> 2] >>> ((row & 3) << 4)) & 0xFFFF;
+                            cells = dx >= 0 ? (cells << dx) & 0xFFFF : cells >>> -dx;
+                            if (cells == 0) {
+                                continue;
+                            }
+                            int target = ((y + dy) << 4) | (z + dz);
+                            mask[target >> 2] |= (long) cells << ((target & 3) << 4);
+                            any = true;
+                        }
+                    }
+                }
+            }
+        }
+        return any;
+    }
+    
+    /**
+     * Number of sections holding blocks, per facing
+     */
+    public int getSectionCount() {
+        return rotations[0].size();
+    }
+}
@@ -0,0 +1,260 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
+import com.yamiknight.structurecapsule.repository.StructureRepository;
+import com.yamiknight.structurecapsule.util.Workers;
+import net.minecraft.nbt.NbtCompound;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read-through cache of a remote StructureRepository in the local structure directory
+ *
+ * Fetched manifests are written to saved_structures/ like local saves, and
+ * their sections into the shared section store before the manifest appears,
+ * so everything keeps loading from disk while the repository is unreachable.
+ * The ETag of each fetched manifest is kept in saved_structures/.remote/.
+ *
+ * Every fetch runs on the worker pool; callers get a future and never wait on
+ * the network themselves. A structure missing on disk is fetched in full, a
+ * cached manifest older than the refresh interval is served as it is and
+ * revalidated with a conditional request in the background. Saving a structure locally
+ * drops its ETag, after which the local copy is never replaced from the remote.
+ */
+class RemoteStructures {
+    private final StructureRepository repository;
+    private final Path structuresDir;
+    private final Path etagDir;
+    private final SectionStore sections;
+    private final long refreshNanos;
+    private final Map<String, Long> validated = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+    private volatile Set<String> index = Set.of();
+    private volatile long indexedAt;
+    private volatile CompletableFuture<Void> indexing;
+    
+    RemoteStructures(StructureRepository repository, Path structuresDir, SectionStore sections, int refreshSeconds) {
+        this.repository = repository;
+        this.structuresDir = structuresDir;
+        this.etagDir = structuresDir.resolve(".remote");
+        this.sections = sections;
+        this.refreshNanos = Math.max(1, refreshSeconds) * 1_000_000_000L;
+        this.indexedAt = System.nanoTime() - refreshNanos;
+    }
+    
+    /**
+     * Bring the cached copy of a structure up to date in the background
+     *
+     * @param key Sanitized structure name
+     * @return Completes once a structure that was not on disk has been fetched (or
+     *         could not be); already complete if a copy is on disk
+     */
+    CompletableFuture<Void> refresh(String key) {
+        Path manifest = structuresDir.resolve(key + ".nbt");
+        Long last = validated.get(key);
+        boolean stale = last == null || System.nanoTime() - last > refreshNanos;
+        if (!Files.exists(manifest)) {
+            // Not cached (or recently found missing remotely)
+            CompletableFuture<Void> running = inFlight.get(key);
+            if (running != null) {
+                return running;
+            }
+            return stale ? run(key) : CompletableFuture.completedFuture(null);
+        }
+        if (stale && Files.exists(etagPath(key))) {
+            run(key);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Whether a fetch of the structure is running
+     */
+    boolean isFetching(String key) {
+        return inFlight.containsKey(key);
+    }
+    
+    /**
+     * Whether the repository lists a structure (as of the last listing)
+     */
+    boolean exists(String key) {
+        refreshIndex();
+        return index.contains(key);
+    }
+    
+    /**
+     * Names the repository lists (as of the last listing)
+     */
+    Set<String> list() {
+        refreshIndex();
+        return index;
+    }
+    
+    /**
+     * A structure was saved locally; it no longer follows the remote copy
+     */
+    void forget(String key) {
+        validated.remove(key);
+        try {
+            Files.deleteIfExists(etagPath(key));
+        } catch (IOException e) {
+            StructureCapsuleMod.LOGGER.warn("Could not drop repository ETag of '{}'", key, e);
+        }
+    }
+    
+    /**
+     * One fetch per structure at a time; later callers share the running one
+     */
+    private CompletableFuture<Void> run(String key) {
+        CompletableFuture<Void> created = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(key, created);
+        if (running != null) {
+            return running;
+        }
+        Runnable fetch = () -> {
+            try {
+                fetch(key);
+            } finally {
+                inFlight.remove(key, created);
+                created.complete(null);
+            }
+        };
+        Workers.pool().execute(fetch);
+        return created;
+    }
+    
+    private void fetch(String key) {
+        Path manifest = structuresDir.resolve(key + ".nbt");
+        Path etagPath = etagPath(key);
+        try {
+            String etag = Files.exists(manifest) && Files.exists(etagPath)
+                ? Files.readString(etagPath, StandardCharsets.UTF_8) : null;
+            boolean cached = etag != null;
+            if (etag != null && etag.isEmpty()) {
+                etag = null; // Fetched without a validator: fetch in full
+            }
+            StructureRepository.ManifestResponse response = repository.fetchManifest(key, etag);
+            switch (response.status()) {
+                case NOT_MODIFIED -> ModMetrics.REMOTE_NOT_MODIFIED.increment();
+                case NOT_FOUND -> {
+                    // Withdrawn from the repository: drop the cached copy, keep local saves
+                    if (cached) {
+                        Files.deleteIfExists(manifest);
+                        Files.deleteIfExists(etagPath);
+                        StructureManager.invalidate(key);
+                        StructureCapsuleMod.LOGGER.info("Structure '{}' was removed from the repository", key);
+                    }
+                }
+                case OK -> {
+                    store(key, response.body(), response.etag());
+                    StructureManager.invalidate(key);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            ModMetrics.REMOTE_ERRORS.increment();
+            StructureCapsuleMod.LOGGER.warn("Could not fetch structure '{}' from the repository{}", key,
+                Files.exists(manifest) ? ", using the cached copy" : "", e);
+        } finally {
+            // Failures back off for the refresh interval too, so an offline repository costs one timeout
+            validated.put(key, System.nanoTime());
+        }
+    }
+    
+    /**
+     * Write a fetched manifest into the cache, after all of its sections
+     */
+    private void store(String key, byte[] body, String etag) throws IOException {
+        ModMetrics.REMOTE_FETCHES.increment();
+        ModMetrics.REMOTE_BYTES.add(body.length);
+        Files.createDirectories(etagDir);
+        Path temp = Files.createTempFile(etagDir, key, ".tmp");
+        try (SectionStore.Pins pins = sections.pins()) {
+            Files.write(temp, body);
+            NbtCompound nbt = CompressedContainer.read(temp);
+            if (StructureManifest.isManifest(nbt)) {
+                fetchSections(StructureManifest.fromNbt(nbt), pins);
+            }
+            Files.move(temp, structuresDir.resolve(key + ".nbt"), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // An empty ETag still marks the manifest as fetched; without a validator refreshes fetch in full
+        Files.writeString(etagPath(key), etag != null ? etag : "", StandardCharsets.UTF_8);
+        StructureCapsuleMod.LOGGER.info("Fetched structure '{}' from the repository", key);
+    }
+    
+    /**
+     * Download the sections the store does not have yet, in parallel
+     * Every section of the manifest is pinned, including those already stored.
+     */
+    private void fetchSections(StructureManifest manifest, SectionStore.Pins pins) throws IOException {
+        List<CompletableFuture<Void>> downloads = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (StructureManifest.SectionRef ref : manifest.getSections()) {
+            if (!seen.add(ref.hash())) {
+                continue;
+            }
+            pins.add(ref.hash());
+            if (sections.contains(ref.hash())) {
+                continue;
+            }
+            downloads.add(CompletableFuture.runAsync(() -> {
+                try {
+                    if (!sections.fetch(ref.hash(), pins)) {
+                        throw new IOException("Repository is missing section " + ref.hash());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, Workers.pool()));
+        }
+        try {
+            CompletableFuture.allOf(downloads.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException("Failed to fetch sections of " + manifest.getName(), e.getCause());
+        }
+    }
+    
+    /**
+     * Re-list the repository in the background once the listing is older than the refresh interval
+     */
+    private synchronized void refreshIndex() {
+        if (indexing != null || System.nanoTime() - indexedAt < refreshNanos) {
+            return;
+        }
+        indexing = CompletableFuture.runAsync(() -> {
+            try {
+                index = Set.copyOf(repository.listStructures());
+            } catch (IOException e) {
+                ModMetrics.REMOTE_ERRORS.increment();
+                StructureCapsuleMod.LOGGER.warn("Could not list the structure repository", e);
+            } finally {
+                synchronized (this) {
+                    indexedAt = System.nanoTime();
+                    indexing = null;
+                }
+            }
+        }, Workers.pool());
+    }
+    
+    private Path etagPath(String key) {
+        return etagDir.resolve(key + ".etag");
+    }
+}
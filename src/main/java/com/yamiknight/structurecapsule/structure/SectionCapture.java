@@ -0,0 +1,277 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.util.Workers;
+import com.yamiknight.structurecapsule.world.SectionAccess;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Section-by-section capture of a world region into the SectionStore
+ *
+ * The region is walked in structure-local 16^3 sections. Every section is
+ * read straight from the chunk sections and fingerprinted (a 64-bit hash of
+ * each state's registry id and properties; raw state ids are not stable across
+ * mod sets). When a previous manifest of the same structure is given,
+ * sections whose fingerprint is unchanged keep their old reference; only
+ * changed sections are encoded, hashed, compressed and written.
+ *
+ * World reads go through a SectionAccess and must happen on its thread (the
+ * server thread for a live world); encoding and writing of changed sections
+ * run on the worker pool.
+ */
+public class SectionCapture {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private static final Map<BlockState, Long> STATE_KEYS = new ConcurrentHashMap<>();
+    
+    /**
+     * Outcome of a capture: the new manifest plus how much work was skipped
+     */
+    public record Result(StructureManifest manifest, int sectionsScanned, int sectionsRewritten, int sectionsReused) {
+    }
+    
+    /**
+     * Capture a region into the store
+     *
+     * @param origin Minimum corner of the region
+     * @param previous Manifest of the previous save of this structure, or null for a full capture
+     * @param pins Pins every stored or reused section until the caller has written the manifest
+     */
+    public static Result capture(SectionAccess world, BlockPos origin, int sizeX, int sizeY, int sizeZ,
+                                 String name, StructureManifest previous, SectionStore store,
+                                 SectionStore.Pins pins) throws IOException {
+        Map<Long, StructureManifest.SectionRef> previousRefs =
+            indexReusable(previous, sizeX, sizeY, sizeZ, store, pins);
+        
+        int sectionsX = (sizeX + 15) >> 4;
+        int sectionsY = (sizeY + 15) >> 4;
+        int sectionsZ = (sizeZ + 15) >> 4;
+        
+        List<StructureManifest.SectionRef> refs = new ArrayList<>();
+        List<PendingSection> pending = new ArrayList<>();
+        BlockState[] scratch = new BlockState[StructureSection.VOLUME];
+        int scanned = 0;
+        int reused = 0;
+        
+        for (int sy = 0; sy < sectionsY; sy++) {
+            for (int sz = 0; sz < sectionsZ; sz++) {
+                for (int sx = 0; sx < sectionsX; sx++) {
+                    long fingerprint = scanSection(world, origin, sizeX, sizeY, sizeZ, sx, sy, sz, scratch);
+                    scanned++;
+                    
+                    StructureManifest.SectionRef old = previousRefs.get(BlockPos.asLong(sx, sy, sz));
+                    if (old != null && old.fingerprint() == fingerprint) {
+                        refs.add(old);
+                        reused++;
+                        continue;
+                    }
+                    if (isEmpty(scratch)) {
+                        continue;
+                    }
+                    pending.add(new PendingSection(sx, sy, sz, fingerprint, scratch.clone()));
+                }
+            }
+        }
+        
+        refs.addAll(encodeAndStore(pending, store, pins));
+        
+        refs.sort(StructureManifest.SectionRef.ORDER);
+        int blockCount = 0;
+        for (StructureManifest.SectionRef ref : refs) {
+            blockCount += ref.blockCount();
+        }
+        StructureManifest manifest = new StructureManifest(name, sizeX, sizeY, sizeZ, blockCount, refs);
+        return new Result(manifest, scanned, pending.size(), reused);
+    }
+    
+    /**
+     * Read one structure-local section of the region into out (null = air) and
+     * return its fingerprint. Cells outside the region or the world are empty.
+     *
+     * @throws IOException If part of the section lies in a chunk that is not loaded
+     */
+    public static long scanSection(SectionAccess world, BlockPos origin, int sizeX, int sizeY, int sizeZ,
+                                   int sx, int sy, int sz, BlockState[] out) throws IOException {
+        long hash = FNV_OFFSET;
+        // An unaligned structure section spans up to 8 world sections; rows switch between two of them
+        SectionAccess.SectionReader section = null;
+        long sectionKey = Long.MIN_VALUE;
+        // Neighbouring cells mostly repeat a state, so remember the last key looked up
+        BlockState lastState = null;
+        long lastKey = 0;
+        
+        for (int ly = 0; ly < 16; ly++) {
+            int localY = (sy << 4) + ly;
+            int worldY = origin.getY() + localY;
+            boolean rowInside = localY < sizeY && !world.isOutOfHeightLimit(worldY);
+            
+            for (int lz = 0; lz < 16; lz++) {
+                int localZ = (sz << 4) + lz;
+                int worldZ = origin.getZ() + localZ;
+                
+                for (int lx = 0; lx < 16; lx++) {
+                    int localX = (sx << 4) + lx;
+                    int cell = StructureSection.cellIndex(lx, ly, lz);
+                    
+                    if (!rowInside || localZ >= sizeZ || localX >= sizeX) {
+                        out[cell] = null;
+                        hash = mix(hash, 0);
+                        continue;
+                    }
+                    
+                    int worldX = origin.getX() + localX;
+                    long key = ChunkSectionPos.asLong(worldX >> 4, worldY >> 4, worldZ >> 4);
+                    if (key != sectionKey) {
+                        // Unloaded chunks read as air, which must not be saved as the region's contents
+                        if (!world.isChunkLoaded(worldX >> 4, worldZ >> 4)) {
+                            throw new IOException("Chunk " + (worldX >> 4) + ", " + (worldZ >> 4)
+                                + " of the region is not loaded");
+                        }
+                        sectionKey = key;
+                        section = world.readSection(worldX >> 4, worldY >> 4, worldZ >> 4);
+                    }
+                    
+                    BlockState state = section.get(worldX & 15, worldY & 15, worldZ & 15);
+                    
+                    // Skip air blocks to save space
+                    out[cell] = state.isAir() ? null : state;
+                    if (state != lastState) {
+                        lastState = state;
+                        lastKey = state.isAir() ? 0 : stateKey(state);
+                    }
+                    hash = mix(hash, lastKey);
+                }
+            }
+        }
+        
+        // 0 is reserved for "no fingerprint" (legacy manifests)
+        return hash == 0 ? 1 : hash;
+    }
+    
+    /**
+     * Fingerprint of already-captured section contents, matching scanSection
+     */
+    public static long fingerprint(BlockState[] states) {
+        long hash = FNV_OFFSET;
+        BlockState lastState = null;
+        long lastKey = 0;
+        for (BlockState state : states) {
+            if (state != lastState) {
+                lastState = state;
+                lastKey = state == null ? 0 : stateKey(state);
+            }
+            hash = mix(hash, lastKey);
+        }
+        return hash == 0 ? 1 : hash;
+    }
+    
+    /**
+     * Fingerprint key of a state, from its registry id and properties (as in
+     * Block{minecraft:oak_stairs}[facing=north,...]) so it survives mod set changes
+     */
+    static long stateKey(BlockState state) {
+        Long key = STATE_KEYS.get(state);
+        if (key == null) {
+            long hash = FNV_OFFSET;
+            String name = state.toString();
+            for (int i = 0; i < name.length(); i++) {
+                hash = mix(hash, name.charAt(i));
+            }
+            key = hash;
+            STATE_KEYS.put(state, key);
+        }
+        return key;
+    }
+    
+    /**
+     * Encode, hash and store a batch of scanned sections in parallel
+     */
+    static List<StructureManifest.SectionRef> encodeAndStore(List<PendingSection> pending, SectionStore store,
+                                                             SectionStore.Pins pins) throws IOException {
+        List<ForkJoinTask<StructureManifest.SectionRef>> tasks = new ArrayList<>(pending.size());
+        for (PendingSection section : pending) {
+            tasks.add(Workers.pool().submit(() -> encodeAndStore(section, store, pins)));
+        }
+        
+        List<StructureManifest.SectionRef> refs = new ArrayList<>(pending.size());
+        for (ForkJoinTask<StructureManifest.SectionRef> task : tasks) {
+            try {
+                refs.add(task.join());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return refs;
+    }
+    
+    /**
+     * Encode, hash and store one scanned section; IO failures are rethrown unchecked
+     * so this can run directly as a worker task
+     */
+    static StructureManifest.SectionRef encodeAndStore(PendingSection section, SectionStore store,
+                                                       SectionStore.Pins pins) {
+        StructureSection encoded = StructureSection.fromStates(section.states());
+        try {
+            store.put(encoded, pins);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new StructureManifest.SectionRef(section.x(), section.y(), section.z(),
+            encoded.getHash(), encoded.getBlockCount(), section.fingerprint());
+    }
+    
+    /**
+     * Previous refs that can be reused: same structure size, fingerprinted and still stored
+     * Reusable sections are pinned, so they cannot be collected before the new manifest is written.
+     */
+    static Map<Long, StructureManifest.SectionRef> indexReusable(StructureManifest previous,
+                                                               int sizeX, int sizeY, int sizeZ,
+                                                               SectionStore store, SectionStore.Pins pins) {
+        Map<Long, StructureManifest.SectionRef> index = new HashMap<>();
+        if (previous == null || previous.getSizeX() != sizeX || previous.getSizeY() != sizeY
+                || previous.getSizeZ() != sizeZ) {
+            return index;
+        }
+        for (StructureManifest.SectionRef ref : previous.getSections()) {
+            if (ref.fingerprint() == 0) {
+                continue;
+            }
+            pins.add(ref.hash());
+            if (store.contains(ref.hash())) {
+                index.put(BlockPos.asLong(ref.x(), ref.y(), ref.z()), ref);
+            }
+        }
+        return index;
+    }
+    
+    static boolean isEmpty(BlockState[] states) {
+        for (BlockState state : states) {
+            if (state != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static long mix(long hash, long value) {
+        hash ^= value;
+        return hash * FNV_PRIME;
+    }
+    
+    /**
+     * A scanned section waiting to be encoded
+     */
+    record PendingSection(int x, int y, int z, long fingerprint, BlockState[] states) {
+    }
+}
@@ -0,0 +1,303 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
+import com.yamiknight.structurecapsule.repository.StructureRepository;
+import net.minecraft.nbt.NbtCompound;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed store for structure sections
+ *
+ * Each distinct 16^3 section is written once to sections/<aa>/<hash>.sec and
+ * referenced by hash from structure manifests. Decoded sections are kept in a
+ * shared LRU cache, so structures that reuse the same walls or floors also
+ * share the decoded copies in memory. With a remote repository set, sections
+ * missing on disk are downloaded, verified against their hash and kept.
+ *
+ * Sections are stored before the manifest that references them is written, so
+ * writers hold {@link Pins} on them until then; garbage collection keeps pinned
+ * sections and those released while it was running.
+ */
+public class SectionStore {
+    private static final String SECTION_EXTENSION = ".sec";
+    
+    private final Path root;
+    private final Map<String, StructureSection> cache;
+    private volatile StructureRepository remote;
+    
+    // Pin count per hash; garbage collection deletes a file only while its hash has no entry here
+    private final Map<String, Integer> pinned = new ConcurrentHashMap<>();
+    private final Set<String> releasedDuringCollection = ConcurrentHashMap.newKeySet();
+    private volatile boolean collecting = false;
+    
+    public SectionStore(Path root) {
+        this.root = root;
+        int capacity = Math.max(16, ModConfig.getInstance().sectionCacheSize);
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StructureSection> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    /**
+     * Store a section if it is not already present
+     *
+     * @return The section's content hash
+     */
+    public String put(StructureSection section) throws IOException {
+        return put(section, null);
+    }
+    
+    /**
+     * Store a section if it is not already present, pinning it first
+     *
+     * @param pins Pins of the write the section belongs to, may be null
+     * @return The section's content hash
+     */
+    public String put(StructureSection section, Pins pins) throws IOException {
+        String hash = section.getHash();
+        Path path = pathFor(hash);
+        if (pins != null) {
+            pins.add(hash);
+        }
+        
+        // Content-addressed: an existing file with this name already has these contents
+        if (!Files.exists(path)) {
+            Files.createDirectories(path.getParent());
+            ModConfig config = ModConfig.getInstance();
+            CompressedContainer.write(section.toNbt(), path, config.compressionLevel,
+                Math.max(16, config.compressionBlockSizeKiB) * 1024);
+            ModMetrics.BYTES_WRITTEN.add(Files.size(path));
+        }
+        
+        synchronized (cache) {
+            cache.putIfAbsent(hash, section);
+        }
+        return hash;
+    }
+    
+    /**
+     * Get a decoded section by hash, from cache or disk
+     *
+     * @return The section, or null if it is not in the store
+     */
+    public StructureSection get(String hash) throws IOException {
+        synchronized (cache) {
+            StructureSection cached = cache.get(hash);
+            if (cached != null) {
+                ModMetrics.CACHE_HITS.increment();
+                return cached;
+            }
+        }
+        ModMetrics.CACHE_MISSES.increment();
+        
+        Path path = pathFor(hash);
+        if (!Files.exists(path) && !fetch(hash)) {
+            return null;
+        }
+        NbtCompound nbt = CompressedContainer.read(path);
+        ModMetrics.BYTES_READ.add(Files.size(path));
+        StructureSection section = StructureSection.fromNbt(nbt);
+        
+        synchronized (cache) {
+            StructureSection raced = cache.putIfAbsent(hash, section);
+            return raced != null ? raced : section;
+        }
+    }
+    
+    /**
+     * Repository to download missing sections from, or null for local only
+     */
+    public void setRemote(StructureRepository remote) {
+        this.remote = remote;
+    }
+    
+    /**
+     * Make sure a section is on disk, downloading it from the remote repository if needed
+     *
+     * @return Whether the section is now stored
+     */
+    boolean fetch(String hash) throws IOException {
+        return fetch(hash, null);
+    }
+    
+    /**
+     * Make sure a section is on disk, pinning it first
+     *
+     * @param pins Pins of the write the section belongs to, may be null
+     * @return Whether the section is now stored
+     */
+    boolean fetch(String hash, Pins pins) throws IOException {
+        Path path = pathFor(hash);
+        if (pins != null) {
+            pins.add(hash);
+        }
+        StructureRepository repository = remote;
+        if (Files.exists(path) || repository == null) {
+            return Files.exists(path);
+        }
+        
+        byte[] bytes = repository.fetchSection(hash);
+        if (bytes == null) {
+            return false;
+        }
+        ModMetrics.REMOTE_FETCHES.increment();
+        ModMetrics.REMOTE_BYTES.add(bytes.length);
+        Files.createDirectories(path.getParent());
+        Path temp = Files.createTempFile(path.getParent(), hash, ".tmp");
+        try {
+            Files.write(temp, bytes);
+            // Sections are trusted by hash, so check what arrived as it was stored, before
+            // its palette is resolved or upgraded by the DataFixer
+            NbtCompound nbt = CompressedContainer.read(temp);
+            if (!StructureSection.storedHash(nbt).equals(hash)) {
+                throw new IOException("Section " + hash + " from the repository does not match its hash");
+            }
+            StructureSection section = StructureSection.fromNbt(nbt);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            synchronized (cache) {
+                cache.putIfAbsent(hash, section);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    public boolean contains(String hash) {
+        return Files.exists(pathFor(hash));
+    }
+    
+    /**
+     * Start pinning sections for a write; close the pins once its manifest is on disk
+     */
+    public Pins pins() {
+        return new Pins();
+    }
+    
+    /**
+     * Delete every stored section that is not live, pinned or released while collecting
+     *
+     * The live set is read after collection has started, so a writer that releases
+     * its pins before that has already written its manifest into the live set.
+     *
+     * @param liveSections Reads the hashes referenced by saved manifests
+     * @return Number of section files removed
+     */
+    public synchronized int collectGarbage(LiveSections liveSections) throws IOException {
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        
+        releasedDuringCollection.clear();
+        collecting = true;
+        int removed = 0;
+        try (Stream<Path> files = Files.walk(root)) {
+            Set<String> liveHashes = liveSections.read();
+            for (Path path : (Iterable<Path>) files::iterator) {
+                String fileName = path.getFileName().toString();
+                if (!fileName.endsWith(SECTION_EXTENSION)) {
+                    continue;
+                }
+                String hash = fileName.substring(0, fileName.length() - SECTION_EXTENSION.length());
+                if (!liveHashes.contains(hash) && deleteUnpinned(hash, path)) {
+                    synchronized (cache) {
+                        cache.remove(hash);
+                    }
+                    removed++;
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            StructureCapsuleMod.LOGGER.error("Failed to collect unused structure sections", e);
+            throw e instanceof UncheckedIOException unchecked ? unchecked.getCause() : (IOException) e;
+        } finally {
+            collecting = false;
+            releasedDuringCollection.clear();
+        }
+        return removed;
+    }
+    
+    /**
+     * Delete a section file unless it is pinned; pinning the same hash waits for this
+     */
+    private boolean deleteUnpinned(String hash, Path path) {
+        boolean[] deleted = {false};
+        pinned.compute(hash, (key, count) -> {
+            if (count == null && !releasedDuringCollection.contains(key)) {
+                try {
+                    deleted[0] = Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            return count;
+        });
+        return deleted[0];
+    }
+    
+    private void release(String hash) {
+        pinned.computeIfPresent(hash, (key, count) -> {
+            if (collecting) {
+                releasedDuringCollection.add(key);
+            }
+            return count > 1 ? count - 1 : null;
+        });
+    }
+    
+    private Path pathFor(String hash) {
+        // Two-character fan-out keeps directories small for large libraries
+        return root.resolve(hash.substring(0, 2)).resolve(hash + SECTION_EXTENSION);
+    }
+    
+    /**
+     * Hashes referenced by saved manifests
+     */
+    @FunctionalInterface
+    public interface LiveSections {
+        Set<String> read() throws IOException;
+    }
+    
+    /**
+     * Sections a pending write stores or reuses, kept from garbage collection until closed
+     *
+     * Safe to use from several worker threads. Pins added after close are ignored:
+     * a write that was abandoned has no manifest to protect.
+     */
+    public final class Pins implements AutoCloseable {
+        private final Set<String> hashes = new HashSet<>();
+        private boolean closed = false;
+        
+        public synchronized void add(String hash) {
+            if (!closed && hashes.add(hash)) {
+                pinned.merge(hash, 1, Integer::sum);
+            }
+        }
+        
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (String hash : hashes) {
+                release(hash);
+            }
+            hashes.clear();
+        }
+    }
+}
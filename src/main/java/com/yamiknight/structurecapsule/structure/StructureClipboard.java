@@ -0,0 +1,177 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-player clipboards for copy and paste without a disk round trip
+ *
+ * A copy is scanned over several ticks like a capture (AsyncStructureCapture.queueCopy)
+ * but kept only in memory, as the compact palette sections the scan produced.
+ * Pasting expands them into StructureData on the worker pool for the async
+ * placer; saving stores the sections directly. Clipboards are dropped when their
+ * player disconnects or the server stops unless saved as a structure.
+ */
+public class StructureClipboard {
+    private static final String CLIPBOARD_NAME = "clipboard";
+    
+    private static final Map<UUID, Contents> CLIPBOARDS = new ConcurrentHashMap<>();
+    
+    /**
+     * Copy a region into a player's clipboard, replacing its contents once the copy completes
+     *
+     * @return Completes on the server thread with the copied contents
+     */
+    public static CompletableFuture<Contents> copy(ServerPlayerEntity player, ServerWorld world,
+                                                   BlockPos pos1, BlockPos pos2) {
+        UUID owner = player.getUuid();
+        return AsyncStructureCapture.queueCopy(world, pos1, pos2, CLIPBOARD_NAME, player).getCopy()
+            .thenApply(contents -> {
+                // A player who left while the copy was scanned no longer has a clipboard
+                if (!player.isDisconnected()) {
+                    CLIPBOARDS.put(owner, contents);
+                }
+                return contents;
+            });
+    }
+    
+    /**
+     * A player's clipboard, or null if it is empty
+     */
+    public static Contents get(UUID player) {
+        return CLIPBOARDS.get(player);
+    }
+    
+    /**
+     * Empty a player's clipboard
+     *
+     * @return Whether it held anything
+     */
+    public static boolean clear(UUID player) {
+        return CLIPBOARDS.remove(player) != null;
+    }
+    
+    /**
+     * Empty all clipboards (e.g. when the server stops)
+     */
+    public static void clearAll() {
+        CLIPBOARDS.clear();
+    }
+    
+    /**
+     * Write clipboard contents to disk as a saved structure
+     * This is a BLOCKING operation - run it on the worker pool.
+     *
+     * @return The structure file that was written
+     */
+    public static File save(Contents contents, String name) throws IOException {
+        SectionStore store = StructureManager.getSectionStore();
+        try (SectionStore.Pins pins = store.pins()) {
+            List<SectionCapture.PendingSection> pending = new ArrayList<>(contents.sections.size());
+            for (Map.Entry<Long, StructureSection> entry : contents.sections.entrySet()) {
+                BlockState[] states = new BlockState[StructureSection.VOLUME];
+                for (int cell = 0; cell < StructureSection.VOLUME; cell++) {
+                    states[cell] = entry.getValue().getState(cell);
+                }
+                long key = entry.getKey();
+                pending.add(new SectionCapture.PendingSection(BlockPos.unpackLongX(key), BlockPos.unpackLongY(key),
+                    BlockPos.unpackLongZ(key), SectionCapture.fingerprint(states), states));
+            }
+            
+            List<StructureManifest.SectionRef> refs = SectionCapture.encodeAndStore(pending, store, pins);
+            refs.sort(StructureManifest.SectionRef.ORDER);
+            return StructureManager.writeManifest(new StructureManifest(name, contents.sizeX, contents.sizeY,
+                contents.sizeZ, contents.blockCount, refs));
+        }
+    }
+    
+    /**
+     * A copied region as compact palette sections, keyed by structure-local section position
+     */
+    public static final class Contents {
+        private final int sizeX;
+        private final int sizeY;
+        private final int sizeZ;
+        private final int blockCount;
+        private final Map<Long, StructureSection> sections;
+        // Last expansion, reused while a placement still holds it so repeated pastes share placement plans
+        private WeakReference<StructureData> expanded = new WeakReference<>(null);
+        
+        Contents(int sizeX, int sizeY, int sizeZ, Map<Long, StructureSection> sections) {
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.sections = sections;
+            int count = 0;
+            for (StructureSection section : sections.values()) {
+                count += section.getBlockCount();
+            }
+            this.blockCount = count;
+        }
+        
+        public int getSizeX() {
+            return sizeX;
+        }
+        
+        public int getSizeY() {
+            return sizeY;
+        }
+        
+        public int getSizeZ() {
+            return sizeZ;
+        }
+        
+        public int getBlockCount() {
+            return blockCount;
+        }
+        
+        /**
+         * Expand the sections into structure data for placement, in section order
+         * This allocates an entry per block - run it on the worker pool.
+         */
+        public synchronized StructureData toStructureData() {
+            StructureData cached = expanded.get();
+            if (cached != null) {
+                return cached;
+            }
+            
+            StructureData.Builder data = new StructureData.Builder(CLIPBOARD_NAME, sizeX, sizeY, sizeZ, blockCount);
+            int sectionsX = (sizeX + 15) >> 4;
+            int sectionsY = (sizeY + 15) >> 4;
+            int sectionsZ = (sizeZ + 15) >> 4;
+            for (int sy = 0; sy < sectionsY; sy++) {
+                for (int sz = 0; sz < sectionsZ; sz++) {
+                    for (int sx = 0; sx < sectionsX; sx++) {
+                        StructureSection section = sections.get(BlockPos.asLong(sx, sy, sz));
+                        if (section == null) {
+                            continue;
+                        }
+                        for (int cell = 0; cell < StructureSection.VOLUME; cell++) {
+                            BlockState state = section.getState(cell);
+                            if (state != null) {
+                                data.addBlock(new BlockPos((sx << 4) + (cell & 15), (sy << 4) + (cell >> 8),
+                                    (sz << 4) + ((cell >> 4) & 15)), state);
+                            }
+                        }
+                    }
+                }
+            }
+            
+            StructureData built = data.build();
+            expanded = new WeakReference<>(built);
+            return built;
+        }
+    }
+}
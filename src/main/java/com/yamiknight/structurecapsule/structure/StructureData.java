@@ -1,5 +1,6 @@
 package com.yamiknight.structurecapsule.structure;
 
+import com.yamiknight.structurecapsule.util.Workers;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtList;
@@ -7,39 +8,49 @@ import net.minecraft.registry.Registries;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Represents a saved structure with block data
  * Stores the structure in a compact format for NBT serialization
+ * 
+ * Instances are immutable once built (see Builder), so one decoded structure
+ * can be shared by any number of placements, previews and threads.
  */
 public class StructureData {
+    // Below this many entries the fork-join overhead outweighs the gain
+    private static final int PARALLEL_DECODE_THRESHOLD = 16384;
+    private static final int DECODE_SLICE_SIZE = 4096;
+    
     private final String name;
     private final int sizeX;
     private final int sizeY;
     private final int sizeZ;
     private final List<BlockEntry> blocks;
+    private final OccupancyMap occupancy;
     
-    public StructureData(String name, int sizeX, int sizeY, int sizeZ) {
-        this.name = name;
-        this.sizeX = sizeX;
-        this.sizeY = sizeY;
-        this.sizeZ = sizeZ;
-        this.blocks = new ArrayList<>();
+    public StructureData(String name, int sizeX, int sizeY, int sizeZ, List<BlockEntry> blocks) {
+        this(name, sizeX, sizeY, sizeZ, blocks.toArray(new BlockEntry[0]));
     }
     
     /**
-     * Add a block to the structure
-     * @param relativePos Position relative to origin (0,0,0)
-     * @param state Block state to store
+     * Takes ownership of the array; callers must not modify it afterwards
      */
-    public void addBlock(BlockPos relativePos, BlockState state) {
-        blocks.add(new BlockEntry(relativePos, state));
+    private StructureData(String name, int sizeX, int sizeY, int sizeZ, BlockEntry[] blocks) {
+        this.name = name;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.blocks = Collections.unmodifiableList(Arrays.asList(blocks));
+        // Built with the data, on the thread that decodes or captures it, so collision checks only read it
+        this.occupancy = OccupancyMap.of(sizeX, sizeZ, this.blocks);
     }
     
     /**
-     * Get all blocks in this structure
+     * Get all blocks in this structure (read-only)
      */
     public List<BlockEntry> getBlocks() {
         return blocks;
@@ -65,11 +76,19 @@ public class StructureData {
         return blocks.size();
     }
     
+    /**
+     * Get the per-section occupancy bitmaps of this structure, for each facing
+     */
+    public OccupancyMap getOccupancy() {
+        return occupancy;
+    }
+    
     /**
      * Serialize to NBT for disk storage
      */
     public NbtCompound toNbt() {
         NbtCompound nbt = new NbtCompound();
+        DataVersions.stamp(nbt);
         nbt.putString("name", name);
         nbt.putInt("sizeX", sizeX);
         nbt.putInt("sizeY", sizeY);
@@ -102,70 +121,139 @@ public class StructureData {
     
     /**
      * Deserialize from NBT
+     * 
+     * Block states are resolved through BlockStateResolver so each distinct
+     * (block, properties) pair is parsed only once. Large block lists are
+     * decoded in parallel on the shared worker pool; entry order is preserved.
+     * Files written by an older game version are upgraded through the DataFixer.
      */
     public static StructureData fromNbt(NbtCompound nbt) {
+        int dataVersion = DataVersions.of(nbt);
         String name = nbt.getString("name");
         int sizeX = nbt.getInt("sizeX");
         int sizeY = nbt.getInt("sizeY");
         int sizeZ = nbt.getInt("sizeZ");
         
-        StructureData data = new StructureData(name, sizeX, sizeY, sizeZ);
-        
         NbtList blockList = nbt.getList("blocks", 10); // 10 = NbtCompound type
-        for (int i = 0; i < blockList.size(); i++) {
+        BlockEntry[] decoded = new BlockEntry[blockList.size()];
+        
+        if (blockList.size() >= PARALLEL_DECODE_THRESHOLD) {
+            Workers.pool().invoke(new DecodeTask(blockList, decoded, 0, blockList.size(), dataVersion));
+        } else {
+            decodeRange(blockList, decoded, 0, blockList.size(), dataVersion);
+        }
+        
+        Builder builder = new Builder(name, sizeX, sizeY, sizeZ, decoded.length);
+        for (BlockEntry entry : decoded) {
+            if (entry != null) { // null = invalid block, skipped
+                builder.add(entry);
+            }
+        }
+        
+        return builder.build();
+    }
+    
+    /**
+     * Decode block entries [from, to) of the NBT list into the output array
+     */
+    private static void decodeRange(NbtList blockList, BlockEntry[] out, int from, int to, int dataVersion) {
+        for (int i = from; i < to; i++) {
             NbtCompound blockNbt = blockList.getCompound(i);
             
-            int x = blockNbt.getInt("x");
-            int y = blockNbt.getInt("y");
-            int z = blockNbt.getInt("z");
-            BlockPos pos = new BlockPos(x, y, z);
-            
-            // Parse block state
-            String blockId = blockNbt.getString("block");
-            Identifier id = Identifier.tryParse(blockId);
-            if (id == null || !Registries.BLOCK.containsId(id)) {
+            // Parse block state (memoized)
+            NbtCompound propsNbt = blockNbt.contains("properties") ? blockNbt.getCompound("properties") : null;
+            BlockState state = BlockStateResolver.resolve(blockNbt.getString("block"), propsNbt, dataVersion);
+            if (state == null) {
                 continue; // Skip invalid blocks
             }
             
-            BlockState state = Registries.BLOCK.get(id).getDefaultState();
-            
-            // Apply properties
-            if (blockNbt.contains("properties")) {
-                NbtCompound propsNbt = blockNbt.getCompound("properties");
-                for (String key : propsNbt.getKeys()) {
-                    String value = propsNbt.getString(key);
-                    try {
-                        state = parseBlockProperty(state, key, value);
-                    } catch (Exception e) {
-                        // Skip invalid properties
-                    }
-                }
-            }
-            
-            data.addBlock(pos, state);
+            BlockPos pos = new BlockPos(blockNbt.getInt("x"), blockNbt.getInt("y"), blockNbt.getInt("z"));
+            out[i] = new BlockEntry(pos, state);
+        }
+    }
+    
+    /**
+     * Fork-join task splitting a large block list into independently decoded ranges
+     */
+    private static class DecodeTask extends RecursiveAction {
+        private final NbtList blockList;
+        private final BlockEntry[] out;
+        private final int from;
+        private final int to;
+        private final int dataVersion;
+        
+        DecodeTask(NbtList blockList, BlockEntry[] out, int from, int to, int dataVersion) {
+            this.blockList = blockList;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+            this.dataVersion = dataVersion;
         }
         
-        return data;
+        @Override
+        protected void compute() {
+            if (to - from <= DECODE_SLICE_SIZE) {
+                decodeRange(blockList, out, from, to, dataVersion);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new DecodeTask(blockList, out, from, mid, dataVersion),
+                new DecodeTask(blockList, out, mid, to, dataVersion));
+        }
     }
     
     /**
-     * Helper to parse block state properties
+     * Accumulates blocks for a new structure
+     * Not thread-safe; the built StructureData is.
      */
-    private static BlockState parseBlockProperty(BlockState state, String propertyName, String value) {
-        var property = state.getBlock().getStateManager().getProperty(propertyName);
-        if (property != null) {
-            var parsedValue = property.parse(value);
-            if (parsedValue.isPresent()) {
-                return state.with(property, (Comparable) parsedValue.get());
+    public static class Builder {
+        private final String name;
+        private final int sizeX;
+        private final int sizeY;
+        private final int sizeZ;
+        private BlockEntry[] blocks;
+        private int count = 0;
+        
+        public Builder(String name, int sizeX, int sizeY, int sizeZ) {
+            this(name, sizeX, sizeY, sizeZ, 64);
+        }
+        
+        public Builder(String name, int sizeX, int sizeY, int sizeZ, int expectedBlocks) {
+            this.name = name;
+            this.sizeX = sizeX;
+            this.sizeY = sizeY;
+            this.sizeZ = sizeZ;
+            this.blocks = new BlockEntry[Math.max(16, expectedBlocks)];
+        }
+        
+        /**
+         * Add a block to the structure
+         * @param relativePos Position relative to origin (0,0,0)
+         * @param state Block state to store
+         */
+        public Builder addBlock(BlockPos relativePos, BlockState state) {
+            return add(new BlockEntry(relativePos.toImmutable(), state));
+        }
+        
+        private Builder add(BlockEntry entry) {
+            if (count == blocks.length) {
+                blocks = Arrays.copyOf(blocks, blocks.length * 2);
             }
+            blocks[count++] = entry;
+            return this;
+        }
+        
+        public StructureData build() {
+            BlockEntry[] exact = count == blocks.length ? blocks : Arrays.copyOf(blocks, count);
+            blocks = null; // the builder cannot be reused once the array is handed over
+            return new StructureData(name, sizeX, sizeY, sizeZ, exact);
         }
-        return state;
     }
     
     /**
      * Inner class representing a single block in the structure
      */
-    public static class BlockEntry {
+    public static final class BlockEntry {
         public final BlockPos pos;
         public final BlockState state;
         
@@ -1,27 +1,58 @@
 package com.yamiknight.structurecapsule.structure;
 
 import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.metrics.ModMetrics;
+import com.yamiknight.structurecapsule.metrics.StructureDecodeEvent;
+import com.yamiknight.structurecapsule.metrics.StructureFileReadEvent;
+import com.yamiknight.structurecapsule.metrics.StructureSaveEvent;
+import com.yamiknight.structurecapsule.repository.HttpStructureRepository;
+import com.yamiknight.structurecapsule.repository.StructureRepository;
+import com.yamiknight.structurecapsule.util.Workers;
+import com.yamiknight.structurecapsule.world.ServerSectionAccess;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.block.BlockState;
 import net.minecraft.nbt.NbtCompound;
-import net.minecraft.nbt.NbtIo;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.math.BlockPos;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 /**
  * Manager for saving and loading structure files to/from disk
  * Structures are stored in ./config/structurecapsule/saved_structures/
+ * 
+ * Each <name>.nbt is a manifest of 16^3 section hashes; the sections
+ * themselves live once in saved_structures/sections/ and are shared by
+ * every structure that contains them. Legacy block-list files still load.
+ * 
+ * With structureRepositoryUrl set, structures not saved locally are fetched
+ * from a shared repository and cached in the same directory (see RemoteStructures).
  */
 public class StructureManager {
     private static Path STRUCTURES_DIR;
+    private static SectionStore SECTION_STORE;
+    private static RemoteStructures REMOTE; // null unless a structure repository is configured
+    private static BlockIndex BLOCK_INDEX;
+    
+    // Decoded structures still referenced somewhere (placements, previews) are shared, not decoded again
+    private static final Map<String, WeakReference<StructureData>> LOADED = new ConcurrentHashMap<>();
+    
+    // Structures whose upgraded file is being rewritten in the background
+    private static final Set<String> UPGRADING = ConcurrentHashMap.newKeySet();
     
     /**
      * Initialize the structure manager and create directories
@@ -31,6 +62,19 @@ public class StructureManager {
             .getConfigDir()
             .resolve("structurecapsule")
             .resolve("saved_structures");
+        SECTION_STORE = new SectionStore(STRUCTURES_DIR.resolve("sections"));
+        BLOCK_INDEX = new BlockIndex(STRUCTURES_DIR, SECTION_STORE);
+        
+        ModConfig config = ModConfig.getInstance();
+        if (!config.structureRepositoryUrl.isBlank()) {
+            StructureRepository repository = new HttpStructureRepository(config.structureRepositoryUrl,
+                config.structureRepositoryTimeoutMs);
+            SECTION_STORE.setRemote(repository);
+            REMOTE = new RemoteStructures(repository, STRUCTURES_DIR, SECTION_STORE,
+                config.structureRepositoryRefreshSeconds);
+            REMOTE.list();
+            StructureCapsuleMod.LOGGER.info("Using structure repository at {}", config.structureRepositoryUrl);
+        }
         
         try {
             Files.createDirectories(STRUCTURES_DIR);
@@ -38,19 +82,35 @@ public class StructureManager {
         } catch (IOException e) {
             StructureCapsuleMod.LOGGER.error("Failed to create structures directory", e);
         }
+        Workers.pool().execute(() -> BLOCK_INDEX.load(listLocalStructures()));
     }
     
     /**
      * Scan a region in the world and save it as a structure
      * This is a BLOCKING operation - call from a server thread
+     * Use AsyncStructureCapture for regions too large to scan in one tick
      * 
      * @param world The world to scan
      * @param pos1 First corner
      * @param pos2 Second corner
      * @param name Structure name
-     * @return The saved structure data, or null on failure
+     * @return The saved manifest, or null on failure; the structure is decoded on its next load
+     */
+    public static StructureManifest saveStructure(ServerWorld world, BlockPos pos1, BlockPos pos2, String name) {
+        return saveStructure(world, pos1, pos2, name, null);
+    }
+    
+    /**
+     * Scan a region in the world and save it as a structure on behalf of a player
+     * 
+     * @param playerName Name of the requesting player (recorded in profiling events), may be null
+     * @see #saveStructure(ServerWorld, BlockPos, BlockPos, String)
      */
-    public static StructureData saveStructure(ServerWorld world, BlockPos pos1, BlockPos pos2, String name) {
+    public static StructureManifest saveStructure(ServerWorld world, BlockPos pos1, BlockPos pos2, String name,
+                                                  String playerName) {
+        StructureSaveEvent event = new StructureSaveEvent();
+        event.begin();
+        
         // Calculate bounds
         int minX = Math.min(pos1.getX(), pos2.getX());
         int minY = Math.min(pos1.getY(), pos2.getY());
@@ -63,36 +123,36 @@ public class StructureManager {
         int sizeY = maxY - minY + 1;
         int sizeZ = maxZ - minZ + 1;
         
-        StructureData data = new StructureData(name, sizeX, sizeY, sizeZ);
         BlockPos origin = new BlockPos(minX, minY, minZ);
         
-        // Scan all blocks in the region
-        for (int x = minX; x <= maxX; x++) {
-            for (int y = minY; y <= maxY; y++) {
-                for (int z = minZ; z <= maxZ; z++) {
-                    BlockPos pos = new BlockPos(x, y, z);
-                    BlockState state = world.getBlockState(pos);
-                    
-                    // Skip air blocks to save space
-                    if (state.isAir()) {
-                        continue;
-                    }
-                    
-                    // Calculate relative position
-                    BlockPos relative = pos.subtract(origin);
-                    data.addBlock(relative, state);
-                }
+        try (SectionStore.Pins pins = SECTION_STORE.pins()) {
+            // Re-saving under an existing name only re-encodes sections that changed
+            StructureManifest previous = ModConfig.getInstance().incrementalRecapture ? readManifest(name) : null;
+            
+            long scanStart = System.nanoTime();
+            SectionCapture.Result result = SectionCapture.capture(new ServerSectionAccess(world), origin, sizeX, sizeY, sizeZ,
+                name, previous, SECTION_STORE, pins);
+            StructureManifest manifest = result.manifest();
+            ModMetrics.CAPTURE_SCAN.record(System.nanoTime() - scanStart);
+            ModMetrics.CAPTURES.increment();
+            ModMetrics.BLOCKS_CAPTURED.add(manifest.getBlockCount());
+            
+            // Save to disk
+            File file = writeManifest(manifest);
+            
+            event.end();
+            if (event.shouldCommit()) {
+                event.structureName = name;
+                event.player = playerName;
+                event.volume = (long) sizeX * sizeY * sizeZ;
+                event.blockCount = manifest.getBlockCount();
+                event.bytes = file.length();
+                event.commit();
             }
-        }
-        
-        // Save to disk
-        try {
-            File file = STRUCTURES_DIR.resolve(sanitizeName(name) + ".nbt").toFile();
-            NbtCompound nbt = data.toNbt();
-            NbtIo.writeCompressed(nbt, file);
             
-            StructureCapsuleMod.LOGGER.info("Saved structure '{}' with {} blocks", name, data.getBlockCount());
-            return data;
+            StructureCapsuleMod.LOGGER.info("Saved structure '{}' with {} blocks ({} sections scanned, {} rewritten, {} unchanged)",
+                name, manifest.getBlockCount(), result.sectionsScanned(), result.sectionsRewritten(), result.sectionsReused());
+            return manifest;
         } catch (IOException e) {
             StructureCapsuleMod.LOGGER.error("Failed to save structure: {}", name, e);
             return null;
@@ -103,37 +163,369 @@ public class StructureManager {
      * Load a structure from disk
      * This is a BLOCKING operation - use AsyncStructurePlacer for placement
      * 
+     * The returned data is immutable and may be shared with other callers
+     * loading the same structure while it is still in use.
+     * 
+     * Never waits for the structure repository: a structure only the repository
+     * has is fetched in the background and this returns null until it is on disk
+     * (see isFetching and loadStructureAsync).
+     * 
      * @param name Structure name
      * @return The loaded structure data, or null if not found
      */
     public static StructureData loadStructure(String name) {
+        CompletableFuture<Void> fetch = fetchStructure(name);
+        StructureData data = loadLocalStructure(name);
+        if (data == null && fetch.isDone() && !STRUCTURES_DIR.resolve(sanitizeName(name) + ".nbt").toFile().exists()) {
+            StructureCapsuleMod.LOGGER.warn("Structure not found: {}", name);
+        }
+        return data;
+    }
+    
+    /**
+     * Load a structure, fetching it from the structure repository first if needed
+     *
+     * @return Completes on the worker pool with the structure data, or null if not found
+     */
+    public static CompletableFuture<StructureData> loadStructureAsync(String name) {
+        return fetchStructure(name).thenApplyAsync(ignored -> loadStructure(name), Workers.pool());
+    }
+    
+    /**
+     * Start fetching a structure that is not on disk from the structure repository
+     *
+     * @return Completes once the fetch has finished; already complete if there is
+     *         nothing to fetch
+     */
+    public static CompletableFuture<Void> fetchStructure(String name) {
+        return REMOTE != null ? REMOTE.refresh(sanitizeName(name)) : CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Whether a structure is being fetched from the structure repository
+     */
+    public static boolean isFetching(String name) {
+        return REMOTE != null && REMOTE.isFetching(sanitizeName(name));
+    }
+    
+    /**
+     * Load a structure only if it is on disk, without contacting the structure repository
+     * This is a BLOCKING operation, like loadStructure.
+     *
+     * @return The loaded structure data, or null if it is not on disk
+     */
+    public static StructureData loadLocalStructure(String name) {
         try {
-            File file = STRUCTURES_DIR.resolve(sanitizeName(name) + ".nbt").toFile();
+            String key = sanitizeName(name);
+            File file = STRUCTURES_DIR.resolve(key + ".nbt").toFile();
             if (!file.exists()) {
-                StructureCapsuleMod.LOGGER.warn("Structure not found: {}", name);
                 return null;
             }
             
-            NbtCompound nbt = NbtIo.readCompressed(file);
-            return StructureData.fromNbt(nbt);
+            WeakReference<StructureData> shared = LOADED.get(key);
+            StructureData cached = shared != null ? shared.get() : null;
+            if (cached != null) {
+                ModMetrics.CACHE_HITS.increment();
+                return cached;
+            }
+            
+            long loadStart = System.nanoTime();
+            long modified = file.lastModified();
+            
+            StructureFileReadEvent readEvent = new StructureFileReadEvent();
+            readEvent.begin();
+            NbtCompound nbt = CompressedContainer.read(file.toPath());
+            readEvent.end();
+            if (readEvent.shouldCommit()) {
+                readEvent.structureName = name;
+                readEvent.bytes = file.length();
+                readEvent.commit();
+            }
+            
+            StructureDecodeEvent decodeEvent = new StructureDecodeEvent();
+            decodeEvent.begin();
+            boolean isManifest = StructureManifest.isManifest(nbt);
+            StructureManifest manifest = isManifest ? StructureManifest.fromNbt(nbt) : null;
+            StructureData data = isManifest ? manifest.assemble(SECTION_STORE) : StructureData.fromNbt(nbt);
+            decodeEvent.end();
+            if (decodeEvent.shouldCommit()) {
+                decodeEvent.structureName = name;
+                decodeEvent.blockCount = data.getBlockCount();
+                decodeEvent.commit();
+            }
+            
+            ModMetrics.STRUCTURE_LOAD.record(System.nanoTime() - loadStart);
+            ModMetrics.BYTES_READ.add(file.length());
+            LOADED.put(key, new WeakReference<>(data));
+            if (DataVersions.isOutdated(DataVersions.of(nbt))) {
+                scheduleUpgrade(key, file.toPath(), modified, manifest, data);
+            }
+            return data;
         } catch (IOException e) {
+            ModMetrics.IO_ERRORS.increment();
             StructureCapsuleMod.LOGGER.error("Failed to load structure: {}", name, e);
             return null;
         }
     }
     
+    /**
+     * Rewrite a structure file written by an older game version, in the background
+     * 
+     * The loaded data was already upgraded while decoding; writing it back means
+     * the DataFixer runs once per file instead of on every load. Upgraded sections
+     * are stored under their new hash and the manifest is pointed at them; the old
+     * section files stay until the next garbage collection. Legacy block lists are
+     * rewritten as section manifests. The file is left alone if it was saved again
+     * in the meantime.
+     * 
+     * @param manifest The manifest that was read, or null for a legacy block list
+     */
+    private static void scheduleUpgrade(String key, Path path, long modified, StructureManifest manifest,
+                                        StructureData data) {
+        if (!UPGRADING.add(key)) {
+            return;
+        }
+        Workers.pool().execute(() -> {
+            try (SectionStore.Pins pins = SECTION_STORE.pins()) {
+                NbtCompound upgraded = upgrade(manifest, data, SECTION_STORE, pins).toNbt();
+                if (path.toFile().lastModified() != modified) {
+                    return;
+                }
+                writeStructureFile(upgraded, path, data.getName());
+                ModMetrics.BYTES_WRITTEN.add(Files.size(path));
+                // Upgrades can rename blocks
+                BLOCK_INDEX.refresh(key);
+                StructureCapsuleMod.LOGGER.info("Upgraded structure '{}' to data version {}", key, DataVersions.current());
+            } catch (IOException | RuntimeException e) {
+                ModMetrics.IO_ERRORS.increment();
+                StructureCapsuleMod.LOGGER.warn("Could not rewrite upgraded structure '{}'", key, e);
+            } finally {
+                UPGRADING.remove(key);
+            }
+        });
+    }
+    
+    /**
+     * Manifest to rewrite an outdated structure file with
+     *
+     * A manifest gets every upgraded section re-stored under its new content hash,
+     * with fingerprints recomputed to match the upgraded block states. A legacy
+     * block list is split into stored sections like any other write.
+     *
+     * @param manifest The manifest that was read, or null for a legacy block list
+     * @param data The structure as loaded, already upgraded
+     */
+    static StructureManifest upgrade(StructureManifest manifest, StructureData data, SectionStore store,
+                                     SectionStore.Pins pins) throws IOException {
+        if (manifest == null) {
+            return StructureManifest.write(data, store, pins);
+        }
+        List<StructureManifest.SectionRef> refs = new ArrayList<>(manifest.getSections().size());
+        for (StructureManifest.SectionRef ref : manifest.getSections()) {
+            StructureSection section = store.get(ref.hash());
+            if (section == null) {
+                refs.add(ref);
+                continue;
+            }
+            BlockState[] states = new BlockState[StructureSection.VOLUME];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = section.getState(i);
+            }
+            String hash = section.isUpgraded() ? store.put(section, pins) : ref.hash();
+            refs.add(new StructureManifest.SectionRef(ref.x(), ref.y(), ref.z(), hash,
+                section.getBlockCount(), SectionCapture.fingerprint(states)));
+        }
+        return new StructureManifest(manifest.getName(), manifest.getSizeX(), manifest.getSizeY(),
+            manifest.getSizeZ(), manifest.getBlockCount(), refs);
+    }
+    
+    /**
+     * Write already-captured structure data to disk as a section manifest
+     * Sections already present in the store are not written again.
+     * 
+     * @return The manifest file that was written
+     */
+    public static File writeStructure(StructureData data) throws IOException {
+        try (SectionStore.Pins pins = SECTION_STORE.pins()) {
+            long saveStart = System.nanoTime();
+            File file = STRUCTURES_DIR.resolve(sanitizeName(data.getName()) + ".nbt").toFile();
+            StructureManifest manifest = StructureManifest.write(data, SECTION_STORE, pins);
+            writeStructureFile(manifest.toNbt(), file.toPath(), data.getName());
+            invalidate(sanitizeName(data.getName()));
+            if (REMOTE != null) {
+                REMOTE.forget(sanitizeName(data.getName()));
+            }
+            ModMetrics.STRUCTURE_SAVE.record(System.nanoTime() - saveStart);
+            ModMetrics.BYTES_WRITTEN.add(file.length());
+            return file;
+        } catch (IOException e) {
+            ModMetrics.IO_ERRORS.increment();
+            throw e;
+        }
+    }
+    
+    /**
+     * Write a captured manifest as the structure file (its sections must already be stored)
+     * 
+     * @return The manifest file that was written
+     */
+    static File writeManifest(StructureManifest manifest) throws IOException {
+        try {
+            long saveStart = System.nanoTime();
+            File file = STRUCTURES_DIR.resolve(sanitizeName(manifest.getName()) + ".nbt").toFile();
+            writeStructureFile(manifest.toNbt(), file.toPath(), manifest.getName());
+            invalidate(sanitizeName(manifest.getName()));
+            if (REMOTE != null) {
+                REMOTE.forget(sanitizeName(manifest.getName()));
+            }
+            ModMetrics.STRUCTURE_SAVE.record(System.nanoTime() - saveStart);
+            ModMetrics.BYTES_WRITTEN.add(file.length());
+            return file;
+        } catch (IOException e) {
+            ModMetrics.IO_ERRORS.increment();
+            throw e;
+        }
+    }
+    
+    /**
+     * A structure file changed or was removed: drop its shared decoded copy and re-index its blocks
+     */
+    static void invalidate(String key) {
+        LOADED.remove(key);
+        BLOCK_INDEX.refresh(key);
+    }
+    
+    /**
+     * Index of which saved structures contain which blocks
+     */
+    public static BlockIndex getBlockIndex() {
+        return BLOCK_INDEX;
+    }
+    
+    /**
+     * Shared store of structure sections
+     */
+    static SectionStore getSectionStore() {
+        return SECTION_STORE;
+    }
+    
+    /**
+     * Read the manifest of a saved structure without assembling it
+     * 
+     * @return The manifest, or null if the structure does not exist or is a legacy block list
+     */
+    public static StructureManifest readManifest(String name) {
+        Path path = STRUCTURES_DIR.resolve(sanitizeName(name) + ".nbt");
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try {
+            NbtCompound nbt = CompressedContainer.read(path);
+            return StructureManifest.isManifest(nbt) ? StructureManifest.fromNbt(nbt) : null;
+        } catch (IOException e) {
+            StructureCapsuleMod.LOGGER.warn("Could not read previous manifest of '{}', capturing in full", name, e);
+            return null;
+        }
+    }
+    
+    /**
+     * Manifest of a saved structure for reading it section by section
+     *
+     * Legacy block-list files are split into stored sections on the fly;
+     * the file itself is left as it is. Waits for a structure repository
+     * fetch, so run it on the worker pool.
+     *
+     * @return The manifest, or null if the structure does not exist
+     */
+    public static StructureManifest openManifest(String name) throws IOException {
+        fetchStructure(name).join();
+        Path path = STRUCTURES_DIR.resolve(sanitizeName(name) + ".nbt");
+        if (!Files.exists(path)) {
+            return null;
+        }
+        NbtCompound nbt = CompressedContainer.read(path);
+        if (StructureManifest.isManifest(nbt)) {
+            return StructureManifest.fromNbt(nbt);
+        }
+        // No manifest references these sections, so a garbage collection while they are read can remove them
+        return StructureManifest.write(StructureData.fromNbt(nbt), SECTION_STORE);
+    }
+    
+    /**
+     * Load one stored section of a manifest
+     */
+    public static StructureSection readSection(StructureManifest.SectionRef ref) throws IOException {
+        return SECTION_STORE.get(ref.hash());
+    }
+    
+    /**
+     * Delete stored sections that no structure manifest references any more
+     * This is a BLOCKING operation - run it on the worker pool
+     * 
+     * Sections of captures, imports and upgrades still being written are pinned
+     * and kept (see SectionStore.Pins).
+     * 
+     * @return Number of section files removed
+     */
+    public static int collectUnusedSections() throws IOException {
+        return SECTION_STORE.collectGarbage(() -> {
+            Set<String> live = new HashSet<>();
+            for (String structure : listLocalStructures()) {
+                Path path = STRUCTURES_DIR.resolve(structure + ".nbt");
+                NbtCompound nbt;
+                try {
+                    nbt = CompressedContainer.read(path);
+                } catch (NoSuchFileException e) {
+                    continue; // Deleted since it was listed
+                }
+                if (StructureManifest.isManifest(nbt)) {
+                    for (StructureManifest.SectionRef ref : StructureManifest.fromNbt(nbt).getSections()) {
+                        live.add(ref.hash());
+                    }
+                }
+            }
+            return live;
+        });
+    }
+    
+    /**
+     * Write structure NBT using the parallel block-compressed container
+     * with the compression level configured for this structure
+     */
+    private static void writeStructureFile(NbtCompound nbt, Path path, String name) throws IOException {
+        ModConfig config = ModConfig.getInstance();
+        int blockSize = Math.max(16, config.compressionBlockSizeKiB) * 1024;
+        CompressedContainer.write(nbt, path, config.getCompressionLevel(name), blockSize);
+    }
+    
     /**
      * Check if a structure exists
      */
     public static boolean structureExists(String name) {
         File file = STRUCTURES_DIR.resolve(sanitizeName(name) + ".nbt").toFile();
-        return file.exists();
+        return file.exists() || (REMOTE != null && REMOTE.exists(sanitizeName(name)));
     }
     
     /**
-     * List all saved structures
+     * List all saved structures, including those the structure repository offers
      */
     public static List<String> listStructures() {
+        List<String> structures = listLocalStructures();
+        if (REMOTE != null) {
+            Set<String> local = new HashSet<>(structures);
+            for (String remote : REMOTE.list()) {
+                if (!local.contains(remote)) {
+                    structures.add(remote);
+                }
+            }
+        }
+        return structures;
+    }
+    
+    /**
+     * Structures on disk, saved here or cached from the repository
+     */
+    private static List<String> listLocalStructures() {
         List<String> structures = new ArrayList<>();
         
         try (Stream<Path> paths = Files.list(STRUCTURES_DIR)) {
@@ -153,7 +545,7 @@ public class StructureManager {
     /**
      * Sanitize structure name for file system
      */
-    private static String sanitizeName(String name) {
+    static String sanitizeName(String name) {
         return name.replaceAll("[^a-zA-Z0-9_-]", "_").toLowerCase();
     }
 }
@@ -0,0 +1,260 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.util.Workers;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Section-based structure file: the structure's size plus a list of
+ * (section position, content hash) references into the SectionStore
+ *
+ * Section positions are in structure-local section coordinates
+ * (local block position >> 4).
+ */
+public class StructureManifest {
+    public static final String FORMAT = "sections";
+    public static final int FORMAT_VERSION = 3;
+    // Version 3 fingerprints hash registry ids; earlier ones hashed raw state ids and are ignored
+    private static final int STABLE_FINGERPRINT_VERSION = 3;
+    
+    private final String name;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+    private final int blockCount;
+    private final List<SectionRef> sections;
+    
+    public StructureManifest(String name, int sizeX, int sizeY, int sizeZ, int blockCount, List<SectionRef> sections) {
+        this.name = name;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.blockCount = blockCount;
+        this.sections = List.copyOf(sections);
+    }
+    
+    /**
+     * Split a structure into sections, store any sections the store does not
+     * already have and return the manifest referencing them
+     *
+     * Section encoding, hashing and compression run on the worker pool.
+     */
+    public static StructureManifest write(StructureData data, SectionStore store) throws IOException {
+        return write(data, store, null);
+    }
+    
+    /**
+     * Split and store a structure, pinning its sections until the caller has written the manifest
+     *
+     * @param pins Pins of the write, may be null
+     * @see #write(StructureData, SectionStore)
+     */
+    public static StructureManifest write(StructureData data, SectionStore store, SectionStore.Pins pins)
+            throws IOException {
+        // Bucket blocks into dense per-section arrays
+        Map<Long, BlockState[]> dense = new HashMap<>();
+        for (StructureData.BlockEntry entry : data.getBlocks()) {
+            BlockPos pos = entry.pos;
+            long key = BlockPos.asLong(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+            BlockState[] states = dense.computeIfAbsent(key, k -> new BlockState[StructureSection.VOLUME]);
+            states[StructureSection.cellIndex(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15)] = entry.state;
+        }
+        
+        // Encode and hash every section in parallel
+        Map<Long, ForkJoinTask<StructureSection>> encoding = new HashMap<>();
+        Map<Long, Long> fingerprints = new HashMap<>();
+        for (Map.Entry<Long, BlockState[]> entry : dense.entrySet()) {
+            BlockState[] states = entry.getValue();
+            fingerprints.put(entry.getKey(), SectionCapture.fingerprint(states));
+            encoding.put(entry.getKey(), Workers.pool().submit(() -> {
+                StructureSection section = StructureSection.fromStates(states);
+                section.getHash();
+                return section;
+            }));
+        }
+        
+        List<SectionRef> refs = new ArrayList<>(dense.size());
+        Map<String, StructureSection> unique = new LinkedHashMap<>();
+        for (Map.Entry<Long, ForkJoinTask<StructureSection>> entry : encoding.entrySet()) {
+            StructureSection section = entry.getValue().join();
+            long key = entry.getKey();
+            refs.add(new SectionRef(BlockPos.unpackLongX(key), BlockPos.unpackLongY(key), BlockPos.unpackLongZ(key),
+                section.getHash(), section.getBlockCount(), fingerprints.get(key)));
+            unique.putIfAbsent(section.getHash(), section);
+        }
+        
+        // Write each distinct section once (repeated modules collapse here)
+        List<ForkJoinTask<String>> writes = new ArrayList<>(unique.size());
+        for (StructureSection section : unique.values()) {
+            writes.add(Workers.pool().submit(() -> {
+                try {
+                    return store.put(section, pins);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        for (ForkJoinTask<String> write : writes) {
+            try {
+                write.join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        
+        refs.sort(SectionRef.ORDER);
+        return new StructureManifest(data.getName(), data.getSizeX(), data.getSizeY(), data.getSizeZ(),
+            data.getBlockCount(), refs);
+    }
+    
+    /**
+     * Rebuild the full structure from the store, fetching sections in parallel
+     */
+    public StructureData assemble(SectionStore store) throws IOException {
+        List<ForkJoinTask<StructureSection>> fetches = new ArrayList<>(sections.size());
+        for (SectionRef ref : sections) {
+            fetches.add(Workers.pool().submit(() -> {
+                try {
+                    return store.get(ref.hash());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        
+        StructureData.Builder data = new StructureData.Builder(name, sizeX, sizeY, sizeZ, blockCount);
+        for (int i = 0; i < sections.size(); i++) {
+            SectionRef ref = sections.get(i);
+            StructureSection section;
+            try {
+                section = fetches.get(i).join();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (section == null) {
+                throw new IOException("Missing section " + ref.hash() + " for structure '" + name + "'");
+            }
+            
+            int baseX = ref.x() << 4;
+            int baseY = ref.y() << 4;
+            int baseZ = ref.z() << 4;
+            for (int cell = 0; cell < StructureSection.VOLUME; cell++) {
+                BlockState state = section.getState(cell);
+                if (state != null) {
+                    data.addBlock(new BlockPos(baseX + (cell & 15), baseY + (cell >> 8), baseZ + ((cell >> 4) & 15)), state);
+                }
+            }
+        }
+        return data.build();
+    }
+    
+    /**
+     * Check whether structure NBT is a section manifest (vs. a legacy block list)
+     */
+    public static boolean isManifest(NbtCompound nbt) {
+        return FORMAT.equals(nbt.getString("format"));
+    }
+    
+    public NbtCompound toNbt() {
+        NbtCompound nbt = new NbtCompound();
+        nbt.putString("format", FORMAT);
+        nbt.putInt("version", FORMAT_VERSION);
+        DataVersions.stamp(nbt);
+        nbt.putString("name", name);
+        nbt.putInt("sizeX", sizeX);
+        nbt.putInt("sizeY", sizeY);
+        nbt.putInt("sizeZ", sizeZ);
+        nbt.putInt("blockCount", blockCount);
+        
+        NbtList list = new NbtList();
+        for (SectionRef ref : sections) {
+            list.add(ref.toNbt());
+        }
+        nbt.put("sections", list);
+        return nbt;
+    }
+    
+    public static StructureManifest fromNbt(NbtCompound nbt) {
+        boolean stableFingerprints = nbt.getInt("version") >= STABLE_FINGERPRINT_VERSION;
+        NbtList list = nbt.getList("sections", NbtElement.COMPOUND_TYPE);
+        List<SectionRef> refs = new ArrayList<>(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            refs.add(SectionRef.fromNbt(list.getCompound(i), stableFingerprints));
+        }
+        return new StructureManifest(
+            nbt.getString("name"),
+            nbt.getInt("sizeX"),
+            nbt.getInt("sizeY"),
+            nbt.getInt("sizeZ"),
+            nbt.getInt("blockCount"),
+            refs
+        );
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public int getSizeX() {
+        return sizeX;
+    }
+    
+    public int getSizeY() {
+        return sizeY;
+    }
+    
+    public int getSizeZ() {
+        return sizeZ;
+    }
+    
+    public int getBlockCount() {
+        return blockCount;
+    }
+    
+    public List<SectionRef> getSections() {
+        return sections;
+    }
+    
+    /**
+     * Reference to one stored section at a structure-local section position
+     *
+     * The fingerprint is a cheap hash of the block states' registry ids and
+     * properties, used to skip unchanged sections on re-capture. 0 means unknown
+     * (written by an older version).
+     */
+    public record SectionRef(int x, int y, int z, String hash, int blockCount, long fingerprint) {
+        static final Comparator<SectionRef> ORDER = Comparator
+            .comparingInt(SectionRef::y)
+            .thenComparingInt(SectionRef::z)
+            .thenComparingInt(SectionRef::x);
+        
+        NbtCompound toNbt() {
+            NbtCompound nbt = new NbtCompound();
+            nbt.putInt("x", x);
+            nbt.putInt("y", y);
+            nbt.putInt("z", z);
+            nbt.putString("hash", hash);
+            nbt.putInt("count", blockCount);
+            nbt.putLong("fp", fingerprint);
+            return nbt;
+        }
+        
+        static SectionRef fromNbt(NbtCompound nbt, boolean stableFingerprint) {
+            return new SectionRef(nbt.getInt("x"), nbt.getInt("y"), nbt.getInt("z"),
+                nbt.getString("hash"), nbt.getInt("count"), stableFingerprint ? nbt.getLong("fp") : 0);
+        }
+    }
+}
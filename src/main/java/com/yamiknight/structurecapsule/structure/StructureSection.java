@@ -0,0 +1,292 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.NbtByteArray;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.nbt.NbtIntArray;
+import net.minecraft.nbt.NbtList;
+import net.minecraft.registry.Registries;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable contents of one 16x16x16 section of a structure
+ *
+ * A section is position independent: it only knows which of its 4096 cells
+ * hold which block state. That makes it content-addressable - identical
+ * sections in different structures (or different places of one structure)
+ * share a single hash, file and decoded instance.
+ *
+ * Cells are indexed as (y << 8) | (z << 4) | x. Empty cells (air skipped
+ * during capture) have palette index -1.
+ */
+public class StructureSection {
+    public static final int SIZE = 16;
+    public static final int VOLUME = SIZE * SIZE * SIZE;
+    
+    private final BlockState[] palette;
+    private final short[] cells; // palette index per cell, -1 = empty
+    private final int blockCount;
+    private String hash;
+    private boolean upgraded; // decoded from a file written by an older game version
+    
+    private StructureSection(BlockState[] palette, short[] cells, int blockCount) {
+        this.palette = palette;
+        this.cells = cells;
+        this.blockCount = blockCount;
+    }
+    
+    /**
+     * Build a section from a dense array of states (null = empty cell)
+     * The palette is assigned in cell order, so equal contents always encode identically.
+     */
+    public static StructureSection fromStates(BlockState[] states) {
+        Map<BlockState, Integer> indices = new IdentityHashMap<>();
+        List<BlockState> palette = new ArrayList<>();
+        short[] cells = new short[VOLUME];
+        int count = 0;
+        
+        for (int i = 0; i < VOLUME; i++) {
+            BlockState state = states[i];
+            if (state == null) {
+                cells[i] = -1;
+                continue;
+            }
+            Integer index = indices.get(state);
+            if (index == null) {
+                index = palette.size();
+                indices.put(state, index);
+                palette.add(state);
+            }
+            cells[i] = (short) (int) index;
+            count++;
+        }
+        
+        return new StructureSection(palette.toArray(new BlockState[0]), cells, count);
+    }
+    
+    public static int cellIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+    
+    /**
+     * State at a local cell, or null if the cell is empty
+     */
+    public BlockState getState(int cellIndex) {
+        int index = cells[cellIndex];
+        return index < 0 ? null : palette[index];
+    }
+    
+    public int getBlockCount() {
+        return blockCount;
+    }
+    
+    public BlockState[] getPalette() {
+        return palette.clone();
+    }
+    
+    /**
+     * Whether this section was decoded (and upgraded) from a file written by
+     * an older game version; its stored file is outdated and its hash may no
+     * longer match the name it was stored under
+     */
+    public boolean isUpgraded() {
+        return upgraded;
+    }
+    
+    /**
+     * Content hash (SHA-256, hex) over a canonical encoding of the palette and cells
+     */
+    public synchronized String getHash() {
+        if (hash == null) {
+            hash = computeHash();
+        }
+        return hash;
+    }
+    
+    private String computeHash() {
+        String[] names = new String[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            // BlockState.toString lists properties in definition order, which is stable
+            names[i] = palette[i].toString();
+        }
+        return digest(names, cells);
+    }
+    
+    /**
+     * Content hash of a section as it was stored, without resolving or upgrading its palette
+     *
+     * Matches getHash() of the section that was written, whichever game version or
+     * mod set reads it, so downloaded sections can be checked before they are decoded.
+     */
+    public static String storedHash(NbtCompound nbt) {
+        NbtList paletteList = nbt.getList("palette", NbtElement.COMPOUND_TYPE);
+        String[] stored = new String[paletteList.size()];
+        for (int i = 0; i < stored.length; i++) {
+            stored[i] = stateString(paletteList.getCompound(i));
+        }
+        
+        // Canonical palette in cell order, the same way fromStates assigns it
+        Map<String, Integer> indices = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        short[] cells = new short[VOLUME];
+        NbtElement cellsTag = nbt.get("cells");
+        byte[] byteCells = cellsTag instanceof NbtByteArray byteArray ? byteArray.getByteArray() : null;
+        int[] intCells = cellsTag instanceof NbtIntArray intArray ? intArray.getIntArray() : null;
+        for (int i = 0; i < VOLUME; i++) {
+            int value = 0;
+            if (byteCells != null && i < byteCells.length) {
+                value = byteCells[i] & 0xFF;
+            } else if (intCells != null && i < intCells.length) {
+                value = intCells[i];
+            }
+            if (value <= 0 || value > stored.length) {
+                cells[i] = -1;
+                continue;
+            }
+            Integer index = indices.get(stored[value - 1]);
+            if (index == null) {
+                index = names.size();
+                indices.put(stored[value - 1], index);
+                names.add(stored[value - 1]);
+            }
+            cells[i] = (short) (int) index;
+        }
+        return digest(names.toArray(new String[0]), cells);
+    }
+    
+    /**
+     * Stored palette entry in the form of BlockState.toString: Block{id}[name=value,...], properties sorted by name
+     */
+    private static String stateString(NbtCompound stateNbt) {
+        StringBuilder name = new StringBuilder("Block{").append(stateNbt.getString("Name")).append('}');
+        NbtCompound props = stateNbt.getCompound("Properties");
+        if (!props.isEmpty()) {
+            List<String> keys = new ArrayList<>(props.getKeys());
+            Collections.sort(keys);
+            name.append('[');
+            for (int i = 0; i < keys.size(); i++) {
+                if (i > 0) {
+                    name.append(',');
+                }
+                name.append(keys.get(i)).append('=').append(props.getString(keys.get(i)));
+            }
+            name.append(']');
+        }
+        return name.toString();
+    }
+    
+    private static String digest(String[] palette, short[] cells) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(VOLUME * 2 + palette.length * 32);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(palette.length);
+            for (String state : palette) {
+                out.writeUTF(state);
+            }
+            for (short cell : cells) {
+                out.writeShort(cell);
+            }
+            out.flush();
+            
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes.toByteArray());
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+    
+    /**
+     * Serialize to NBT
+     * Palette entries use the vanilla {Name, Properties} layout; cells are stored
+     * dense as (palette index + 1), 0 meaning empty, as bytes when the palette allows.
+     */
+    public NbtCompound toNbt() {
+        NbtCompound nbt = new NbtCompound();
+        DataVersions.stamp(nbt);
+        
+        NbtList paletteList = new NbtList();
+        for (BlockState state : palette) {
+            NbtCompound stateNbt = new NbtCompound();
+            stateNbt.putString("Name", Registries.BLOCK.getId(state.getBlock()).toString());
+            if (!state.getEntries().isEmpty()) {
+                NbtCompound props = new NbtCompound();
+                state.getEntries().forEach((property, value) -> props.putString(property.getName(), value.toString()));
+                stateNbt.put("Properties", props);
+            }
+            paletteList.add(stateNbt);
+        }
+        nbt.put("palette", paletteList);
+        
+        if (palette.length < 255) {
+            byte[] data = new byte[VOLUME];
+            for (int i = 0; i < VOLUME; i++) {
+                data[i] = (byte) (cells[i] + 1);
+            }
+            nbt.putByteArray("cells", data);
+        } else {
+            int[] data = new int[VOLUME];
+            for (int i = 0; i < VOLUME; i++) {
+                data[i] = cells[i] + 1;
+            }
+            nbt.putIntArray("cells", data);
+        }
+        
+        return nbt;
+    }
+    
+    /**
+     * Deserialize from NBT; unknown blocks become empty cells
+     * Palettes written by an older game version are upgraded through the DataFixer.
+     */
+    public static StructureSection fromNbt(NbtCompound nbt) {
+        int dataVersion = DataVersions.of(nbt);
+        NbtList paletteList = nbt.getList("palette", NbtElement.COMPOUND_TYPE);
+        BlockState[] resolved = new BlockState[paletteList.size()];
+        for (int i = 0; i < resolved.length; i++) {
+            NbtCompound stateNbt = paletteList.getCompound(i);
+            NbtCompound props = stateNbt.contains("Properties") ? stateNbt.getCompound("Properties") : null;
+            resolved[i] = BlockStateResolver.resolve(stateNbt.getString("Name"), props, dataVersion);
+        }
+        
+        BlockState[] states = new BlockState[VOLUME];
+        NbtElement cellsTag = nbt.get("cells");
+        byte[] byteCells = cellsTag instanceof NbtByteArray byteArray ? byteArray.getByteArray() : null;
+        int[] intCells = cellsTag instanceof NbtIntArray intArray ? intArray.getIntArray() : null;
+        for (int i = 0; i < VOLUME; i++) {
+            int value = 0;
+            if (byteCells != null && i < byteCells.length) {
+                value = byteCells[i] & 0xFF;
+            } else if (intCells != null && i < intCells.length) {
+                value = intCells[i];
+            }
+            if (value > 0 && value <= resolved.length) {
+                states[i] = resolved[value - 1];
+            }
+        }
+        
+        // Rebuild through fromStates so the palette is canonical even if blocks went missing
+        StructureSection section = fromStates(states);
+        section.upgraded = DataVersions.isOutdated(dataVersion);
+        return section;
+    }
+}
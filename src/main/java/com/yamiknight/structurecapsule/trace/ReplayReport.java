@@ -0,0 +1,110 @@
+package com.yamiknight.structurecapsule.trace;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Latency and throughput measured while replaying a trace
+ *
+ * Placement and save latencies run from the moment the request is replayed
+ * to its completion; the recorded latencies of the same requests are kept
+ * alongside so a replay can be compared with the live server it came from.
+ */
+public class ReplayReport {
+    private final String mode;
+    final Samples placementLatency = new Samples();
+    final Samples recordedPlacementLatency = new Samples();
+    final Samples saveLatency = new Samples();
+    final Samples recordedSaveLatency = new Samples();
+    final Samples placerTicks = new Samples();
+    int tasks;
+    int structures;
+    long blocks;
+    int saves;
+    long ticks;
+    long wallNanos;
+    
+    ReplayReport(String mode) {
+        this.mode = mode;
+    }
+    
+    /**
+     * Recorded latencies, from the trace's own queue and finish events
+     */
+    void addRecorded(TraceReader.Trace trace) {
+        Map<Integer, Long> queued = new HashMap<>();
+        Map<Integer, Long> requested = new HashMap<>();
+        for (TraceEvent event : trace.events()) {
+            if (event instanceof TraceEvent.PlacementQueued queuedEvent) {
+                queued.put(queuedEvent.id(), queuedEvent.time());
+            } else if (event instanceof TraceEvent.PlacementFinished finished && queued.containsKey(finished.id())) {
+                recordedPlacementLatency.add(finished.time() - queued.remove(finished.id()));
+            } else if (event instanceof TraceEvent.SaveRequested request && request.admission().equals("ADMITTED")) {
+                requested.put(request.id(), request.time());
+            } else if (event instanceof TraceEvent.SaveFinished finished && requested.containsKey(finished.id())) {
+                recordedSaveLatency.add(finished.time() - requested.remove(finished.id()));
+            }
+        }
+    }
+    
+    /**
+     * Human-readable summary, one line per aspect
+     */
+    public List<String> lines() {
+        List<String> lines = new ArrayList<>();
+        double placerSeconds = placerTicks.total() / 1_000_000_000.0;
+        double gameSeconds = ticks / 20.0;
+        lines.add(String.format(Locale.ROOT, "Replay (%s): %d placement tasks (%d structures, %d blocks) and %d saves in %d ticks, %.1f s wall",
+            mode, tasks, structures, blocks, saves, ticks, wallNanos / 1_000_000_000.0));
+        lines.add(String.format(Locale.ROOT, "Placement latency: p50 %.0f ms, p99 %.0f ms (recorded p50 %.0f ms, p99 %.0f ms)",
+            placementLatency.percentileMillis(50), placementLatency.percentileMillis(99),
+            recordedPlacementLatency.percentileMillis(50), recordedPlacementLatency.percentileMillis(99)));
+        lines.add(String.format(Locale.ROOT, "Save latency: p50 %.0f ms, p99 %.0f ms (recorded p50 %.0f ms, p99 %.0f ms)",
+            saveLatency.percentileMillis(50), saveLatency.percentileMillis(99),
+            recordedSaveLatency.percentileMillis(50), recordedSaveLatency.percentileMillis(99)));
+        lines.add(String.format(Locale.ROOT, "Placer tick: p50 %.2f ms, p99 %.2f ms, max %.2f ms; %.0f blocks/CPU s, %.0f blocks/game s",
+            placerTicks.percentileMillis(50), placerTicks.percentileMillis(99), placerTicks.percentileMillis(100),
+            placerSeconds > 0 ? blocks / placerSeconds : 0.0, gameSeconds > 0 ? blocks / gameSeconds : 0.0));
+        return lines;
+    }
+    
+    /**
+     * Exact duration samples in nanoseconds
+     */
+    static class Samples {
+        private long[] samples = new long[64];
+        private int count = 0;
+        
+        synchronized void add(long nanos) {
+            if (count == samples.length) {
+                samples = Arrays.copyOf(samples, count * 2);
+            }
+            samples[count++] = Math.max(0, nanos);
+        }
+        
+        synchronized long total() {
+            long total = 0;
+            for (int i = 0; i < count; i++) {
+                total += samples[i];
+            }
+            return total;
+        }
+        
+        /**
+         * Nearest-rank percentile in milliseconds, 0 without samples
+         */
+        synchronized double percentileMillis(double percentile) {
+            if (count == 0) {
+                return 0.0;
+            }
+            long[] sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            return sorted[Math.max(0, Math.min(count - 1, rank))] / 1_000_000.0;
+        }
+    }
+}
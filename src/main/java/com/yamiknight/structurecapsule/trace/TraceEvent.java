@@ -0,0 +1,58 @@
+package com.yamiknight.structurecapsule.trace;
+
+import java.util.List;
+
+/**
+ * One event of a recorded workload trace
+ *
+ * Times are nanoseconds since the trace started. Structures are described by
+ * name and shape only; replays stand in synthetic structures of the same size
+ * and block count where the original is not available.
+ */
+public sealed interface TraceEvent {
+    long time();
+    
+    /**
+     * A player asked to save a region (StructureSavePacket)
+     *
+     * @param admission CaptureAdmission status name; only "ADMITTED" requests start a capture
+     */
+    record SaveRequested(long time, int id, String name, int x, int y, int z,
+                         int sizeX, int sizeY, int sizeZ, String admission) implements TraceEvent {
+    }
+    
+    /**
+     * An admitted save finished
+     *
+     * @param blockCount Captured blocks, or -1 if the save failed
+     */
+    record SaveFinished(long time, int id, int blockCount) implements TraceEvent {
+    }
+    
+    /**
+     * A placement task (one capsule, one command or one batch) was queued
+     */
+    record PlacementQueued(long time, int id, String label, List<Placed> placements) implements TraceEvent {
+    }
+    
+    /**
+     * One structure of a queued placement task
+     *
+     * @param facing Horizontal direction index (Direction.getHorizontal)
+     */
+    record Placed(String name, int x, int y, int z, int sizeX, int sizeY, int sizeZ, int blockCount,
+                  int facing, boolean clearVolume) {
+    }
+    
+    /**
+     * One placer tick spent on a task
+     */
+    record PlacerTick(long time, int id, int placed, int skipped, long tickNanos) implements TraceEvent {
+    }
+    
+    /**
+     * A placement task finished
+     */
+    record PlacementFinished(long time, int id) implements TraceEvent {
+    }
+}
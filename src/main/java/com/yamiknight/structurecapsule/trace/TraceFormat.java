@@ -0,0 +1,71 @@
+package com.yamiknight.structurecapsule.trace;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Binary layout of workload traces (.sctrace)
+ *
+ * Header: magic "SCTR", version (int), wall-clock start (long, epoch millis).
+ * Then records until end of file: a type byte, the time since the previous
+ * record as an unsigned varlong (nanoseconds) and the record's fields. Ints are
+ * varints (coordinates zigzag-encoded); names are interned: a STRING record
+ * defines the next table index and other records refer to names by index.
+ * A typical record is 5-15 bytes.
+ */
+final class TraceFormat {
+    static final int MAGIC = 0x53435452; // "SCTR"
+    static final int VERSION = 1;
+    static final String EXTENSION = ".sctrace";
+    
+    static final byte STRING = 0;
+    static final byte SAVE_REQUESTED = 1;
+    static final byte SAVE_FINISHED = 2;
+    static final byte PLACEMENT_QUEUED = 3;
+    static final byte PLACER_TICK = 4;
+    static final byte PLACEMENT_FINISHED = 5;
+    
+    private TraceFormat() {
+    }
+    
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+    
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 64) {
+                throw new IOException("Malformed varint in trace");
+            }
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+    
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+    
+    static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+    
+    static void writeSigned(DataOutput out, int value) throws IOException {
+        writeVarInt(out, (value << 1) ^ (value >> 31));
+    }
+    
+    static int readSigned(DataInput in) throws IOException {
+        int value = readVarInt(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,140 @@
+package com.yamiknight.structurecapsule.trace;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes a workload trace written by TraceRecorder
+ */
+public class TraceReader {
+    /**
+     * A decoded trace
+     *
+     * @param startMillis Wall-clock time recording started (epoch millis)
+     */
+    public record Trace(long startMillis, List<TraceEvent> events) {
+        /**
+         * Time from the start of recording to the last event
+         */
+        public long durationNanos() {
+            return events.isEmpty() ? 0 : events.get(events.size() - 1).time();
+        }
+    }
+    
+    /**
+     * Read a whole trace; a truncated last record (recording cut off) is dropped
+     */
+    public static Trace read(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != TraceFormat.MAGIC) {
+                throw new IOException("Not a workload trace: " + path.getFileName());
+            }
+            int version = in.readInt();
+            if (version != TraceFormat.VERSION) {
+                throw new IOException("Unsupported trace version " + version);
+            }
+            long startMillis = in.readLong();
+            
+            List<String> strings = new ArrayList<>();
+            List<TraceEvent> events = new ArrayList<>();
+            long time = 0;
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                try {
+                    time += TraceFormat.readVarLong(in);
+                    switch ((byte) type) {
+                        case TraceFormat.STRING -> strings.add(in.readUTF());
+                        case TraceFormat.SAVE_REQUESTED -> events.add(new TraceEvent.SaveRequested(time,
+                            TraceFormat.readVarInt(in), string(strings, TraceFormat.readVarInt(in)),
+                            TraceFormat.readSigned(in), TraceFormat.readSigned(in), TraceFormat.readSigned(in),
+                            TraceFormat.readVarInt(in), TraceFormat.readVarInt(in), TraceFormat.readVarInt(in),
+                            string(strings, TraceFormat.readVarInt(in))));
+                        case TraceFormat.SAVE_FINISHED -> events.add(new TraceEvent.SaveFinished(time,
+                            TraceFormat.readVarInt(in), TraceFormat.readSigned(in)));
+                        case TraceFormat.PLACEMENT_QUEUED -> events.add(readPlacementQueued(in, time, strings));
+                        case TraceFormat.PLACER_TICK -> events.add(new TraceEvent.PlacerTick(time,
+                            TraceFormat.readVarInt(in), TraceFormat.readVarInt(in), TraceFormat.readVarInt(in),
+                            TraceFormat.readVarLong(in)));
+                        case TraceFormat.PLACEMENT_FINISHED -> events.add(new TraceEvent.PlacementFinished(time,
+                            TraceFormat.readVarInt(in)));
+                        default -> throw new IOException("Unknown trace record type " + type);
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+            }
+            return new Trace(startMillis, events);
+        }
+    }
+    
+    /**
+     * Read a trace from the traces directory by file name
+     */
+    public static Trace read(String fileName) throws IOException {
+        Path dir = TraceRecorder.getTracesDir().normalize();
+        Path path = dir.resolve(fileName).normalize();
+        if (!path.startsWith(dir) || !path.getParent().equals(dir)) {
+            throw new IOException("Invalid trace file name: " + fileName);
+        }
+        if (!Files.isRegularFile(path)) {
+            throw new IOException("Trace not found: " + fileName);
+        }
+        return read(path);
+    }
+    
+    private static TraceEvent.PlacementQueued readPlacementQueued(DataInputStream in, long time, List<String> strings)
+            throws IOException {
+        int id = TraceFormat.readVarInt(in);
+        String label = string(strings, TraceFormat.readVarInt(in));
+        int count = TraceFormat.readVarInt(in);
+        List<TraceEvent.Placed> placements = new ArrayList<>(Math.min(count, 4096));
+        for (int i = 0; i < count; i++) {
+            String name = string(strings, TraceFormat.readVarInt(in));
+            int x = TraceFormat.readSigned(in);
+            int y = TraceFormat.readSigned(in);
+            int z = TraceFormat.readSigned(in);
+            int sizeX = TraceFormat.readVarInt(in);
+            int sizeY = TraceFormat.readVarInt(in);
+            int sizeZ = TraceFormat.readVarInt(in);
+            int blockCount = TraceFormat.readVarInt(in);
+            int flags = in.readUnsignedByte();
+            placements.add(new TraceEvent.Placed(name, x, y, z, sizeX, sizeY, sizeZ, blockCount,
+                flags >> 1, (flags & 1) != 0));
+        }
+        return new TraceEvent.PlacementQueued(time, id, label, placements);
+    }
+    
+    private static String string(List<String> strings, int index) throws IOException {
+        if (index < 0 || index >= strings.size()) {
+            throw new IOException("Trace refers to undefined string " + index);
+        }
+        return strings.get(index);
+    }
+    
+    /**
+     * Trace files available for replay
+     */
+    public static List<String> listTraces() throws IOException {
+        List<String> names = new ArrayList<>();
+        Path dir = TraceRecorder.getTracesDir();
+        if (!Files.isDirectory(dir)) {
+            return names;
+        }
+        try (var paths = Files.list(dir)) {
+            paths.map(path -> path.getFileName().toString())
+                .filter(name -> name.endsWith(TraceFormat.EXTENSION))
+                .sorted()
+                .forEach(names::add);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,213 @@
+package com.yamiknight.structurecapsule.trace;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import com.yamiknight.structurecapsule.util.Workers;
+import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opt-in recorder of the placement and save workload
+ *
+ * While recording, AsyncStructurePlacer and StructureSavePacket report queue,
+ * tick, save and completion events here. Records are encoded into an in-memory
+ * buffer (see TraceWriter) and appended to the trace file on the worker pool,
+ * so the server thread never waits on disk. When not recording every hook is a
+ * single volatile read. Traces are written to ./config/structurecapsule/traces/
+ * and replayed with TraceReplay.
+ */
+public class TraceRecorder {
+    private static final int FLUSH_BYTES = 64 * 1024;
+    private static final int FLUSH_INTERVAL_TICKS = 100;
+    private static final DateTimeFormatter FILE_NAME = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+    
+    private static final AtomicInteger IDS = new AtomicInteger();
+    private static final Object LOCK = new Object();
+    
+    private static volatile boolean recording = false;
+    private static Path path;
+    private static TraceWriter writer;
+    private static CompletableFuture<Void> writes = CompletableFuture.completedFuture(null);
+    
+    public static Path getTracesDir() {
+        return FabricLoader.getInstance().getConfigDir().resolve("structurecapsule").resolve("traces");
+    }
+    
+    /**
+     * Start recording to a new timestamped trace file
+     *
+     * @return The trace file, or null if already recording
+     */
+    public static Path start() throws IOException {
+        synchronized (LOCK) {
+            if (recording) {
+                return null;
+            }
+            Files.createDirectories(getTracesDir());
+            path = getTracesDir().resolve(LocalDateTime.now().format(FILE_NAME) + TraceFormat.EXTENSION);
+            writer = new TraceWriter(FLUSH_BYTES * 2, System.currentTimeMillis(), System.nanoTime());
+            Files.deleteIfExists(path);
+            recording = true;
+            StructureCapsuleMod.LOGGER.info("Recording workload trace to {}", path);
+            return path;
+        }
+    }
+    
+    /**
+     * Stop recording and write out what is buffered
+     *
+     * @return Completes once the trace file is complete; null if not recording
+     */
+    public static CompletableFuture<Path> stop() {
+        synchronized (LOCK) {
+            if (!recording) {
+                return null;
+            }
+            recording = false;
+            flush();
+            Path finished = path;
+            StructureCapsuleMod.LOGGER.info("Stopped workload trace {} ({} records)", finished, writer.getRecords());
+            writer = null;
+            return writes.thenApply(ignored -> finished);
+        }
+    }
+    
+    public static boolean isRecording() {
+        return recording;
+    }
+    
+    /**
+     * Id for a placement task or save, unique within this server run
+     */
+    public static int nextId() {
+        return IDS.incrementAndGet();
+    }
+    
+    /**
+     * Called every server tick; hands buffered records to the writer now and then
+     */
+    public static void tick(MinecraftServer server) {
+        if (!recording) {
+            return;
+        }
+        synchronized (LOCK) {
+            if (recording && (writer.size() >= FLUSH_BYTES || server.getTicks() % FLUSH_INTERVAL_TICKS == 0)) {
+                flush();
+            }
+        }
+    }
+    
+    public static void saveRequested(int id, String name, BlockPos origin, int sizeX, int sizeY, int sizeZ,
+                                     String admission) {
+        if (!recording) {
+            return;
+        }
+        synchronized (LOCK) {
+            try {
+                if (recording) {
+                    writer.saveRequested(System.nanoTime(), id, name, origin, sizeX, sizeY, sizeZ, admission);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+    
+    /**
+     * @param blockCount Captured blocks, or -1 if the save failed
+     */
+    public static void saveFinished(int id, int blockCount) {
+        if (!recording) {
+            return;
+        }
+        synchronized (LOCK) {
+            try {
+                if (recording) {
+                    writer.saveFinished(System.nanoTime(), id, blockCount);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+    
+    public static void placementQueued(int id, String label, List<AsyncStructurePlacer.Placement> placements) {
+        if (!recording) {
+            return;
+        }
+        synchronized (LOCK) {
+            try {
+                if (recording) {
+                    writer.placementQueued(System.nanoTime(), id, label, placements);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+    
+    public static void placerTick(int id, int placed, int skipped, long tickNanos) {
+        if (!recording) {
+            return;
+        }
+        synchronized (LOCK) {
+            try {
+                if (recording) {
+                    writer.placerTick(System.nanoTime(), id, placed, skipped, tickNanos);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+    
+    public static void placementFinished(int id) {
+        if (!recording) {
+            return;
+        }
+        synchronized (LOCK) {
+            try {
+                if (recording) {
+                    writer.placementFinished(System.nanoTime(), id);
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+    
+    /**
+     * Queue the buffered bytes for appending; writes stay in order
+     */
+    private static void flush() {
+        if (writer.size() == 0) {
+            return;
+        }
+        byte[] bytes = writer.drain();
+        Path target = path;
+        writes = writes.thenRunAsync(() -> {
+            try {
+                Files.write(target, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                StructureCapsuleMod.LOGGER.error("Failed to write workload trace {}", target, e);
+            }
+        }, Workers.pool());
+    }
+    
+    private static void fail(IOException e) {
+        // Only reachable if the in-memory buffer fails; give up rather than write a corrupt trace
+        StructureCapsuleMod.LOGGER.error("Workload trace recording failed", e);
+        recording = false;
+    }
+}
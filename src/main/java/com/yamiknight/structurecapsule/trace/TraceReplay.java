@@ -0,0 +1,434 @@
+package com.yamiknight.structurecapsule.trace;
+
+import com.yamiknight.structurecapsule.StructureCapsuleMod;
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import com.yamiknight.structurecapsule.placement.PlacementPlan;
+import com.yamiknight.structurecapsule.placement.PlacementWriter;
+import com.yamiknight.structurecapsule.structure.AsyncStructureCapture;
+import com.yamiknight.structurecapsule.structure.SectionCapture;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.structure.StructureManager;
+import com.yamiknight.structurecapsule.structure.StructureSection;
+import com.yamiknight.structurecapsule.util.Workers;
+import com.yamiknight.structurecapsule.world.MemorySectionAccess;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.command.ServerCommandSource;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Replays a recorded workload trace
+ *
+ * Two modes:
+ * - simulate: runs the placement and capture engines against a
+ *   MemorySectionAccess in simulated 50 ms ticks, with no server, world or
+ *   disk. Structures are synthetic stand-ins of the recorded size and block
+ *   count, so results compare settings (blocksPerTick, capture budget) and
+ *   engine changes, not particular builds. Idle gaps between events are skipped.
+ * - start: re-issues the recorded placements and saves on a live server at
+ *   their recorded game times, shifted so the first one lands at an anchor.
+ *   Saved structures are placed as they are now; missing ones get a synthetic
+ *   stand-in. Saves are captured as "trace_replay_<id>" structures.
+ *
+ * Either way the result is a ReplayReport of latencies and throughput next
+ * to the latencies the trace recorded.
+ */
+public class TraceReplay {
+    private static final long TICK_NANOS = 50_000_000L;
+    private static final String SAVE_PREFIX = "trace_replay_";
+    private static final BlockState[] SYNTHETIC_PALETTE = {
+        Blocks.STONE.getDefaultState(),
+        Blocks.OAK_PLANKS.getDefaultState(),
+        Blocks.GLASS.getDefaultState(),
+        Blocks.OAK_STAIRS.getDefaultState()
+    };
+    
+    private static ServerReplay active;
+    
+    /**
+     * Engine settings a simulation runs with
+     */
+    public record Settings(int blocksPerTick, int captureTickBudgetMs, int maxConcurrentCaptures) {
+        public static Settings fromConfig() {
+            ModConfig config = ModConfig.getInstance();
+            return new Settings(config.blocksPerTick, config.captureTickBudgetMs, config.maxConcurrentCaptures);
+        }
+    }
+    
+    /**
+     * Replay a trace in memory
+     * Needs only initialized block registries, so it also runs outside a server.
+     */
+    public static ReplayReport simulate(TraceReader.Trace trace, Settings settings) {
+        return simulate(trace, settings, new MemorySectionAccess());
+    }
+    
+    /**
+     * Replay a trace into the given in-memory world
+     */
+    static ReplayReport simulate(TraceReader.Trace trace, Settings settings, MemorySectionAccess world) {
+        ReplayReport report = new ReplayReport("simulated");
+        report.addRecorded(trace);
+        Map<String, StructureData> structures = new HashMap<>();
+        Map<String, PlacementPlan> plans = new HashMap<>();
+        ArrayDeque<SimPlacement> placements = new ArrayDeque<>();
+        List<SimCapture> captures = new ArrayList<>();
+        BlockState[] scratch = new BlockState[StructureSection.VOLUME];
+        int blocksPerTick = Math.max(1, settings.blocksPerTick());
+        long wallStart = System.nanoTime();
+        
+        List<TraceEvent> events = trace.events();
+        int next = 0;
+        long tick = 0;
+        while (next < events.size() || !placements.isEmpty() || !captures.isEmpty()) {
+            // Nothing in flight: jump ahead to the next event
+            if (placements.isEmpty() && captures.isEmpty()) {
+                tick = Math.max(tick, events.get(next).time() / TICK_NANOS);
+            }
+            
+            while (next < events.size() && events.get(next).time() / TICK_NANOS <= tick) {
+                TraceEvent event = events.get(next++);
+                if (event instanceof TraceEvent.PlacementQueued queued) {
+                    placements.add(simulatePlacement(queued, tick, structures, plans, report));
+                } else if (event instanceof TraceEvent.SaveRequested request && isAdmitted(request)) {
+                    captures.add(new SimCapture(request, tick));
+                    report.saves++;
+                }
+            }
+            
+            // Captures first, sharing the budget like AsyncStructureCapture
+            if (!captures.isEmpty()) {
+                int running = Math.min(Math.max(1, settings.maxConcurrentCaptures()), captures.size());
+                long budget = Math.max(1, settings.captureTickBudgetMs()) * 1_000_000L / running;
+                Iterator<SimCapture> iterator = captures.iterator();
+                for (int i = 0; i < running && iterator.hasNext(); i++) {
+                    SimCapture capture = iterator.next();
+                    if (capture.step(world, System.nanoTime() + budget, scratch)) {
+                        iterator.remove();
+                        report.saveLatency.add((tick - capture.startTick + 1) * TICK_NANOS);
+                    }
+                }
+            }
+            
+            // Then one tick of the placer, first task only
+            SimPlacement placement = placements.peek();
+            if (placement != null) {
+                long start = System.nanoTime();
+                placement.writer.write(world, blocksPerTick);
+                report.placerTicks.add(System.nanoTime() - start);
+                if (!placement.writer.hasMoreBlocks()) {
+                    placements.poll();
+                    report.placementLatency.add((tick - placement.startTick + 1) * TICK_NANOS);
+                }
+            }
+            
+            report.ticks++;
+            tick++;
+        }
+        report.wallNanos = System.nanoTime() - wallStart;
+        return report;
+    }
+    
+    private static SimPlacement simulatePlacement(TraceEvent.PlacementQueued queued, long tick,
+                                                  Map<String, StructureData> structures,
+                                                  Map<String, PlacementPlan> plans, ReplayReport report) {
+        List<BlockPos> origins = new ArrayList<>(queued.placements().size());
+        PlacementPlan[] built = new PlacementPlan[queued.placements().size()];
+        for (int i = 0; i < built.length; i++) {
+            TraceEvent.Placed placed = queued.placements().get(i);
+            BlockPos origin = new BlockPos(placed.x(), placed.y(), placed.z());
+            StructureData data = structures.computeIfAbsent(shapeKey(placed), key -> synthetic(placed));
+            Direction facing = Direction.fromHorizontal(placed.facing());
+            String planKey = shapeKey(placed) + "/" + placed.facing();
+            built[i] = plans.computeIfAbsent(planKey, key -> PlacementPlan.build(data, facing));
+            origins.add(origin);
+            report.blocks += built[i].getBlockCount();
+        }
+        report.tasks++;
+        report.structures += built.length;
+        return new SimPlacement(new PlacementWriter(origins, built), tick);
+    }
+    
+    /**
+     * Replay a trace on a live server, driven by tick()
+     *
+     * @param anchor Where the trace's first placement or save is replayed
+     * @param source Receives the report when the replay finishes
+     * @return false if a replay is already running
+     */
+    public static boolean start(MinecraftServer server, ServerWorld world, TraceReader.Trace trace, BlockPos anchor,
+                                ServerCommandSource source) {
+        if (active != null) {
+            return false;
+        }
+        active = new ServerReplay(server, world, trace, anchor, source);
+        return true;
+    }
+    
+    public static boolean isRunning() {
+        return active != null;
+    }
+    
+    /**
+     * Abandon a running replay; work already queued carries on
+     */
+    public static void cancel() {
+        if (active != null) {
+            StructureCapsuleMod.LOGGER.info("Cancelled workload replay");
+            active = null;
+        }
+    }
+    
+    /**
+     * Called every server tick; dispatches the events that are due
+     */
+    public static void tick(MinecraftServer server) {
+        if (active != null && active.tick(server)) {
+            active = null;
+        }
+    }
+    
+    /**
+     * Called by AsyncStructurePlacer after each tick it worked, with the time it took
+     */
+    public static void onPlacerTick(long nanos) {
+        ServerReplay replay = active;
+        if (replay != null && replay.startTick >= 0) {
+            replay.report.placerTicks.add(nanos);
+        }
+    }
+    
+    private static boolean isAdmitted(TraceEvent.SaveRequested request) {
+        return request.admission().equals("ADMITTED");
+    }
+    
+    private static String shapeKey(TraceEvent.Placed placed) {
+        return placed.sizeX() + "x" + placed.sizeY() + "x" + placed.sizeZ() + ":" + placed.blockCount();
+    }
+    
+    /**
+     * Stand-in structure of the recorded shape: blockCount blocks spread evenly
+     * over the volume, cycling through a few plain and rotatable states
+     */
+    static StructureData synthetic(TraceEvent.Placed placed) {
+        int sizeX = Math.max(1, placed.sizeX());
+        int sizeY = Math.max(1, placed.sizeY());
+        int sizeZ = Math.max(1, placed.sizeZ());
+        long volume = (long) sizeX * sizeY * sizeZ;
+        int count = (int) Math.min(Math.max(0, placed.blockCount()), volume);
+        StructureData.Builder builder = new StructureData.Builder(placed.name(), sizeX, sizeY, sizeZ, count);
+        for (int i = 0; i < count; i++) {
+            long cell = i * volume / count;
+            int x = (int) (cell % sizeX);
+            int z = (int) (cell / sizeX % sizeZ);
+            int y = (int) (cell / ((long) sizeX * sizeZ));
+            builder.addBlock(new BlockPos(x, y, z), SYNTHETIC_PALETTE[i % SYNTHETIC_PALETTE.length]);
+        }
+        return builder.build();
+    }
+    
+    private static class SimPlacement {
+        final PlacementWriter writer;
+        final long startTick;
+        
+        SimPlacement(PlacementWriter writer, long startTick) {
+            this.writer = writer;
+            this.startTick = startTick;
+        }
+    }
+    
+    /**
+     * A capture reduced to its scan: sections are read and fingerprinted, not stored
+     */
+    private static class SimCapture {
+        final TraceEvent.SaveRequested request;
+        final BlockPos origin;
+        final long startTick;
+        final int sectionsX;
+        final int sectionsZ;
+        final int sectionCount;
+        int cursor = 0;
+        
+        SimCapture(TraceEvent.SaveRequested request, long startTick) {
+            this.request = request;
+            this.origin = new BlockPos(request.x(), request.y(), request.z());
+            this.startTick = startTick;
+            this.sectionsX = (request.sizeX() + 15) >> 4;
+            this.sectionsZ = (request.sizeZ() + 15) >> 4;
+            this.sectionCount = sectionsX * ((request.sizeY() + 15) >> 4) * sectionsZ;
+        }
+        
+        /**
+         * Scan sections until the deadline; at least one section per call
+         *
+         * @return Whether the whole region has been scanned
+         */
+        boolean step(MemorySectionAccess world, long deadline, BlockState[] scratch) {
+            do {
+                if (cursor >= sectionCount) {
+                    return true;
+                }
+                int sx = cursor % sectionsX;
+                int sz = cursor / sectionsX % sectionsZ;
+                int sy = cursor / (sectionsX * sectionsZ);
+                try {
+                    SectionCapture.scanSection(world, origin, request.sizeX(), request.sizeY(), request.sizeZ(),
+                        sx, sy, sz, scratch);
+                } catch (IOException e) {
+                    // The simulated world never unloads chunks
+                    throw new UncheckedIOException(e);
+                }
+                cursor++;
+            } while (System.nanoTime() < deadline);
+            return cursor >= sectionCount;
+        }
+    }
+    
+    /**
+     * A replay running on a live server
+     */
+    private static class ServerReplay {
+        final ServerWorld world;
+        final TraceReader.Trace trace;
+        final ServerCommandSource source;
+        final ReplayReport report = new ReplayReport("server");
+        final CompletableFuture<Map<String, StructureData>> structures;
+        final BlockPos offset;
+        long startTick = -1;
+        long wallStart;
+        int next = 0;
+        int outstanding = 0;
+        
+        ServerReplay(MinecraftServer server, ServerWorld world, TraceReader.Trace trace, BlockPos anchor,
+                     ServerCommandSource source) {
+            this.world = world;
+            this.trace = trace;
+            this.source = source;
+            this.offset = anchor.subtract(firstOrigin(trace));
+            report.addRecorded(trace);
+            
+            // Saved structures are loaded up front, off the server thread
+            Map<String, TraceEvent.Placed> shapes = new HashMap<>();
+            for (TraceEvent event : trace.events()) {
+                if (event instanceof TraceEvent.PlacementQueued queued) {
+                    for (TraceEvent.Placed placed : queued.placements()) {
+                        shapes.putIfAbsent(placed.name(), placed);
+                    }
+                }
+            }
+            this.structures = CompletableFuture.supplyAsync(() -> {
+                Map<String, StructureData> loaded = new HashMap<>();
+                for (TraceEvent.Placed placed : shapes.values()) {
+                    StructureData data = StructureManager.structureExists(placed.name())
+                        ? StructureManager.loadStructureAsync(placed.name()).join() : null;
+                    loaded.put(placed.name(), data != null ? data : synthetic(placed));
+                }
+                return loaded;
+            }, Workers.pool());
+        }
+        
+        private static BlockPos firstOrigin(TraceReader.Trace trace) {
+            for (TraceEvent event : trace.events()) {
+                if (event instanceof TraceEvent.PlacementQueued queued && !queued.placements().isEmpty()) {
+                    TraceEvent.Placed placed = queued.placements().get(0);
+                    return new BlockPos(placed.x(), placed.y(), placed.z());
+                }
+                if (event instanceof TraceEvent.SaveRequested request && isAdmitted(request)) {
+                    return new BlockPos(request.x(), request.y(), request.z());
+                }
+            }
+            return BlockPos.ORIGIN;
+        }
+        
+        /**
+         * @return Whether the replay has finished
+         */
+        boolean tick(MinecraftServer server) {
+            if (startTick < 0) {
+                if (!structures.isDone()) {
+                    return false;
+                }
+                if (structures.isCompletedExceptionally()) {
+                    StructureCapsuleMod.LOGGER.error("Failed to load structures for workload replay");
+                    source.sendError(Text.translatable("structurecapsule.command.trace.replay_failed"));
+                    return true;
+                }
+                startTick = server.getTicks();
+                wallStart = System.nanoTime();
+            }
+            
+            long elapsed = server.getTicks() - startTick;
+            List<TraceEvent> events = trace.events();
+            while (next < events.size() && events.get(next).time() / TICK_NANOS <= elapsed) {
+                TraceEvent event = events.get(next++);
+                if (event instanceof TraceEvent.PlacementQueued queued) {
+                    dispatchPlacement(server, queued);
+                } else if (event instanceof TraceEvent.SaveRequested request && isAdmitted(request)) {
+                    dispatchSave(server, request);
+                }
+            }
+            
+            if (next < events.size() || outstanding > 0) {
+                return false;
+            }
+            report.ticks = elapsed + 1;
+            report.wallNanos = System.nanoTime() - wallStart;
+            for (String line : report.lines()) {
+                StructureCapsuleMod.LOGGER.info(line);
+                source.sendFeedback(() -> Text.literal(line), false);
+            }
+            return true;
+        }
+        
+        private void dispatchPlacement(MinecraftServer server, TraceEvent.PlacementQueued queued) {
+            Map<String, StructureData> loaded = structures.join();
+            List<AsyncStructurePlacer.Placement> placements = new ArrayList<>(queued.placements().size());
+            for (TraceEvent.Placed placed : queued.placements()) {
+                StructureData data = loaded.get(placed.name());
+                placements.add(new AsyncStructurePlacer.Placement(
+                    new BlockPos(placed.x(), placed.y(), placed.z()).add(offset),
+                    data, Direction.fromHorizontal(placed.facing()), placed.clearVolume()));
+                report.blocks += data.getBlockCount();
+            }
+            report.tasks++;
+            report.structures += placements.size();
+            outstanding++;
+            
+            long queuedTick = server.getTicks();
+            AsyncStructurePlacer.queueBatch(server, world, queued.label(), placements, null).whenComplete(
+                (ignored, error) -> finished(server, queuedTick, report.placementLatency));
+        }
+        
+        private void dispatchSave(MinecraftServer server, TraceEvent.SaveRequested request) {
+            BlockPos pos1 = new BlockPos(request.x(), request.y(), request.z()).add(offset);
+            BlockPos pos2 = pos1.add(request.sizeX() - 1, request.sizeY() - 1, request.sizeZ() - 1);
+            report.saves++;
+            outstanding++;
+            
+            long queuedTick = server.getTicks();
+            AsyncStructureCapture.queueCapture(world, pos1, pos2, SAVE_PREFIX + request.id(), null)
+                .getResult().whenComplete((manifest, error) -> finished(server, queuedTick, report.saveLatency));
+        }
+        
+        // Completions arrive on the server thread during the capture or placer tick
+        private void finished(MinecraftServer server, long queuedTick, ReplayReport.Samples latency) {
+            latency.add((server.getTicks() - queuedTick + 1) * TICK_NANOS);
+            outstanding--;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.yamiknight.structurecapsule.trace;
+
+import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes trace records (see TraceFormat) into an in-memory buffer
+ *
+ * Starts with the file header; drain() hands out what was encoded so far. Each
+ * record is given the System.nanoTime() it happened at. Not thread-safe,
+ * TraceRecorder calls it under its lock.
+ */
+final class TraceWriter {
+    private final ByteArrayOutputStream buffer;
+    private final DataOutputStream out;
+    private final Object2IntMap<String> strings = new Object2IntOpenHashMap<>();
+    private long lastNanos;
+    private long records = 0;
+    
+    TraceWriter(int initialSize, long startMillis, long startNanos) throws IOException {
+        this.buffer = new ByteArrayOutputStream(initialSize);
+        this.out = new DataOutputStream(buffer);
+        this.strings.defaultReturnValue(-1);
+        this.lastNanos = startNanos;
+        out.writeInt(TraceFormat.MAGIC);
+        out.writeInt(TraceFormat.VERSION);
+        out.writeLong(startMillis);
+    }
+    
+    void saveRequested(long nanos, int id, String name, BlockPos origin, int sizeX, int sizeY, int sizeZ,
+                       String admission) throws IOException {
+        int nameIndex = intern(nanos, name);
+        int admissionIndex = intern(nanos, admission);
+        header(nanos, TraceFormat.SAVE_REQUESTED);
+        TraceFormat.writeVarInt(out, id);
+        TraceFormat.writeVarInt(out, nameIndex);
+        writePos(origin);
+        TraceFormat.writeVarInt(out, sizeX);
+        TraceFormat.writeVarInt(out, sizeY);
+        TraceFormat.writeVarInt(out, sizeZ);
+        TraceFormat.writeVarInt(out, admissionIndex);
+    }
+    
+    void saveFinished(long nanos, int id, int blockCount) throws IOException {
+        header(nanos, TraceFormat.SAVE_FINISHED);
+        TraceFormat.writeVarInt(out, id);
+        TraceFormat.writeSigned(out, blockCount);
+    }
+    
+    void placementQueued(long nanos, int id, String label, List<AsyncStructurePlacer.Placement> placements)
+            throws IOException {
+        int labelIndex = intern(nanos, label);
+        int[] names = new int[placements.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = intern(nanos, placements.get(i).data().getName());
+        }
+        header(nanos, TraceFormat.PLACEMENT_QUEUED);
+        TraceFormat.writeVarInt(out, id);
+        TraceFormat.writeVarInt(out, labelIndex);
+        TraceFormat.writeVarInt(out, placements.size());
+        for (int i = 0; i < names.length; i++) {
+            AsyncStructurePlacer.Placement placement = placements.get(i);
+            TraceFormat.writeVarInt(out, names[i]);
+            writePos(placement.origin());
+            TraceFormat.writeVarInt(out, placement.data().getSizeX());
+            TraceFormat.writeVarInt(out, placement.data().getSizeY());
+            TraceFormat.writeVarInt(out, placement.data().getSizeZ());
+            TraceFormat.writeVarInt(out, placement.data().getBlockCount());
+            out.writeByte((placement.facing().getHorizontal() << 1) | (placement.clearVolume() ? 1 : 0));
+        }
+    }
+    
+    void placerTick(long nanos, int id, int placed, int skipped, long tickNanos) throws IOException {
+        header(nanos, TraceFormat.PLACER_TICK);
+        TraceFormat.writeVarInt(out, id);
+        TraceFormat.writeVarInt(out, placed);
+        TraceFormat.writeVarInt(out, skipped);
+        TraceFormat.writeVarLong(out, tickNanos);
+    }
+    
+    void placementFinished(long nanos, int id) throws IOException {
+        header(nanos, TraceFormat.PLACEMENT_FINISHED);
+        TraceFormat.writeVarInt(out, id);
+    }
+    
+    /**
+     * Bytes encoded since the last drain
+     */
+    int size() {
+        return buffer.size();
+    }
+    
+    /**
+     * Take the bytes encoded since the last drain
+     */
+    byte[] drain() {
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        return bytes;
+    }
+    
+    long getRecords() {
+        return records;
+    }
+    
+    private void header(long nanos, byte type) throws IOException {
+        out.writeByte(type);
+        TraceFormat.writeVarLong(out, Math.max(0, nanos - lastNanos));
+        lastNanos = Math.max(lastNanos, nanos);
+        records++;
+    }
+    
+    private int intern(long nanos, String value) throws IOException {
+        String key = value != null ? value : "";
+        int index = strings.getInt(key);
+        if (index < 0) {
+            index = strings.size();
+            strings.put(key, index);
+            header(nanos, TraceFormat.STRING);
+            out.writeUTF(key);
+        }
+        return index;
+    }
+    
+    private void writePos(BlockPos pos) throws IOException {
+        TraceFormat.writeSigned(out, pos.getX());
+        TraceFormat.writeSigned(out, pos.getY());
+        TraceFormat.writeSigned(out, pos.getZ());
+    }
+}
@@ -0,0 +1,41 @@
+package com.yamiknight.structurecapsule.util;
+
+import com.yamiknight.structurecapsule.config.ModConfig;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared background worker pool for StructureCapsule
+ *
+ * Used for CPU-heavy work that must stay off the server and render threads
+ * (structure decoding, compression, precomputation). Threads are daemon
+ * threads so they never keep the JVM alive on shutdown.
+ *
+ * Size is taken from workerThreads in the config; 0 means "cores - 1".
+ */
+public class Workers {
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static ForkJoinPool POOL;
+    
+    /**
+     * Get the shared pool, creating it on first use
+     */
+    public static synchronized ForkJoinPool pool() {
+        if (POOL == null) {
+            int configured = ModConfig.getInstance().workerThreads;
+            int parallelism = configured > 0
+                ? configured
+                : Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            
+            POOL = new ForkJoinPool(parallelism, pool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                thread.setName("StructureCapsule-Worker-" + THREAD_COUNTER.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return POOL;
+    }
+}
@@ -0,0 +1,147 @@
+package com.yamiknight.structurecapsule.world;
+
+import com.yamiknight.structurecapsule.structure.StructureSection;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+/**
+ * In-memory SectionAccess for engine benchmarks and fuzzing
+ *
+ * Sections are dense arrays created on first write; every chunk is loaded
+ * unless explicitly unloaded. There are no block updates, lighting or block
+ * entities, so only the engines' own cost is measured. Needs nothing but
+ * initialized block registries (Bootstrap.initialize()), no server or world.
+ */
+public class MemorySectionAccess implements SectionAccess {
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    
+    private final int bottomY;
+    private final int topY;
+    private final Long2ObjectMap<BlockState[]> sections = new Long2ObjectOpenHashMap<>();
+    private final LongSet unloaded = new LongOpenHashSet();
+    
+    /**
+     * Overworld build height (-64 to 319)
+     */
+    public MemorySectionAccess() {
+        this(-64, 320);
+    }
+    
+    /**
+     * @param bottomY Lowest block Y inside the world
+     * @param topY Block Y just above the world
+     */
+    public MemorySectionAccess(int bottomY, int topY) {
+        this.bottomY = bottomY;
+        this.topY = topY;
+    }
+    
+    /**
+     * Mark a chunk as unloaded (or loaded again); its contents are kept
+     */
+    public void setChunkLoaded(int chunkX, int chunkZ, boolean loaded) {
+        if (loaded) {
+            unloaded.remove(ChunkPos.toLong(chunkX, chunkZ));
+        } else {
+            unloaded.add(ChunkPos.toLong(chunkX, chunkZ));
+        }
+    }
+    
+    public BlockState getBlockState(int x, int y, int z) {
+        BlockState[] states = sections.get(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4));
+        if (states == null) {
+            return AIR;
+        }
+        BlockState state = states[StructureSection.cellIndex(x & 15, y & 15, z & 15)];
+        return state == null ? AIR : state;
+    }
+    
+    /**
+     * Set a block directly, ignoring loaded chunks (for building fixtures)
+     */
+    public void setBlockState(int x, int y, int z, BlockState state) {
+        if (isOutOfHeightLimit(y)) {
+            return;
+        }
+        BlockState[] states = sections.computeIfAbsent(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4),
+            key -> new BlockState[StructureSection.VOLUME]);
+        states[StructureSection.cellIndex(x & 15, y & 15, z & 15)] = state.isAir() ? null : state;
+    }
+    
+    /**
+     * Number of non-air blocks in the world
+     */
+    public long countBlocks() {
+        long count = 0;
+        for (BlockState[] states : sections.values()) {
+            for (BlockState state : states) {
+                if (state != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return !unloaded.contains(ChunkPos.toLong(chunkX, chunkZ));
+    }
+    
+    @Override
+    public boolean isOutOfHeightLimit(int y) {
+        return y < bottomY || y >= topY;
+    }
+    
+    @Override
+    public SectionReader readSection(int sectionX, int sectionY, int sectionZ) {
+        if (isOutOfHeightLimit(sectionY << 4)) {
+            return null;
+        }
+        BlockState[] states = sections.get(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ));
+        if (states == null) {
+            return (x, y, z) -> AIR;
+        }
+        return (x, y, z) -> {
+            BlockState state = states[StructureSection.cellIndex(x, y, z)];
+            return state == null ? AIR : state;
+        };
+    }
+    
+    @Override
+    public int writeSection(int sectionX, int sectionY, int sectionZ, short[] cells, BlockState[] states, int count) {
+        if (isOutOfHeightLimit(sectionY << 4)) {
+            return 0;
+        }
+        BlockState[] section = sections.computeIfAbsent(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ),
+            key -> new BlockState[StructureSection.VOLUME]);
+        int changed = 0;
+        for (int i = 0; i < count; i++) {
+            BlockState state = states[i].isAir() ? null : states[i];
+            if (section[cells[i]] != state) {
+                section[cells[i]] = state;
+                changed++;
+            }
+        }
+        return changed;
+    }
+    
+    @Override
+    public boolean replaceSection(int sectionX, int sectionY, int sectionZ, BlockState[] states) {
+        if (isOutOfHeightLimit(sectionY << 4)) {
+            return false;
+        }
+        BlockState[] section = new BlockState[StructureSection.VOLUME];
+        for (int i = 0; i < section.length; i++) {
+            section[i] = states[i] == null || states[i].isAir() ? null : states[i];
+        }
+        sections.put(ChunkSectionPos.asLong(sectionX, sectionY, sectionZ), section);
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package com.yamiknight.structurecapsule.world;
+
+import net.minecraft.block.BlockState;
+
+/**
+ * The part of a world the capture and placement engines need
+ *
+ * Reads and writes go through whole 16^3 world sections so an implementation
+ * can resolve chunks and sections once per section rather than per block.
+ * ServerSectionAccess is the live backend; MemorySectionAccess keeps blocks in
+ * plain arrays so the engines can be benchmarked and fuzzed without a server.
+ *
+ * Implementations are not thread-safe; use them from one thread at a time
+ * (the server thread for ServerSectionAccess).
+ */
+public interface SectionAccess {
+    /**
+     * Whether a chunk column is loaded and may be read or written
+     */
+    boolean isChunkLoaded(int chunkX, int chunkZ);
+    
+    /**
+     * Whether a block Y coordinate lies outside the world's build height
+     */
+    boolean isOutOfHeightLimit(int y);
+    
+    /**
+     * Blocks of one world section, valid until the next write
+     * Sections of unloaded chunks read as air; check isChunkLoaded where that matters.
+     * 
+     * @return A reader over the section, or null if it lies outside the build height
+     */
+    SectionReader readSection(int sectionX, int sectionY, int sectionZ);
+    
+    /**
+     * Write cells of one world section
+     * 
+     * @param cells Cell indices within the section (y << 8 | z << 4 | x)
+     * @param states State for each cell
+     * @param count Number of leading entries of cells and states to write
+     * @return Number of cells whose state changed
+     */
+    int writeSection(int sectionX, int sectionY, int sectionZ, short[] cells, BlockState[] states, int count);
+    
+    /**
+     * Replace every block of one world section in a single operation
+     * 
+     * @param states State of each cell in storage order (y << 8 | z << 4 | x), null for air
+     * @return false if the section cannot be replaced in bulk; nothing was changed and
+     *         the caller writes the blocks one by one instead
+     */
+    default boolean replaceSection(int sectionX, int sectionY, int sectionZ, BlockState[] states) {
+        return false;
+    }
+    
+    /**
+     * Read-only view of one section's block states
+     */
+    @FunctionalInterface
+    interface SectionReader {
+        /**
+         * State at section-local coordinates (0-15 each)
+         */
+        BlockState get(int x, int y, int z);
+    }
+}
@@ -0,0 +1,113 @@
+package com.yamiknight.structurecapsule.world;
+
+import com.yamiknight.structurecapsule.placement.SectionBlit;
+import com.yamiknight.structurecapsule.placement.SectionUpdateBatch;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.PalettedContainer;
+import net.minecraft.world.chunk.WorldChunk;
+
+/**
+ * SectionAccess backed by a live ServerWorld
+ *
+ * Reads come straight from the chunk's section containers; chunks that are not
+ * loaded read as air and are never loaded or generated for a read. Writes go through setBlockState so
+ * block entities, lighting, neighbor updates and POIs behave as before; client
+ * updates are either sent per block or collected in a SectionUpdateBatch.
+ * Whole-section replacements go through SectionBlit when a bulk batch is set.
+ */
+public class ServerSectionAccess implements SectionAccess {
+    private static final SectionReader EMPTY = (x, y, z) -> Blocks.AIR.getDefaultState();
+    
+    private final ServerWorld world;
+    private final BlockPos.Mutable target = new BlockPos.Mutable();
+    private SectionUpdateBatch updates;
+    private SectionUpdateBatch bulkUpdates;
+    
+    public ServerSectionAccess(ServerWorld world) {
+        this.world = world;
+    }
+    
+    public ServerWorld getWorld() {
+        return world;
+    }
+    
+    /**
+     * Collect client updates of following writes in a batch
+     * 
+     * @param updates The tick's batch, or null to notify clients per block
+     * @param bulkUpdates Batch resending sections replaced in bulk, or null to never replace whole sections
+     */
+    public void setUpdates(SectionUpdateBatch updates, SectionUpdateBatch bulkUpdates) {
+        this.updates = updates;
+        this.bulkUpdates = bulkUpdates;
+    }
+    
+    @Override
+    public boolean isChunkLoaded(int chunkX, int chunkZ) {
+        return world.getChunkManager().isChunkLoaded(chunkX, chunkZ);
+    }
+    
+    @Override
+    public boolean isOutOfHeightLimit(int y) {
+        return world.isOutOfHeightLimit(y);
+    }
+    
+    @Override
+    public SectionReader readSection(int sectionX, int sectionY, int sectionZ) {
+        int index = world.sectionCoordToIndex(sectionY);
+        if (index < 0 || index >= world.countVerticalSections()) {
+            return null;
+        }
+        if (!isChunkLoaded(sectionX, sectionZ)) {
+            return EMPTY;
+        }
+        WorldChunk chunk = world.getChunk(sectionX, sectionZ);
+        ChunkSection section = chunk.getSection(index);
+        if (section.isEmpty()) {
+            return EMPTY;
+        }
+        return section.getBlockStateContainer()::get;
+    }
+    
+    @Override
+    public int writeSection(int sectionX, int sectionY, int sectionZ, short[] cells, BlockState[] states, int count) {
+        int baseX = sectionX << 4;
+        int baseY = sectionY << 4;
+        int baseZ = sectionZ << 4;
+        int changed = 0;
+        for (int i = 0; i < count; i++) {
+            short cell = cells[i];
+            target.set(baseX + (cell & 15), baseY + ((cell >> 8) & 15), baseZ + ((cell >> 4) & 15));
+            if (updates == null) {
+                // Use flag 3: notify neighbors and clients
+                if (world.setBlockState(target, states[i], Block.NOTIFY_ALL)) {
+                    changed++;
+                }
+            } else if (world.setBlockState(target, states[i], Block.NOTIFY_NEIGHBORS)) {
+                // Clients are updated per section when the tick's batch is flushed
+                updates.add(target);
+                changed++;
+            }
+        }
+        return changed;
+    }
+    
+    @Override
+    public boolean replaceSection(int sectionX, int sectionY, int sectionZ, BlockState[] states) {
+        if (bulkUpdates == null) {
+            return false;
+        }
+        PalettedContainer<BlockState> blocks = SectionBlit.emptyContainer();
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] != null) {
+                blocks.swapUnsafe(i & 15, (i >> 8) & 15, (i >> 4) & 15, states[i]);
+            }
+        }
+        return SectionBlit.replace(world, world.getChunk(sectionX, sectionZ), sectionY, blocks, bulkUpdates);
+    }
+}
@@ -0,0 +1,133 @@
+package com.yamiknight.structurecapsule.convert;
+
+import com.yamiknight.structurecapsule.structure.CompressedContainer;
+import com.yamiknight.structurecapsule.structure.StructureManifest;
+import com.yamiknight.structurecapsule.structure.StructureSection;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exported schematics hold exactly the declared block data and import back unchanged
+ */
+public class SpongeSchematicFormatTest {
+    private static final int WIDTH = 37;
+    private static final int HEIGHT = 21;
+    private static final int LENGTH = 19;
+    
+    @TempDir
+    Path dir;
+    
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void exportImportsBack() throws IOException {
+        // More than 128 states, so later palette ids take two varint bytes
+        List<BlockState> states = new ArrayList<>();
+        for (Block block : Registries.BLOCK) {
+            BlockState state = block.getDefaultState();
+            if (!state.isAir() && !state.isOf(Blocks.STRUCTURE_VOID) && states.size() < 300) {
+                states.add(state);
+            }
+        }
+        Random random = new Random(42);
+        Map<BlockPos, BlockState> blocks = new HashMap<>();
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int z = 0; z < LENGTH; z++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    // Leave a whole section column empty too
+                    if (x < 16 && z < 16 && y >= 16 || random.nextInt(3) == 0) {
+                        continue;
+                    }
+                    blocks.put(new BlockPos(x, y, z), states.get(random.nextInt(states.size())));
+                }
+            }
+        }
+        
+        Map<String, StructureSection> stored = new HashMap<>();
+        StructureManifest manifest = manifest(blocks, stored);
+        Path file = dir.resolve("test.schem");
+        SpongeSchematicFormat.exportFile(manifest, ref -> stored.get(ref.hash()), file);
+        
+        // The declared BlockData length is exactly the varints written
+        NbtCompound nbt = CompressedContainer.read(file);
+        byte[] data = nbt.getByteArray("BlockData");
+        int offset = 0;
+        int wide = 0;
+        for (int i = 0; i < WIDTH * HEIGHT * LENGTH; i++) {
+            int first = offset;
+            while ((data[offset++] & 0x80) != 0) {
+                assertTrue(offset < data.length);
+            }
+            if (offset - first > 1) {
+                wide++;
+            }
+        }
+        assertEquals(data.length, offset);
+        assertTrue(wide > 0);
+        assertTrue(nbt.getInt("PaletteMax") > 128);
+        
+        SpongeSchematicFormat.Header header = SpongeSchematicFormat.readHeader(file, Integer.MAX_VALUE);
+        assertEquals(WIDTH, header.width);
+        assertEquals(HEIGHT, header.height);
+        assertEquals(LENGTH, header.length);
+        Map<BlockPos, BlockState> imported = new HashMap<>();
+        SpongeSchematicFormat.readBlocks(file, header, (sx, sy, sz, sectionStates) -> {
+            for (int cell = 0; cell < StructureSection.VOLUME; cell++) {
+                BlockState state = sectionStates[cell];
+                if (state != null) {
+                    BlockPos pos = new BlockPos((sx << 4) | (cell & 15), (sy << 4) | (cell >> 8),
+                        (sz << 4) | ((cell >> 4) & 15));
+                    assertNull(imported.put(pos, state), pos.toString());
+                }
+            }
+        });
+        assertEquals(blocks, imported);
+    }
+    
+    /**
+     * A manifest of the blocks, its sections kept in stored by hash
+     */
+    private static StructureManifest manifest(Map<BlockPos, BlockState> blocks, Map<String, StructureSection> stored) {
+        Map<BlockPos, BlockState[]> sections = new HashMap<>();
+        blocks.forEach((pos, state) -> {
+            BlockPos key = new BlockPos(pos.getX() >> 4, pos.getY() >> 4, pos.getZ() >> 4);
+            BlockState[] states = sections.computeIfAbsent(key, k -> new BlockState[StructureSection.VOLUME]);
+            states[StructureSection.cellIndex(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15)] = state;
+        });
+        
+        List<StructureManifest.SectionRef> refs = new ArrayList<>();
+        sections.forEach((pos, states) -> {
+            StructureSection section = StructureSection.fromStates(states);
+            String hash = "section" + stored.size();
+            stored.put(hash, section);
+            refs.add(new StructureManifest.SectionRef(pos.getX(), pos.getY(), pos.getZ(), hash,
+                section.getBlockCount(), 0));
+        });
+        return new StructureManifest("test", WIDTH, HEIGHT, LENGTH, blocks.size(), refs);
+    }
+}
@@ -0,0 +1,236 @@
+package com.yamiknight.structurecapsule.placement;
+
+import com.yamiknight.structurecapsule.structure.SectionCapture;
+import com.yamiknight.structurecapsule.structure.SectionStore;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.structure.StructureManifest;
+import com.yamiknight.structurecapsule.world.MemorySectionAccess;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Randomized capture and placement round trips against MemorySectionAccess
+ *
+ * Each round builds a random structure at a random (unaligned, possibly negative)
+ * position, captures it into a section store, re-captures it incrementally after
+ * random edits, and places the assembled result with a random facing, budget
+ * and clear-volume setting into a world with existing blocks and unloaded
+ * chunks. Every cell of the target and a one-block shell around it is then
+ * compared against what the placement should have produced. Failures report
+ * the round's seed; set -Dstructurecapsule.fuzz.seed to replay it.
+ */
+public class CapturePlaceFuzzTest {
+    private static final int ROUNDS = 150;
+    private static final int MAX_SIZE = 40;
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+    
+    @TempDir
+    Path storeDir;
+    
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void randomRoundTrips() throws IOException {
+        String fixed = System.getProperty("structurecapsule.fuzz.seed");
+        long baseSeed = fixed != null ? Long.parseLong(fixed) : System.nanoTime();
+        int rounds = fixed != null ? 1 : ROUNDS;
+        SectionStore store = new SectionStore(storeDir.resolve("sections"));
+        
+        for (int round = 0; round < rounds; round++) {
+            long seed = baseSeed + round;
+            try {
+                roundTrip(new Random(seed), store);
+            } catch (AssertionError | RuntimeException e) {
+                fail("Round trip failed for seed " + seed + ": " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    @Test
+    public void captureRejectsUnloadedChunks() {
+        SectionStore store = new SectionStore(storeDir.resolve("sections"));
+        MemorySectionAccess sourceWorld = new MemorySectionAccess();
+        sourceWorld.setBlockState(40, 64, 8, Blocks.STONE.getDefaultState());
+        sourceWorld.setChunkLoaded(2, 0, false);
+        
+        // Chunk 2, 0 would otherwise be saved as air
+        assertThrows(IOException.class, () -> SectionCapture.capture(sourceWorld, new BlockPos(0, 64, 0),
+            48, 1, 16, "unloaded", null, store, store.pins()));
+    }
+    
+    private static void roundTrip(Random random, SectionStore store) throws IOException {
+        int sizeX = 1 + random.nextInt(MAX_SIZE);
+        int sizeY = 1 + random.nextInt(MAX_SIZE);
+        int sizeZ = 1 + random.nextInt(MAX_SIZE);
+        BlockPos source = randomOrigin(random);
+        BlockPos target = randomOrigin(random);
+        
+        // A small palette makes repeated sections (shared hashes) likely, a large one stresses encoding
+        BlockState[] palette = new BlockState[1 + random.nextInt(random.nextBoolean() ? 4 : 200)];
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = Block.STATE_IDS.get(random.nextInt(Block.STATE_IDS.size()));
+        }
+        float density = random.nextFloat();
+        
+        MemorySectionAccess sourceWorld = new MemorySectionAccess();
+        fill(sourceWorld, random, source, sizeX, sizeY, sizeZ, palette, density);
+        
+        StructureManifest first = SectionCapture.capture(sourceWorld, source, sizeX, sizeY, sizeZ,
+            "fuzz", null, store, store.pins()).manifest();
+        
+        // Edit a few blocks and re-capture incrementally; unchanged sections are reused
+        int edits = random.nextInt(8);
+        for (int i = 0; i < edits; i++) {
+            sourceWorld.setBlockState(source.getX() + random.nextInt(sizeX), source.getY() + random.nextInt(sizeY),
+                source.getZ() + random.nextInt(sizeZ), random.nextBoolean() ? AIR : palette[random.nextInt(palette.length)]);
+        }
+        SectionCapture.Result recaptured = SectionCapture.capture(sourceWorld, source, sizeX, sizeY, sizeZ,
+            "fuzz", first, store, store.pins());
+        StructureData data = recaptured.manifest().assemble(store);
+        
+        int expectedBlocks = 0;
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    if (!sourceWorld.getBlockState(source.getX() + x, source.getY() + y, source.getZ() + z).isAir()) {
+                        expectedBlocks++;
+                    }
+                }
+            }
+        }
+        assertEquals(expectedBlocks, data.getBlockCount(), "captured block count");
+        assertEquals(expectedBlocks, recaptured.manifest().getBlockCount(), "manifest block count");
+        
+        Direction facing = Direction.fromHorizontal(random.nextInt(4));
+        boolean clearVolume = random.nextInt(3) == 0;
+        PlacementPlan plan = PlacementPlan.build(data, facing);
+        int footprintX = plan.getFootprintX();
+        int footprintY = plan.getFootprintY();
+        int footprintZ = plan.getFootprintZ();
+        
+        // Existing blocks in and around the target, then what the placement must not touch
+        MemorySectionAccess targetWorld = new MemorySectionAccess();
+        fill(targetWorld, random, target.add(-1, -1, -1), footprintX + 2, footprintY + 2, footprintZ + 2,
+            new BlockState[]{Blocks.BEDROCK.getDefaultState(), Blocks.SPONGE.getDefaultState()}, random.nextFloat());
+        if (clearVolume) {
+            // What VolumeClearer leaves behind on a live world
+            for (int x = 0; x < footprintX; x++) {
+                for (int y = 0; y < footprintY; y++) {
+                    for (int z = 0; z < footprintZ; z++) {
+                        targetWorld.setBlockState(target.getX() + x, target.getY() + y, target.getZ() + z, AIR);
+                    }
+                }
+            }
+        }
+        int unloadedChunkX = random.nextInt(4) == 0
+            ? (target.getX() + random.nextInt(footprintX)) >> 4 : Integer.MIN_VALUE;
+        int unloadedChunkZ = (target.getZ() + random.nextInt(footprintZ)) >> 4;
+        if (unloadedChunkX != Integer.MIN_VALUE) {
+            targetWorld.setChunkLoaded(unloadedChunkX, unloadedChunkZ, false);
+        }
+        MemorySectionAccess before = copy(targetWorld, target, footprintX, footprintY, footprintZ);
+        
+        PlacementWriter writer = new PlacementWriter(List.of(target), new PlacementPlan[]{plan},
+            new boolean[]{clearVolume});
+        while (writer.hasMoreBlocks()) {
+            writer.write(targetWorld, 1 + random.nextInt(5000));
+        }
+        
+        // Expected contents: the rotated structure over what was there before
+        int skipped = 0;
+        BlockState[] expected = new BlockState[(footprintX + 2) * (footprintY + 2) * (footprintZ + 2)];
+        for (StructureData.BlockEntry entry : data.getBlocks()) {
+            BlockPos local = PlacementPlan.rotatePosition(entry.pos, facing, data.getSizeX(), data.getSizeZ());
+            BlockPos pos = target.add(local);
+            if ((pos.getX() >> 4) == unloadedChunkX && (pos.getZ() >> 4) == unloadedChunkZ) {
+                skipped++;
+                continue;
+            }
+            expected[shellIndex(local.getX() + 1, local.getY() + 1, local.getZ() + 1, footprintY, footprintZ)] =
+                PlacementPlan.rotateBlockState(entry.state, facing);
+        }
+        assertEquals(skipped, writer.getSkippedBlocks(), "blocks skipped in the unloaded chunk");
+        
+        for (int x = -1; x <= footprintX; x++) {
+            for (int y = -1; y <= footprintY; y++) {
+                for (int z = -1; z <= footprintZ; z++) {
+                    int wx = target.getX() + x;
+                    int wy = target.getY() + y;
+                    int wz = target.getZ() + z;
+                    BlockState want = expected[shellIndex(x + 1, y + 1, z + 1, footprintY, footprintZ)];
+                    if (want == null) {
+                        want = before.getBlockState(wx, wy, wz);
+                    }
+                    BlockState actual = targetWorld.getBlockState(wx, wy, wz);
+                    if (want.isAir() ? !actual.isAir() : want != actual) {
+                        fail("Cell " + x + "," + y + "," + z + " of a " + sizeX + "x" + sizeY + "x" + sizeZ
+                            + " structure placed " + facing + (clearVolume ? " (clear volume)" : "")
+                            + " at " + target.toShortString() + " is " + actual + ", expected " + want);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static BlockPos randomOrigin(Random random) {
+        return new BlockPos(random.nextInt(512) - 256, random.nextInt(200) - 60, random.nextInt(512) - 256);
+    }
+    
+    private static void fill(MemorySectionAccess world, Random random, BlockPos origin, int sizeX, int sizeY, int sizeZ,
+                             BlockState[] palette, float density) {
+        for (int x = 0; x < sizeX; x++) {
+            for (int y = 0; y < sizeY; y++) {
+                for (int z = 0; z < sizeZ; z++) {
+                    if (random.nextFloat() < density) {
+                        world.setBlockState(origin.getX() + x, origin.getY() + y, origin.getZ() + z,
+                            palette[random.nextInt(palette.length)]);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Snapshot of the footprint plus a one-block shell
+     */
+    private static MemorySectionAccess copy(MemorySectionAccess world, BlockPos target,
+                                            int footprintX, int footprintY, int footprintZ) {
+        MemorySectionAccess copy = new MemorySectionAccess();
+        for (int x = -1; x <= footprintX; x++) {
+            for (int y = -1; y <= footprintY; y++) {
+                for (int z = -1; z <= footprintZ; z++) {
+                    int wx = target.getX() + x;
+                    int wy = target.getY() + y;
+                    int wz = target.getZ() + z;
+                    copy.setBlockState(wx, wy, wz, world.getBlockState(wx, wy, wz));
+                }
+            }
+        }
+        return copy;
+    }
+    
+    private static int shellIndex(int x, int y, int z, int footprintY, int footprintZ) {
+        return (x * (footprintY + 2) + y) * (footprintZ + 2) + z;
+    }
+}
@@ -0,0 +1,123 @@
+package com.yamiknight.structurecapsule.placement;
+
+import com.yamiknight.structurecapsule.config.ModConfig;
+import com.yamiknight.structurecapsule.structure.SectionCapture;
+import com.yamiknight.structurecapsule.structure.SectionStore;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.world.MemorySectionAccess;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.StairsBlock;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Throughput of the capture and placement engines on an in-memory world
+ *
+ * A 1M-block region is captured end to end through SectionCapture (scan,
+ * encode, hash, compress and store) and the assembled structure is placed
+ * through PlacementWriter in blocksPerTick slices. No server, chunk access,
+ * lighting or block updates are involved, so the numbers are the engines' own
+ * cost. Results are published as test report entries.
+ */
+public class EngineThroughputTest {
+    private static final int SIZE_X = 128;
+    private static final int SIZE_Y = 64;
+    private static final int SIZE_Z = 128;
+    
+    @TempDir
+    Path storeDir;
+    
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void captureAndPlace(TestReporter reporter) throws IOException {
+        BlockState[] pattern = {
+            Blocks.STONE.getDefaultState(),
+            Blocks.OAK_PLANKS.getDefaultState(),
+            Blocks.GLASS.getDefaultState(),
+            Blocks.OAK_STAIRS.getDefaultState().with(StairsBlock.FACING, Direction.EAST),
+            Blocks.AIR.getDefaultState()
+        };
+        // Unaligned origins so structure sections straddle world sections
+        BlockPos source = new BlockPos(5, 3, 7);
+        BlockPos target = new BlockPos(-37, 11, 90);
+        
+        MemorySectionAccess sourceWorld = new MemorySectionAccess();
+        for (int x = 0; x < SIZE_X; x++) {
+            for (int y = 0; y < SIZE_Y; y++) {
+                for (int z = 0; z < SIZE_Z; z++) {
+                    sourceWorld.setBlockState(source.getX() + x, source.getY() + y, source.getZ() + z,
+                        pattern[Math.floorMod(x * 7 + y * 13 + z * 3, pattern.length)]);
+                }
+            }
+        }
+        
+        SectionStore store = new SectionStore(storeDir.resolve("sections"));
+        long captureStart = System.nanoTime();
+        SectionCapture.Result capture = SectionCapture.capture(sourceWorld, source, SIZE_X, SIZE_Y, SIZE_Z,
+            "perf_engine", null, store, store.pins());
+        long captureNanos = System.nanoTime() - captureStart;
+        StructureData captured = capture.manifest().assemble(store);
+        
+        MemorySectionAccess targetWorld = new MemorySectionAccess();
+        PlacementPlan plan = PlacementPlan.build(captured, Direction.NORTH);
+        PlacementWriter writer = new PlacementWriter(List.of(target), new PlacementPlan[]{plan});
+        int blocksPerTick = ModConfig.getInstance().blocksPerTick;
+        long[] slices = new long[256];
+        int sliceCount = 0;
+        long placeStart = System.nanoTime();
+        while (writer.hasMoreBlocks()) {
+            long sliceStart = System.nanoTime();
+            writer.write(targetWorld, blocksPerTick);
+            if (sliceCount == slices.length) {
+                slices = Arrays.copyOf(slices, sliceCount * 2);
+            }
+            slices[sliceCount++] = System.nanoTime() - sliceStart;
+        }
+        long placeNanos = System.nanoTime() - placeStart;
+        
+        assertEquals(captured.getBlockCount(), targetWorld.countBlocks(), "placed block count");
+        for (int x = 0; x < SIZE_X; x++) {
+            for (int y = 0; y < SIZE_Y; y++) {
+                for (int z = 0; z < SIZE_Z; z++) {
+                    assertEquals(sourceWorld.getBlockState(source.getX() + x, source.getY() + y, source.getZ() + z),
+                        targetWorld.getBlockState(target.getX() + x, target.getY() + y, target.getZ() + z));
+                }
+            }
+        }
+        
+        long[] sorted = Arrays.copyOf(slices, sliceCount);
+        Arrays.sort(sorted);
+        reporter.publishEntry("blocks", String.valueOf(captured.getBlockCount()));
+        reporter.publishEntry("captureMs", format(captureNanos / 1_000_000.0));
+        reporter.publishEntry("captureBlocksPerSecond", format(captured.getBlockCount() / (captureNanos / 1e9)));
+        reporter.publishEntry("placementMs", format(placeNanos / 1_000_000.0));
+        reporter.publishEntry("placementBlocksPerSecond", format(captured.getBlockCount() / (placeNanos / 1e9)));
+        reporter.publishEntry("placementSlices", String.valueOf(sliceCount));
+        reporter.publishEntry("placementSliceMsP50", format(sorted[(sliceCount - 1) / 2] / 1_000_000.0));
+        reporter.publishEntry("placementSliceMsP99", format(sorted[(int) Math.ceil(0.99 * sliceCount) - 1] / 1_000_000.0));
+    }
+    
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.2f", value);
+    }
+}
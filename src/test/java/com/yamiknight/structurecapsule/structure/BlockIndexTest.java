@@ -0,0 +1,111 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Content queries over the block index, and its persisted form
+ */
+public class BlockIndexTest {
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void parsesTerms() {
+        assertEquals(new BlockIndex.Filter("minecraft:stone", false, 1), BlockIndex.Filter.parse("stone"));
+        assertEquals(new BlockIndex.Filter("minecraft:glass", true, 1), BlockIndex.Filter.parse("-minecraft:glass"));
+        assertEquals(new BlockIndex.Filter("create:*", true, 1), BlockIndex.Filter.parse("!create:*"));
+        assertEquals(new BlockIndex.Filter("minecraft:oak_planks", false, 10),
+            BlockIndex.Filter.parse("oak_planks>=10"));
+        
+        for (String invalid : List.of("-stone>=2", "stone>=x", "stone>=0", "stone>=", "Stone", "stone:", "create:*x",
+            "")) {
+            assertThrows(IllegalArgumentException.class, () -> BlockIndex.Filter.parse(invalid), invalid);
+        }
+    }
+    
+    @Test
+    public void combinesFilters() {
+        BlockIndex index = index();
+        
+        assertEquals(List.of(
+            new BlockIndex.Match("house", Map.of("minecraft:stone", 100)),
+            new BlockIndex.Match("tower", Map.of("minecraft:stone", 500))), find(index, "stone"));
+        assertEquals(List.of("tower"), names(find(index, "stone", "-glass")));
+        assertEquals(List.of(new BlockIndex.Match("house", Map.of("minecraft:oak_planks", 40))),
+            find(index, "oak_planks>=20"));
+        // A namespace sums the counts of its blocks
+        assertEquals(List.of(new BlockIndex.Match("tower", Map.of("create:*", 8))), find(index, "create:*"));
+        assertEquals(List.of(), find(index, "create:*>=9"));
+        // Without an including filter every structure is a candidate, empty ones too
+        assertEquals(List.of("empty", "house", "shed"), names(find(index, "-create:*")));
+        assertEquals(List.of("empty", "house", "shed", "tower"), names(find(index)));
+        
+        List<BlockIndex.Match> matches = find(index, "stone>=200", "create:*>=8", "-glass");
+        assertEquals(List.of("tower"), names(matches));
+        assertEquals(List.of("minecraft:stone", "create:*"), List.copyOf(matches.get(0).counts().keySet()));
+        assertEquals(List.of(500, 8), List.copyOf(matches.get(0).counts().values()));
+    }
+    
+    @Test
+    public void reindexingReplacesEntries() {
+        BlockIndex index = index();
+        index.put("house", 5, Map.of("minecraft:stone", 90));
+        assertEquals(List.of("tower"), names(find(index, "stone>=100")));
+        assertFalse(index.blockIds().contains("minecraft:glass"));
+        
+        index.put("tower", 6, null);
+        assertEquals(Set.of("minecraft:oak_planks", "minecraft:stone"), index.blockIds());
+        assertEquals(List.of("empty", "house", "shed"), names(find(index)));
+    }
+    
+    @Test
+    public void persistedIndexReadsBack() {
+        BlockIndex index = index();
+        NbtCompound nbt = index.toNbt();
+        assertEquals(2, nbt.getCompound("structures").getLong("house"));
+        assertEquals(3, nbt.getCompound("blocks").getCompound("create:shaft").getInt("tower"));
+        
+        BlockIndex loaded = new BlockIndex(dir, new SectionStore(dir.resolve("sections")));
+        loaded.read(nbt);
+        assertEquals(index.blockIds(), loaded.blockIds());
+        for (String[] query : List.of(new String[0], new String[]{"stone", "-glass"}, new String[]{"create:*>=8"},
+            new String[]{"oak_planks"})) {
+            assertEquals(find(index, query), find(loaded, query), String.join(" ", query));
+        }
+        assertEquals(index.toNbt(), loaded.toNbt());
+        
+        // An index of another format is rebuilt from scratch
+        nbt.putInt("format", 99);
+        loaded.read(nbt);
+        assertEquals(List.of(), find(loaded));
+    }
+    
+    private BlockIndex index() {
+        BlockIndex index = new BlockIndex(dir, new SectionStore(dir.resolve("sections")));
+        index.put("house", 2, Map.of("minecraft:stone", 100, "minecraft:oak_planks", 40, "minecraft:glass", 8));
+        index.put("tower", 3, Map.of("minecraft:stone", 500, "create:cogwheel", 5, "create:shaft", 3));
+        index.put("shed", 4, Map.of("minecraft:oak_planks", 12));
+        index.put("empty", 1, Map.of());
+        return index;
+    }
+    
+    private static List<BlockIndex.Match> find(BlockIndex index, String... terms) {
+        return index.find(Arrays.stream(terms).map(BlockIndex.Filter::parse).toList());
+    }
+    
+    private static List<String> names(List<BlockIndex.Match> matches) {
+        return matches.stream().map(BlockIndex.Match::structure).toList();
+    }
+}
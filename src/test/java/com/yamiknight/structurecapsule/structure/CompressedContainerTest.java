@@ -0,0 +1,84 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Round trips and corrupt headers of the block-compressed container
+ */
+public class CompressedContainerTest {
+    // magic, version, blockSize, blockCount
+    private static final int BLOCK_COUNT_OFFSET = 4 + 1 + 4;
+    private static final int BLOCK_TABLE_OFFSET = BLOCK_COUNT_OFFSET + 4;
+    
+    @TempDir
+    Path dir;
+    
+    @Test
+    public void roundTripsAcrossBlocks() throws IOException {
+        NbtCompound nbt = sample();
+        Path path = dir.resolve("sample.nbt");
+        CompressedContainer.write(nbt, path, 6, 1024);
+        
+        assertEquals(nbt, CompressedContainer.read(path));
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(1, files.count(), "temp file left behind");
+        }
+    }
+    
+    @Test
+    public void rejectsOversizedBlockCount() throws IOException {
+        Path path = written();
+        patchInt(path, BLOCK_COUNT_OFFSET, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> CompressedContainer.read(path));
+        patchInt(path, BLOCK_COUNT_OFFSET, -1);
+        assertThrows(IOException.class, () -> CompressedContainer.read(path));
+    }
+    
+    @Test
+    public void rejectsInvalidBlockLengths() throws IOException {
+        // Raw length far beyond what its compressed bytes can inflate to
+        Path inflated = written();
+        patchInt(inflated, BLOCK_TABLE_OFFSET, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> CompressedContainer.read(inflated));
+        
+        Path negative = written();
+        patchInt(negative, BLOCK_TABLE_OFFSET + 4, -5);
+        assertThrows(IOException.class, () -> CompressedContainer.read(negative));
+        
+        Path truncated = written();
+        patchInt(truncated, BLOCK_TABLE_OFFSET + 4, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> CompressedContainer.read(truncated));
+    }
+    
+    private Path written() throws IOException {
+        Path path = Files.createTempFile(dir, "container", ".nbt");
+        CompressedContainer.write(sample(), path, 6, 1024);
+        return path;
+    }
+    
+    private static NbtCompound sample() {
+        NbtCompound nbt = new NbtCompound();
+        for (int i = 0; i < 500; i++) {
+            nbt.putString("key" + i, "value " + i * 31);
+        }
+        nbt.putIntArray("cells", new int[4096]);
+        return nbt;
+    }
+    
+    private static void patchInt(Path path, int offset, int value) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putInt(offset, value);
+        Files.write(path, bytes);
+    }
+}
@@ -0,0 +1,55 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.placement.PlacementPlan;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Rotated occupancy masks agree with where placement puts the blocks
+ */
+public class OccupancyMapTest {
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void masksMatchPlacement() {
+        Random random = new Random(7);
+        StructureData.Builder builder = new StructureData.Builder("mask", 37, 21, 19);
+        for (int i = 0; i < 2000; i++) {
+            builder.addBlock(new BlockPos(random.nextInt(37), random.nextInt(21), random.nextInt(19)),
+                Blocks.STONE.getDefaultState());
+        }
+        StructureData data = builder.build();
+        
+        long[] mask = new long[64];
+        for (Direction facing : Direction.Type.HORIZONTAL) {
+            PlacementPlan plan = PlacementPlan.build(data, facing);
+            // Boxes at unaligned offsets, including ones hanging over the structure's edges
+            for (int[] box : new int[][]{{0, 0, 0}, {-5, 3, 7}, {9, -11, -2}, {30, 14, 12}}) {
+                occupancyMatches(data, plan, facing, box[0], box[1], box[2], mask);
+            }
+        }
+    }
+    
+    private static void occupancyMatches(StructureData data, PlacementPlan plan, Direction facing,
+                                         int minX, int minY, int minZ, long[] mask) {
+        data.getOccupancy().fillMask(facing, minX, minY, minZ, mask);
+        for (int cell = 0; cell < StructureSection.VOLUME; cell++) {
+            boolean expected = plan.isOccupiedAt(minX + (cell & 15), minY + (cell >> 8), minZ + ((cell >> 4) & 15));
+            assertEquals(expected, (mask[cell >> 6] & (1L << cell)) != 0,
+                facing + " cell " + cell + " of box at " + minX + "," + minY + "," + minZ);
+        }
+    }
+}
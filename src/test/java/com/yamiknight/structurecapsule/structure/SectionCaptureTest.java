@@ -0,0 +1,62 @@
+package com.yamiknight.structurecapsule.structure;
+
+import com.yamiknight.structurecapsule.world.MemorySectionAccess;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.StairsBlock;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * Section fingerprints decide which sections a re-capture may reuse
+ */
+public class SectionCaptureTest {
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void scanMatchesStoredFingerprint() throws IOException {
+        MemorySectionAccess world = new MemorySectionAccess();
+        world.setBlockState(3, 70, 5, Blocks.STONE.getDefaultState());
+        world.setBlockState(4, 70, 5, Blocks.OAK_STAIRS.getDefaultState().with(StairsBlock.FACING, Direction.EAST));
+        
+        BlockState[] scanned = new BlockState[StructureSection.VOLUME];
+        long fingerprint = SectionCapture.scanSection(world, new BlockPos(0, 64, 0), 16, 16, 16, 0, 0, 0, scanned);
+        assertEquals(fingerprint, SectionCapture.fingerprint(scanned));
+    }
+    
+    @Test
+    public void fingerprintDistinguishesProperties() {
+        BlockState[] east = new BlockState[StructureSection.VOLUME];
+        east[0] = Blocks.OAK_STAIRS.getDefaultState().with(StairsBlock.FACING, Direction.EAST);
+        BlockState[] west = new BlockState[StructureSection.VOLUME];
+        west[0] = Blocks.OAK_STAIRS.getDefaultState().with(StairsBlock.FACING, Direction.WEST);
+        assertNotEquals(SectionCapture.fingerprint(east), SectionCapture.fingerprint(west));
+    }
+    
+    @Test
+    public void rawIdFingerprintsAreNotReused() {
+        StructureManifest manifest = new StructureManifest("old", 16, 16, 16, 1,
+            List.of(new StructureManifest.SectionRef(0, 0, 0, "ab", 1, 42)));
+        NbtCompound nbt = manifest.toNbt();
+        assertEquals(42, StructureManifest.fromNbt(nbt).getSections().get(0).fingerprint());
+        
+        // Manifests from before registry-based fingerprints are captured in full again
+        nbt.putInt("version", 2);
+        assertEquals(0, StructureManifest.fromNbt(nbt).getSections().get(0).fingerprint());
+    }
+}
@@ -0,0 +1,85 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Garbage collection of the section store against writes still in progress
+ */
+public class SectionStoreTest {
+    @TempDir
+    Path storeDir;
+    
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void keepsLiveAndPinnedSections() throws IOException {
+        SectionStore store = new SectionStore(storeDir);
+        String live = store.put(section(Blocks.STONE.getDefaultState()));
+        String unused = store.put(section(Blocks.DIRT.getDefaultState()));
+        SectionStore.Pins pins = store.pins();
+        String pinned = store.put(section(Blocks.GLASS.getDefaultState()), pins);
+        
+        assertEquals(1, store.collectGarbage(() -> Set.of(live)));
+        assertTrue(store.contains(live));
+        assertFalse(store.contains(unused));
+        assertTrue(store.contains(pinned));
+        
+        // An abandoned write leaves its sections to the next collection
+        pins.close();
+        assertEquals(1, store.collectGarbage(() -> Set.of(live)));
+        assertFalse(store.contains(pinned));
+    }
+    
+    @Test
+    public void keepsSectionsReleasedWhileCollecting() throws IOException {
+        SectionStore store = new SectionStore(storeDir);
+        SectionStore.Pins pins = store.pins();
+        String hash = store.put(section(Blocks.STONE.getDefaultState()), pins);
+        
+        // The writer's manifest lands after the live set was read, then it releases its pins
+        assertEquals(0, store.collectGarbage(() -> {
+            Set<String> live = Set.of();
+            pins.close();
+            return live;
+        }));
+        assertTrue(store.contains(hash));
+    }
+    
+    @Test
+    public void restoresSectionPinnedAfterCollection() throws IOException {
+        SectionStore store = new SectionStore(storeDir);
+        StructureSection section = section(Blocks.STONE.getDefaultState());
+        String hash = store.put(section);
+        assertEquals(1, store.collectGarbage(Set::of));
+        
+        // A writer reusing the collected section stores it again
+        try (SectionStore.Pins pins = store.pins()) {
+            store.put(section, pins);
+            assertTrue(store.contains(hash));
+        }
+    }
+    
+    private static StructureSection section(BlockState state) {
+        BlockState[] states = new BlockState[StructureSection.VOLUME];
+        states[0] = state;
+        return StructureSection.fromStates(states);
+    }
+}
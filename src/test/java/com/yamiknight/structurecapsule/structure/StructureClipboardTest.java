@@ -0,0 +1,48 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Clipboards keep compact sections and expand them only for placement
+ */
+public class StructureClipboardTest {
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void expansionMatchesSections() {
+        BlockState[] lower = new BlockState[StructureSection.VOLUME];
+        lower[StructureSection.cellIndex(3, 0, 5)] = Blocks.STONE.getDefaultState();
+        BlockState[] upper = new BlockState[StructureSection.VOLUME];
+        upper[StructureSection.cellIndex(0, 1, 2)] = Blocks.OAK_PLANKS.getDefaultState();
+        upper[StructureSection.cellIndex(15, 15, 15)] = Blocks.GLASS.getDefaultState();
+        
+        StructureClipboard.Contents contents = new StructureClipboard.Contents(32, 32, 16, Map.of(
+            BlockPos.asLong(0, 0, 0), StructureSection.fromStates(lower),
+            BlockPos.asLong(1, 1, 0), StructureSection.fromStates(upper)));
+        assertEquals(3, contents.getBlockCount());
+        
+        StructureData data = contents.toStructureData();
+        assertEquals(3, data.getBlockCount());
+        assertEquals(new BlockPos(3, 0, 5), data.getBlocks().get(0).pos);
+        assertEquals(new BlockPos(16, 17, 2), data.getBlocks().get(1).pos);
+        assertEquals(Blocks.GLASS.getDefaultState(), data.getBlocks().get(2).state);
+        
+        // Held by a placement, the expansion is shared by the next paste
+        assertSame(data, contents.toStructureData());
+    }
+}
@@ -0,0 +1,68 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Outdated structure files are rewritten in the current format
+ */
+public class StructureManagerTest {
+    @TempDir
+    Path dir;
+    
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void upgradedLegacyFileLoadsAgain() throws IOException {
+        StructureData.Builder builder = new StructureData.Builder("legacy", 40, 20, 18);
+        builder.addBlock(new BlockPos(0, 0, 0), Blocks.STONE.getDefaultState());
+        builder.addBlock(new BlockPos(17, 3, 2), Blocks.OAK_PLANKS.getDefaultState());
+        builder.addBlock(new BlockPos(39, 19, 17), Blocks.GLASS.getDefaultState());
+        StructureData legacy = StructureData.fromNbt(builder.build().toNbt());
+        
+        SectionStore store = new SectionStore(dir.resolve("sections"));
+        Path file = dir.resolve("legacy.nbt");
+        try (SectionStore.Pins pins = store.pins()) {
+            CompressedContainer.write(StructureManager.upgrade(null, legacy, store, pins).toNbt(), file, 6, 1024);
+        }
+        
+        // Written as a section manifest, like every other structure file
+        NbtCompound nbt = CompressedContainer.read(file);
+        assertTrue(StructureManifest.isManifest(nbt));
+        StructureManifest manifest = StructureManifest.fromNbt(nbt);
+        assertEquals(3, manifest.getSections().size());
+        
+        StructureData reloaded = manifest.assemble(store);
+        assertEquals(legacy.getSizeX(), reloaded.getSizeX());
+        assertEquals(legacy.getSizeY(), reloaded.getSizeY());
+        assertEquals(legacy.getSizeZ(), reloaded.getSizeZ());
+        assertEquals(blocks(legacy), blocks(reloaded));
+    }
+    
+    private static Map<BlockPos, BlockState> blocks(StructureData data) {
+        Map<BlockPos, BlockState> blocks = new HashMap<>();
+        for (StructureData.BlockEntry entry : data.getBlocks()) {
+            blocks.put(entry.pos, entry.state);
+        }
+        return blocks;
+    }
+}
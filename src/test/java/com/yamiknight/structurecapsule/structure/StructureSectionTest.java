@@ -0,0 +1,60 @@
+package com.yamiknight.structurecapsule.structure;
+
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * The hash of a stored section must be computable from its NBT alone
+ */
+public class StructureSectionTest {
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void storedHashMatchesEveryBlockState() {
+        // Every registered state, a few hundred per section, with empty cells in between
+        int stateCount = Block.STATE_IDS.size();
+        for (int first = 0; first < stateCount; first += 300) {
+            BlockState[] states = new BlockState[StructureSection.VOLUME];
+            for (int cell = 0; cell < StructureSection.VOLUME; cell += 3) {
+                BlockState state = Block.STATE_IDS.get(first + (cell / 3) % Math.min(300, stateCount - first));
+                states[cell] = state.isAir() ? null : state;
+            }
+            StructureSection section = StructureSection.fromStates(states);
+            assertEquals(section.getHash(), StructureSection.storedHash(section.toNbt()),
+                "stored hash of states from id " + first);
+        }
+    }
+    
+    @Test
+    public void storedHashDetectsChangedContents() {
+        BlockState[] states = new BlockState[StructureSection.VOLUME];
+        states[0] = Blocks.STONE.getDefaultState();
+        states[1] = Blocks.OAK_PLANKS.getDefaultState();
+        StructureSection section = StructureSection.fromStates(states);
+        
+        NbtCompound swapped = section.toNbt();
+        swapped.getList("palette", NbtElement.COMPOUND_TYPE).getCompound(0).putString("Name", "minecraft:diamond_block");
+        assertNotEquals(section.getHash(), StructureSection.storedHash(swapped));
+        
+        NbtCompound moved = section.toNbt();
+        byte[] cells = moved.getByteArray("cells");
+        cells[2] = cells[1];
+        cells[1] = 0;
+        moved.putByteArray("cells", cells);
+        assertNotEquals(section.getHash(), StructureSection.storedHash(moved));
+    }
+}
@@ -0,0 +1,154 @@
+package com.yamiknight.structurecapsule.trace;
+
+import com.yamiknight.structurecapsule.placement.AsyncStructurePlacer;
+import com.yamiknight.structurecapsule.structure.StructureData;
+import com.yamiknight.structurecapsule.world.MemorySectionAccess;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Direction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Traces read back exactly what was recorded, and replay without a server
+ */
+public class TraceFormatTest {
+    @TempDir
+    Path dir;
+    
+    @BeforeAll
+    static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+    
+    @Test
+    public void varintsRoundTrip() throws IOException {
+        int[] signed = {0, 1, -1, 63, -64, 64, 1000, -30_000_000, 30_000_000, Integer.MIN_VALUE, Integer.MAX_VALUE};
+        long[] unsigned = {0, 127, 128, 16_383, 16_384, 50_000_000L, Long.MAX_VALUE, -1L};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : signed) {
+            TraceFormat.writeSigned(out, value);
+            TraceFormat.writeVarInt(out, value);
+        }
+        for (long value : unsigned) {
+            TraceFormat.writeVarLong(out, value);
+        }
+        
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (int value : signed) {
+            assertEquals(value, TraceFormat.readSigned(in));
+            assertEquals(value, TraceFormat.readVarInt(in));
+        }
+        for (long value : unsigned) {
+            assertEquals(value, TraceFormat.readVarLong(in));
+        }
+        assertEquals(-1, in.read());
+        
+        // Small coordinates of either sign stay one byte; 7 bits per byte beyond that
+        assertEquals(1, encodedSize(stream -> TraceFormat.writeSigned(stream, -64)));
+        assertEquals(2, encodedSize(stream -> TraceFormat.writeSigned(stream, 64)));
+        assertEquals(2, encodedSize(stream -> TraceFormat.writeVarInt(stream, 128)));
+        assertEquals(5, encodedSize(stream -> TraceFormat.writeVarInt(stream, -1)));
+    }
+    
+    @Test
+    public void recordedEventsReadBack() throws IOException {
+        StructureData.Builder builder = new StructureData.Builder("house", 20, 3, 17);
+        builder.addBlock(new BlockPos(0, 0, 0), Blocks.STONE.getDefaultState());
+        builder.addBlock(new BlockPos(19, 2, 16), Blocks.GLASS.getDefaultState());
+        StructureData house = builder.build();
+        
+        TraceWriter writer = new TraceWriter(256, 1_700_000_000_000L, 1_000);
+        writer.saveRequested(1_500, 7, "house", new BlockPos(-100, -60, 250), 20, 3, 17, "ADMITTED");
+        writer.placementQueued(2_000_000_000L, 8, "capsule", List.of(
+            new AsyncStructurePlacer.Placement(new BlockPos(-5, 70, -3_000_000), house, Direction.EAST, true),
+            new AsyncStructurePlacer.Placement(new BlockPos(5, 70, 3), house, Direction.SOUTH)));
+        writer.placerTick(2_050_000_000L, 8, 2, 0, 123_456);
+        writer.placementFinished(2_050_000_500L, 8);
+        writer.saveFinished(3_000_000_000L, 7, -1);
+        // "house" is interned once for both records; labels and admissions are strings too
+        assertEquals(8, writer.getRecords());
+        
+        TraceReader.Trace trace = TraceReader.read(write(writer.drain()));
+        assertEquals(1_700_000_000_000L, trace.startMillis());
+        assertEquals(List.of(
+            new TraceEvent.SaveRequested(500, 7, "house", -100, -60, 250, 20, 3, 17, "ADMITTED"),
+            new TraceEvent.PlacementQueued(1_999_999_000L, 8, "capsule", List.of(
+                new TraceEvent.Placed("house", -5, 70, -3_000_000, 20, 3, 17, 2, Direction.EAST.getHorizontal(), true),
+                new TraceEvent.Placed("house", 5, 70, 3, 20, 3, 17, 2, Direction.SOUTH.getHorizontal(), false))),
+            new TraceEvent.PlacerTick(2_049_999_000L, 8, 2, 0, 123_456),
+            new TraceEvent.PlacementFinished(2_049_999_500L, 8),
+            new TraceEvent.SaveFinished(2_999_999_000L, 7, -1)), trace.events());
+        assertEquals(2_999_999_000L, trace.durationNanos());
+    }
+    
+    @Test
+    public void truncatedLastRecordIsDropped() throws IOException {
+        TraceWriter writer = new TraceWriter(256, 0, 0);
+        writer.placementFinished(10, 1);
+        writer.placerTick(20, 2, 300, 0, Long.MAX_VALUE);
+        byte[] bytes = writer.drain();
+        
+        TraceReader.Trace trace = TraceReader.read(write(Arrays.copyOf(bytes, bytes.length - 3)));
+        assertEquals(List.of(new TraceEvent.PlacementFinished(10, 1)), trace.events());
+    }
+    
+    @Test
+    public void simulationPlacesTheRecordedShapes() {
+        TraceReader.Trace trace = new TraceReader.Trace(0, List.of(
+            new TraceEvent.PlacementQueued(0, 1, "capsule", List.of(
+                new TraceEvent.Placed("house", 0, 64, 0, 20, 3, 17, 50, Direction.WEST.getHorizontal(), false))),
+            new TraceEvent.SaveRequested(10_000_000L, 2, "scan", 0, 64, 0, 20, 3, 17, "ADMITTED"),
+            new TraceEvent.SaveRequested(20_000_000L, 3, "busy", 0, 64, 0, 20, 3, 17, "TOO_MANY"),
+            new TraceEvent.PlacementFinished(200_000_000L, 1),
+            new TraceEvent.SaveFinished(300_000_000L, 2, 50)));
+        
+        MemorySectionAccess world = new MemorySectionAccess();
+        ReplayReport report = TraceReplay.simulate(trace, new TraceReplay.Settings(16, 5, 2), world);
+        assertEquals(50, world.countBlocks());
+        assertEquals(1, report.tasks);
+        assertEquals(1, report.structures);
+        assertEquals(50, report.blocks);
+        // Only the admitted save is replayed
+        assertEquals(1, report.saves);
+        assertEquals(200.0, report.recordedPlacementLatency.percentileMillis(50));
+        assertEquals(290.0, report.recordedSaveLatency.percentileMillis(50));
+        // 16 blocks a tick: the placement needs at least four ticks
+        assertTrue(report.placementLatency.percentileMillis(50) >= 200.0);
+        assertTrue(report.saveLatency.percentileMillis(50) >= 50.0);
+    }
+    
+    private interface Encoder {
+        void write(DataOutputStream out) throws IOException;
+    }
+    
+    private static int encodedSize(Encoder encoder) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        encoder.write(new DataOutputStream(bytes));
+        return bytes.size();
+    }
+    
+    private Path write(byte[] bytes) throws IOException {
+        Path file = dir.resolve("test" + TraceFormat.EXTENSION);
+        Files.write(file, bytes);
+        return file;
+    }
+}